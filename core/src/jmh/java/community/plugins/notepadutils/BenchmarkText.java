@@ -0,0 +1,71 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Deterministic note-like input shared by the benchmarks: mixed-case words,
+ * punctuation, repeated lines and the URLs, emails, phone numbers and dates
+ * that pattern detection looks for. The same size always yields the same text.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkText {
+    private static final String[] WORDS = {"the", "quick", "notepad", "meeting", "Review", "draft",
+            "synchronization", "barrier", "lorem", "ipsum", "TODO", "value", "deadline", "of", "and", "a",
+            "note", "Urgent", "fixme", "Ünïcode", "straße"};
+    private static final String[] TOKENS = {"https://example.com/notes/42", "alice@example.org",
+            "+1 555 123 4567", "2024-03-15", "#tag", "192.168.0.1"};
+
+    @Param({"1KB", "100KB", "1MB", "10MB"})
+    public String size;
+
+    public String text;
+    public String[] lines;
+
+    @Setup
+    public void generate() {
+        text = generate(parseSize(size), 42);
+        lines = text.split("\n", -1);
+    }
+
+    static int parseSize(String size) {
+        if (size.endsWith("MB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+        }
+        if (size.endsWith("KB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+        }
+        return Integer.parseInt(size);
+    }
+
+    static String generate(int chars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(chars + 64);
+        String previousLine = null;
+        int lineStart = 0;
+        while (sb.length() < chars) {
+            if (previousLine != null && random.nextInt(20) == 0) {
+                sb.append(previousLine).append('\n');
+                lineStart = sb.length();
+                continue;
+            }
+            sb.append(random.nextInt(40) == 0 ? TOKENS[random.nextInt(TOKENS.length)] : WORDS[random.nextInt(WORDS.length)]);
+            int r = random.nextInt(16);
+            if (r == 0) {
+                sb.append(".\n");
+                previousLine = sb.substring(lineStart, sb.length() - 1);
+                lineStart = sb.length();
+            } else if (r == 1) {
+                sb.append(",  ");
+            } else {
+                sb.append(' ');
+            }
+        }
+        sb.setLength(chars);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * hashText and encrypt/decrypt. The key is derived once in setup, as it is
+ * for a cached password; {@link #deriveKey} measures an uncached derivation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CryptoBenchmark {
+
+    @Param({"SHA-256", "XXH64"})
+    public String algorithm;
+
+    private TextCrypto crypto;
+    private SecretKeySpec key;
+    private byte[] iv;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+
+    @Setup
+    public void setup(BenchmarkText input) throws GeneralSecurityException {
+        crypto = new TextCrypto(new KeyCache(4, 60000));
+        key = crypto.deriveKey("correct horse battery staple", crypto.newSalt());
+        iv = crypto.newIv();
+        plaintext = input.text.getBytes(StandardCharsets.UTF_8);
+        ciphertext = TextCrypto.encrypt(plaintext, iv, key);
+    }
+
+    @Benchmark
+    public String hash(BenchmarkText input) throws GeneralSecurityException {
+        Hasher hasher = Hasher.create(algorithm);
+        hasher.update(input.text);
+        return hasher.finishHex();
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws GeneralSecurityException {
+        return TextCrypto.encrypt(plaintext, iv, key);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws GeneralSecurityException {
+        return TextCrypto.decrypt(ciphertext, iv, key);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SecretKeySpec deriveKey() throws GeneralSecurityException {
+        return new TextCrypto(new KeyCache(1, 0)).deriveKey("correct horse battery staple", iv);
+    }
+}
@@ -0,0 +1,56 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diff of the benchmark text against a copy with a few dozen scattered
+ * edits, the shape of two saved versions of a note. The cost should follow
+ * the text size and the number of edits, not their product. No time budget,
+ * so every run finds the full diff.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DiffBenchmark {
+    private static final int EDITS = 32;
+
+    @Param({"line", "word", "char"})
+    public String granularity;
+
+    @Param({"false", "true"})
+    public boolean patience;
+
+    private String oldText;
+    private String newText;
+
+    @Setup
+    public void setup(BenchmarkText input) {
+        oldText = input.text;
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder(oldText);
+        for (int i = 0; i < EDITS; i++) {
+            int at = random.nextInt(sb.length());
+            if (random.nextBoolean()) {
+                sb.insert(at, "edit " + i + "\n");
+            } else {
+                sb.delete(at, Math.min(sb.length(), at + 1 + random.nextInt(32)));
+            }
+        }
+        newText = sb.toString();
+    }
+
+    @Benchmark
+    public TextDiff.Result diff() {
+        return TextDiff.diff(oldText, newText, granularity, patience, 0);
+    }
+}
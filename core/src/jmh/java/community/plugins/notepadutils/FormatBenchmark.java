@@ -0,0 +1,53 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/** formatText pipelines, plus the line sort and dedupe engines on their own. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    @Param({"cleanup", "case", "lines"})
+    public String pipeline;
+
+    private int stages;
+
+    @Setup
+    public void setup() {
+        if ("cleanup".equals(pipeline)) {
+            stages = TextFormatter.TRIM | TextFormatter.REMOVE_EXTRA_SPACES;
+        } else if ("case".equals(pipeline)) {
+            stages = TextFormatter.TRIM | TextFormatter.SENTENCE_CASE;
+        } else {
+            stages = TextFormatter.SORT_LINES | TextFormatter.REMOVE_DUPLICATE_LINES;
+        }
+    }
+
+    @Benchmark
+    public String format(BenchmarkText input) {
+        return new TextFormatter(stages).format(input.text);
+    }
+
+    @Benchmark
+    public String[] sortLinesLocale(BenchmarkText input) {
+        String[] lines = input.lines.clone();
+        new LineSorter(LineSorter.MODE_LOCALE, Locale.ENGLISH, false).sort(lines);
+        return lines;
+    }
+
+    @Benchmark
+    public String[] dedupeLines(BenchmarkText input) {
+        return LineDeduper.dedupe(input.lines, false);
+    }
+}
@@ -0,0 +1,80 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The notebook index over the benchmark text cut into 2 KB notes, committed
+ * to a temporary directory so queries read memory-mapped segments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class IndexBenchmark {
+    private static final int NOTE_CHARS = 2048;
+
+    private File dir;
+    private NoteIndex index;
+    private String[] notes;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkText input) throws IOException {
+        int count = Math.max(1, (input.text.length() + NOTE_CHARS - 1) / NOTE_CHARS);
+        notes = new String[count];
+        for (int i = 0; i < count; i++) {
+            notes[i] = input.text.substring(i * NOTE_CHARS, Math.min(input.text.length(), (i + 1) * NOTE_CHARS));
+        }
+        dir = Files.createTempDirectory("note-index").toFile();
+        index = new NoteIndex(dir);
+        for (int i = 0; i < count; i++) {
+            index.indexDocument("note-" + i, notes[i]);
+        }
+        index.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public NoteIndex.Result searchWords() {
+        return index.search("meeting deadline", 20, true, 5);
+    }
+
+    @Benchmark
+    public NoteIndex.Result searchPhrase() {
+        return index.search("\"quick notepad\"", 20, true, 5);
+    }
+
+    @Benchmark
+    public NoteIndex.Result searchPrefix() {
+        return index.search("sync*", 20, false, 5);
+    }
+
+    @Benchmark
+    public int reindexNote() throws IOException {
+        int i = step++ % notes.length;
+        index.indexDocument("note-" + i, notes[i]);
+        return index.getDocumentCount();
+    }
+}
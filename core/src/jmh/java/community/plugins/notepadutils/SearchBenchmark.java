@@ -0,0 +1,77 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * searchText and replaceText through the same engines the plugin uses:
+ * literal search, regex over a budgeted sequence, and the multi-keyword
+ * automaton.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final String[] KEYWORDS = {"todo", "fixme", "note", "deadline", "meeting", "review", "draft", "urgent"};
+
+    @Param({"notepad", "synchronization barrier"})
+    public String term;
+
+    @Param({"true", "false"})
+    public boolean caseSensitive;
+
+    private PatternCache patterns;
+    private MultiLiteralSearcher keywords;
+
+    @Setup
+    public void setup() {
+        patterns = new PatternCache(16);
+        keywords = new MultiLiteralSearcher(KEYWORDS, false);
+    }
+
+    @Benchmark
+    public int literalSearch(BenchmarkText input) {
+        return count(SearchMatcher.create(patterns, term, caseSensitive, false, input.text, 0, 0));
+    }
+
+    @Benchmark
+    public int regexSearch(BenchmarkText input) {
+        return count(SearchMatcher.create(patterns, "\\b" + term.replace(" ", "\\s+") + "\\b",
+                caseSensitive, true, input.text, 0, 0));
+    }
+
+    @Benchmark
+    public void multiKeywordSearch(BenchmarkText input, final Blackhole blackhole) {
+        keywords.findAll(input.text, new MultiLiteralSearcher.Listener() {
+            @Override
+            public void onMatch(int termIndex, int start, int end) {
+                blackhole.consume(start);
+            }
+        });
+    }
+
+    @Benchmark
+    public TextReplacer.Result literalReplace(BenchmarkText input) {
+        return TextReplacer.replace(patterns, input.text, term, "NOTE", true, caseSensitive, false, 0, 0);
+    }
+
+    @Benchmark
+    public TextReplacer.Result regexReplace(BenchmarkText input) {
+        return TextReplacer.replace(patterns, input.text, "(\\w+)@(\\w+)", "$2 at $1", true, caseSensitive, true, 0, 0);
+    }
+
+    private static int count(SearchMatcher matcher) {
+        int count = 0;
+        while (matcher.find()) count++;
+        return count;
+    }
+}
@@ -0,0 +1,24 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/** getTextStats and detectPatterns. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatsBenchmark {
+
+    @Benchmark
+    public TextStats stats(BenchmarkText input) {
+        return TextStats.compute(input.text);
+    }
+
+    @Benchmark
+    public PatternDetector.Matches detectPatterns(BenchmarkText input) {
+        return PatternDetector.detect(input.text);
+    }
+}
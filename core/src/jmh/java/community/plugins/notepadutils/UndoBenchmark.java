@@ -0,0 +1,70 @@
+package community.plugins.notepadutils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Undo history and piece-table edits on a document of the given size.
+ * Typing-sized edits are what matter here: their cost should not grow with
+ * the document.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class UndoBenchmark {
+    private static final int MAX_HISTORY = 100;
+
+    private UndoHistory history;
+    private PieceTable table;
+    private String[] snapshots;
+    private int length;
+    private int step;
+
+    @Setup(Level.Iteration)
+    public void setup(BenchmarkText input) {
+        history = new UndoHistory();
+        history.init(input.text, MAX_HISTORY, 64L * 1024 * 1024);
+        table = new PieceTable(input.text);
+        length = input.text.length();
+        step = 0;
+        // Two full snapshots one character apart, as a client without edit
+        // ranges would send them
+        int middle = length / 2;
+        snapshots = new String[]{input.text,
+                input.text.substring(0, middle) + "#" + input.text.substring(Math.min(length, middle + 1))};
+    }
+
+    @Benchmark
+    public boolean pushEditThenUndoRedo() {
+        int at = offset();
+        history.pushEdit(at, at, "x");
+        return history.undo() && history.redo();
+    }
+
+    @Benchmark
+    public int pieceTableEdit() {
+        int at = offset();
+        table.applyEdit(at, at + 1, "y");
+        return table.getPieceCount();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String pushSnapshot() {
+        history.push(snapshots[++step & 1]);
+        return history.getCurrentText();
+    }
+
+    private int offset() {
+        step = (step * 1103515245 + 12345) & 0x7fffffff;
+        return step % Math.max(1, length - 1);
+    }
+}
@@ -0,0 +1,154 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-action call counts, failures, payload sizes and latency. Latencies go
+ * into a log-linear histogram of microseconds with eight buckets per power
+ * of two, so percentiles are within about 12% of the true value while each
+ * action keeps a fixed array of longs and recording allocates nothing.
+ */
+public class ActionMetrics {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Latencies are clamped just below 2^41 us, about 25 days
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long sinceMillis = System.currentTimeMillis();
+
+    /**
+     * Records one finished call.
+     *
+     * @param latencyNanos time from the call arriving to its final result
+     * @param failed       whether the final result was an error
+     */
+    public void record(String action, long latencyNanos, boolean failed, long inputBytes, long outputBytes) {
+        Entry entry = entries.get(action);
+        if (entry == null) {
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(action, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        entry.record(Math.max(0, latencyNanos / 1000), failed, inputBytes, outputBytes);
+    }
+
+    public void reset() {
+        entries.clear();
+        sinceMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Wall-clock time of construction or the last {@link #reset()}.
+     */
+    public long getSinceMillis() {
+        return sinceMillis;
+    }
+
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            snapshots.add(e.getValue().snapshot(e.getKey()));
+        }
+        return snapshots;
+    }
+
+    public static final class Snapshot {
+        public final String action;
+        public final long count;
+        public final long errors;
+        public final long inputBytes;
+        public final long outputBytes;
+        public final long totalMicros;
+        public final long maxMicros;
+        public final long p50Micros;
+        public final long p95Micros;
+        public final long p99Micros;
+
+        Snapshot(String action, long count, long errors, long inputBytes, long outputBytes,
+                 long totalMicros, long maxMicros, long[] buckets) {
+            this.action = action;
+            this.count = count;
+            this.errors = errors;
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+            this.p50Micros = percentile(buckets, count, maxMicros, 0.50);
+            this.p95Micros = percentile(buckets, count, maxMicros, 0.95);
+            this.p99Micros = percentile(buckets, count, maxMicros, 0.99);
+        }
+    }
+
+    private static final class Entry {
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long errors;
+        private long inputBytes;
+        private long outputBytes;
+        private long totalMicros;
+        private long maxMicros;
+
+        synchronized void record(long micros, boolean failed, long in, long out) {
+            micros = Math.min(micros, MAX_MICROS);
+            buckets[bucketIndex(micros)]++;
+            count++;
+            if (failed) {
+                errors++;
+            }
+            inputBytes += in;
+            outputBytes += out;
+            totalMicros += micros;
+            if (micros > maxMicros) {
+                maxMicros = micros;
+            }
+        }
+
+        synchronized Snapshot snapshot(String action) {
+            return new Snapshot(action, count, errors, inputBytes, outputBytes, totalMicros, maxMicros, buckets);
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * The largest value that falls into the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static long percentile(long[] buckets, long count, long max, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,263 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs CPU-heavy plugin actions on a bounded worker pool so the Cordova bridge
+ * thread stays free for cheap calls.
+ *
+ * Tasks are ordered by lane (interactive before background) and then by
+ * submission order. A task can be cancelled by its request id, and a task
+ * submitted with a supersede key cancels any older task holding the same key.
+ * Tasks sharing a serial key run one at a time, in submission order.
+ */
+public class ActionScheduler {
+    public static final int LANE_INTERACTIVE = 0;
+    public static final int LANE_BACKGROUND = 1;
+
+    /**
+     * Receives the outcome of a task that did not finish normally.
+     */
+    public interface Listener {
+        void onCancelled(String requestId);
+
+        void onFailed(String requestId, Exception e);
+    }
+
+    /**
+     * Work submitted to the scheduler.
+     */
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger anonymousIds = new AtomicInteger();
+    private final Map<String, Task> tasksById = new HashMap<>();
+    private final Map<String, Task> tasksByKey = new HashMap<>();
+    // Per serial key, the task handed to the executor followed by those waiting for it
+    private final Map<String, ArrayDeque<Task>> serialQueues = new HashMap<>();
+
+    public ActionScheduler(int workers) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "NotepadUtils-worker-" + threadCount.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static int defaultWorkerCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(4, cores - 1));
+    }
+
+    /**
+     * Queues an action.
+     *
+     * @param requestId    caller-supplied id used by {@link #cancel}, may be null
+     * @param supersedeKey tasks sharing this key replace each other, may be null
+     * @param lane         {@link #LANE_INTERACTIVE} or {@link #LANE_BACKGROUND}
+     */
+    public void submit(String requestId, String supersedeKey, int lane, Action action, Listener listener) {
+        submit(requestId, supersedeKey, null, lane, action, listener);
+    }
+
+    /**
+     * Queues an action that waits for earlier tasks with the same serial key.
+     *
+     * @param serialKey tasks sharing this key never run at the same time, may be null
+     */
+    public void submit(String requestId, String supersedeKey, String serialKey, int lane, Action action, Listener listener) {
+        String id = requestId != null && !requestId.isEmpty() ? requestId : "auto-" + anonymousIds.incrementAndGet();
+        Task task = new Task(id, supersedeKey, serialKey, lane, sequence.incrementAndGet(), action, listener);
+
+        Task stale = null;
+        boolean waiting = false;
+        synchronized (this) {
+            Task previous = tasksById.put(id, task);
+            if (previous != null) {
+                stale = previous;
+            }
+            if (supersedeKey != null) {
+                Task older = tasksByKey.put(supersedeKey, task);
+                if (older != null && older != previous) {
+                    cancelTask(older);
+                }
+            }
+            if (serialKey != null) {
+                ArrayDeque<Task> queue = serialQueues.get(serialKey);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    serialQueues.put(serialKey, queue);
+                }
+                waiting = !queue.isEmpty();
+                queue.add(task);
+            }
+        }
+        if (stale != null) {
+            cancelTask(stale);
+        }
+        if (!waiting) {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Cancels a queued or running task. Running tasks are interrupted and should
+     * stop at their next {@link #checkCancelled()} call.
+     *
+     * @return true if a live task with this id was found
+     */
+    public boolean cancel(String requestId) {
+        Task task;
+        synchronized (this) {
+            task = tasksById.get(requestId);
+        }
+        return task != null && cancelTask(task);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        synchronized (this) {
+            tasksById.clear();
+            tasksByKey.clear();
+            serialQueues.clear();
+        }
+    }
+
+    /**
+     * Throws if the current worker task has been cancelled. Long-running loops
+     * call this periodically.
+     */
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Request cancelled");
+        }
+    }
+
+    private boolean cancelTask(Task task) {
+        boolean cancelled = task.cancel(true);
+        if (cancelled) {
+            forget(task);
+            task.listener.onCancelled(task.id);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Hands the next task with the same serial key to the executor once a
+     * task has left its worker. Tasks cancelled while waiting are skipped;
+     * their listeners were told when they were cancelled.
+     */
+    private void advance(Task task) {
+        Task next;
+        synchronized (this) {
+            ArrayDeque<Task> queue = serialQueues.get(task.serialKey);
+            if (queue == null) {
+                return;
+            }
+            queue.remove(task);
+            next = queue.peek();
+            while (next != null && next.isCancelled()) {
+                queue.poll();
+                next = queue.peek();
+            }
+            if (next == null) {
+                serialQueues.remove(task.serialKey);
+                return;
+            }
+        }
+        executor.execute(next);
+    }
+
+    private synchronized void forget(Task task) {
+        if (tasksById.get(task.id) == task) {
+            tasksById.remove(task.id);
+        }
+        if (task.key != null && tasksByKey.get(task.key) == task) {
+            tasksByKey.remove(task.key);
+        }
+    }
+
+    private final class Task extends FutureTask<Void> implements Comparable<Task> {
+        final String id;
+        final String key;
+        final String serialKey;
+        final int lane;
+        final long order;
+        final Listener listener;
+
+        Task(String id, String key, String serialKey, int lane, long order, final Action action, Listener listener) {
+            super(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    action.run();
+                    return null;
+                }
+            });
+            this.id = id;
+            this.key = key;
+            this.serialKey = serialKey;
+            this.lane = lane;
+            this.order = order;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                // A cancelled task may still be winding down, so the next one waits for the worker
+                if (serialKey != null) {
+                    advance(this);
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            forget(this);
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof CancellationException || cause instanceof InterruptedException) {
+                    listener.onCancelled(id);
+                } else {
+                    listener.onFailed(id, cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (lane != other.lane) {
+                return lane < other.lane ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
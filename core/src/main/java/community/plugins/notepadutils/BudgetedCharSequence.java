@@ -0,0 +1,85 @@
+package community.plugins.notepadutils;
+
+/**
+ * Text view that limits how long a regex may run over it.
+ *
+ * Every character read counts as a step. Every {@link #CHECK_INTERVAL}
+ * steps the deadline and the worker's cancellation flag are checked, and
+ * {@link BudgetExceededException} aborts the match once either budget is
+ * spent. This stops catastrophic backtracking in engines that read their
+ * input through {@link #charAt}; engines that copy the input up front (ICU
+ * on Android copies it via {@link #toString}) only see the checks made
+ * between matches through {@link #checkDeadline}, so user regexes also run
+ * under the {@link RegexRunner} watchdog.
+ */
+public final class BudgetedCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 4096;
+
+    static final String TIME_BUDGET_EXCEEDED = "Regex time budget exceeded";
+
+    private final String text;
+    private final long deadlineNanos;
+    private final long maxSteps;
+    private long steps;
+    private int untilCheck = CHECK_INTERVAL;
+
+    public static class BudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public BudgetExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param timeoutMs time budget in milliseconds, or 0 for none
+     * @param maxSteps  character reads allowed, or 0 for no limit
+     */
+    public BudgetedCharSequence(String text, long timeoutMs, long maxSteps) {
+        this.text = text;
+        this.deadlineNanos = timeoutMs > 0 ? System.nanoTime() + timeoutMs * 1000000L : 0;
+        this.maxSteps = maxSteps;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (--untilCheck <= 0) {
+            steps += CHECK_INTERVAL;
+            untilCheck = CHECK_INTERVAL;
+            checkDeadline();
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    public long getSteps() {
+        return steps + CHECK_INTERVAL - untilCheck;
+    }
+
+    /**
+     * Throws if the time or step budget is spent, or the request was cancelled.
+     */
+    public void checkDeadline() {
+        ActionScheduler.checkCancelled();
+        if (maxSteps > 0 && getSteps() > maxSteps) {
+            throw new BudgetExceededException("Regex step budget exceeded (" + maxSteps + " steps)");
+        }
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new BudgetExceededException(TIME_BUDGET_EXCEEDED);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recent clipboard texts, newest first, bounded by entry count and by the
+ * total size of the texts.
+ *
+ * Copying a text that is already in the history moves it to the front
+ * instead of storing it twice. Once either bound is exceeded the oldest
+ * entries are dropped; a single text larger than the whole byte budget is
+ * not kept at all. Sizes count two bytes per UTF-16 char, which is what the
+ * strings occupy on the heap.
+ */
+public class ClipboardHistory {
+    public static final int DEFAULT_MAX_ENTRIES = 50;
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    /**
+     * One copied text.
+     */
+    public static final class Entry {
+        public final long id;
+        public final String text;
+        public final long timestamp;
+
+        Entry(long id, String text, long timestamp) {
+            this.id = id;
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // Insertion order, so iteration runs oldest to newest
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long totalBytes;
+    private long nextId = 1;
+
+    public synchronized void setLimits(int maxEntries, long maxBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(0, maxBytes);
+        trim();
+    }
+
+    /**
+     * Records a copied text.
+     *
+     * @return the stored entry, or null if the text is empty or over the byte budget
+     */
+    public synchronized Entry add(String text, long timestamp) {
+        if (text.isEmpty() || sizeOf(text) > maxBytes) {
+            return null;
+        }
+        Entry previous = entries.remove(text);
+        if (previous != null) {
+            totalBytes -= sizeOf(previous.text);
+        }
+        Entry entry = new Entry(nextId++, text, timestamp);
+        entries.put(text, entry);
+        totalBytes += sizeOf(text);
+        trim();
+        return entry;
+    }
+
+    /**
+     * Up to limit entries, newest first, starting offset entries from the
+     * newest. A limit of 0 or less returns everything from offset on.
+     */
+    public synchronized List<Entry> getPage(int offset, int limit) {
+        List<Entry> all = new ArrayList<>(entries.values());
+        List<Entry> page = new ArrayList<>();
+        int start = all.size() - 1 - Math.max(0, offset);
+        for (int i = start; i >= 0 && (limit <= 0 || page.size() < limit); i--) {
+            page.add(all.get(i));
+        }
+        return page;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private void trim() {
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (oldest.hasNext() && (entries.size() > maxEntries || totalBytes > maxBytes)) {
+            totalBytes -= sizeOf(oldest.next().text);
+            oldest.remove();
+        }
+    }
+
+    private static long sizeOf(String text) {
+        return 2L * text.length();
+    }
+}
@@ -0,0 +1,232 @@
+package community.plugins.notepadutils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streaming file encryption in fixed-size, individually authenticated
+ * AES-GCM segments.
+ *
+ * File layout:
+ * <pre>
+ * header:   magic "NPUE" | version (1) | segment size (4) | salt (16) | nonce prefix (7)
+ * segments: ciphertext + 16 byte tag, all but the last holding exactly one
+ *           segment of plaintext
+ * </pre>
+ * Each segment nonce is the nonce prefix, the big-endian segment index and a
+ * final-segment flag, and every segment authenticates the header as AAD.
+ * Reordered, truncated or tampered segments therefore fail on the first bad
+ * segment, and memory use is bounded by the segment size.
+ */
+public class FileCrypto {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private static final byte[] MAGIC = {'N', 'P', 'U', 'E'};
+    private static final byte VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + SALT_LENGTH + NONCE_PREFIX_LENGTH;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Supplies the AES key once the salt is known.
+     */
+    public interface KeyDeriver {
+        SecretKeySpec derive(byte[] salt) throws GeneralSecurityException;
+    }
+
+    /**
+     * Outcome of a file operation.
+     */
+    public static final class Result {
+        public final long inputBytes;
+        public final long outputBytes;
+        public final long durationNanos;
+
+        Result(long inputBytes, long outputBytes, long durationNanos) {
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+            this.durationNanos = durationNanos;
+        }
+
+        /**
+         * Plaintext throughput in MB/s.
+         */
+        public double throughputMBps(long plaintextBytes) {
+            double seconds = durationNanos / 1e9;
+            return seconds > 0 ? (plaintextBytes / (1024.0 * 1024.0)) / seconds : 0;
+        }
+    }
+
+    private FileCrypto() {
+    }
+
+    public static Result encrypt(File input, File output, KeyDeriver deriver, int segmentSize)
+            throws IOException, GeneralSecurityException {
+        long startTime = System.nanoTime();
+        SecureRandom random = new SecureRandom();
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        random.nextBytes(salt);
+        random.nextBytes(noncePrefix);
+        SecretKeySpec key = deriver.derive(salt);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put(VERSION).putInt(segmentSize).put(salt).put(noncePrefix);
+        byte[] headerBytes = header.array();
+
+        File temp = tempFileFor(output);
+        boolean done = false;
+        try (FileChannel in = new FileInputStream(input).getChannel();
+             FileChannel out = new FileOutputStream(temp).getChannel()) {
+            writeFully(out, ByteBuffer.wrap(headerBytes));
+
+            long remaining = in.size();
+            byte[] plain = new byte[segmentSize];
+            byte[] sealed = new byte[segmentSize + TAG_LENGTH];
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            int index = 0;
+            do {
+                ActionScheduler.checkCancelled();
+                int length = (int) Math.min(segmentSize, remaining);
+                readFully(in, ByteBuffer.wrap(plain, 0, length));
+                remaining -= length;
+                boolean last = remaining == 0;
+
+                cipher.init(Cipher.ENCRYPT_MODE, key, nonce(noncePrefix, index++, last));
+                cipher.updateAAD(headerBytes);
+                int sealedLength = cipher.doFinal(plain, 0, length, sealed, 0);
+                writeFully(out, ByteBuffer.wrap(sealed, 0, sealedLength));
+            } while (remaining > 0);
+
+            out.force(false);
+            Result result = new Result(in.size(), out.size(), System.nanoTime() - startTime);
+            done = true;
+            return result;
+        } finally {
+            finish(temp, output, done);
+        }
+    }
+
+    public static Result decrypt(File input, File output, KeyDeriver deriver)
+            throws IOException, GeneralSecurityException {
+        long startTime = System.nanoTime();
+        File temp = tempFileFor(output);
+        boolean done = false;
+        try (FileChannel in = new FileInputStream(input).getChannel();
+             FileChannel out = new FileOutputStream(temp).getChannel()) {
+            byte[] headerBytes = new byte[HEADER_LENGTH];
+            if (in.size() < HEADER_LENGTH + TAG_LENGTH) {
+                throw new GeneralSecurityException("Not an encrypted notepad file");
+            }
+            readFully(in, ByteBuffer.wrap(headerBytes));
+
+            ByteBuffer header = ByteBuffer.wrap(headerBytes);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (magic[0] != MAGIC[0] || magic[1] != MAGIC[1] || magic[2] != MAGIC[2] || magic[3] != MAGIC[3]) {
+                throw new GeneralSecurityException("Not an encrypted notepad file");
+            }
+            if (header.get() != VERSION) {
+                throw new GeneralSecurityException("Unsupported file version");
+            }
+            int segmentSize = header.getInt();
+            if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new GeneralSecurityException("Invalid segment size");
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+            header.get(salt);
+            header.get(noncePrefix);
+            SecretKeySpec key = deriver.derive(salt);
+
+            long remaining = in.size() - HEADER_LENGTH;
+            byte[] sealed = new byte[segmentSize + TAG_LENGTH];
+            byte[] plain = new byte[segmentSize + TAG_LENGTH];
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            int index = 0;
+            while (remaining > 0) {
+                ActionScheduler.checkCancelled();
+                int length = (int) Math.min(segmentSize + TAG_LENGTH, remaining);
+                if (length < TAG_LENGTH) {
+                    throw new GeneralSecurityException("Truncated segment " + index);
+                }
+                readFully(in, ByteBuffer.wrap(sealed, 0, length));
+                remaining -= length;
+
+                cipher.init(Cipher.DECRYPT_MODE, key, nonce(noncePrefix, index, remaining == 0));
+                cipher.updateAAD(headerBytes);
+                int plainLength;
+                try {
+                    plainLength = cipher.doFinal(sealed, 0, length, plain, 0);
+                } catch (GeneralSecurityException e) {
+                    throw new GeneralSecurityException("Authentication failed at segment " + index, e);
+                }
+                writeFully(out, ByteBuffer.wrap(plain, 0, plainLength));
+                index++;
+            }
+
+            out.force(false);
+            Result result = new Result(in.size(), out.size(), System.nanoTime() - startTime);
+            done = true;
+            return result;
+        } finally {
+            finish(temp, output, done);
+        }
+    }
+
+    private static GCMParameterSpec nonce(byte[] prefix, int index, boolean last) {
+        byte[] nonce = new byte[12];
+        System.arraycopy(prefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (index >>> 24);
+        nonce[8] = (byte) (index >>> 16);
+        nonce[9] = (byte) (index >>> 8);
+        nonce[10] = (byte) index;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static File tempFileFor(File output) {
+        return new File(output.getPath() + ".part");
+    }
+
+    private static void finish(File temp, File output, boolean success) throws IOException {
+        if (!success) {
+            temp.delete();
+            return;
+        }
+        if (output.exists() && !output.delete()) {
+            temp.delete();
+            throw new IOException("Cannot replace " + output.getPath());
+        }
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Cannot write " + output.getPath());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package community.plugins.notepadutils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Incremental hash over UTF-8 text or raw bytes.
+ *
+ * Text is encoded through a small reusable buffer instead of a full
+ * {@code getBytes} copy, and whatever the encoder leaves unconsumed at the
+ * end of one chunk is carried over to the next so chunk boundaries never
+ * change the result.
+ */
+public class Hasher {
+    public static final String XXH64 = "XXH64";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String algorithm;
+    private final MessageDigest digest;
+    private final XxHash64 xxHash;
+    // Unpaired surrogates are replaced the same way String.getBytes does
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer encodeBuffer;
+    // Input the encoder has not consumed yet, carried over to the next update
+    private final StringBuilder pending = new StringBuilder();
+    private long bytesProcessed;
+
+    private Hasher(String algorithm, MessageDigest digest, XxHash64 xxHash) {
+        this.algorithm = algorithm;
+        this.digest = digest;
+        this.xxHash = xxHash;
+    }
+
+    /**
+     * Creates a hasher. MD5, SHA-512 and XXH64 are recognized; anything else
+     * falls back to SHA-256.
+     */
+    public static Hasher create(String algorithm) throws NoSuchAlgorithmException {
+        if (XXH64.equals(algorithm)) {
+            return new Hasher(XXH64, null, new XxHash64());
+        }
+        String alg;
+        if ("MD5".equals(algorithm)) {
+            alg = "MD5";
+        } else if ("SHA-512".equals(algorithm)) {
+            alg = "SHA-512";
+        } else {
+            alg = "SHA-256";
+        }
+        return new Hasher(alg, MessageDigest.getInstance(alg), null);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    public synchronized void update(CharSequence text) {
+        if (encodeBuffer == null) {
+            encodeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        CharBuffer in = CharBuffer.wrap(pending.length() > 0 ? pending.append(text) : text);
+        encode(in, false);
+        // The encoder leaves a trailing high surrogate unconsumed until it sees what follows
+        String remainder = in.toString();
+        pending.setLength(0);
+        pending.append(remainder);
+    }
+
+    public synchronized void update(byte[] input, int offset, int length) {
+        bytesProcessed += length;
+        if (xxHash != null) {
+            xxHash.update(input, offset, length);
+        } else {
+            digest.update(input, offset, length);
+        }
+    }
+
+    public synchronized void update(ByteBuffer input) {
+        if (xxHash == null) {
+            bytesProcessed += input.remaining();
+            digest.update(input);
+            return;
+        }
+        if (input.hasArray()) {
+            update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(input.remaining(), 8192)];
+        while (input.hasRemaining()) {
+            int n = Math.min(chunk.length, input.remaining());
+            input.get(chunk, 0, n);
+            update(chunk, 0, n);
+        }
+    }
+
+    /**
+     * Streams a file through a direct buffer.
+     */
+    public void updateFile(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            while (channel.read(buffer) >= 0) {
+                ActionScheduler.checkCancelled();
+                buffer.flip();
+                update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Completes the hash and returns the raw digest.
+     */
+    public synchronized byte[] finish() {
+        if (pending.length() > 0) {
+            CharBuffer in = CharBuffer.wrap(pending.toString());
+            pending.setLength(0);
+            encode(in, true);
+        } else if (encodeBuffer != null) {
+            encode(CharBuffer.allocate(0), true);
+        }
+        return xxHash != null ? xxHash.digest() : digest.digest();
+    }
+
+    /**
+     * Completes the hash and returns it as lowercase hex.
+     */
+    public String finishHex() {
+        return toHex(finish());
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xFF;
+            out[i * 2] = HEX[v >>> 4];
+            out[i * 2 + 1] = HEX[v & 0x0F];
+        }
+        return new String(out);
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) {
+        while (true) {
+            CoderResult cr = encoder.encode(in, encodeBuffer, endOfInput);
+            flushEncoded();
+            if (cr.isUnderflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(encodeBuffer).isOverflow()) {
+                flushEncoded();
+            }
+            flushEncoded();
+            encoder.reset();
+        }
+    }
+
+    private void flushEncoded() {
+        encodeBuffer.flip();
+        update(encodeBuffer);
+        encodeBuffer.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package community.plugins.notepadutils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Bounded, time-limited cache of PBKDF2-derived AES keys.
+ *
+ * Entries are looked up by an HMAC of the length-prefixed password and salt
+ * under a random per-process secret, so neither the password nor an unsalted
+ * hash of it is kept in memory. Key material is zeroed when an entry expires, is evicted or
+ * the cache is wiped.
+ */
+public class KeyCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final byte[] lookupSecret = new byte[32];
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final class Entry {
+        final byte[] keyBytes;
+        final long expiresAt;
+
+        Entry(byte[] keyBytes, long expiresAt) {
+            this.keyBytes = keyBytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public KeyCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        new SecureRandom().nextBytes(lookupSecret);
+    }
+
+    /**
+     * Returns the cached AES key for this password and salt, or null.
+     */
+    public synchronized SecretKeySpec get(String password, byte[] salt) throws GeneralSecurityException {
+        String id = lookupId(password, salt);
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(id);
+            Arrays.fill(entry.keyBytes, (byte) 0);
+            return null;
+        }
+        return new SecretKeySpec(entry.keyBytes, "AES");
+    }
+
+    public synchronized void put(String password, byte[] salt, byte[] keyBytes) throws GeneralSecurityException {
+        Entry previous = entries.put(lookupId(password, salt),
+                new Entry(keyBytes.clone(), System.currentTimeMillis() + ttlMillis));
+        if (previous != null) {
+            Arrays.fill(previous.keyBytes, (byte) 0);
+        }
+
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Arrays.fill(it.next().keyBytes, (byte) 0);
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes and zeroes all cached keys.
+     */
+    public synchronized void wipe() {
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Arrays.fill(e.getValue().keyBytes, (byte) 0);
+        }
+        entries.clear();
+    }
+
+    private String lookupId(String password, byte[] salt) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(lookupSecret, "HmacSHA256"));
+        // Both fields are length-prefixed: the salt comes from the caller and can be any length
+        updateField(mac, password.getBytes(StandardCharsets.UTF_8));
+        updateField(mac, salt);
+        byte[] digest = mac.doFinal();
+        return new String(digest, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void updateField(Mac mac, byte[] field) {
+        int length = field.length;
+        mac.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        mac.update(field);
+    }
+}
@@ -0,0 +1,371 @@
+package community.plugins.notepadutils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Duplicate-line removal whose memory grows with the number of distinct
+ * lines, not their size.
+ *
+ * Distinct lines are tracked in an open-addressing table of 64-bit hashes
+ * and entry numbers held in primitive arrays. Two lines only count as
+ * duplicates after an exact comparison, so hash collisions cannot drop a
+ * line. In memory the comparison reads the line array; for files each
+ * entry remembers where its line starts in the input, and the rare
+ * colliding line is read back from there.
+ */
+public class LineDeduper {
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private LineDeduper() {
+    }
+
+    /**
+     * Linear-probing table of (hash, entry) pairs. Entries with equal hashes
+     * but different lines sit in successive slots, so a lookup walks from
+     * {@link #slotFor} with {@link #nextSlot} until {@link #entryAt} is -1,
+     * comparing the line of every entry whose hash matches.
+     */
+    private static final class HashTable {
+        private long[] hashes = new long[64];
+        private int[] entries = new int[64];
+        private int size;
+
+        int slotFor(long hash) {
+            return (int) hash & (entries.length - 1);
+        }
+
+        int nextSlot(int slot) {
+            return (slot + 1) & (entries.length - 1);
+        }
+
+        int entryAt(int slot) {
+            return entries[slot] - 1;
+        }
+
+        long hashAt(int slot) {
+            return hashes[slot];
+        }
+
+        void add(long hash, int entry) {
+            if (size * 2 >= entries.length) {
+                grow();
+            }
+            insert(hashes, entries, hash, entry + 1);
+            size++;
+        }
+
+        private void grow() {
+            long[] newHashes = new long[hashes.length * 2];
+            int[] newEntries = new int[entries.length * 2];
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] != 0) {
+                    insert(newHashes, newEntries, hashes[i], entries[i]);
+                }
+            }
+            hashes = newHashes;
+            entries = newEntries;
+        }
+
+        private static void insert(long[] hashes, int[] entries, long hash, int storedEntry) {
+            int mask = entries.length - 1;
+            int slot = (int) hash & mask;
+            while (entries[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            entries[slot] = storedEntry;
+        }
+    }
+
+    // ==================== In memory ====================
+
+    /**
+     * Lines left after removing duplicates, in input order.
+     *
+     * @param keepLast keep the last occurrence of each line instead of the first
+     */
+    public static String[] dedupe(String[] lines, boolean keepLast) {
+        boolean[] keep = new boolean[lines.length];
+        int kept = 0;
+        HashTable table = new HashTable();
+        for (int n = 0; n < lines.length; n++) {
+            if (n % CANCEL_CHECK_INTERVAL == 0) {
+                ActionScheduler.checkCancelled();
+            }
+            // Keeping the last occurrence is keeping the first one seen backwards
+            int i = keepLast ? lines.length - 1 - n : n;
+            String line = lines[i];
+            long hash = hash(line);
+            boolean seen = false;
+            for (int slot = table.slotFor(hash); table.entryAt(slot) >= 0; slot = table.nextSlot(slot)) {
+                if (table.hashAt(slot) == hash && lines[table.entryAt(slot)].equals(line)) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) {
+                table.add(hash, i);
+                keep[i] = true;
+                kept++;
+            }
+        }
+
+        String[] result = new String[kept];
+        int count = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (keep[i]) {
+                result[count++] = lines[i];
+            }
+        }
+        return result;
+    }
+
+    static long hash(String line) {
+        // FNV-1a over the chars, then a finalizer so the low bits used for
+        // the slot depend on every char
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < line.length(); i++) {
+            h = (h ^ line.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h ^ line.length());
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // ==================== Files ====================
+
+    /**
+     * Outcome of {@link #dedupeFile}.
+     */
+    public static final class FileResult {
+        public final long lineCount;
+        public final long uniqueCount;
+        public final long durationNanos;
+
+        FileResult(long lineCount, long uniqueCount, long durationNanos) {
+            this.lineCount = lineCount;
+            this.uniqueCount = uniqueCount;
+            this.durationNanos = durationNanos;
+        }
+
+        public long getDuplicatesRemoved() {
+            return lineCount - uniqueCount;
+        }
+    }
+
+    /**
+     * Streams input to output without duplicate lines. Lines are split on
+     * '\n' and compared byte for byte, so a "\r\n" line never equals a "\n"
+     * one; every output line ends with '\n'. Keeping the first occurrence
+     * is a single pass; keeping the last reads the input twice, first to
+     * find each line's last position.
+     */
+    public static FileResult dedupeFile(File input, File output, boolean keepLast) throws IOException {
+        long startTime = System.nanoTime();
+        FileIndex index = new FileIndex(input);
+        LineReader reader = null;
+        OutputStream out = null;
+        try {
+            long lineCount = 0;
+            reader = new LineReader(new FileInputStream(input));
+            if (!keepLast) {
+                out = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE);
+            }
+            while (reader.next()) {
+                lineCount++;
+                if (lineCount % CANCEL_CHECK_INTERVAL == 0) {
+                    ActionScheduler.checkCancelled();
+                }
+                int entry = index.find(reader);
+                if (entry < 0) {
+                    entry = index.add(reader);
+                    if (out != null) {
+                        reader.writeTo(out);
+                    }
+                }
+                index.lastLine[entry] = lineCount;
+            }
+            reader.close();
+
+            if (keepLast) {
+                out = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE);
+                reader = new LineReader(new FileInputStream(input));
+                while (reader.next()) {
+                    if (reader.lineNumber % CANCEL_CHECK_INTERVAL == 0) {
+                        ActionScheduler.checkCancelled();
+                    }
+                    if (index.lastLine[index.find(reader)] == reader.lineNumber) {
+                        reader.writeTo(out);
+                    }
+                }
+            }
+            return new FileResult(lineCount, index.size, System.nanoTime() - startTime);
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+            index.close();
+        }
+    }
+
+    /**
+     * Distinct lines of a file: the hash table plus where each line first
+     * occurs, so a hash match can be confirmed against the input.
+     */
+    private static final class FileIndex {
+        final HashTable table = new HashTable();
+        final RandomAccessFile source;
+        long[] offsets = new long[64];
+        int[] lengths = new int[64];
+        long[] lastLine = new long[64];
+        int size;
+        private byte[] scratch = new byte[256];
+
+        FileIndex(File input) throws IOException {
+            source = new RandomAccessFile(input, "r");
+        }
+
+        /**
+         * The entry holding the reader's current line, or -1.
+         */
+        int find(LineReader reader) throws IOException {
+            for (int slot = table.slotFor(reader.hash); table.entryAt(slot) >= 0; slot = table.nextSlot(slot)) {
+                int entry = table.entryAt(slot);
+                if (table.hashAt(slot) == reader.hash && sameLine(entry, reader)) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        int add(LineReader reader) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                lastLine = Arrays.copyOf(lastLine, size * 2);
+            }
+            offsets[size] = reader.offset;
+            lengths[size] = reader.length;
+            table.add(reader.hash, size);
+            return size++;
+        }
+
+        private boolean sameLine(int entry, LineReader reader) throws IOException {
+            if (lengths[entry] != reader.length) {
+                return false;
+            }
+            if (offsets[entry] == reader.offset) {
+                return true;
+            }
+            // Only reached on a 64-bit hash match, almost always a duplicate
+            if (scratch.length < reader.length) {
+                scratch = new byte[reader.length];
+            }
+            source.seek(offsets[entry]);
+            source.readFully(scratch, 0, reader.length);
+            for (int i = 0; i < reader.length; i++) {
+                if (scratch[i] != reader.line[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void close() throws IOException {
+            source.close();
+        }
+    }
+
+    /**
+     * Reads '\n'-terminated lines as bytes, tracking each line's offset,
+     * number and XXH64 hash.
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final XxHash64 hasher = new XxHash64();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int bufferPos;
+        private int bufferEnd;
+        private long position;
+        byte[] line = new byte[256];
+        int length;
+        long offset;
+        long lineNumber;
+        long hash;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        boolean next() throws IOException {
+            offset = position;
+            length = 0;
+            while (true) {
+                if (bufferPos == bufferEnd) {
+                    bufferEnd = in.read(buffer);
+                    bufferPos = 0;
+                    if (bufferEnd <= 0) {
+                        bufferEnd = 0;
+                        if (length == 0 && position == offset) {
+                            return false;
+                        }
+                        break;
+                    }
+                }
+                int start = bufferPos;
+                while (bufferPos < bufferEnd && buffer[bufferPos] != '\n') {
+                    bufferPos++;
+                }
+                append(start, bufferPos);
+                if (bufferPos < bufferEnd) {
+                    // Consume the '\n'
+                    bufferPos++;
+                    position++;
+                    break;
+                }
+            }
+            lineNumber++;
+            hasher.reset();
+            hasher.update(line, 0, length);
+            hash = hasher.getValue();
+            return true;
+        }
+
+        private void append(int from, int to) {
+            int count = to - from;
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(buffer, from, line, length, count);
+            length += count;
+            position += count;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(line, 0, length);
+            out.write('\n');
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
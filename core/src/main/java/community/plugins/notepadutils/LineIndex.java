@@ -0,0 +1,64 @@
+package community.plugins.notepadutils;
+
+import java.util.Arrays;
+
+/**
+ * Offsets where each line of a text starts, for mapping a character offset
+ * to a line and column by binary search.
+ */
+public final class LineIndex {
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int textLength;
+
+    private LineIndex(int[] lineStarts, int lineCount, int textLength) {
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.textLength = textLength;
+    }
+
+    public static LineIndex build(CharSequence text) {
+        int length = text.length();
+        int[] starts = new int[Math.max(16, length / 32)];
+        int count = 1;
+        starts[0] = 0;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return new LineIndex(starts, count, length);
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    /**
+     * Zero-based line containing the offset.
+     */
+    public int lineOf(int offset) {
+        int lo = 0;
+        int hi = lineCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    public int lineStart(int line) {
+        return lineStarts[line];
+    }
+}
@@ -0,0 +1,373 @@
+package community.plugins.notepadutils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts lines by one of several orderings, in memory or through an external
+ * merge sort for files that do not fit in the heap.
+ *
+ * Every ordering is total and consistent with {@code equals}: lines that
+ * compare equal under the mode (case-insensitive duplicates, collation
+ * equivalents) fall back to plain lexical order. Equal lines therefore end
+ * up adjacent, and the in-memory and external sorts agree exactly.
+ * In-memory sorts use {@link Arrays#parallelSort}, which splits the work
+ * across cores for large arrays.
+ */
+public class LineSorter {
+    public static final String MODE_LEXICAL = "lexical";
+    public static final String MODE_NATURAL = "natural";
+    public static final String MODE_LOCALE = "locale";
+    public static final String MODE_CASE_INSENSITIVE = "caseInsensitive";
+
+    public static final int DEFAULT_RUN_CHARS = 4 * 1024 * 1024;
+    private static final int MAX_MERGE_FAN_IN = 64;
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    private final String mode;
+    private final Locale locale;
+    private final boolean reverse;
+
+    /**
+     * @param mode    one of the MODE_ constants; null means lexical
+     * @param locale  collation locale for {@link #MODE_LOCALE}, null for the default
+     * @param reverse sort descending
+     */
+    public LineSorter(String mode, Locale locale, boolean reverse) {
+        this.mode = mode != null ? mode : MODE_LEXICAL;
+        if (!MODE_LEXICAL.equals(this.mode) && !MODE_NATURAL.equals(this.mode)
+                && !MODE_LOCALE.equals(this.mode) && !MODE_CASE_INSENSITIVE.equals(this.mode)) {
+            throw new IllegalArgumentException("Unknown sort mode: " + mode);
+        }
+        this.locale = locale != null ? locale : Locale.getDefault();
+        this.reverse = reverse;
+    }
+
+    public void sort(String[] lines) {
+        if (MODE_LOCALE.equals(mode)) {
+            sortByCollationKey(lines);
+        } else if (MODE_LEXICAL.equals(mode) && !reverse) {
+            Arrays.parallelSort(lines);
+        } else {
+            Arrays.parallelSort(lines, comparator());
+        }
+    }
+
+    /**
+     * The ordering used by {@link #sort}. Locale comparators hold their own
+     * {@link Collator}, so use one per thread, and build a key per
+     * comparison; {@link #sort} builds each key once instead.
+     */
+    public Comparator<String> comparator() {
+        Comparator<String> order;
+        if (MODE_NATURAL.equals(mode)) {
+            order = new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    int c = compareNatural(a, b);
+                    return c != 0 ? c : a.compareTo(b);
+                }
+            };
+        } else if (MODE_CASE_INSENSITIVE.equals(mode)) {
+            order = new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    int c = String.CASE_INSENSITIVE_ORDER.compare(a, b);
+                    return c != 0 ? c : a.compareTo(b);
+                }
+            };
+        } else if (MODE_LOCALE.equals(mode)) {
+            final Collator collator = Collator.getInstance(locale);
+            order = new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    // Keys rather than Collator.compare, which can order
+                    // ignorable characters differently from the keys the
+                    // in-memory sort uses
+                    int c = collator.getCollationKey(a).compareTo(collator.getCollationKey(b));
+                    return c != 0 ? c : a.compareTo(b);
+                }
+            };
+        } else {
+            order = new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    return a.compareTo(b);
+                }
+            };
+        }
+        return reverse ? reversed(order) : order;
+    }
+
+    private static <T> Comparator<T> reversed(final Comparator<T> order) {
+        return new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                return order.compare(b, a);
+            }
+        };
+    }
+
+    // Collating each comparison repeats the same decomposition work
+    // O(n log n) times; keys are built once per line and compare as bytes
+    private void sortByCollationKey(String[] lines) {
+        Collator collator = Collator.getInstance(locale);
+        CollationKey[] keys = new CollationKey[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0) {
+                ActionScheduler.checkCancelled();
+            }
+            keys[i] = collator.getCollationKey(lines[i]);
+        }
+        Arrays.parallelSort(keys, keyOrder());
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = keys[i].getSourceString();
+        }
+    }
+
+    private Comparator<CollationKey> keyOrder() {
+        Comparator<CollationKey> order = new Comparator<CollationKey>() {
+            @Override
+            public int compare(CollationKey a, CollationKey b) {
+                int c = a.compareTo(b);
+                return c != 0 ? c : a.getSourceString().compareTo(b.getSourceString());
+            }
+        };
+        return reverse ? reversed(order) : order;
+    }
+
+    /**
+     * Compares runs of ASCII digits by numeric value ("file9" before
+     * "file10") and everything else char by char. Returns 0 for lines that
+     * differ only in leading zeros.
+     */
+    static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        int lengthA = a.length();
+        int lengthB = b.length();
+        while (i < lengthA && j < lengthB) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (isDigit(ca) && isDigit(cb)) {
+                while (i < lengthA && a.charAt(i) == '0') i++;
+                while (j < lengthB && b.charAt(j) == '0') j++;
+                int endA = i;
+                int endB = j;
+                while (endA < lengthA && isDigit(a.charAt(endA))) endA++;
+                while (endB < lengthB && isDigit(b.charAt(endB))) endB++;
+                if (endA - i != endB - j) {
+                    return (endA - i) - (endB - j);
+                }
+                for (; i < endA; i++, j++) {
+                    if (a.charAt(i) != b.charAt(j)) {
+                        return a.charAt(i) - b.charAt(j);
+                    }
+                }
+            } else {
+                if (ca != cb) {
+                    return ca - cb;
+                }
+                i++;
+                j++;
+            }
+        }
+        if (i < lengthA) return 1;
+        if (j < lengthB) return -1;
+        return 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // ==================== External sort ====================
+
+    /**
+     * Outcome of {@link #sortFile}.
+     */
+    public static final class FileResult {
+        public final long lineCount;
+        public final int runCount;
+        public final long durationNanos;
+
+        FileResult(long lineCount, int runCount, long durationNanos) {
+            this.lineCount = lineCount;
+            this.runCount = runCount;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    /**
+     * Sorts the lines of a UTF-8 file into output, holding at most about
+     * runChars characters of lines in memory at a time.
+     *
+     * Lines end at "\n", "\r\n" or "\r"; every output line ends with "\n".
+     * Sorted runs are written to tempDir and merged up to
+     * {@link #MAX_MERGE_FAN_IN} at a time. Temporary files are removed
+     * whether or not the sort succeeds.
+     */
+    public FileResult sortFile(File input, File output, File tempDir, int runChars) throws IOException {
+        long startTime = System.nanoTime();
+        List<File> runs = new ArrayList<>();
+        long lineCount = 0;
+        try {
+            BufferedReader reader = openReader(input);
+            try {
+                List<String> batch = new ArrayList<>();
+                long batchChars = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    batch.add(line);
+                    // Rough per-line overhead of the String and list slot
+                    batchChars += line.length() + 16;
+                    lineCount++;
+                    if (lineCount % CANCEL_CHECK_INTERVAL == 0) {
+                        ActionScheduler.checkCancelled();
+                    }
+                    if (batchChars >= runChars) {
+                        runs.add(writeRun(batch, File.createTempFile("sort-run", ".txt", tempDir)));
+                        batch.clear();
+                        batchChars = 0;
+                    }
+                }
+                if (runs.isEmpty()) {
+                    // Fits in one run: no temporary files needed
+                    writeRun(batch, output);
+                    return new FileResult(lineCount, 1, System.nanoTime() - startTime);
+                }
+                if (!batch.isEmpty()) {
+                    runs.add(writeRun(batch, File.createTempFile("sort-run", ".txt", tempDir)));
+                }
+            } finally {
+                reader.close();
+            }
+
+            int runCount = runs.size();
+            while (runs.size() > MAX_MERGE_FAN_IN) {
+                List<File> group = new ArrayList<>(runs.subList(0, MAX_MERGE_FAN_IN));
+                File merged = File.createTempFile("sort-run", ".txt", tempDir);
+                merge(group, merged);
+                runs.subList(0, MAX_MERGE_FAN_IN).clear();
+                runs.add(merged);
+                for (File run : group) {
+                    run.delete();
+                }
+            }
+            merge(runs, output);
+            return new FileResult(lineCount, runCount, System.nanoTime() - startTime);
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    private File writeRun(List<String> batch, File file) throws IOException {
+        String[] lines = batch.toArray(new String[batch.size()]);
+        sort(lines);
+        Writer writer = openWriter(file);
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static final class RunCursor {
+        final BufferedReader reader;
+        final int index;
+        String line;
+        // Set in locale mode so each line is collated once
+        CollationKey key;
+
+        RunCursor(BufferedReader reader, int index) {
+            this.reader = reader;
+            this.index = index;
+        }
+    }
+
+    private void merge(List<File> runs, File output) throws IOException {
+        final Collator collator = MODE_LOCALE.equals(mode) ? Collator.getInstance(locale) : null;
+        final Comparator<String> order = collator == null ? comparator() : null;
+        final Comparator<CollationKey> keys = collator != null ? keyOrder() : null;
+        // Ties go to the earlier run, which keeps the merge deterministic
+        PriorityQueue<RunCursor> heap = new PriorityQueue<>(Math.max(1, runs.size()), new Comparator<RunCursor>() {
+            @Override
+            public int compare(RunCursor a, RunCursor b) {
+                int c = keys != null ? keys.compare(a.key, b.key) : order.compare(a.line, b.line);
+                return c != 0 ? c : a.index - b.index;
+            }
+        });
+        List<RunCursor> cursors = new ArrayList<>();
+        Writer writer = null;
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunCursor cursor = new RunCursor(openReader(runs.get(i)), i);
+                cursors.add(cursor);
+                if (advance(cursor, collator)) {
+                    heap.add(cursor);
+                }
+            }
+            writer = openWriter(output);
+            long written = 0;
+            while (!heap.isEmpty()) {
+                RunCursor cursor = heap.poll();
+                writer.write(cursor.line);
+                writer.write('\n');
+                if (++written % CANCEL_CHECK_INTERVAL == 0) {
+                    ActionScheduler.checkCancelled();
+                }
+                if (advance(cursor, collator)) {
+                    heap.add(cursor);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.reader.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static boolean advance(RunCursor cursor, Collator collator) throws IOException {
+        cursor.line = cursor.reader.readLine();
+        if (cursor.line == null) {
+            return false;
+        }
+        if (collator != null) {
+            cursor.key = collator.getCollationKey(cursor.line);
+        }
+        return true;
+    }
+
+    private static BufferedReader openReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static Writer openWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
@@ -0,0 +1,124 @@
+package community.plugins.notepadutils;
+
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool search for a single literal term. Case-sensitive
+ * searches over a String defer to {@code String.indexOf}.
+ *
+ * Case-insensitive matching folds Unicode case one char at a time, as
+ * Android's ICU regex engine does for {@code Pattern.CASE_INSENSITIVE}, so
+ * results are identical to searching with {@code Pattern.quote(term)}. The
+ * term is folded once up front; text characters are folded as they are
+ * compared, with a shortcut for ASCII.
+ */
+public final class LiteralSearcher {
+    private final String term;
+    private final char[] needle;
+    private final boolean caseSensitive;
+    // Horspool shift by the low byte of the text character; characters that
+    // share a low byte take the smallest shift, which is always safe
+    private final int[] shift = new int[256];
+
+    public LiteralSearcher(String term, boolean caseSensitive) {
+        if (term.isEmpty()) {
+            throw new IllegalArgumentException("Empty search term");
+        }
+        this.term = term;
+        this.caseSensitive = caseSensitive;
+        needle = term.toCharArray();
+        if (!caseSensitive) {
+            for (int i = 0; i < needle.length; i++) {
+                needle[i] = fold(needle[i]);
+            }
+        }
+        int last = needle.length - 1;
+        Arrays.fill(shift, needle.length);
+        for (int i = 0; i < last; i++) {
+            shift[needle[i] & 0xFF] = last - i;
+        }
+    }
+
+    /**
+     * Whether a term can be searched literally with results identical to
+     * {@code Pattern.quote}. Surrogates are left to the regex engine, which
+     * matches by code point.
+     */
+    public static boolean supports(String term) {
+        if (term.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.isSurrogate(term.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int length() {
+        return needle.length;
+    }
+
+    /**
+     * Start of the first match at or after {@code from}, or -1.
+     */
+    public int indexOf(CharSequence text, int from) {
+        if (caseSensitive && text instanceof String) {
+            // String.indexOf is an intrinsic and beats a Java-level loop
+            return ((String) text).indexOf(term, Math.max(0, from));
+        }
+        if (needle.length == 1) {
+            return indexOfChar(text, from);
+        }
+        int last = needle.length - 1;
+        int end = text.length() - last;
+        int i = Math.max(0, from);
+        char lastChar = needle[last];
+        while (i < end) {
+            char c = text.charAt(i + last);
+            if (!caseSensitive) {
+                c = fold(c);
+            }
+            if (c == lastChar && matchesAt(text, i, last)) {
+                return i;
+            }
+            i += shift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    private int indexOfChar(CharSequence text, int from) {
+        char lower = needle[0];
+        char other = caseSensitive || lower < 'a' || lower > 'z' ? lower : (char) (lower - 32);
+        int length = text.length();
+        for (int i = Math.max(0, from); i < length; i++) {
+            char c = text.charAt(i);
+            // Non-ASCII text can fold onto any term char, e.g. KELVIN SIGN onto 'k'
+            if (c == lower || c == other || (!caseSensitive && c > 0x7F && fold(c) == lower)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(CharSequence text, int at, int count) {
+        for (int k = 0; k < count; k++) {
+            char c = text.charAt(at + k);
+            if (!caseSensitive) {
+                c = fold(c);
+            }
+            if (c != needle[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static char fold(char c) {
+        if (c <= 0x7F) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
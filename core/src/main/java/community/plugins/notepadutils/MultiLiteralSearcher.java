@@ -0,0 +1,202 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton that finds many literal terms in one pass.
+ *
+ * Matches are reported leftmost-longest and without overlap: scanning left
+ * to right, the longest term starting at the earliest position wins and the
+ * scan resumes after it. Case folding follows {@link LiteralSearcher}.
+ */
+public final class MultiLiteralSearcher {
+    public interface Listener {
+        void onMatch(int termIndex, int start, int end);
+    }
+
+    private final boolean caseSensitive;
+    // Alphabet of the terms; 0 is every character that appears in no term
+    private final int[] asciiSymbols = new int[128];
+    private final char[] otherChars;
+    private final int[] otherSymbols;
+    private final int symbolCount;
+
+    private final int[] transitions;
+    private final int[] termAt;
+    private final int[] depth;
+    private final int[] outputLink;
+    private final int maxTermLength;
+
+    public MultiLiteralSearcher(String[] terms, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+
+        String[] folded = new String[terms.length];
+        Map<Character, Integer> symbols = new HashMap<>();
+        int trieSize = 1;
+        int longest = 0;
+        for (int t = 0; t < terms.length; t++) {
+            String term = terms[t] == null ? "" : terms[t];
+            if (!caseSensitive) {
+                char[] chars = term.toCharArray();
+                for (int i = 0; i < chars.length; i++) chars[i] = LiteralSearcher.fold(chars[i]);
+                term = new String(chars);
+            }
+            folded[t] = term;
+            trieSize += term.length();
+            longest = Math.max(longest, term.length());
+            for (int i = 0; i < term.length(); i++) {
+                if (!symbols.containsKey(term.charAt(i))) {
+                    symbols.put(term.charAt(i), symbols.size() + 1);
+                }
+            }
+        }
+        maxTermLength = longest;
+        symbolCount = symbols.size() + 1;
+
+        int others = 0;
+        for (char c : symbols.keySet()) {
+            if (c < 128) asciiSymbols[c] = symbols.get(c);
+            else others++;
+        }
+        otherChars = new char[others];
+        otherSymbols = new int[others];
+        int o = 0;
+        for (char c : symbols.keySet()) {
+            if (c >= 128) otherChars[o++] = c;
+        }
+        Arrays.sort(otherChars);
+        for (int i = 0; i < others; i++) {
+            otherSymbols[i] = symbols.get(otherChars[i]);
+        }
+
+        // Build the trie; -1 marks a missing edge until the automaton is completed
+        int[] table = new int[trieSize * symbolCount];
+        Arrays.fill(table, -1);
+        int[] terminal = new int[trieSize];
+        Arrays.fill(terminal, -1);
+        int[] nodeDepth = new int[trieSize];
+        int nodes = 1;
+        for (int t = 0; t < folded.length; t++) {
+            String term = folded[t];
+            if (term.isEmpty()) continue;
+            int node = 0;
+            for (int i = 0; i < term.length(); i++) {
+                int edge = node * symbolCount + symbolOf(term.charAt(i));
+                if (table[edge] < 0) {
+                    nodeDepth[nodes] = nodeDepth[node] + 1;
+                    table[edge] = nodes++;
+                }
+                node = table[edge];
+            }
+            // Duplicate terms report the first index
+            if (terminal[node] < 0) terminal[node] = t;
+        }
+
+        // Breadth-first: fill failure transitions and links to the nearest terminal suffix
+        int[] fail = new int[nodes];
+        int[] link = new int[nodes];
+        Arrays.fill(link, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int a = 0; a < symbolCount; a++) {
+            int child = table[a];
+            if (child < 0) {
+                table[a] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int f = fail[node];
+            link[node] = terminal[f] >= 0 ? f : link[f];
+            for (int a = 0; a < symbolCount; a++) {
+                int edge = node * symbolCount + a;
+                int child = table[edge];
+                if (child < 0) {
+                    table[edge] = table[f * symbolCount + a];
+                } else {
+                    fail[child] = table[f * symbolCount + a];
+                    queue.add(child);
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(table, nodes * symbolCount);
+        termAt = Arrays.copyOf(terminal, nodes);
+        depth = Arrays.copyOf(nodeDepth, nodes);
+        outputLink = link;
+    }
+
+    /**
+     * Reports every match in [0, text.length()) in order of start offset.
+     */
+    public void findAll(CharSequence text, Listener listener) {
+        if (maxTermLength == 0) {
+            return;
+        }
+        // Longest match per start offset, for the starts that are still undecided
+        int ringSize = Integer.highestOneBit(maxTermLength) << 1;
+        int mask = ringSize - 1;
+        int[] bestLength = new int[ringSize];
+        int[] bestTerm = new int[ringSize];
+        int cursor = 0;
+        int skipUntil = 0;
+
+        int length = text.length();
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & 0xFFFF) == 0) {
+                ActionScheduler.checkCancelled();
+            }
+            char c = text.charAt(i);
+            if (!caseSensitive) {
+                c = LiteralSearcher.fold(c);
+            }
+            state = transitions[state * symbolCount + symbolOf(c)];
+
+            int out = termAt[state] >= 0 ? state : outputLink[state];
+            while (out >= 0) {
+                int start = i - depth[out] + 1;
+                int slot = start & mask;
+                if (depth[out] > bestLength[slot]) {
+                    bestLength[slot] = depth[out];
+                    bestTerm[slot] = termAt[out];
+                }
+                out = outputLink[out];
+            }
+
+            // No match found later can start at or before i - maxTermLength + 1
+            int decided = i - maxTermLength + 1;
+            while (cursor <= decided) {
+                int slot = cursor & mask;
+                if (cursor >= skipUntil && bestLength[slot] > 0) {
+                    listener.onMatch(bestTerm[slot], cursor, cursor + bestLength[slot]);
+                    skipUntil = cursor + bestLength[slot];
+                }
+                bestLength[slot] = 0;
+                cursor++;
+            }
+        }
+        while (cursor < length) {
+            int slot = cursor & mask;
+            if (cursor >= skipUntil && bestLength[slot] > 0) {
+                listener.onMatch(bestTerm[slot], cursor, cursor + bestLength[slot]);
+                skipUntil = cursor + bestLength[slot];
+            }
+            bestLength[slot] = 0;
+            cursor++;
+        }
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) {
+            return asciiSymbols[c];
+        }
+        int i = Arrays.binarySearch(otherChars, c);
+        return i >= 0 ? otherSymbols[i] : 0;
+    }
+}
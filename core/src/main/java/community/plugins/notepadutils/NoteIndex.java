@@ -0,0 +1,697 @@
+package community.plugins.notepadutils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Full-text index over notes, kept in a private directory.
+ *
+ * Notes are added to an in-memory segment and become durable at
+ * {@link #commit()}. A commit runs on its own once the segment holds
+ * {@link #FLUSH_DOCS} notes or {@link #FLUSH_BYTES} of postings; callers
+ * should also commit when the app goes to the background. A commit writes
+ * the segment to disk and then rewrites the manifest, which lists the
+ * segments and their deleted notes. Past {@link #MAX_SEGMENTS} segments,
+ * all of them are merged into one. After a crash the index is as of the
+ * last commit.
+ *
+ * Re-indexing a note deletes its previous version wherever it is.
+ * Queries are ranked with BM25.
+ */
+public class NoteIndex {
+    public static final int FLUSH_DOCS = 1000;
+    public static final long FLUSH_BYTES = 8L * 1024 * 1024;
+    public static final int MAX_SEGMENTS = 8;
+    public static final int MAX_ID_LENGTH = 1024;
+
+    // Longer runs are usually encoded data rather than words
+    private static final int MAX_TOKEN_CHARS = 64;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_MATCHES_COLLECTED = 256;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int MANIFEST_MAGIC = 0x4E49444D;
+    private static final int MANIFEST_VERSION = 1;
+    private static final String MANIFEST = "manifest";
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final File dir;
+    private final List<NoteIndexSegment.Disk> segments = new ArrayList<>();
+    private NoteIndexSegment.Memory buffer = new NoteIndexSegment.Memory();
+    // Where the live version of each note is
+    private final Map<String, DocRef> docs = new HashMap<>();
+    private long nextGeneration = 1;
+    private long totalLength;
+    private boolean dirty;
+
+    private static final class DocRef {
+        final NoteIndexSegment segment;
+        final int doc;
+
+        DocRef(NoteIndexSegment segment, int doc) {
+            this.segment = segment;
+            this.doc = doc;
+        }
+    }
+
+    public interface TokenSink {
+        void token(String term, int position, int start, int end);
+    }
+
+    public static final class Hit {
+        public final String id;
+        public final double score;
+        // Start and end offsets of matched text, in note order
+        public final int[] matchStarts;
+        public final int[] matchEnds;
+
+        Hit(String id, double score, int[] matchStarts, int[] matchEnds) {
+            this.id = id;
+            this.score = score;
+            this.matchStarts = matchStarts;
+            this.matchEnds = matchEnds;
+        }
+    }
+
+    public static final class Result {
+        public final List<Hit> hits;
+        // Notes that matched, of which hits holds the best
+        public final int totalHits;
+
+        Result(List<Hit> hits, int totalHits) {
+            this.hits = hits;
+            this.totalHits = totalHits;
+        }
+    }
+
+    /**
+     * Opens the index in dir, creating it if needed. Segment files that the
+     * manifest does not list, left by an interrupted commit, are deleted.
+     */
+    public NoteIndex(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        readManifest();
+
+        Set<String> live = new HashSet<>();
+        live.add(MANIFEST);
+        for (NoteIndexSegment.Disk segment : segments) {
+            live.add(segment.file.getName());
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!live.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+
+        for (NoteIndexSegment.Disk segment : segments) {
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                if (!segment.deleted.get(doc)) {
+                    docs.put(segment.ids.get(doc), new DocRef(segment, doc));
+                    totalLength += segment.docLength(doc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes the note, replacing any earlier version with the same id.
+     */
+    public synchronized void indexDocument(String id, CharSequence text) throws IOException {
+        if (id.isEmpty() || id.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Document id must be 1 to " + MAX_ID_LENGTH + " characters");
+        }
+        delete(id);
+        int doc = buffer.add(id, text);
+        docs.put(id, new DocRef(buffer, doc));
+        totalLength += buffer.docLength(doc);
+        if (buffer.docCount() >= FLUSH_DOCS || buffer.getBytes() >= FLUSH_BYTES) {
+            commit();
+        }
+    }
+
+    /**
+     * @return whether the note was indexed
+     */
+    public synchronized boolean removeDocument(String id) {
+        return delete(id);
+    }
+
+    public synchronized boolean containsDocument(String id) {
+        return docs.containsKey(id);
+    }
+
+    public synchronized int getDocumentCount() {
+        return docs.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private boolean delete(String id) {
+        DocRef ref = docs.remove(id);
+        if (ref == null) {
+            return false;
+        }
+        ref.segment.deleted.set(ref.doc);
+        totalLength -= ref.segment.docLength(ref.doc);
+        if (ref.segment != buffer) {
+            dirty = true;
+        }
+        return true;
+    }
+
+    /**
+     * Writes buffered notes and deletions to disk, merging segments when
+     * there are too many.
+     */
+    public synchronized void commit() throws IOException {
+        List<NoteIndexSegment.Disk> obsolete = new ArrayList<>();
+        if (buffer.liveDocCount() > 0) {
+            NoteIndexSegment.Disk flushed = writeSegment(Collections.singletonList(buffer));
+            segments.add(flushed);
+            buffer = new NoteIndexSegment.Memory();
+            dirty = true;
+        } else if (buffer.docCount() > 0) {
+            buffer = new NoteIndexSegment.Memory();
+        }
+
+        if (segments.size() > MAX_SEGMENTS) {
+            NoteIndexSegment.Disk merged = writeSegment(segments);
+            obsolete.addAll(segments);
+            segments.clear();
+            segments.add(merged);
+            dirty = true;
+        }
+
+        if (dirty) {
+            writeManifest();
+            dirty = false;
+        }
+        for (NoteIndexSegment.Disk segment : obsolete) {
+            segment.file.delete();
+        }
+    }
+
+    private NoteIndexSegment.Disk writeSegment(List<? extends NoteIndexSegment> sources) throws IOException {
+        long generation = nextGeneration++;
+        NoteIndexSegment.Disk written = NoteIndexSegment.write(
+                new File(dir, SEGMENT_PREFIX + generation), generation, sources);
+        for (int doc = 0; doc < written.docCount(); doc++) {
+            docs.put(written.ids.get(doc), new DocRef(written, doc));
+        }
+        return written;
+    }
+
+    private void readManifest() throws IOException {
+        File file = new File(dir, MANIFEST);
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) {
+                throw new IOException("Unrecognized index manifest: " + file);
+            }
+            nextGeneration = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long generation = in.readLong();
+                long[] words = new long[in.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                NoteIndexSegment.Disk segment = new NoteIndexSegment.Disk(generation, new File(dir, SEGMENT_PREFIX + generation));
+                segment.deleted.or(BitSet.valueOf(words));
+                segments.add(segment);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        File file = new File(dir, MANIFEST);
+        File tmp = new File(dir, MANIFEST + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeLong(nextGeneration);
+            out.writeInt(segments.size());
+            for (NoteIndexSegment.Disk segment : segments) {
+                out.writeLong(segment.generation);
+                long[] words = segment.deleted.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not write " + file);
+        }
+    }
+
+    // ==================== Tokenizing ====================
+
+    /**
+     * Splits text into lower-cased runs of letters, digits and combining
+     * marks; each ideograph is a token of its own. Runs longer than
+     * {@link #MAX_TOKEN_CHARS} are skipped.
+     *
+     * @return the number of tokens
+     */
+    public static int tokenize(CharSequence text, TokenSink sink) {
+        int position = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = Character.codePointAt(text, i);
+            int start = i;
+            i += Character.charCount(cp);
+            if (Character.isIdeographic(cp)) {
+                sink.token(text.subSequence(start, i).toString(), position++, start, i);
+                continue;
+            }
+            if (!Character.isLetterOrDigit(cp)) {
+                continue;
+            }
+            while (i < length) {
+                cp = Character.codePointAt(text, i);
+                if (Character.isIdeographic(cp) || !isWordPart(cp)) {
+                    break;
+                }
+                i += Character.charCount(cp);
+            }
+            if (i - start <= MAX_TOKEN_CHARS) {
+                sink.token(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT), position++, start, i);
+            }
+        }
+        return position;
+    }
+
+    private static boolean isWordPart(int cp) {
+        if (Character.isLetterOrDigit(cp)) {
+            return true;
+        }
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    // ==================== Searching ====================
+
+    /**
+     * One query clause: a term, a phrase of consecutive terms, or a prefix.
+     */
+    private static final class Clause {
+        final String[] terms;
+        final boolean prefix;
+
+        Clause(String[] terms, boolean prefix) {
+            this.terms = terms;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Parses a query: words, "quoted phrases", and word* for a prefix. A
+     * word the tokenizer splits (e-mail) is a phrase.
+     */
+    static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        int i = 0;
+        int length = query.length();
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end;
+            String part;
+            boolean quoted = c == '"';
+            if (quoted) {
+                end = query.indexOf('"', i + 1);
+                if (end < 0) end = length;
+                part = query.substring(i + 1, end);
+                end = Math.min(length, end + 1);
+            } else {
+                end = i;
+                while (end < length && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                part = query.substring(i, end);
+            }
+            i = end;
+
+            final List<String> terms = new ArrayList<>();
+            tokenize(part, new TokenSink() {
+                @Override
+                public void token(String term, int position, int start, int end) {
+                    terms.add(term);
+                }
+            });
+            if (terms.isEmpty()) {
+                continue;
+            }
+            boolean prefix = !quoted && part.endsWith("*");
+            if (prefix && terms.size() > 1) {
+                // foo-ba* is the phrase "foo" followed by the prefix ba
+                clauses.add(new Clause(terms.subList(0, terms.size() - 1).toArray(new String[0]), false));
+                clauses.add(new Clause(new String[]{terms.get(terms.size() - 1)}, true));
+            } else {
+                clauses.add(new Clause(terms.toArray(new String[0]), prefix));
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Ranked search.
+     *
+     * @param matchAll   whether a note must match every clause, or any
+     * @param maxMatches match offsets returned per note
+     */
+    public synchronized Result search(String query, int limit, boolean matchAll, int maxMatches) {
+        List<Clause> clauses = parse(query);
+        if (clauses.isEmpty() || docs.isEmpty() || limit <= 0) {
+            return new Result(Collections.<Hit>emptyList(), 0);
+        }
+        List<NoteIndexSegment> all = new ArrayList<NoteIndexSegment>(segments);
+        all.add(buffer);
+        Stats stats = new Stats(all, docs.size(), (double) totalLength / docs.size());
+
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        int totalHits = 0;
+        for (NoteIndexSegment segment : all) {
+            if (segment.liveDocCount() == 0) {
+                continue;
+            }
+            SegmentMatches matches = new SegmentMatches(segment.docCount());
+            for (int c = 0; c < clauses.size(); c++) {
+                ActionScheduler.checkCancelled();
+                Clause clause = clauses.get(c);
+                if (clause.terms.length > 1) {
+                    matchPhrase(segment, clause.terms, c, stats, matches);
+                } else if (clause.prefix) {
+                    for (int term : segment.termsWithPrefix(clause.terms[0], MAX_PREFIX_EXPANSIONS)) {
+                        String expanded = segment.term(term);
+                        matchTerm(segment, segment.postings(term), stats.docFreq(expanded), c, stats, matches);
+                    }
+                } else {
+                    NoteIndexSegment.Postings postings = segment.postings(clause.terms[0]);
+                    if (postings != null) {
+                        matchTerm(segment, postings, stats.docFreq(clause.terms[0]), c, stats, matches);
+                    } else if (matchAll) {
+                        break;
+                    }
+                }
+            }
+
+            int needed = matchAll ? clauses.size() : 1;
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                if (matches.clauseCount[doc] < needed || segment.deleted.get(doc)) {
+                    continue;
+                }
+                totalHits++;
+                Candidate candidate = new Candidate(segment.ids.get(doc), matches.score[doc],
+                        matches.offsets[doc], matches.offsetCount[doc]);
+                if (best.size() < limit) {
+                    best.add(candidate);
+                } else if (WORST_FIRST.compare(candidate, best.peek()) > 0) {
+                    best.poll();
+                    best.add(candidate);
+                }
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, Collections.reverseOrder(WORST_FIRST));
+        List<Hit> hits = new ArrayList<>(ranked.size());
+        for (Candidate candidate : ranked) {
+            hits.add(candidate.toHit(maxMatches));
+        }
+        return new Result(hits, totalHits);
+    }
+
+    private static void matchTerm(NoteIndexSegment segment, NoteIndexSegment.Postings postings, int docFreq,
+                                  int clause, Stats stats, SegmentMatches matches) {
+        NoteIndexSegment.Cursor cursor = postings.cursor();
+        for (int doc = cursor.nextDoc(); doc >= 0; doc = cursor.nextDoc()) {
+            if (segment.deleted.get(doc)) {
+                cursor.skipOccurrences();
+                continue;
+            }
+            int freq = cursor.freq();
+            for (int i = 0; i < freq; i++) {
+                cursor.nextOccurrence();
+                matches.addOffset(doc, cursor.start(), cursor.end());
+            }
+            matches.hit(doc, clause, stats.bm25(freq, docFreq, segment.docLength(doc)));
+        }
+    }
+
+    private static void matchPhrase(NoteIndexSegment segment, String[] terms, int clause, Stats stats,
+                                    SegmentMatches matches) {
+        // Occurrences of each term in the notes that hold every term so far
+        List<Map<Integer, int[]>> occurrences = new ArrayList<>(terms.length);
+        for (int t = 0; t < terms.length; t++) {
+            Map<Integer, int[]> termOccurrences = new HashMap<>();
+            occurrences.add(termOccurrences);
+            NoteIndexSegment.Postings postings = segment.postings(terms[t]);
+            if (postings == null) {
+                return;
+            }
+            NoteIndexSegment.Cursor cursor = postings.cursor();
+            for (int doc = cursor.nextDoc(); doc >= 0; doc = cursor.nextDoc()) {
+                if (segment.deleted.get(doc) || (t > 0 && !occurrences.get(t - 1).containsKey(doc))) {
+                    cursor.skipOccurrences();
+                    continue;
+                }
+                int freq = cursor.freq();
+                // position, start, end triples
+                int[] occ = new int[3 * freq];
+                for (int i = 0; i < freq; i++) {
+                    cursor.nextOccurrence();
+                    occ[3 * i] = cursor.position();
+                    occ[3 * i + 1] = cursor.start();
+                    occ[3 * i + 2] = cursor.end();
+                }
+                termOccurrences.put(doc, occ);
+            }
+            if (termOccurrences.isEmpty()) {
+                return;
+            }
+        }
+
+        for (Map.Entry<Integer, int[]> entry : occurrences.get(terms.length - 1).entrySet()) {
+            int doc = entry.getKey();
+            int[] first = occurrences.get(0).get(doc);
+            int phraseFreq = 0;
+            for (int i = 0; i < first.length; i += 3) {
+                int end = -1;
+                for (int t = 1; t < terms.length; t++) {
+                    end = endAtPosition(occurrences.get(t).get(doc), first[i] + t);
+                    if (end < 0) break;
+                }
+                if (end >= 0) {
+                    phraseFreq++;
+                    matches.addOffset(doc, first[i + 1], end);
+                }
+            }
+            if (phraseFreq > 0) {
+                double score = 0;
+                for (String term : terms) {
+                    score += stats.bm25(phraseFreq, stats.docFreq(term), segment.docLength(doc));
+                }
+                matches.hit(doc, clause, score);
+            }
+        }
+    }
+
+    /**
+     * End offset of the occurrence at the token position, or -1. Positions
+     * in the triples ascend.
+     */
+    private static int endAtPosition(int[] occ, int position) {
+        int low = 0;
+        int high = occ.length / 3 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int p = occ[3 * mid];
+            if (p < position) {
+                low = mid + 1;
+            } else if (p > position) {
+                high = mid - 1;
+            } else {
+                return occ[3 * mid + 2];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index-wide figures for BM25: live note count, average length, and
+     * document frequencies summed over segments (deleted notes included
+     * until a merge drops them).
+     */
+    private static final class Stats {
+        private final List<NoteIndexSegment> segments;
+        private final int docCount;
+        private final double averageLength;
+        private final Map<String, Integer> docFreqs = new HashMap<>();
+
+        Stats(List<NoteIndexSegment> segments, int docCount, double averageLength) {
+            this.segments = segments;
+            this.docCount = docCount;
+            this.averageLength = Math.max(1, averageLength);
+        }
+
+        int docFreq(String term) {
+            Integer cached = docFreqs.get(term);
+            if (cached != null) {
+                return cached;
+            }
+            int docFreq = 0;
+            for (NoteIndexSegment segment : segments) {
+                NoteIndexSegment.Postings postings = segment.postings(term);
+                if (postings != null) {
+                    docFreq += postings.docFreq;
+                }
+            }
+            docFreqs.put(term, docFreq);
+            return docFreq;
+        }
+
+        double bm25(int freq, int docFreq, int docLength) {
+            docFreq = Math.min(docFreq, docCount);
+            double idf = Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+            return idf * freq * (K1 + 1) / (freq + K1 * (1 - B + B * docLength / averageLength));
+        }
+    }
+
+    /**
+     * Per-note accumulators for one segment.
+     */
+    private static final class SegmentMatches {
+        final double[] score;
+        final int[] clauseCount;
+        final int[] lastClause;
+        // start, end pairs
+        final int[][] offsets;
+        final int[] offsetCount;
+
+        SegmentMatches(int docCount) {
+            score = new double[docCount];
+            clauseCount = new int[docCount];
+            lastClause = new int[docCount];
+            Arrays.fill(lastClause, -1);
+            offsets = new int[docCount][];
+            offsetCount = new int[docCount];
+        }
+
+        void hit(int doc, int clause, double clauseScore) {
+            score[doc] += clauseScore;
+            if (lastClause[doc] != clause) {
+                lastClause[doc] = clause;
+                clauseCount[doc]++;
+            }
+        }
+
+        void addOffset(int doc, int start, int end) {
+            int count = offsetCount[doc];
+            if (count == MAX_MATCHES_COLLECTED) {
+                return;
+            }
+            int[] pairs = offsets[doc];
+            if (pairs == null) {
+                pairs = offsets[doc] = new int[8];
+            } else if (2 * count == pairs.length) {
+                pairs = offsets[doc] = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[2 * count] = start;
+            pairs[2 * count + 1] = end;
+            offsetCount[doc] = count + 1;
+        }
+    }
+
+    private static final Comparator<Candidate> WORST_FIRST = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            int byScore = Double.compare(a.score, b.score);
+            // On equal scores the smaller id ranks higher
+            return byScore != 0 ? byScore : b.id.compareTo(a.id);
+        }
+    };
+
+    private static final class Candidate {
+        final String id;
+        final double score;
+        // start, end pairs
+        final int[] offsets;
+        final int offsetCount;
+
+        Candidate(String id, double score, int[] offsets, int offsetCount) {
+            this.id = id;
+            this.score = score;
+            this.offsets = offsets;
+            this.offsetCount = offsetCount;
+        }
+
+        /**
+         * The hit with up to maxMatches distinct ranges in note order.
+         */
+        Hit toHit(int maxMatches) {
+            long[] ranges = new long[offsetCount];
+            for (int i = 0; i < offsetCount; i++) {
+                ranges[i] = ((long) offsets[2 * i] << 32) | offsets[2 * i + 1];
+            }
+            Arrays.sort(ranges);
+            int[] starts = new int[Math.min(Math.max(0, maxMatches), offsetCount)];
+            int[] ends = new int[starts.length];
+            int n = 0;
+            for (int i = 0; i < ranges.length && n < starts.length; i++) {
+                if (i > 0 && ranges[i] == ranges[i - 1]) {
+                    continue;
+                }
+                starts[n] = (int) (ranges[i] >>> 32);
+                ends[n] = (int) ranges[i];
+                n++;
+            }
+            return new Hit(id, score, Arrays.copyOf(starts, n), Arrays.copyOf(ends, n));
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package community.plugins.notepadutils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A set of indexed notes with its own term dictionary, used by
+ * {@link NoteIndex}. New notes go into a {@link Memory} segment; flushing
+ * or merging writes an immutable {@link Disk} segment.
+ *
+ * Postings use the same encoding in memory and on disk. For each note
+ * holding the term, in ascending order, they contain:
+ * - the note number as a delta from the previous note;
+ * - the term frequency;
+ * - one (position delta, start offset delta, length) triple per
+ *   occurrence.
+ * Every value is an unsigned varint.
+ *
+ * A disk file holds, in order: the header, the note table (id and token
+ * count), the postings, the sorted term dictionary, and the postings and
+ * dictionary offsets as the last 16 bytes. Only the postings are
+ * memory-mapped; the note table and dictionary are read onto the heap.
+ */
+public abstract class NoteIndexSegment {
+    private static final int MAGIC = 0x4E494458;
+    private static final int VERSION = 1;
+
+    final List<String> ids = new ArrayList<>();
+    final BitSet deleted = new BitSet();
+
+    int docCount() {
+        return ids.size();
+    }
+
+    int liveDocCount() {
+        return ids.size() - deleted.cardinality();
+    }
+
+    abstract int docLength(int doc);
+
+    abstract int termCount();
+
+    /** Terms are numbered in sorted order. */
+    abstract String term(int index);
+
+    /** The term's number, or -(insertion point) - 1 as in binary search. */
+    abstract int findTerm(String term);
+
+    abstract Postings postings(int index);
+
+    Postings postings(String term) {
+        int index = findTerm(term);
+        return index >= 0 ? postings(index) : null;
+    }
+
+    /** Numbers of the terms that start with prefix, at most max. */
+    int[] termsWithPrefix(String prefix, int max) {
+        int index = findTerm(prefix);
+        if (index < 0) index = -index - 1;
+        int end = index;
+        while (end < termCount() && end - index < max && term(end).startsWith(prefix)) {
+            end++;
+        }
+        int[] found = new int[end - index];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = index + i;
+        }
+        return found;
+    }
+
+    static final class Postings {
+        final ByteBuffer buffer;
+        final int offset;
+        final int docFreq;
+
+        Postings(ByteBuffer buffer, int offset, int docFreq) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.docFreq = docFreq;
+        }
+
+        Cursor cursor() {
+            return new Cursor(this);
+        }
+    }
+
+    /**
+     * Walks one term's postings. After {@link #nextDoc()}, either read
+     * {@link #freq()} occurrences with {@link #nextOccurrence()} or call
+     * {@link #skipOccurrences()}.
+     */
+    static final class Cursor {
+        private final ByteBuffer buffer;
+        private int pos;
+        private int remaining;
+        private int doc;
+        private int freq;
+        private int position;
+        private int start;
+        private int length;
+        int occurrencesFrom;
+
+        Cursor(Postings postings) {
+            buffer = postings.buffer;
+            pos = postings.offset;
+            remaining = postings.docFreq;
+        }
+
+        /** The next note number, or -1 at the end. */
+        int nextDoc() {
+            if (remaining == 0) return -1;
+            remaining--;
+            doc += readVarInt();
+            freq = readVarInt();
+            occurrencesFrom = pos;
+            position = 0;
+            start = 0;
+            return doc;
+        }
+
+        int freq() {
+            return freq;
+        }
+
+        void nextOccurrence() {
+            position += readVarInt();
+            start += readVarInt();
+            length = readVarInt();
+        }
+
+        int position() {
+            return position;
+        }
+
+        int start() {
+            return start;
+        }
+
+        int end() {
+            return start + length;
+        }
+
+        void skipOccurrences() {
+            for (int i = 0; i < 3 * freq; i++) {
+                while (buffer.get(pos++) < 0) {
+                    // continuation bytes
+                }
+            }
+        }
+
+        int occurrencesEnd() {
+            return pos;
+        }
+
+        private int readVarInt() {
+            int b = buffer.get(pos++);
+            int value = b & 0x7f;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = buffer.get(pos++);
+                value |= (b & 0x7f) << shift;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Growable byte array with varint writes.
+     */
+    static final class Bytes {
+        byte[] data = new byte[32];
+        int length;
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                data[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void write(ByteBuffer source, int from, int to) {
+            ensure(to - from);
+            for (int i = from; i < to; i++) {
+                data[length++] = source.get(i);
+            }
+        }
+
+        void write(Bytes source) {
+            ensure(source.length);
+            System.arraycopy(source.data, 0, data, length, source.length);
+            length += source.length;
+        }
+
+        private void ensure(int count) {
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            }
+        }
+    }
+
+    // ==================== Memory ====================
+
+    /**
+     * Notes indexed since the last flush. Each note is appended, so postings
+     * grow in note order as they do on disk.
+     */
+    static final class Memory extends NoteIndexSegment {
+        private final TreeMap<String, TermPostings> terms = new TreeMap<>();
+        private int[] lengths = new int[16];
+        private long bytes;
+        private String[] sortedTerms;
+
+        private static final class TermPostings {
+            final Bytes bytes = new Bytes();
+            int docFreq;
+            int lastDoc;
+            // Occurrences of the note being added
+            int freq;
+            Bytes pending;
+            int lastPosition;
+            int lastStart;
+        }
+
+        /**
+         * Adds a note and returns its number.
+         */
+        int add(String id, CharSequence text) {
+            final int doc = ids.size();
+            final List<TermPostings> touched = new ArrayList<>();
+            int tokenCount = NoteIndex.tokenize(text, new NoteIndex.TokenSink() {
+                @Override
+                public void token(String term, int position, int start, int end) {
+                    TermPostings postings = terms.get(term);
+                    if (postings == null) {
+                        postings = new TermPostings();
+                        terms.put(term, postings);
+                        sortedTerms = null;
+                    }
+                    if (postings.pending == null) {
+                        postings.pending = new Bytes();
+                        postings.freq = 0;
+                        postings.lastPosition = 0;
+                        postings.lastStart = 0;
+                        touched.add(postings);
+                    }
+                    postings.pending.writeVarInt(position - postings.lastPosition);
+                    postings.pending.writeVarInt(start - postings.lastStart);
+                    postings.pending.writeVarInt(end - start);
+                    postings.lastPosition = position;
+                    postings.lastStart = start;
+                    postings.freq++;
+                }
+            });
+
+            for (TermPostings postings : touched) {
+                int before = postings.bytes.length;
+                postings.bytes.writeVarInt(doc - postings.lastDoc);
+                postings.bytes.writeVarInt(postings.freq);
+                postings.bytes.write(postings.pending);
+                bytes += postings.bytes.length - before;
+                postings.lastDoc = doc;
+                postings.docFreq++;
+                postings.pending = null;
+            }
+
+            ids.add(id);
+            if (doc == lengths.length) {
+                lengths = Arrays.copyOf(lengths, doc * 2);
+            }
+            lengths[doc] = tokenCount;
+            bytes += 2L * id.length() + 16;
+            return doc;
+        }
+
+        /** Approximate heap held by the postings and ids. */
+        long getBytes() {
+            return bytes + 64L * terms.size();
+        }
+
+        @Override
+        int docLength(int doc) {
+            return lengths[doc];
+        }
+
+        @Override
+        int termCount() {
+            return terms.size();
+        }
+
+        @Override
+        String term(int index) {
+            return sortedTerms()[index];
+        }
+
+        @Override
+        int findTerm(String term) {
+            return Arrays.binarySearch(sortedTerms(), term);
+        }
+
+        @Override
+        Postings postings(int index) {
+            return postings(term(index));
+        }
+
+        @Override
+        Postings postings(String term) {
+            TermPostings postings = terms.get(term);
+            return postings != null ? new Postings(ByteBuffer.wrap(postings.bytes.data), 0, postings.docFreq) : null;
+        }
+
+        private String[] sortedTerms() {
+            if (sortedTerms == null) {
+                sortedTerms = terms.keySet().toArray(new String[0]);
+            }
+            return sortedTerms;
+        }
+    }
+
+    // ==================== Disk ====================
+
+    static final class Disk extends NoteIndexSegment {
+        final long generation;
+        final File file;
+        private final int[] lengths;
+        private final String[] terms;
+        private final int[] docFreqs;
+        private final int[] offsets;
+        private final ByteBuffer postings;
+
+        Disk(long generation, File file) throws IOException {
+            this.generation = generation;
+            this.file = file;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                long size = raf.length();
+                raf.seek(size - 16);
+                long postingsStart = raf.readLong();
+                long dictionaryStart = raf.readLong();
+
+                DataInputStream header = new DataInputStream(new ByteArrayInputStream(readRange(raf, 0, postingsStart)));
+                if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                    throw new IOException("Not an index segment: " + file);
+                }
+                int docCount = header.readInt();
+                lengths = new int[docCount];
+                for (int i = 0; i < docCount; i++) {
+                    ids.add(header.readUTF());
+                    lengths[i] = readVarInt(header);
+                }
+
+                DataInputStream dictionary = new DataInputStream(new ByteArrayInputStream(
+                        readRange(raf, dictionaryStart, size - 16)));
+                int termCount = readVarInt(dictionary);
+                terms = new String[termCount];
+                docFreqs = new int[termCount];
+                offsets = new int[termCount];
+                for (int i = 0; i < termCount; i++) {
+                    terms[i] = dictionary.readUTF();
+                    docFreqs[i] = readVarInt(dictionary);
+                    offsets[i] = readVarInt(dictionary);
+                }
+
+                FileChannel channel = raf.getChannel();
+                postings = channel.map(FileChannel.MapMode.READ_ONLY, postingsStart, dictionaryStart - postingsStart);
+            } finally {
+                raf.close();
+            }
+        }
+
+        @Override
+        int docLength(int doc) {
+            return lengths[doc];
+        }
+
+        @Override
+        int termCount() {
+            return terms.length;
+        }
+
+        @Override
+        String term(int index) {
+            return terms[index];
+        }
+
+        @Override
+        int findTerm(String term) {
+            return Arrays.binarySearch(terms, term);
+        }
+
+        @Override
+        Postings postings(int index) {
+            return new Postings(postings, offsets[index], docFreqs[index]);
+        }
+
+        private static byte[] readRange(RandomAccessFile raf, long from, long to) throws IOException {
+            byte[] bytes = new byte[(int) (to - from)];
+            raf.seek(from);
+            raf.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    // ==================== Writing ====================
+
+    /**
+     * Writes the live notes of the sources, in order, into one disk segment.
+     * Deleted notes are dropped and the rest renumbered.
+     */
+    static Disk write(File file, long generation, List<? extends NoteIndexSegment> sources) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+
+            int[][] remap = new int[sources.size()][];
+            int liveCount = 0;
+            for (int s = 0; s < sources.size(); s++) {
+                NoteIndexSegment source = sources.get(s);
+                remap[s] = new int[source.docCount()];
+                for (int doc = 0; doc < source.docCount(); doc++) {
+                    remap[s][doc] = source.deleted.get(doc) ? -1 : liveCount++;
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(liveCount);
+            for (int s = 0; s < sources.size(); s++) {
+                NoteIndexSegment source = sources.get(s);
+                for (int doc = 0; doc < source.docCount(); doc++) {
+                    if (remap[s][doc] >= 0) {
+                        out.writeUTF(source.ids.get(doc));
+                        writeVarInt(out, source.docLength(doc));
+                    }
+                }
+            }
+
+            int postingsStart = out.size();
+            List<String> terms = new ArrayList<>();
+            int[] docFreqs = new int[256];
+            int[] offsets = new int[256];
+            Bytes scratch = new Bytes();
+            int[] cursors = new int[sources.size()];
+            while (true) {
+                String term = null;
+                for (int s = 0; s < sources.size(); s++) {
+                    if (cursors[s] < sources.get(s).termCount()) {
+                        String candidate = sources.get(s).term(cursors[s]);
+                        if (term == null || candidate.compareTo(term) < 0) {
+                            term = candidate;
+                        }
+                    }
+                }
+                if (term == null) {
+                    break;
+                }
+
+                scratch.length = 0;
+                int docFreq = 0;
+                int lastDoc = 0;
+                for (int s = 0; s < sources.size(); s++) {
+                    NoteIndexSegment source = sources.get(s);
+                    if (cursors[s] >= source.termCount() || !source.term(cursors[s]).equals(term)) {
+                        continue;
+                    }
+                    Postings postings = source.postings(cursors[s]++);
+                    Cursor cursor = postings.cursor();
+                    for (int doc = cursor.nextDoc(); doc >= 0; doc = cursor.nextDoc()) {
+                        cursor.skipOccurrences();
+                        int newDoc = remap[s][doc];
+                        if (newDoc < 0) {
+                            continue;
+                        }
+                        scratch.writeVarInt(newDoc - lastDoc);
+                        scratch.writeVarInt(cursor.freq());
+                        // Occurrence offsets do not depend on the note number
+                        scratch.write(postings.buffer, cursor.occurrencesFrom, cursor.occurrencesEnd());
+                        lastDoc = newDoc;
+                        docFreq++;
+                    }
+                }
+                if (docFreq > 0) {
+                    int index = terms.size();
+                    if (index == docFreqs.length) {
+                        docFreqs = Arrays.copyOf(docFreqs, index * 2);
+                        offsets = Arrays.copyOf(offsets, index * 2);
+                    }
+                    terms.add(term);
+                    docFreqs[index] = docFreq;
+                    offsets[index] = out.size() - postingsStart;
+                    out.write(scratch.data, 0, scratch.length);
+                }
+            }
+
+            int dictionaryStart = out.size();
+            writeVarInt(out, terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                out.writeUTF(terms.get(i));
+                writeVarInt(out, docFreqs[i]);
+                writeVarInt(out, offsets[i]);
+            }
+            out.writeLong(postingsStart);
+            out.writeLong(dictionaryStart);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not write " + file);
+        }
+        return new Disk(generation, file);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int b = in.readByte();
+        int value = b & 0x7f;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = in.readByte();
+            value |= (b & 0x7f) << shift;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,82 @@
+package community.plugins.notepadutils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Bounded LRU of compiled search patterns keyed by term, case sensitivity and
+ * regex mode.
+ *
+ * Invalid expressions are cached as well, so retyping a bad regex rethrows
+ * the original {@link PatternSyntaxException} without compiling it again.
+ * Compiled {@link Pattern}s are immutable and safe to share between threads.
+ */
+public class PatternCache {
+    private final Map<String, Object> entries;
+    private long hits;
+    private long misses;
+
+    public PatternCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled pattern, compiling it on a miss.
+     *
+     * @throws PatternSyntaxException if the expression is invalid
+     */
+    public Pattern get(String term, boolean caseSensitive, boolean isRegex) {
+        String key = (isRegex ? 'r' : 'l') + (caseSensitive ? "c:" : "i:") + term;
+        Object entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+
+        if (entry == null) {
+            int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
+            try {
+                entry = Pattern.compile(isRegex ? term : Pattern.quote(term), flags);
+            } catch (PatternSyntaxException e) {
+                entry = e;
+            }
+            synchronized (this) {
+                entries.put(key, entry);
+            }
+        }
+
+        if (entry instanceof PatternSyntaxException) {
+            throw (PatternSyntaxException) entry;
+        }
+        return (Pattern) entry;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
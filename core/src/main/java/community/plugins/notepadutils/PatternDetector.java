@@ -0,0 +1,214 @@
+package community.plugins.notepadutils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds URLs, emails, phone numbers, hashtags, mentions and dates in a single
+ * pass over the text.
+ *
+ * The patterns are compiled once. Instead of running six independent
+ * {@code find()} loops, one scan looks at each character and only tries the
+ * patterns that can start there, tracking for every type where its previous
+ * match ended. This reproduces the per-type results of the separate loops,
+ * including matches of different types that overlap.
+ */
+public final class PatternDetector {
+    public static final int URL = 0;
+    public static final int EMAIL = 1;
+    public static final int PHONE = 2;
+    public static final int HASHTAG = 3;
+    public static final int MENTION = 4;
+    public static final int DATE = 5;
+
+    // Result keys, indexed by type
+    public static final String[] TYPE_KEYS = {"urls", "emails", "phoneNumbers", "hashtags", "mentions", "dates"};
+
+    private static final Pattern[] PATTERNS = {
+            Pattern.compile("https?://[\\w\\-._~:/?#\\[\\]@!$&'()*+,;=%]+", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}"),
+            Pattern.compile("(\\+?\\d{1,3}[-.\\s]?)?(\\(?\\d{2,4}\\)?[-.\\s]?)?\\d{3,4}[-.\\s]?\\d{3,4}"),
+            Pattern.compile("#[a-zA-Z0-9_]+"),
+            Pattern.compile("@[a-zA-Z0-9_]+"),
+            Pattern.compile("\\d{1,2}[/\\-.]\\d{1,2}[/\\-.]\\d{2,4}|\\d{4}[/\\-.]\\d{1,2}[/\\-.]\\d{1,2}")
+    };
+
+    private PatternDetector() {
+    }
+
+    /**
+     * Matches stored as (type, start, end) triples.
+     */
+    public static final class Matches {
+        private int[] data = new int[48];
+        private int size;
+
+        void add(int type, int start, int end) {
+            if (size * 3 + 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 3] = type;
+            data[size * 3 + 1] = start;
+            data[size * 3 + 2] = end;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int type(int i) {
+            return data[i * 3];
+        }
+
+        public int start(int i) {
+            return data[i * 3 + 1];
+        }
+
+        public int end(int i) {
+            return data[i * 3 + 2];
+        }
+
+        /**
+         * Match indexes ordered by start offset, then by type.
+         */
+        public Integer[] orderByStart() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return start(a) != start(b)
+                            ? Integer.compare(start(a), start(b))
+                            : Integer.compare(type(a), type(b));
+                }
+            });
+            return order;
+        }
+    }
+
+    public static Matches detect(CharSequence text) {
+        Matches out = new Matches();
+        scan(text, 0, text.length(), out);
+        return out;
+    }
+
+    /**
+     * Adds every match that starts in [from, to). Matches may extend past
+     * {@code to}; callers choose ranges no match can cross.
+     */
+    public static void scan(CharSequence text, int from, int to, Matches out) {
+        Matcher[] matchers = new Matcher[PATTERNS.length];
+        int[] next = new int[PATTERNS.length];
+        Arrays.fill(next, from);
+        int length = text.length();
+        int localStart = -1;
+
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+
+            if (isEmailLocal(c)) {
+                if (localStart < 0) localStart = i;
+            } else {
+                if (c == '@') {
+                    // An email match must start in the run of local-part characters before '@'
+                    int p = localStart >= 0 ? Math.max(localStart, next[EMAIL]) : i;
+                    if (p < i) {
+                        tryMatch(matchers, next, EMAIL, text, p, length, out);
+                    }
+                    if (i >= next[MENTION]) {
+                        tryMatch(matchers, next, MENTION, text, i, length, out);
+                    }
+                } else if (c == '#') {
+                    if (i >= next[HASHTAG]) {
+                        tryMatch(matchers, next, HASHTAG, text, i, length, out);
+                    }
+                } else if (c == '+' || c == '(') {
+                    if (i >= next[PHONE]) {
+                        tryMatch(matchers, next, PHONE, text, i, length, out);
+                    }
+                } else if (c > 0x7F && Character.isDigit(c)) {
+                    tryDigit(matchers, next, text, i, length, out);
+                }
+                localStart = -1;
+                continue;
+            }
+
+            if ((c == 'h' || c == 'H') && i >= next[URL] && i + 7 <= length
+                    && regionMatchesHttp(text, i)) {
+                tryMatch(matchers, next, URL, text, i, length, out);
+            } else if (c == '+') {
+                if (i >= next[PHONE]) {
+                    tryMatch(matchers, next, PHONE, text, i, length, out);
+                }
+            } else if (c >= '0' && c <= '9') {
+                tryDigit(matchers, next, text, i, length, out);
+            }
+        }
+    }
+
+    private static void tryDigit(Matcher[] matchers, int[] next, CharSequence text, int i, int length, Matches out) {
+        if (i >= next[PHONE]) {
+            tryMatch(matchers, next, PHONE, text, i, length, out);
+        }
+        if (i >= next[DATE] && hasDateSeparatorAhead(text, i, length)) {
+            tryMatch(matchers, next, DATE, text, i, length, out);
+        }
+    }
+
+    private static void tryMatch(Matcher[] matchers, int[] next, int type, CharSequence text, int start, int length, Matches out) {
+        Matcher m = matchers[type];
+        if (m == null) {
+            m = PATTERNS[type].matcher(text);
+            matchers[type] = m;
+        }
+        m.region(start, length);
+        if (m.lookingAt()) {
+            out.add(type, start, m.end());
+            next[type] = m.end();
+        }
+    }
+
+    private static boolean isEmailLocal(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean regionMatchesHttp(CharSequence text, int i) {
+        return (text.charAt(i + 1) | 0x20) == 't'
+                && (text.charAt(i + 2) | 0x20) == 't'
+                && (text.charAt(i + 3) | 0x20) == 'p';
+    }
+
+    private static boolean hasDateSeparatorAhead(CharSequence text, int i, int length) {
+        int limit = Math.min(length, i + 5);
+        for (int k = i + 1; k < limit; k++) {
+            char c = text.charAt(k);
+            if (c == '/' || c == '-' || c == '.') return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether offset b is a safe place to split the text for independent
+     * scans: it follows a line break that no match can span. Only phone
+     * numbers may contain a line break, and only between a digit or ')' and
+     * a digit or '('.
+     */
+    static boolean isBlockBoundary(CharSequence text, int b) {
+        if (b <= 0 || b >= text.length()) {
+            return true;
+        }
+        if (text.charAt(b - 1) != '\n') {
+            return false;
+        }
+        if (b < 2) {
+            return true;
+        }
+        char before = text.charAt(b - 2);
+        char after = text.charAt(b);
+        return !((Character.isDigit(before) || before == ')') && (Character.isDigit(after) || after == '('));
+    }
+}
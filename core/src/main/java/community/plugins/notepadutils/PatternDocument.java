@@ -0,0 +1,149 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pattern matches for a tracked document, kept up to date from edit ranges.
+ *
+ * The text is split into blocks at line breaks no match can span (see
+ * {@link PatternDetector#isBlockBoundary}). Each block caches its matches with
+ * offsets relative to the block start, so an edit rescans only the blocks it
+ * touches.
+ */
+public class PatternDocument {
+    static final int TARGET_BLOCK_CHARS = 2048;
+
+    private final StringBuilder text;
+    private final List<Block> blocks = new ArrayList<>();
+
+    // Range rescanned by the last edit, in post-edit offsets
+    private int lastRescanStart;
+    private int lastRescanEnd;
+
+    private static final class Block {
+        int length;
+        PatternDetector.Matches matches;
+
+        Block(int length, PatternDetector.Matches matches) {
+            this.length = length;
+            this.matches = matches;
+        }
+    }
+
+    public PatternDocument(String initialText) {
+        text = new StringBuilder(initialText);
+        blocks.addAll(buildBlocks(0, text.length()));
+        lastRescanStart = 0;
+        lastRescanEnd = text.length();
+    }
+
+    /**
+     * The live text. Callers reading it while other threads edit hold the
+     * document's lock for as long as they use it.
+     */
+    public synchronized CharSequence getText() {
+        return text;
+    }
+
+    public synchronized int getLastRescanStart() {
+        return lastRescanStart;
+    }
+
+    public synchronized int getLastRescanEnd() {
+        return lastRescanEnd;
+    }
+
+    /**
+     * Replaces [start, end) with insertedText and rescans the affected blocks.
+     */
+    public synchronized void applyEdit(int start, int end, String insertedText) {
+        if (start < 0 || end < start || end > text.length()) {
+            throw new IndexOutOfBoundsException("Invalid edit range: " + start + "-" + end);
+        }
+
+        int first = 0;
+        int firstStart = 0;
+        while (first < blocks.size() - 1 && firstStart + blocks.get(first).length <= start) {
+            firstStart += blocks.get(first).length;
+            first++;
+        }
+        int last = first;
+        int lastEnd = firstStart + (blocks.isEmpty() ? 0 : blocks.get(first).length);
+        while (last < blocks.size() - 1 && lastEnd < end) {
+            last++;
+            lastEnd += blocks.get(last).length;
+        }
+
+        text.replace(start, end, insertedText);
+        int regionEnd = lastEnd + insertedText.length() - (end - start);
+
+        // The edit can make the boundaries around the region unsafe; widen it until they hold
+        while (first > 0 && !PatternDetector.isBlockBoundary(text, firstStart)) {
+            first--;
+            firstStart -= blocks.get(first).length;
+        }
+        while (last + 1 < blocks.size() && !PatternDetector.isBlockBoundary(text, regionEnd)) {
+            last++;
+            regionEnd += blocks.get(last).length;
+        }
+
+        List<Block> rebuilt = buildBlocks(firstStart, regionEnd);
+        for (int i = last; i >= first && i < blocks.size(); i--) {
+            blocks.remove(i);
+        }
+        blocks.addAll(first, rebuilt);
+        lastRescanStart = firstStart;
+        lastRescanEnd = regionEnd;
+    }
+
+    /**
+     * All matches in the document, with absolute offsets.
+     */
+    public synchronized PatternDetector.Matches getMatches() {
+        return collect(0, text.length());
+    }
+
+    /**
+     * Matches starting in [from, to), with absolute offsets.
+     */
+    public synchronized PatternDetector.Matches collect(int from, int to) {
+        PatternDetector.Matches out = new PatternDetector.Matches();
+        int offset = 0;
+        for (Block block : blocks) {
+            if (offset >= to) break;
+            if (offset + block.length > from) {
+                PatternDetector.Matches m = block.matches;
+                for (int i = 0; i < m.size(); i++) {
+                    int s = offset + m.start(i);
+                    if (s >= from && s < to) {
+                        out.add(m.type(i), s, offset + m.end(i));
+                    }
+                }
+            }
+            offset += block.length;
+        }
+        return out;
+    }
+
+    private List<Block> buildBlocks(int start, int end) {
+        List<Block> result = new ArrayList<>();
+        int blockStart = start;
+        while (blockStart < end) {
+            int blockEnd = Math.min(end, blockStart + TARGET_BLOCK_CHARS);
+            while (blockEnd < end && !PatternDetector.isBlockBoundary(text, blockEnd)) {
+                blockEnd++;
+            }
+
+            PatternDetector.Matches scanned = new PatternDetector.Matches();
+            PatternDetector.scan(text, blockStart, blockEnd, scanned);
+            PatternDetector.Matches relative = new PatternDetector.Matches();
+            for (int i = 0; i < scanned.size(); i++) {
+                relative.add(scanned.type(i), scanned.start(i) - blockStart, scanned.end(i) - blockStart);
+            }
+            result.add(new Block(blockEnd - blockStart, relative));
+            blockStart = blockEnd;
+        }
+        return result;
+    }
+}
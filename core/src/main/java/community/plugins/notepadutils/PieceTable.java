@@ -0,0 +1,144 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Native-side document buffer edited by ranges.
+ *
+ * The text is a sequence of pieces, each a slice of the immutable original
+ * text or of an append-only buffer holding everything inserted since. An
+ * edit splits at most two pieces and appends the inserted text, so its cost
+ * depends on the edit and the piece count, not the document length. Typing
+ * at the end of the last insertion extends that piece instead of adding one.
+ * The flattened text is built on demand and cached until the next edit.
+ */
+public class PieceTable {
+    // Past this many pieces, or this much dead inserted text, the table is
+    // flattened back into a single piece
+    static final int MAX_PIECES = 4096;
+    static final int MAX_ADDED_CHARS = 1 << 20;
+
+    private String original;
+    private final StringBuilder added = new StringBuilder();
+    private final List<Piece> pieces = new ArrayList<>();
+    private int length;
+    private long version;
+    private String snapshot;
+
+    private static final class Piece {
+        final boolean inAdded;
+        final int start;
+        int length;
+
+        Piece(boolean inAdded, int start, int length) {
+            this.inAdded = inAdded;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    public PieceTable(String text) {
+        reset(text);
+    }
+
+    public synchronized int length() {
+        return length;
+    }
+
+    /**
+     * Incremented by every edit.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized int getPieceCount() {
+        return pieces.size();
+    }
+
+    /**
+     * Replaces [start, end) with insertedText.
+     */
+    public synchronized void applyEdit(int start, int end, String insertedText) {
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException("Invalid edit range: " + start + "-" + end);
+        }
+        version++;
+        if (start == end && insertedText.isEmpty()) {
+            return;
+        }
+        snapshot = null;
+
+        int index = splitAt(start);
+        int removeEnd = splitAt(end);
+        for (int i = removeEnd - 1; i >= index; i--) {
+            pieces.remove(i);
+        }
+
+        if (!insertedText.isEmpty()) {
+            Piece previous = index > 0 ? pieces.get(index - 1) : null;
+            if (previous != null && previous.inAdded && previous.start + previous.length == added.length()) {
+                // Continues the most recent insertion
+                previous.length += insertedText.length();
+            } else {
+                pieces.add(index, new Piece(true, added.length(), insertedText.length()));
+            }
+            added.append(insertedText);
+        }
+        length += insertedText.length() - (end - start);
+
+        if (pieces.size() > MAX_PIECES || added.length() > Math.max(MAX_ADDED_CHARS, 2 * length)) {
+            reset(toString());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (snapshot == null) {
+            StringBuilder sb = new StringBuilder(length);
+            for (Piece piece : pieces) {
+                if (piece.inAdded) {
+                    sb.append(added, piece.start, piece.start + piece.length);
+                } else {
+                    sb.append(original, piece.start, piece.start + piece.length);
+                }
+            }
+            snapshot = sb.toString();
+        }
+        return snapshot;
+    }
+
+    private void reset(String text) {
+        original = text;
+        added.setLength(0);
+        pieces.clear();
+        if (!text.isEmpty()) {
+            pieces.add(new Piece(false, 0, text.length()));
+        }
+        length = text.length();
+        snapshot = text;
+    }
+
+    /**
+     * Makes offset fall on a piece boundary and returns the index of the
+     * piece starting there (or the piece count at the end of the text).
+     */
+    private int splitAt(int offset) {
+        int pieceStart = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (offset == pieceStart) {
+                return i;
+            }
+            if (offset < pieceStart + piece.length) {
+                int head = offset - pieceStart;
+                pieces.add(i + 1, new Piece(piece.inAdded, piece.start + head, piece.length - head));
+                piece.length = head;
+                return i + 1;
+            }
+            pieceStart += piece.length;
+        }
+        return pieces.size();
+    }
+}
@@ -0,0 +1,312 @@
+package community.plugins.notepadutils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs user regexes on a small pool of their own, with a watchdog that
+ * answers each job once its time budget runs out.
+ *
+ * {@link BudgetedCharSequence} can only stop a match from inside when the
+ * engine reads the text through it. ICU on Android copies the text first, so
+ * a catastrophic backtrack there runs until the engine gives up. The watchdog
+ * does not wait for it: at the deadline it completes the job with
+ * {@link Job#onTimeout}, takes it off the queue and interrupts its thread.
+ * A thread still running an answered job is counted as lost and the pool
+ * starts another in its place, up to maxLostThreads, so runaway matches do
+ * not starve the jobs queued behind them. Jobs beyond the queue are refused
+ * instead of piling up.
+ */
+public class RegexRunner {
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+    public static final int DEFAULT_MAX_LOST_THREADS = 4;
+
+    /**
+     * A regex job. Exactly one final outcome reaches the caller: the result
+     * run sends itself, or onTimeout, onCancelled or onFailed. run sends its
+     * final result only after {@link Ticket#claim()} returns true.
+     */
+    public interface Job {
+        void run(Ticket ticket) throws Exception;
+
+        /**
+         * The time budget ran out first. If this throws, onFailed is called.
+         */
+        void onTimeout(BudgetedCharSequence.BudgetExceededException e) throws Exception;
+
+        void onCancelled(String requestId);
+
+        void onFailed(Exception e);
+    }
+
+    /**
+     * The right to send a job's final result, which only one party gets.
+     * Partial results should be sent while holding the ticket's lock and
+     * only if it is unclaimed, so none can follow the final result.
+     */
+    public static final class Ticket {
+        private boolean claimed;
+
+        public synchronized boolean claim() {
+            if (claimed) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+
+        public synchronized boolean isClaimed() {
+            return claimed;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final int threads;
+    private final int maxLostThreads;
+    // Threads still busy with a job that was already answered; guarded by this
+    private int lostThreads;
+    private final AtomicInteger anonymousIds = new AtomicInteger();
+    private final Map<String, Entry> entriesById = new HashMap<>();
+    private final Map<String, Entry> entriesByKey = new HashMap<>();
+
+    /**
+     * @param threads        threads running jobs at once
+     * @param queueSize      jobs waiting for a thread before new ones are refused
+     * @param maxLostThreads extra threads started in place of ones stuck in an answered job
+     */
+    public RegexRunner(int threads, int queueSize, int maxLostThreads) {
+        this.threads = threads;
+        this.maxLostThreads = maxLostThreads;
+        final AtomicInteger threadCount = new AtomicInteger();
+        // Daemon threads, so a runaway match cannot keep the process alive
+        ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "NotepadUtils-regex-" + threadCount.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), factory);
+        executor.allowCoreThreadTimeOut(true);
+
+        watchdog = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "NotepadUtils-regex-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Queues a job. When the queue is full the job fails right away.
+     *
+     * @param requestId    caller-supplied id used by {@link #cancel}, may be null
+     * @param supersedeKey jobs sharing this key replace each other, may be null
+     * @param timeoutMs    time budget from now, or 0 for none
+     */
+    public void submit(String requestId, String supersedeKey, long timeoutMs, Job job) {
+        String id = requestId != null && !requestId.isEmpty() ? requestId : "auto-" + anonymousIds.incrementAndGet();
+        final Entry entry = new Entry(id, supersedeKey, job, new Ticket());
+
+        Entry stale;
+        Entry older = null;
+        synchronized (this) {
+            stale = entriesById.put(id, entry);
+            if (supersedeKey != null) {
+                older = entriesByKey.put(supersedeKey, entry);
+                if (older == stale) {
+                    older = null;
+                }
+            }
+        }
+        if (stale != null) {
+            cancelEntry(stale);
+        }
+        if (older != null) {
+            cancelEntry(older);
+        }
+
+        try {
+            executor.execute(entry);
+        } catch (RejectedExecutionException e) {
+            forget(entry);
+            if (entry.ticket.claim()) {
+                job.onFailed(new RejectedExecutionException("Too many regular expressions running"));
+            }
+            return;
+        }
+        if (timeoutMs > 0) {
+            entry.deadline = watchdog.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire(entry);
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels a queued or running job and answers it with onCancelled.
+     *
+     * @return true if a job with this id had not been answered yet
+     */
+    public boolean cancel(String requestId) {
+        Entry entry;
+        synchronized (this) {
+            entry = entriesById.get(requestId);
+        }
+        return entry != null && cancelEntry(entry);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+        synchronized (this) {
+            entriesById.clear();
+            entriesByKey.clear();
+        }
+    }
+
+    private boolean cancelEntry(Entry entry) {
+        if (!entry.ticket.claim()) {
+            return false;
+        }
+        abandon(entry);
+        entry.job.onCancelled(entry.id);
+        return true;
+    }
+
+    private void expire(Entry entry) {
+        if (!entry.ticket.claim()) {
+            return;
+        }
+        abandon(entry);
+        try {
+            entry.job.onTimeout(new BudgetedCharSequence.BudgetExceededException(BudgetedCharSequence.TIME_BUDGET_EXCEEDED));
+        } catch (Exception e) {
+            entry.job.onFailed(e);
+        }
+    }
+
+    /**
+     * Drops an answered entry. A queued one frees its slot; a running one is
+     * interrupted in case the engine ever looks, and its thread is replaced.
+     */
+    private void abandon(Entry entry) {
+        entry.cancel(true);
+        executor.remove(entry);
+        forget(entry);
+        synchronized (this) {
+            if (entry.running && !entry.lost && lostThreads < maxLostThreads) {
+                entry.lost = true;
+                lostThreads++;
+                executor.setMaximumPoolSize(threads + lostThreads);
+                executor.setCorePoolSize(threads + lostThreads);
+            }
+        }
+    }
+
+    private synchronized void finished(Entry entry) {
+        entry.running = false;
+        if (entry.lost) {
+            entry.lost = false;
+            lostThreads--;
+            executor.setCorePoolSize(threads + lostThreads);
+            executor.setMaximumPoolSize(threads + lostThreads);
+        }
+    }
+
+    private synchronized void forget(Entry entry) {
+        if (entriesById.get(entry.id) == entry) {
+            entriesById.remove(entry.id);
+        }
+        if (entry.key != null && entriesByKey.get(entry.key) == entry) {
+            entriesByKey.remove(entry.key);
+        }
+    }
+
+    private final class Entry extends FutureTask<Void> {
+        final String id;
+        final String key;
+        final Job job;
+        final Ticket ticket;
+        volatile ScheduledFuture<?> deadline;
+        // Guarded by the runner
+        boolean running;
+        boolean lost;
+
+        Entry(String id, String key, final Job job, final Ticket ticket) {
+            super(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    job.run(ticket);
+                    return null;
+                }
+            });
+            this.id = id;
+            this.key = key;
+            this.job = job;
+            this.ticket = ticket;
+        }
+
+        @Override
+        public void run() {
+            synchronized (RegexRunner.this) {
+                running = true;
+            }
+            try {
+                super.run();
+            } finally {
+                finished(this);
+            }
+        }
+
+        @Override
+        protected void done() {
+            forget(this);
+            ScheduledFuture<?> pending = deadline;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            // A cancelled entry was answered by whoever cancelled it
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (!ticket.claim()) {
+                    return;
+                }
+                if (cause instanceof CancellationException || cause instanceof InterruptedException) {
+                    job.onCancelled(id);
+                } else {
+                    job.onFailed(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
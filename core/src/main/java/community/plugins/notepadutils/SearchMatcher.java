@@ -0,0 +1,95 @@
+package community.plugins.notepadutils;
+
+import java.util.regex.Matcher;
+
+/**
+ * Iterates the matches of a search term, using {@link LiteralSearcher} for
+ * plain terms and {@link Matcher} for regular expressions. Both report the
+ * same matches; the literal path just skips the regex engine.
+ */
+public abstract class SearchMatcher {
+    public abstract boolean find();
+
+    public abstract int start();
+
+    public abstract int end();
+
+    /**
+     * Regular expressions run over a {@link BudgetedCharSequence}, so
+     * {@link #find()} throws {@link BudgetedCharSequence.BudgetExceededException}
+     * once timeoutMs or maxSteps (0 for no limit) is spent.
+     */
+    public static SearchMatcher create(PatternCache patterns, String term, boolean caseSensitive, boolean isRegex, String text, long timeoutMs, long maxSteps) {
+        if (!usesRegex(term, isRegex)) {
+            return new Literal(new LiteralSearcher(term, caseSensitive), text);
+        }
+        BudgetedCharSequence budgeted = new BudgetedCharSequence(text, timeoutMs, maxSteps);
+        return new Regex(patterns.get(term, caseSensitive, isRegex).matcher(budgeted), budgeted);
+    }
+
+    /**
+     * Whether {@link #create} would go through the regex engine.
+     */
+    public static boolean usesRegex(String term, boolean isRegex) {
+        return isRegex || !LiteralSearcher.supports(term);
+    }
+
+    private static final class Literal extends SearchMatcher {
+        private final LiteralSearcher searcher;
+        private final CharSequence text;
+        private int start = -1;
+        private int next;
+
+        Literal(LiteralSearcher searcher, CharSequence text) {
+            this.searcher = searcher;
+            this.text = text;
+        }
+
+        @Override
+        public boolean find() {
+            start = searcher.indexOf(text, next);
+            if (start < 0) {
+                next = text.length();
+                return false;
+            }
+            next = start + searcher.length();
+            return true;
+        }
+
+        @Override
+        public int start() {
+            return start;
+        }
+
+        @Override
+        public int end() {
+            return start + searcher.length();
+        }
+    }
+
+    private static final class Regex extends SearchMatcher {
+        private final Matcher matcher;
+        private final BudgetedCharSequence budget;
+
+        Regex(Matcher matcher, BudgetedCharSequence budget) {
+            this.matcher = matcher;
+            this.budget = budget;
+        }
+
+        @Override
+        public boolean find() {
+            budget.checkDeadline();
+            return matcher.find();
+        }
+
+        @Override
+        public int start() {
+            return matcher.start();
+        }
+
+        @Override
+        public int end() {
+            return matcher.end();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package community.plugins.notepadutils;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Password-based AES-256-CBC used by encrypt, decrypt and the batch
+ * variants. Keys are derived with PBKDF2-HMAC-SHA256 and kept in a
+ * {@link KeyCache}, so repeated operations with the same password and salt
+ * pay for one derivation.
+ */
+public class TextCrypto {
+    public static final int SALT_LENGTH = 16;
+    public static final int IV_LENGTH = 16;
+    private static final int PBKDF2_ITERATIONS = 65536;
+    private static final int KEY_BITS = 256;
+
+    private final KeyCache keyCache;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public TextCrypto(KeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+    public byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        return salt;
+    }
+
+    public byte[] newIv() {
+        byte[] iv = new byte[IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        return iv;
+    }
+
+    public SecretKeySpec deriveKey(String password, byte[] salt) throws GeneralSecurityException {
+        SecretKeySpec cached = keyCache.get(password, salt);
+        if (cached != null) {
+            return cached;
+        }
+
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, PBKDF2_ITERATIONS, KEY_BITS);
+        byte[] keyBytes = factory.generateSecret(spec).getEncoded();
+        spec.clearPassword();
+        keyCache.put(password, salt, keyBytes);
+        SecretKeySpec secretKey = new SecretKeySpec(keyBytes, "AES");
+        Arrays.fill(keyBytes, (byte) 0);
+        return secretKey;
+    }
+
+    public static byte[] encrypt(byte[] data, byte[] iv, SecretKeySpec secretKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(iv));
+        return cipher.doFinal(data);
+    }
+
+    public static byte[] decrypt(byte[] encrypted, byte[] iv, SecretKeySpec secretKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+        return cipher.doFinal(encrypted);
+    }
+}
@@ -0,0 +1,618 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Differences between two texts as hunks of replaced ranges, compared by
+ * line, word or character.
+ *
+ * Both texts are cut into tokens and every distinct token gets an int id, so
+ * the comparison runs on int arrays. Each region first loses its common
+ * prefix and suffix. The rest is Myers' O(ND) algorithm in its linear-space
+ * form: find the middle of an optimal edit path, split the region there and
+ * compare both halves. Memory grows with the edit distance rather than the
+ * product of the lengths, and pending regions sit on an explicit stack
+ * instead of the call stack.
+ *
+ * In patience mode a region is first split at tokens that occur exactly
+ * once on each side, keeping the longest run of them that is in the same
+ * order in both texts; Myers only runs where no such anchor is left. This is
+ * much faster on long texts with few changes and aligns on distinctive lines
+ * rather than blank ones. It only applies to lines and words.
+ *
+ * Once the time budget is spent, every region not yet compared becomes a
+ * single replacement. The hunks still turn the old text into the new one,
+ * only coarser, and {@link Result#complete} is false. Word and character
+ * diffs get half the budget; if that runs out, lines are compared with
+ * patience in the other half, and whichever result replaces fewer
+ * characters is returned.
+ */
+public class TextDiff {
+    public static final String GRANULARITY_LINE = "line";
+    public static final String GRANULARITY_WORD = "word";
+    public static final String GRANULARITY_CHAR = "char";
+
+    // Initial diagonals kept per direction; the frontier grows with the edit distance
+    private static final int INITIAL_FRONTIER = 64;
+    private static final int EXPIRY_CHECK_INTERVAL = 16;
+
+    private TextDiff() {
+    }
+
+    /**
+     * One replaced range: old text [oldStart, oldEnd) became new text
+     * [newStart, newEnd). Either range may be empty.
+     */
+    public static final class Hunk {
+        public final int oldStart;
+        public final int oldEnd;
+        public final int newStart;
+        public final int newEnd;
+
+        Hunk(int oldStart, int oldEnd, int newStart, int newEnd) {
+            this.oldStart = oldStart;
+            this.oldEnd = oldEnd;
+            this.newStart = newStart;
+            this.newEnd = newEnd;
+        }
+    }
+
+    public static final class Result {
+        // In text order, with offsets in the old and new text
+        public final List<Hunk> hunks;
+        // Tokens dropped from the old text and added from the new one
+        public final int deleted;
+        public final int inserted;
+        // False when the time budget ran out and some regions were replaced whole
+        public final boolean complete;
+        // The granularity the hunks were found at, coarser than asked after a timeout
+        public final String granularity;
+
+        Result(List<Hunk> hunks, int deleted, int inserted, boolean complete, String granularity) {
+            this.hunks = hunks;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.complete = complete;
+            this.granularity = granularity;
+        }
+
+        /**
+         * Characters covered by the hunks on both sides.
+         */
+        long getChangedChars() {
+            long changed = 0;
+            for (Hunk hunk : hunks) {
+                changed += (hunk.oldEnd - hunk.oldStart) + (hunk.newEnd - hunk.newStart);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * @param granularity one of the GRANULARITY_ constants; null means lines
+     * @param patience    whether to anchor on unique tokens first
+     * @param timeoutMs   time budget, or 0 for none
+     */
+    public static Result diff(String oldText, String newText, String granularity, boolean patience, long timeoutMs) {
+        if (granularity == null) {
+            granularity = GRANULARITY_LINE;
+        }
+        if (GRANULARITY_LINE.equals(granularity) || timeoutMs <= 0) {
+            return compare(oldText, newText, granularity, patience, timeoutMs);
+        }
+        long startNanos = System.nanoTime();
+        Result fine = compare(oldText, newText, granularity, patience, Math.max(1, timeoutMs / 2));
+        if (fine.complete) {
+            return fine;
+        }
+        long leftMs = timeoutMs - (System.nanoTime() - startNanos) / 1000000;
+        Result lines = compare(oldText, newText, GRANULARITY_LINE, true, Math.max(1, leftMs));
+        Result best = lines.getChangedChars() < fine.getChangedChars() ? lines : fine;
+        return new Result(best.hunks, best.deleted, best.inserted, false, best.granularity);
+    }
+
+    private static Result compare(String oldText, String newText, String granularity, boolean patience, long timeoutMs) {
+        Tokens a;
+        Tokens b;
+        Interner interner = null;
+        if (GRANULARITY_CHAR.equals(granularity)) {
+            a = Tokens.ofCodePoints(oldText);
+            b = Tokens.ofCodePoints(newText);
+        } else {
+            boolean lines = GRANULARITY_LINE.equals(granularity);
+            if (!lines && !GRANULARITY_WORD.equals(granularity)) {
+                throw new IllegalArgumentException("Unknown granularity: " + granularity);
+            }
+            interner = new Interner(oldText, newText);
+            a = Tokens.of(oldText, 0, lines, interner);
+            b = Tokens.of(newText, 1, lines, interner);
+        }
+
+        Differ differ = new Differ(a.ids, a.count, b.ids, b.count,
+                patience && interner != null ? interner.size() : 0, timeoutMs);
+        differ.run();
+        return differ.toResult(a, b, granularity);
+    }
+
+    // ==================== Tokens ====================
+
+    private static final class Tokens {
+        final int[] ids;
+        final int count;
+        // Token i starts at starts[i]; null when every token is one char
+        final int[] starts;
+        final int length;
+
+        Tokens(int[] ids, int count, int[] starts, int length) {
+            this.ids = ids;
+            this.count = count;
+            this.starts = starts;
+            this.length = length;
+        }
+
+        int start(int i) {
+            if (i == count) {
+                return length;
+            }
+            return starts == null ? i : starts[i];
+        }
+
+        /**
+         * Code points as their own ids.
+         */
+        static Tokens ofCodePoints(String text) {
+            int length = text.length();
+            int count = text.codePointCount(0, length);
+            int[] ids = new int[count];
+            int[] starts = count == length ? null : new int[count];
+            for (int i = 0, t = 0; i < length; t++) {
+                int cp = text.codePointAt(i);
+                if (starts != null) {
+                    starts[t] = i;
+                }
+                ids[t] = cp;
+                i += Character.charCount(cp);
+            }
+            return new Tokens(ids, count, starts, length);
+        }
+
+        /**
+         * Lines with their line break, or words: runs of letters, digits and
+         * marks, runs of spaces, and any other code point on its own.
+         * Ideographs are words of their own.
+         */
+        static Tokens of(String text, int source, boolean lines, Interner interner) {
+            int length = text.length();
+            int[] ids = new int[16];
+            int[] starts = new int[16];
+            int count = 0;
+            int i = 0;
+            while (i < length) {
+                int end = lines ? lineEnd(text, i) : wordEnd(text, i);
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                ids[count] = interner.intern(source, i, end);
+                starts[count++] = i;
+                i = end;
+            }
+            return new Tokens(ids, count, starts, length);
+        }
+
+        private static int lineEnd(String text, int start) {
+            int newline = text.indexOf('\n', start);
+            return newline < 0 ? text.length() : newline + 1;
+        }
+
+        private static int wordEnd(String text, int start) {
+            int length = text.length();
+            int cp = text.codePointAt(start);
+            int end = start + Character.charCount(cp);
+            if (Character.isIdeographic(cp)) {
+                return end;
+            }
+            if (isWordPart(cp)) {
+                while (end < length) {
+                    cp = text.codePointAt(end);
+                    if (Character.isIdeographic(cp) || !isWordPart(cp)) {
+                        break;
+                    }
+                    end += Character.charCount(cp);
+                }
+            } else if (cp != '\n' && Character.isWhitespace(cp)) {
+                while (end < length && text.charAt(end) != '\n' && Character.isWhitespace(text.charAt(end))) {
+                    end++;
+                }
+            }
+            return end;
+        }
+
+        private static boolean isWordPart(int cp) {
+            if (Character.isLetterOrDigit(cp)) {
+                return true;
+            }
+            int type = Character.getType(cp);
+            return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                    || type == Character.ENCLOSING_MARK;
+        }
+    }
+
+    /**
+     * Gives equal ranges of either text the same dense id, without copying
+     * them out: an open-addressing table of ids, where each id remembers the
+     * first range it was given for.
+     */
+    private static final class Interner {
+        private final String[] texts;
+        private int[] slots = new int[1024];
+        private int[] hashes = new int[256];
+        private int[] sources = new int[256];
+        private int[] starts = new int[256];
+        private int[] ends = new int[256];
+        private int size;
+
+        Interner(String oldText, String newText) {
+            texts = new String[]{oldText, newText};
+        }
+
+        int size() {
+            return size;
+        }
+
+        int intern(int source, int start, int end) {
+            String text = texts[source];
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            hash *= 0x9E3779B9;
+
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            int length = end - start;
+            while (slots[slot] != 0) {
+                int id = slots[slot] - 1;
+                if (hashes[id] == hash && ends[id] - starts[id] == length
+                        && text.regionMatches(start, texts[sources[id]], starts[id], length)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                sources = Arrays.copyOf(sources, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            int id = size++;
+            hashes[id] = hash;
+            sources[id] = source;
+            starts[id] = start;
+            ends[id] = end;
+            slots[slot] = id + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = (hashes[id] ^ (hashes[id] >>> 16)) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+    }
+
+    // ==================== Comparing ====================
+
+    private static final class Differ {
+        private final int[] a;
+        private final int[] b;
+        private final int n;
+        private final int m;
+        // Tokens that are not part of the common subsequence
+        private final BitSet removed;
+        private final BitSet added;
+        private final long startNanos = System.nanoTime();
+        private final long budgetNanos;
+        private boolean complete = true;
+
+        // Occurrences of each id in the region being anchored, for patience
+        private final int[] countA;
+        private final int[] countB;
+        private final int[] lastA;
+
+        // Pending regions as (aLo, aHi, bLo, bHi)
+        private int[] stack = new int[64];
+        private int top;
+
+        Differ(int[] a, int n, int[] b, int m, int distinctIds, long timeoutMs) {
+            this.a = a;
+            this.n = n;
+            this.b = b;
+            this.m = m;
+            removed = new BitSet(n);
+            added = new BitSet(m);
+            budgetNanos = timeoutMs > 0 ? timeoutMs * 1000000L : Long.MAX_VALUE;
+            countA = distinctIds > 0 ? new int[distinctIds] : null;
+            countB = distinctIds > 0 ? new int[distinctIds] : null;
+            lastA = distinctIds > 0 ? new int[distinctIds] : null;
+        }
+
+        void run() {
+            push(0, n, 0, m);
+            while (top > 0) {
+                top -= 4;
+                compare(stack[top], stack[top + 1], stack[top + 2], stack[top + 3]);
+            }
+        }
+
+        private void push(int aLo, int aHi, int bLo, int bHi) {
+            if (aLo == aHi && bLo == bHi) {
+                return;
+            }
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = aLo;
+            stack[top++] = aHi;
+            stack[top++] = bLo;
+            stack[top++] = bHi;
+        }
+
+        private void compare(int aLo, int aHi, int bLo, int bHi) {
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                replace(aLo, aHi, bLo, bHi);
+                return;
+            }
+            if (expired()) {
+                complete = false;
+                replace(aLo, aHi, bLo, bHi);
+                return;
+            }
+            if (countA != null && splitAtUniqueTokens(aLo, aHi, bLo, bHi)) {
+                return;
+            }
+            bisect(aLo, aHi, bLo, bHi);
+        }
+
+        private void replace(int aLo, int aHi, int bLo, int bHi) {
+            removed.set(aLo, aHi);
+            added.set(bLo, bHi);
+        }
+
+        private boolean expired() {
+            ActionScheduler.checkCancelled();
+            return System.nanoTime() - startNanos > budgetNanos;
+        }
+
+        /**
+         * Pushes the gaps between the longest in-order run of tokens that are
+         * unique on both sides, if there are any.
+         */
+        private boolean splitAtUniqueTokens(int aLo, int aHi, int bLo, int bHi) {
+            for (int i = aLo; i < aHi; i++) {
+                countA[a[i]]++;
+                lastA[a[i]] = i;
+            }
+            for (int j = bLo; j < bHi; j++) {
+                countB[b[j]]++;
+            }
+            // Unique pairs in new-text order
+            int[] pairA = new int[Math.min(aHi - aLo, bHi - bLo)];
+            int[] pairB = new int[pairA.length];
+            int pairs = 0;
+            for (int j = bLo; j < bHi && pairs < pairA.length; j++) {
+                int id = b[j];
+                if (countA[id] == 1 && countB[id] == 1) {
+                    pairA[pairs] = lastA[id];
+                    pairB[pairs++] = j;
+                }
+            }
+            for (int i = aLo; i < aHi; i++) {
+                countA[a[i]] = 0;
+            }
+            for (int j = bLo; j < bHi; j++) {
+                countB[b[j]] = 0;
+            }
+            if (pairs == 0) {
+                return false;
+            }
+
+            // Longest run increasing in the old text, by patience sorting
+            int[] tails = new int[pairs];
+            int[] previous = new int[pairs];
+            int length = 0;
+            for (int p = 0; p < pairs; p++) {
+                int lo = 0;
+                int hi = length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (pairA[tails[mid]] < pairA[p]) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                previous[p] = lo > 0 ? tails[lo - 1] : -1;
+                tails[lo] = p;
+                if (lo == length) {
+                    length++;
+                }
+            }
+
+            int nextA = aHi;
+            int nextB = bHi;
+            for (int p = tails[length - 1]; p >= 0; p = previous[p]) {
+                push(pairA[p] + 1, nextA, pairB[p] + 1, nextB);
+                nextA = pairA[p];
+                nextB = pairB[p];
+            }
+            push(aLo, nextA, bLo, nextB);
+            return true;
+        }
+
+        /**
+         * Runs Myers' search from both ends of the region until the paths
+         * overlap, then pushes the two halves on either side of the overlap.
+         * The frontiers hold the furthest x reached on each diagonal k = x - y,
+         * the backward one counted from the region's end.
+         */
+        private void bisect(int aLo, int aHi, int bLo, int bHi) {
+            int n = aHi - aLo;
+            int m = bHi - bLo;
+            int maxD = (n + m + 1) / 2;
+            int delta = n - m;
+            // With an odd delta the paths can first overlap on a forward step
+            boolean front = (delta & 1) != 0;
+
+            int capacity = Math.min(maxD, INITIAL_FRONTIER);
+            int offset = capacity;
+            int[] forward = newFrontier(capacity);
+            int[] backward = newFrontier(capacity);
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+
+            // Diagonals that ran off the bottom or right edge are trimmed from the search
+            int k1Start = 0;
+            int k1End = 0;
+            int k2Start = 0;
+            int k2End = 0;
+            for (int d = 0; d < maxD; d++) {
+                if (d % EXPIRY_CHECK_INTERVAL == 0 && d > 0 && expired()) {
+                    complete = false;
+                    break;
+                }
+                if (d >= capacity) {
+                    int grown = Math.min(maxD, capacity * 2);
+                    forward = growFrontier(forward, capacity, grown);
+                    backward = growFrontier(backward, capacity, grown);
+                    capacity = grown;
+                    offset = grown;
+                }
+
+                for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                    int k1Offset = offset + k1;
+                    int x1;
+                    if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                        x1 = forward[k1Offset + 1];
+                    } else {
+                        x1 = forward[k1Offset - 1] + 1;
+                    }
+                    int y1 = x1 - k1;
+                    while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                        x1++;
+                        y1++;
+                    }
+                    forward[k1Offset] = x1;
+                    if (x1 > n) {
+                        k1End += 2;
+                    } else if (y1 > m) {
+                        k1Start += 2;
+                    } else if (front) {
+                        int k2Offset = offset + delta - k1;
+                        if (k2Offset >= 0 && k2Offset < backward.length && backward[k2Offset] != -1
+                                && x1 >= n - backward[k2Offset]) {
+                            split(aLo, aHi, bLo, bHi, x1, y1);
+                            return;
+                        }
+                    }
+                }
+
+                for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                    int k2Offset = offset + k2;
+                    int x2;
+                    if (k2 == -d || (k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1])) {
+                        x2 = backward[k2Offset + 1];
+                    } else {
+                        x2 = backward[k2Offset - 1] + 1;
+                    }
+                    int y2 = x2 - k2;
+                    while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                        x2++;
+                        y2++;
+                    }
+                    backward[k2Offset] = x2;
+                    if (x2 > n) {
+                        k2End += 2;
+                    } else if (y2 > m) {
+                        k2Start += 2;
+                    } else if (!front) {
+                        int k1Offset = offset + delta - k2;
+                        if (k1Offset >= 0 && k1Offset < forward.length && forward[k1Offset] != -1) {
+                            int x1 = forward[k1Offset];
+                            if (x1 >= n - x2) {
+                                split(aLo, aHi, bLo, bHi, x1, x1 - (delta - k2));
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+            // Out of time
+            replace(aLo, aHi, bLo, bHi);
+        }
+
+        private void split(int aLo, int aHi, int bLo, int bHi, int x, int y) {
+            push(aLo + x, aHi, bLo + y, bHi);
+            push(aLo, aLo + x, bLo, bLo + y);
+        }
+
+        private static int[] newFrontier(int capacity) {
+            int[] frontier = new int[2 * capacity + 2];
+            Arrays.fill(frontier, -1);
+            return frontier;
+        }
+
+        private static int[] growFrontier(int[] frontier, int capacity, int grown) {
+            int[] larger = newFrontier(grown);
+            System.arraycopy(frontier, 0, larger, grown - capacity, frontier.length);
+            return larger;
+        }
+
+        Result toResult(Tokens ta, Tokens tb, String granularity) {
+            List<Hunk> hunks = new ArrayList<>();
+            int i = 0;
+            int j = 0;
+            while (true) {
+                int nextA = removed.nextSetBit(i);
+                int nextB = added.nextSetBit(j);
+                int skip = Math.min(nextA < 0 ? n - i : nextA - i, nextB < 0 ? m - j : nextB - j);
+                i += skip;
+                j += skip;
+                if (i == n && j == m) {
+                    break;
+                }
+                int i0 = i;
+                int j0 = j;
+                if (i < n && removed.get(i)) {
+                    i = Math.min(removed.nextClearBit(i), n);
+                }
+                if (j < m && added.get(j)) {
+                    j = Math.min(added.nextClearBit(j), m);
+                }
+                hunks.add(new Hunk(ta.start(i0), ta.start(i), tb.start(j0), tb.start(j)));
+            }
+            return new Result(hunks, removed.cardinality(), added.cardinality(), complete, granularity);
+        }
+    }
+}
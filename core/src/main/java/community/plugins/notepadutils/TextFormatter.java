@@ -0,0 +1,391 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the formatText options as a compiled pipeline instead of one full
+ * copy of the text per option.
+ *
+ * Trimming, space and line-break collapsing and case conversion are
+ * character stages fused into a single pass that writes the output once.
+ * Sorting and de-duplication are line stages that share one split of that
+ * output, and reversal works in place on the final buffer. The result is
+ * identical to applying the options one after another in the order trim,
+ * extra spaces, line breaks, case, sort, duplicates, reverse.
+ *
+ * Inputs of at least {@link #PARALLEL_THRESHOLD} characters run the
+ * character stages in chunks split just after a newline, where every stage
+ * can resume from state derived from the preceding character.
+ */
+public class TextFormatter {
+    public static final int TRIM = 1;
+    public static final int REMOVE_EXTRA_SPACES = 1 << 1;
+    public static final int REMOVE_LINE_BREAKS = 1 << 2;
+    public static final int UPPER_CASE = 1 << 3;
+    public static final int LOWER_CASE = 1 << 4;
+    public static final int TITLE_CASE = 1 << 5;
+    public static final int SENTENCE_CASE = 1 << 6;
+    public static final int SORT_LINES = 1 << 7;
+    public static final int REMOVE_DUPLICATE_LINES = 1 << 8;
+    public static final int REVERSE = 1 << 9;
+    // Modifies REMOVE_DUPLICATE_LINES to keep each line's last occurrence
+    public static final int KEEP_LAST_DUPLICATE = 1 << 10;
+
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK = 1 << 18;
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 16;
+
+    private static ThreadPoolExecutor chunkPool;
+
+    private final int stages;
+    private final LineSorter sorter;
+    // Most chunks the character stages are split into
+    private final int chunkWorkers;
+    private final boolean charStages;
+    // ASCII letters convert the same in every locale but these, whose
+    // dotted and dotless i rules need String.toUpperCase/toLowerCase
+    private final boolean asciiCaseSafe;
+    private int duplicatesRemoved;
+
+    /**
+     * @param stages a combination of the stage flags; at most one case flag
+     */
+    public TextFormatter(int stages) {
+        this(stages, new LineSorter(LineSorter.MODE_LEXICAL, null, false));
+    }
+
+    /**
+     * @param sorter ordering used by {@link #SORT_LINES}
+     */
+    public TextFormatter(int stages, LineSorter sorter) {
+        this(stages, sorter, Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    TextFormatter(int stages, LineSorter sorter, int chunkWorkers) {
+        this.stages = stages;
+        this.sorter = sorter;
+        this.chunkWorkers = chunkWorkers;
+        charStages = (stages & (TRIM | REMOVE_EXTRA_SPACES | REMOVE_LINE_BREAKS
+                | UPPER_CASE | LOWER_CASE | TITLE_CASE | SENTENCE_CASE)) != 0;
+        String language = Locale.getDefault().getLanguage();
+        asciiCaseSafe = !"tr".equals(language) && !"az".equals(language) && !"lt".equals(language);
+    }
+
+    private boolean has(int stage) {
+        return (stages & stage) != 0;
+    }
+
+    /**
+     * Lines dropped by {@link #REMOVE_DUPLICATE_LINES} in the last
+     * {@link #format} call.
+     */
+    public int getDuplicatesRemoved() {
+        return duplicatesRemoved;
+    }
+
+    public String format(String text) {
+        duplicatesRemoved = 0;
+        StringBuilder out;
+        if (!charStages) {
+            out = new StringBuilder(text);
+        } else {
+            int from = 0;
+            int to = text.length();
+            if (has(TRIM)) {
+                // Same bounds as String.trim
+                while (from < to && text.charAt(from) <= ' ') from++;
+                while (to > from && text.charAt(to - 1) <= ' ') to--;
+            }
+            if (to - from >= PARALLEL_THRESHOLD) {
+                out = runChunked(text, from, to);
+            } else {
+                CharOutput chars = runChars(text, from, to, false);
+                out = chars.needsCaseFallback ? applyCaseFallback(chars.out) : chars.out;
+            }
+        }
+
+        if (has(SORT_LINES) || has(REMOVE_DUPLICATE_LINES)) {
+            out = runLines(out);
+        }
+        if (has(REVERSE)) {
+            // Keeps surrogate pairs in order, like the StringBuilder it replaces
+            out.reverse();
+        }
+        return out.toString();
+    }
+
+    // ==================== Character stages ====================
+
+    private static final class CharOutput {
+        StringBuilder out;
+        boolean needsCaseFallback;
+    }
+
+    /**
+     * @param afterNewline whether text[from - 1] is a '\n' left in place by
+     *                     the trim, as it is for every chunk but the first
+     */
+    private CharOutput runChars(String text, int from, int to, boolean afterNewline) {
+        boolean prevSpace = false;
+        boolean prevBreak = false;
+        boolean capitalizeNext = true;
+        if (afterNewline) {
+            prevBreak = true;
+            if (has(SENTENCE_CASE)) {
+                capitalizeNext = sentenceStateBefore(text, from);
+            }
+        }
+
+        boolean collapseSpaces = has(REMOVE_EXTRA_SPACES);
+        boolean removeBreaks = has(REMOVE_LINE_BREAKS);
+        boolean upper = has(UPPER_CASE);
+        boolean lower = has(LOWER_CASE);
+        boolean title = has(TITLE_CASE);
+        boolean sentence = has(SENTENCE_CASE);
+
+        CharOutput result = new CharOutput();
+        StringBuilder out = new StringBuilder(to - from);
+        int untilCheck = CANCEL_CHECK_INTERVAL;
+        for (int i = from; i < to; i++) {
+            if (--untilCheck == 0) {
+                ActionScheduler.checkCancelled();
+                untilCheck = CANCEL_CHECK_INTERVAL;
+            }
+            char c = text.charAt(i);
+
+            if (c == ' ') {
+                if (collapseSpaces && prevSpace) continue;
+                prevSpace = true;
+            } else {
+                prevSpace = false;
+            }
+
+            if (removeBreaks) {
+                if (c == '\r' || c == '\n') {
+                    if (prevBreak) continue;
+                    prevBreak = true;
+                    c = ' ';
+                } else {
+                    prevBreak = false;
+                }
+            }
+
+            if (upper || lower) {
+                if (c >= 0x80 || !asciiCaseSafe) {
+                    // Left for a String-level conversion of the whole output
+                    result.needsCaseFallback = true;
+                } else if (upper) {
+                    if (c >= 'a' && c <= 'z') c -= 32;
+                } else if (c >= 'A' && c <= 'Z') {
+                    c += 32;
+                }
+            } else if (title) {
+                if (Character.isWhitespace(c)) {
+                    capitalizeNext = true;
+                } else if (capitalizeNext) {
+                    c = Character.toUpperCase(c);
+                    capitalizeNext = false;
+                } else {
+                    c = Character.toLowerCase(c);
+                }
+            } else if (sentence) {
+                if (c == '.' || c == '!' || c == '?') {
+                    capitalizeNext = true;
+                } else if (capitalizeNext && Character.isLetter(c)) {
+                    c = Character.toUpperCase(c);
+                    capitalizeNext = false;
+                } else {
+                    c = Character.toLowerCase(c);
+                }
+            }
+            out.append(c);
+        }
+        result.out = out;
+        return result;
+    }
+
+    // The earlier stages only drop or rewrite spaces and line breaks, so the
+    // sentence state can be read from the original text: the last terminator
+    // or letter before the chunk decides it
+    private static boolean sentenceStateBefore(String text, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (c == '.' || c == '!' || c == '?') {
+                return true;
+            }
+            if (Character.isLetter(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private StringBuilder applyCaseFallback(StringBuilder out) {
+        String converted = has(UPPER_CASE) ? out.toString().toUpperCase() : out.toString().toLowerCase();
+        return new StringBuilder(converted);
+    }
+
+    private StringBuilder runChunked(final String text, int from, int to) {
+        int chunkCount = Math.min(chunkWorkers, Math.max(1, (to - from) / MIN_CHUNK));
+
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(from);
+        for (int k = 1; k < chunkCount; k++) {
+            int target = from + (int) ((long) (to - from) * k / chunkCount);
+            int cut = text.indexOf('\n', Math.max(target, bounds.get(bounds.size() - 1)));
+            if (cut < 0 || cut + 1 >= to) break;
+            bounds.add(cut + 1);
+        }
+        bounds.add(to);
+
+        if (bounds.size() == 2) {
+            CharOutput single = runChars(text, from, to, false);
+            return single.needsCaseFallback ? applyCaseFallback(single.out) : single.out;
+        }
+
+        ThreadPoolExecutor pool = chunkPool();
+        List<Future<CharOutput>> futures = new ArrayList<>();
+        for (int k = 1; k < bounds.size() - 1; k++) {
+            final int start = bounds.get(k);
+            final int end = bounds.get(k + 1);
+            futures.add(pool.submit(new Callable<CharOutput>() {
+                @Override
+                public CharOutput call() {
+                    return runChars(text, start, end, true);
+                }
+            }));
+        }
+
+        try {
+            // The calling worker takes the first chunk itself
+            CharOutput first = runChars(text, from, bounds.get(1), false);
+            StringBuilder out = first.out;
+            boolean needsCaseFallback = first.needsCaseFallback;
+            out.ensureCapacity(to - from);
+            for (Future<CharOutput> future : futures) {
+                CharOutput part = future.get();
+                out.append(part.out);
+                needsCaseFallback |= part.needsCaseFallback;
+            }
+            return needsCaseFallback ? applyCaseFallback(out) : out;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Request cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<CharOutput> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor chunkPool() {
+        if (chunkPool == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory factory = new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "NotepadUtils-format-" + threadCount.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            chunkPool = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), factory);
+            chunkPool.allowCoreThreadTimeOut(true);
+        }
+        return chunkPool;
+    }
+
+    // ==================== Line stages ====================
+
+    private StringBuilder runLines(StringBuilder text) {
+        String[] lines = splitLines(text);
+        if (has(SORT_LINES)) {
+            sorter.sort(lines);
+        }
+        if (!has(REMOVE_DUPLICATE_LINES)) {
+            return join(lines);
+        }
+
+        StringBuilder sb = new StringBuilder(text.length());
+        int kept = 0;
+        if (has(SORT_LINES)) {
+            // Every sort order is consistent with equals, so equal lines are
+            // adjacent and identical; which occurrence is kept cannot matter
+            for (int i = 0; i < lines.length; i++) {
+                if (i == 0 || !lines[i].equals(lines[i - 1])) {
+                    appendDistinct(sb, lines[i]);
+                    kept++;
+                }
+            }
+        } else {
+            String[] distinct = LineDeduper.dedupe(lines, has(KEEP_LAST_DUPLICATE));
+            for (String line : distinct) {
+                appendDistinct(sb, line);
+            }
+            kept = distinct.length;
+        }
+        duplicatesRemoved = lines.length - kept;
+        return sb;
+    }
+
+    // Separator only once something has been written, so a leading empty
+    // line is dropped just as before
+    private static void appendDistinct(StringBuilder sb, String line) {
+        if (sb.length() > 0) sb.append('\n');
+        sb.append(line);
+    }
+
+    /**
+     * Splits on '\n' with the semantics of {@code String.split("\n")}:
+     * trailing empty lines are dropped unless there is no newline at all.
+     */
+    private static String[] splitLines(StringBuilder text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (lines.isEmpty()) {
+            return new String[] { text.toString() };
+        }
+        lines.add(text.substring(start, length));
+        int count = lines.size();
+        while (count > 0 && lines.get(count - 1).isEmpty()) {
+            count--;
+        }
+        return lines.subList(0, count).toArray(new String[count]);
+    }
+
+    private static StringBuilder join(String[] lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) sb.append('\n');
+            sb.append(lines[i]);
+        }
+        return sb;
+    }
+}
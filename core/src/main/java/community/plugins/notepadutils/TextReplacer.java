@@ -0,0 +1,135 @@
+package community.plugins.notepadutils;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+/**
+ * Single-pass search and replace that records each replacement as an edit.
+ *
+ * Plain terms with a plain replacement use {@link LiteralSearcher}; anything
+ * else goes through {@link Matcher#appendReplacement}, so group references
+ * and escapes in the replacement behave exactly as in {@code replaceAll}.
+ * The edit list lets callers send or apply only the changed ranges instead
+ * of the rewritten text.
+ */
+public final class TextReplacer {
+    private TextReplacer() {
+    }
+
+    /**
+     * The rewritten text and the edits that produce it, in ascending order
+     * with offsets in the original text.
+     */
+    public static final class Result {
+        public final String text;
+        private final int[] ranges;
+        private final String[] replacements;
+        private final int count;
+
+        Result(String text, int[] ranges, String[] replacements, int count) {
+            this.text = text;
+            this.ranges = ranges;
+            this.replacements = replacements;
+            this.count = count;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public int start(int i) {
+            return ranges[i * 2];
+        }
+
+        public int end(int i) {
+            return ranges[i * 2 + 1];
+        }
+
+        public String replacement(int i) {
+            return replacements[i];
+        }
+    }
+
+    private static final class Builder {
+        int[] ranges = new int[32];
+        String[] replacements = new String[16];
+        int count;
+
+        void add(int start, int end, String replacement) {
+            if (count == replacements.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                replacements = Arrays.copyOf(replacements, replacements.length * 2);
+            }
+            ranges[count * 2] = start;
+            ranges[count * 2 + 1] = end;
+            replacements[count++] = replacement;
+        }
+
+        Result build(String text) {
+            return new Result(text, ranges, replacements, count);
+        }
+    }
+
+    /**
+     * @throws BudgetedCharSequence.BudgetExceededException if a regex runs
+     *         past timeoutMs or maxSteps (0 for no limit)
+     */
+    public static Result replace(PatternCache patterns, String text, String term, String replacement,
+                                 boolean replaceAll, boolean caseSensitive, boolean isRegex,
+                                 long timeoutMs, long maxSteps) {
+        Builder edits = new Builder();
+
+        if (!usesRegex(term, replacement, isRegex)) {
+            LiteralSearcher searcher = new LiteralSearcher(term, caseSensitive);
+            StringBuilder sb = null;
+            int copied = 0;
+            int at = searcher.indexOf(text, 0);
+            while (at >= 0) {
+                ActionScheduler.checkCancelled();
+                if (sb == null) sb = new StringBuilder(text.length());
+                sb.append(text, copied, at).append(replacement);
+                copied = at + searcher.length();
+                edits.add(at, copied, replacement);
+                at = replaceAll ? searcher.indexOf(text, copied) : -1;
+            }
+            return edits.build(sb == null ? text : sb.append(text, copied, text.length()).toString());
+        }
+
+        BudgetedCharSequence budgeted = new BudgetedCharSequence(text, timeoutMs, maxSteps);
+        Matcher matcher = patterns.get(term, caseSensitive, isRegex).matcher(budgeted);
+        StringBuffer sb = null;
+        int lastEnd = 0;
+        while (true) {
+            budgeted.checkDeadline();
+            if (!matcher.find()) {
+                break;
+            }
+            if (sb == null) sb = new StringBuffer(text.length());
+            // appendReplacement copies the gap since the last match, then the expanded replacement
+            int expandedStart = sb.length() + matcher.start() - lastEnd;
+            matcher.appendReplacement(sb, replacement);
+            edits.add(matcher.start(), matcher.end(), sb.substring(expandedStart));
+            lastEnd = matcher.end();
+            if (!replaceAll) {
+                break;
+            }
+        }
+        if (sb == null) {
+            return edits.build(text);
+        }
+        matcher.appendTail(sb);
+        return edits.build(sb.toString());
+    }
+
+    /**
+     * Whether {@link #replace} would go through the regex engine.
+     */
+    public static boolean usesRegex(String term, String replacement, boolean isRegex) {
+        return SearchMatcher.usesRegex(term, isRegex) || hasReplacementEscapes(replacement);
+    }
+
+    // '$' and '\' have meaning in a Matcher replacement string
+    static boolean hasReplacementEscapes(String replacement) {
+        return replacement.indexOf('$') >= 0 || replacement.indexOf('\\') >= 0;
+    }
+}
@@ -0,0 +1,548 @@
+package community.plugins.notepadutils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Single-pass text statistics.
+ *
+ * A scan over a range of text produces a {@link Summary} that can be combined
+ * with the summary of the following range, so a document split into
+ * line-aligned blocks can be re-counted by rescanning only the edited blocks.
+ * The final numbers match the previous regex-based implementation: whitespace
+ * follows the {@code \s} class of Android's regex engine and the word/sentence
+ * /paragraph rules mirror the original {@code trim}/{@code split} calls.
+ */
+public final class TextStats {
+    public int characterCount;
+    public int characterCountNoSpaces;
+    public int wordCount;
+    public int uniqueWordCount;
+    public int sentenceCount;
+    public int paragraphCount;
+    public int lineCount;
+    public double averageWordLength;
+    public double readingTimeMinutes;
+    public double speakingTimeMinutes;
+
+    /**
+     * Computes statistics for a whole text.
+     */
+    public static TextStats compute(CharSequence text) {
+        WordCounter words = new WordCounter();
+        Summary summary = scan(text, 0, text.length(), true, words, 1);
+        return finish(summary, text, words);
+    }
+
+    /**
+     * Whitespace as matched by {@code \s} on Android: [\t\n\f\r\p{Z}].
+     */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f'
+                || (c > 0x7F && Character.isSpaceChar(c));
+    }
+
+    private static boolean isSentenceDelimiter(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static boolean isAsciiAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static int toInt(boolean b) {
+        return b ? 1 : 0;
+    }
+
+    /**
+     * Counts for a range of text. Ranges that are not at the end of the
+     * document must end right after a line break.
+     */
+    static final class Summary {
+        long chars;
+        long nonSpace;
+        long runs;
+        long alphanumeric;
+
+        // Sentences: segments between runs of [.!?] that contain a non-trim character
+        boolean sentenceHasDelimiter;
+        boolean sentenceLeft;
+        long sentenceMiddle;
+        boolean sentenceRight;
+
+        // Lines, as counted by split("\n") (trailing empty lines dropped)
+        int lines;
+        int lastNonEmptyLine = -1;
+
+        // Paragraphs: groups of non-blank lines separated by blank lines
+        boolean allBlank = true;
+        int leadingBlank;
+        boolean leadingFirstContent;
+        int trailingBlank;
+        boolean trailingLastContent;
+        boolean singleGroup;
+        boolean firstGroupContent;
+        boolean lastGroupContent;
+        long middleGroups;
+
+        void appendLine(boolean nonEmpty, boolean blank, boolean content) {
+            if (lines == 0) {
+                if (blank) {
+                    allBlank = true;
+                    leadingBlank = 1;
+                    leadingFirstContent = content;
+                    trailingLastContent = content;
+                } else {
+                    allBlank = false;
+                    singleGroup = true;
+                    firstGroupContent = content;
+                    lastGroupContent = content;
+                }
+            } else if (allBlank) {
+                if (blank) {
+                    leadingBlank++;
+                    trailingLastContent = content;
+                } else {
+                    allBlank = false;
+                    trailingBlank = 0;
+                    singleGroup = true;
+                    firstGroupContent = content;
+                    lastGroupContent = content;
+                    middleGroups = 0;
+                }
+            } else if (blank) {
+                trailingBlank++;
+                trailingLastContent = content;
+            } else if (trailingBlank > 0) {
+                if (!singleGroup) {
+                    middleGroups += toInt(lastGroupContent);
+                }
+                singleGroup = false;
+                lastGroupContent = content;
+                trailingBlank = 0;
+            } else {
+                boolean merged = lastGroupContent || content;
+                if (singleGroup) {
+                    firstGroupContent = merged;
+                }
+                lastGroupContent = merged;
+            }
+
+            if (nonEmpty) {
+                lastNonEmptyLine = lines;
+            }
+            lines++;
+        }
+
+        int sentenceCount() {
+            if (!sentenceHasDelimiter) {
+                return toInt(sentenceLeft);
+            }
+            return (int) (toInt(sentenceLeft) + sentenceMiddle + toInt(sentenceRight));
+        }
+
+        int lineCount() {
+            return lines <= 1 ? 1 : lastNonEmptyLine + 1;
+        }
+
+        int paragraphGroups() {
+            if (lines == 0) {
+                return 0;
+            }
+            if (allBlank) {
+                return leadingBlank >= 3
+                        ? toInt(leadingFirstContent) + toInt(trailingLastContent)
+                        : toInt(leadingFirstContent || trailingLastContent);
+            }
+            boolean first = firstGroupContent;
+            boolean last = lastGroupContent;
+            int extra = 0;
+            if (leadingBlank == 1) {
+                first |= leadingFirstContent;
+            } else if (leadingBlank >= 2) {
+                extra += toInt(leadingFirstContent);
+            }
+            if (trailingBlank == 1) {
+                last |= trailingLastContent;
+            } else if (trailingBlank >= 2) {
+                extra += toInt(trailingLastContent);
+            }
+            if (singleGroup) {
+                return toInt(first || last) + extra;
+            }
+            return (int) (toInt(first) + middleGroups + toInt(last)) + extra;
+        }
+    }
+
+    /**
+     * Scans [start, end). When documentEnd is false the range must end right
+     * after a '\n'. Words are added to (or, with delta -1, removed from) the
+     * counter when it is not null.
+     */
+    static Summary scan(CharSequence text, int start, int end, boolean documentEnd, WordCounter words, int delta) {
+        Summary s = new Summary();
+        boolean inRun = false;
+        int runStart = 0;
+        boolean inDelimiter = false;
+        boolean segmentContent = false;
+        int lineLength = 0;
+        boolean lineBlank = true;
+        boolean lineContent = false;
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            boolean space = isSpace(c);
+
+            if (!space) {
+                s.nonSpace++;
+                if (!inRun) {
+                    inRun = true;
+                    runStart = i;
+                    s.runs++;
+                }
+                if (isAsciiAlphanumeric(c)) {
+                    s.alphanumeric++;
+                }
+            } else if (inRun) {
+                inRun = false;
+                if (words != null) {
+                    words.add(text, runStart, i, delta);
+                }
+            }
+
+            if (isSentenceDelimiter(c)) {
+                if (!inDelimiter) {
+                    inDelimiter = true;
+                    if (!s.sentenceHasDelimiter) {
+                        s.sentenceHasDelimiter = true;
+                        s.sentenceLeft = segmentContent;
+                    } else {
+                        s.sentenceMiddle += toInt(segmentContent);
+                    }
+                    segmentContent = false;
+                }
+            } else {
+                inDelimiter = false;
+                if (c > ' ') {
+                    segmentContent = true;
+                }
+            }
+
+            if (c == '\n') {
+                s.appendLine(lineLength > 0, lineBlank, lineContent);
+                lineLength = 0;
+                lineBlank = true;
+                lineContent = false;
+            } else {
+                lineLength++;
+                if (!space) {
+                    lineBlank = false;
+                }
+                if (c > ' ') {
+                    lineContent = true;
+                }
+            }
+        }
+
+        if (inRun && words != null) {
+            words.add(text, runStart, end, delta);
+        }
+        if (documentEnd) {
+            s.appendLine(lineLength > 0, lineBlank, lineContent);
+        }
+        if (s.sentenceHasDelimiter) {
+            s.sentenceRight = segmentContent;
+        } else {
+            s.sentenceLeft = segmentContent;
+        }
+        s.chars = end - start;
+        return s;
+    }
+
+    /**
+     * Summary of range A followed by range B.
+     */
+    static Summary combine(Summary a, Summary b) {
+        Summary r = new Summary();
+        r.chars = a.chars + b.chars;
+        r.nonSpace = a.nonSpace + b.nonSpace;
+        r.runs = a.runs + b.runs;
+        r.alphanumeric = a.alphanumeric + b.alphanumeric;
+
+        if (!a.sentenceHasDelimiter && !b.sentenceHasDelimiter) {
+            r.sentenceLeft = a.sentenceLeft || b.sentenceLeft;
+        } else if (!b.sentenceHasDelimiter) {
+            r.sentenceHasDelimiter = true;
+            r.sentenceLeft = a.sentenceLeft;
+            r.sentenceMiddle = a.sentenceMiddle;
+            r.sentenceRight = a.sentenceRight || b.sentenceLeft;
+        } else if (!a.sentenceHasDelimiter) {
+            r.sentenceHasDelimiter = true;
+            r.sentenceLeft = a.sentenceLeft || b.sentenceLeft;
+            r.sentenceMiddle = b.sentenceMiddle;
+            r.sentenceRight = b.sentenceRight;
+        } else {
+            r.sentenceHasDelimiter = true;
+            r.sentenceLeft = a.sentenceLeft;
+            r.sentenceMiddle = a.sentenceMiddle + b.sentenceMiddle + toInt(a.sentenceRight || b.sentenceLeft);
+            r.sentenceRight = b.sentenceRight;
+        }
+
+        r.lines = a.lines + b.lines;
+        r.lastNonEmptyLine = b.lastNonEmptyLine >= 0 ? a.lines + b.lastNonEmptyLine : a.lastNonEmptyLine;
+
+        if (a.lines == 0 || b.lines == 0) {
+            copyParagraphs(a.lines == 0 ? b : a, r);
+        } else if (a.allBlank && b.allBlank) {
+            r.allBlank = true;
+            r.leadingBlank = a.leadingBlank + b.leadingBlank;
+            r.leadingFirstContent = a.leadingFirstContent;
+            r.trailingLastContent = b.trailingLastContent;
+        } else if (a.allBlank) {
+            copyParagraphs(b, r);
+            r.leadingBlank = a.leadingBlank + b.leadingBlank;
+            r.leadingFirstContent = a.leadingFirstContent;
+        } else if (b.allBlank) {
+            copyParagraphs(a, r);
+            r.trailingBlank = a.trailingBlank + b.leadingBlank;
+            r.trailingLastContent = b.trailingLastContent;
+        } else {
+            r.allBlank = false;
+            r.leadingBlank = a.leadingBlank;
+            r.leadingFirstContent = a.leadingFirstContent;
+            r.trailingBlank = b.trailingBlank;
+            r.trailingLastContent = b.trailingLastContent;
+            if (a.trailingBlank + b.leadingBlank > 0) {
+                r.singleGroup = false;
+                r.firstGroupContent = a.firstGroupContent;
+                r.lastGroupContent = b.lastGroupContent;
+                r.middleGroups = a.middleGroups + b.middleGroups
+                        + (a.singleGroup ? 0 : toInt(a.lastGroupContent))
+                        + (b.singleGroup ? 0 : toInt(b.firstGroupContent));
+            } else {
+                boolean merged = a.lastGroupContent || b.firstGroupContent;
+                r.singleGroup = a.singleGroup && b.singleGroup;
+                r.firstGroupContent = a.singleGroup ? merged : a.firstGroupContent;
+                r.lastGroupContent = b.singleGroup ? merged : b.lastGroupContent;
+                if (a.singleGroup && b.singleGroup) {
+                    r.middleGroups = 0;
+                } else if (a.singleGroup) {
+                    r.middleGroups = b.middleGroups;
+                } else if (b.singleGroup) {
+                    r.middleGroups = a.middleGroups;
+                } else {
+                    r.middleGroups = a.middleGroups + b.middleGroups + toInt(merged);
+                }
+            }
+        }
+        return r;
+    }
+
+    private static void copyParagraphs(Summary from, Summary to) {
+        to.allBlank = from.allBlank;
+        to.leadingBlank = from.leadingBlank;
+        to.leadingFirstContent = from.leadingFirstContent;
+        to.trailingBlank = from.trailingBlank;
+        to.trailingLastContent = from.trailingLastContent;
+        to.singleGroup = from.singleGroup;
+        to.firstGroupContent = from.firstGroupContent;
+        to.lastGroupContent = from.lastGroupContent;
+        to.middleGroups = from.middleGroups;
+    }
+
+    /**
+     * Turns the summary of a whole document into statistics. Only the trimmed
+     * edges of the text are inspected here.
+     */
+    static TextStats finish(Summary s, CharSequence text, WordCounter words) {
+        TextStats stats = new TextStats();
+        int length = text.length();
+        stats.characterCount = length;
+        stats.characterCountNoSpaces = (int) s.nonSpace;
+        stats.sentenceCount = s.sentenceCount();
+        stats.lineCount = s.lineCount();
+
+        // Bounds of text.trim()
+        int first = 0;
+        while (first < length && text.charAt(first) <= ' ') first++;
+        int last = length - 1;
+        while (last >= first && text.charAt(last) <= ' ') last--;
+        boolean trimmedEmpty = first > last;
+
+        stats.paragraphCount = Math.max(s.paragraphGroups(), trimmedEmpty ? 0 : 1);
+
+        if (trimmedEmpty) {
+            stats.wordCount = 0;
+            stats.uniqueWordCount = 0;
+        } else {
+            // Runs cut away by trim() are not words, runs cut in half are shortened,
+            // and a trimmed text starting with whitespace yields an empty first word,
+            // unless it is all whitespace (e.g. NBSP), which splits into no words at all
+            EdgeRuns edges = new EdgeRuns(text, first, last + 1);
+            long runs = s.runs - edges.removedRuns;
+            stats.wordCount = runs == 0 ? 0 : (int) runs + toInt(isSpace(text.charAt(first)));
+            edges.apply(words, 1);
+            stats.uniqueWordCount = words.distinct();
+            edges.apply(words, -1);
+        }
+
+        double avgWordLength = 0;
+        if (stats.wordCount > 0) {
+            avgWordLength = (double) s.alphanumeric / stats.wordCount;
+        }
+        stats.averageWordLength = Math.round(avgWordLength * 100.0) / 100.0;
+        stats.readingTimeMinutes = Math.round(stats.wordCount / 200.0 * 100.0) / 100.0;
+        stats.speakingTimeMinutes = Math.round(stats.wordCount / 150.0 * 100.0) / 100.0;
+        return stats;
+    }
+
+    /**
+     * Word runs that touch the parts of the text removed by trim().
+     */
+    private static final class EdgeRuns {
+        final CharSequence text;
+        int[] removed = new int[8];
+        int removedCount;
+        int removedRuns;
+        int addStart = -1;
+        int addEnd;
+        int addStart2 = -1;
+        int addEnd2;
+
+        EdgeRuns(CharSequence text, int first, int end) {
+            this.text = text;
+            int length = text.length();
+
+            // Leading edge: runs in [0, first)
+            int i = 0;
+            while (i < first) {
+                if (isSpace(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int runStart = i;
+                while (i < length && !isSpace(text.charAt(i))) i++;
+                if (i <= first) {
+                    remove(runStart, i);
+                    removedRuns++;
+                } else {
+                    remove(runStart, i);
+                    int shortenedEnd = i > end ? end : i;
+                    addStart = first;
+                    addEnd = shortenedEnd;
+                }
+            }
+
+            // Trailing edge: runs in [end, length)
+            i = length;
+            while (i > end) {
+                if (isSpace(text.charAt(i - 1))) {
+                    i--;
+                    continue;
+                }
+                int runEnd = i;
+                while (i > 0 && !isSpace(text.charAt(i - 1))) i--;
+                if (i >= end) {
+                    remove(i, runEnd);
+                    removedRuns++;
+                } else if (i >= first) {
+                    remove(i, runEnd);
+                    addStart2 = i;
+                    addEnd2 = end;
+                }
+                // A run spanning both edges was already shortened above
+            }
+        }
+
+        private void remove(int start, int end) {
+            if (removedCount + 2 > removed.length) {
+                removed = Arrays.copyOf(removed, removed.length * 2);
+            }
+            removed[removedCount++] = start;
+            removed[removedCount++] = end;
+        }
+
+        void apply(WordCounter words, int sign) {
+            for (int k = 0; k < removedCount; k += 2) {
+                words.add(text, removed[k], removed[k + 1], -sign);
+            }
+            if (addStart >= 0) {
+                words.add(text, addStart, addEnd, sign);
+            }
+            if (addStart2 >= 0) {
+                words.add(text, addStart2, addEnd2, sign);
+            }
+        }
+    }
+
+    /**
+     * Multiset of lowercased words. Lookups use a reusable probe so a word
+     * that is already present costs no allocation.
+     */
+    static final class WordCounter {
+        private final HashMap<Object, int[]> counts = new HashMap<>();
+        private final Probe probe = new Probe();
+
+        void add(CharSequence text, int start, int end, int delta) {
+            if (start >= end) return;
+            probe.set(text, start, end);
+            int[] count = counts.get(probe);
+            if (count == null) {
+                if (delta <= 0) return;
+                char[] lower = new char[end - start];
+                for (int i = start; i < end; i++) {
+                    lower[i - start] = Character.toLowerCase(text.charAt(i));
+                }
+                counts.put(new String(lower), new int[]{delta});
+                return;
+            }
+            count[0] += delta;
+            if (count[0] <= 0) {
+                counts.remove(probe);
+            }
+        }
+
+        int distinct() {
+            return counts.size();
+        }
+
+        void clear() {
+            counts.clear();
+        }
+    }
+
+    private static final class Probe {
+        CharSequence text;
+        int start;
+        int end;
+        int hash;
+
+        void set(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            // Same as String.hashCode() of the lowercased word
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + Character.toLowerCase(text.charAt(i));
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof String)) return false;
+            String s = (String) o;
+            if (s.length() != end - start) return false;
+            for (int i = start; i < end; i++) {
+                if (Character.toLowerCase(text.charAt(i)) != s.charAt(i - start)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package community.plugins.notepadutils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text statistics for a tracked document, kept up to date from edit ranges.
+ *
+ * The text is split into line-aligned blocks of roughly {@link #TARGET_BLOCK_CHARS}
+ * characters, each with its own {@link TextStats.Summary}. An edit rescans
+ * only the blocks it touches; the document totals are then folded from the
+ * cached block summaries.
+ */
+public class TextStatsDocument {
+    static final int TARGET_BLOCK_CHARS = 2048;
+
+    private final StringBuilder text;
+    private final List<Block> blocks = new ArrayList<>();
+    private final TextStats.WordCounter words = new TextStats.WordCounter();
+
+    private static final class Block {
+        int length;
+        TextStats.Summary summary;
+
+        Block(int length, TextStats.Summary summary) {
+            this.length = length;
+            this.summary = summary;
+        }
+    }
+
+    public TextStatsDocument(String initialText) {
+        text = new StringBuilder(initialText);
+        blocks.addAll(buildBlocks(0, text.length()));
+    }
+
+    public synchronized int length() {
+        return text.length();
+    }
+
+    /**
+     * The live text. Callers reading it while other threads edit hold the
+     * document's lock for as long as they use it.
+     */
+    public synchronized CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Replaces [start, end) with insertedText and rescans the affected blocks.
+     */
+    public synchronized void applyEdit(int start, int end, String insertedText) {
+        if (start < 0 || end < start || end > text.length()) {
+            throw new IndexOutOfBoundsException("Invalid edit range: " + start + "-" + end);
+        }
+
+        // Locate the first and last blocks touched by the edit
+        int first = 0;
+        int firstStart = 0;
+        while (first < blocks.size() - 1 && firstStart + blocks.get(first).length <= start) {
+            firstStart += blocks.get(first).length;
+            first++;
+        }
+        int last = first;
+        int lastEnd = firstStart + (blocks.isEmpty() ? 0 : blocks.get(first).length);
+        while (last < blocks.size() - 1 && lastEnd < end) {
+            last++;
+            lastEnd += blocks.get(last).length;
+        }
+
+        // Remove the words of the old blocks while their text is still there
+        int offset = firstStart;
+        for (int i = first; i <= last && i < blocks.size(); i++) {
+            int blockLength = blocks.get(i).length;
+            TextStats.scan(text, offset, offset + blockLength, false, words, -1);
+            offset += blockLength;
+        }
+
+        text.replace(start, end, insertedText);
+        int delta = insertedText.length() - (end - start);
+        int regionEnd = lastEnd + delta;
+
+        // Keep the rescanned region line-aligned by absorbing following blocks
+        int next = last + 1;
+        while (next < blocks.size() && regionEnd > firstStart && text.charAt(regionEnd - 1) != '\n') {
+            Block absorbed = blocks.get(next);
+            TextStats.scan(text, regionEnd, regionEnd + absorbed.length, false, words, -1);
+            regionEnd += absorbed.length;
+            last = next;
+            next++;
+        }
+
+        List<Block> rebuilt = buildBlocks(firstStart, regionEnd);
+        for (int i = last; i >= first && i < blocks.size(); i--) {
+            blocks.remove(i);
+        }
+        blocks.addAll(first, rebuilt);
+    }
+
+    /**
+     * Statistics for the current text, folded from the block summaries.
+     */
+    public synchronized TextStats getStats() {
+        TextStats.Summary total = null;
+        for (Block block : blocks) {
+            total = total == null ? block.summary : TextStats.combine(total, block.summary);
+        }
+        if (total == null) {
+            total = TextStats.scan(text, 0, 0, true, null, 1);
+        }
+        return TextStats.finish(total, text, words);
+    }
+
+    private List<Block> buildBlocks(int start, int end) {
+        List<Block> result = new ArrayList<>();
+        int blockStart = start;
+        while (blockStart < end) {
+            int target = Math.min(end, blockStart + TARGET_BLOCK_CHARS);
+            int blockEnd = target;
+            if (blockEnd < end) {
+                // Extend to the end of the current line
+                while (blockEnd < end && text.charAt(blockEnd - 1) != '\n') {
+                    blockEnd++;
+                }
+            }
+            boolean documentEnd = blockEnd == text.length();
+            result.add(new Block(blockEnd - blockStart, TextStats.scan(text, blockStart, blockEnd, documentEnd, words, 1)));
+            blockStart = blockEnd;
+        }
+        if (result.isEmpty() && end == text.length() && start == end) {
+            // An empty final block still contributes the last (empty) line
+            result.add(new Block(0, TextStats.scan(text, start, end, true, words, 1)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,433 @@
+package community.plugins.notepadutils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Undo/redo history that stores edit deltas instead of full-text snapshots.
+ *
+ * Only the text at the current position is held in full. Every other state is
+ * reachable by applying reversible deltas (start offset, removed text, inserted
+ * text) kept in a ring buffer, so trimming the oldest state is O(1) and memory
+ * grows with the size of the edits rather than the size of the document.
+ *
+ * A cold history can be {@link #compact() compacted} into a deflated blob or
+ * {@link #spill(File) spilled} to a file. Position and size stay available
+ * without restoring it; anything that needs the text restores it first.
+ */
+public class UndoHistory {
+    // Rough per-delta bookkeeping cost (array slots, String headers)
+    private static final int DELTA_OVERHEAD_BYTES = 48;
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private int[] starts = new int[16];
+    private String[] removed = new String[16];
+    private String[] inserted = new String[16];
+    private int head = 0;
+    private int deltaCount = 0;
+
+    private String currentText = null;
+    private int position = -1;
+    private int maxStates = 100;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long deltaBytes = 0;
+
+    // Deltas and current text while compacted or spilled; null when resident
+    private byte[] compacted;
+    private File spillFile;
+
+    public synchronized void init(String initialText, int maxHistory, long maxHistoryBytes) {
+        clear();
+        currentText = initialText;
+        position = 0;
+        maxStates = Math.max(1, maxHistory);
+        maxBytes = maxHistoryBytes > 0 ? maxHistoryBytes : DEFAULT_MAX_BYTES;
+    }
+
+    /**
+     * Records a new state, computing the delta from the current text.
+     */
+    public synchronized void push(String text) {
+        restore();
+        if (currentText == null) {
+            currentText = text;
+            position = 0;
+            return;
+        }
+
+        String previous = currentText;
+        int prevLength = previous.length();
+        int newLength = text.length();
+        int limit = Math.min(prevLength, newLength);
+
+        int prefix = 0;
+        while (prefix < limit && previous.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && previous.charAt(prevLength - 1 - suffix) == text.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+
+        record(prefix, previous.substring(prefix, prevLength - suffix), text.substring(prefix, newLength - suffix), text);
+    }
+
+    /**
+     * Records a new state from a caller-supplied edit: the range [start, end)
+     * of the current text is replaced by insertedText.
+     */
+    public synchronized void pushEdit(int start, int end, String insertedText) {
+        restore();
+        if (currentText == null) {
+            throw new IllegalStateException("Undo history is not initialized");
+        }
+        if (start < 0 || end < start || end > currentText.length()) {
+            throw new IndexOutOfBoundsException("Invalid edit range: " + start + "-" + end);
+        }
+        String text = currentText.substring(0, start) + insertedText + currentText.substring(end);
+        record(start, currentText.substring(start, end), insertedText, text);
+    }
+
+    /**
+     * Like {@link #pushEdit}, but only when the current text equals
+     * expectedText, for edits computed off the caller's thread.
+     */
+    public synchronized boolean pushEditIfCurrent(String expectedText, int start, int end, String insertedText) {
+        restore();
+        if (currentText == null || !currentText.equals(expectedText)) {
+            return false;
+        }
+        pushEdit(start, end, insertedText);
+        return true;
+    }
+
+    public synchronized boolean undo() {
+        if (position <= 0) return false;
+        restore();
+        int slot = slot(position - 1);
+        currentText = apply(currentText, starts[slot], inserted[slot].length(), removed[slot]);
+        position--;
+        return true;
+    }
+
+    public synchronized boolean redo() {
+        if (position >= deltaCount) return false;
+        restore();
+        int slot = slot(position);
+        currentText = apply(currentText, starts[slot], removed[slot].length(), inserted[slot]);
+        position++;
+        return true;
+    }
+
+    public synchronized void clear() {
+        compacted = null;
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+        for (int i = 0; i < deltaCount; i++) {
+            int slot = slot(i);
+            removed[slot] = null;
+            inserted[slot] = null;
+        }
+        head = 0;
+        deltaCount = 0;
+        deltaBytes = 0;
+        currentText = null;
+        position = -1;
+    }
+
+    /**
+     * Text at the current position, or an empty string when uninitialized.
+     */
+    public synchronized String getCurrentText() {
+        restore();
+        return currentText != null ? currentText : "";
+    }
+
+    public synchronized boolean canUndo() {
+        return position > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return position >= 0 && position < deltaCount;
+    }
+
+    public synchronized int getPosition() {
+        return position;
+    }
+
+    /**
+     * Number of states in the history (deltas plus the base state).
+     */
+    public synchronized int size() {
+        return position < 0 ? 0 : deltaCount + 1;
+    }
+
+    /**
+     * Approximate heap used by the history, including the current text, as
+     * if it were resident.
+     */
+    public synchronized long getMemoryBytes() {
+        return deltaBytes + (currentText != null ? 2L * currentText.length() : 0);
+    }
+
+    /**
+     * Approximate heap the history holds right now: the full history when
+     * resident, the deflated blob when compacted, nothing when spilled.
+     */
+    public synchronized long getResidentBytes() {
+        if (spillFile != null) return 0;
+        if (compacted != null) return compacted.length;
+        return getMemoryBytes();
+    }
+
+    public synchronized boolean isCompacted() {
+        return compacted != null;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Deflates the deltas and current text into one blob and releases them.
+     *
+     * @return heap bytes freed, 0 if the history was empty or not resident
+     */
+    public synchronized long compact() {
+        if (compacted != null || spillFile != null || position < 0) {
+            return 0;
+        }
+        long before = getMemoryBytes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not compact undo history", e);
+        }
+        compacted = bytes.toByteArray();
+        releaseResident();
+        return Math.max(0, before - compacted.length);
+    }
+
+    /**
+     * Compacts the history if needed and moves the blob to file.
+     *
+     * @return heap bytes freed
+     */
+    public synchronized long spill(File file) throws IOException {
+        if (spillFile != null || position < 0) {
+            return 0;
+        }
+        long before = getResidentBytes();
+        compact();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(compacted);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            out.close();
+        }
+        compacted = null;
+        spillFile = file;
+        return before;
+    }
+
+    private void restore() {
+        if (compacted == null && spillFile == null) {
+            return;
+        }
+        try {
+            InputStream in = compacted != null ? new ByteArrayInputStream(compacted) : new FileInputStream(spillFile);
+            try {
+                read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not restore undo history", e);
+        }
+        compacted = null;
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    private void releaseResident() {
+        starts = new int[16];
+        removed = new String[16];
+        inserted = new String[16];
+        head = 0;
+        currentText = null;
+    }
+
+    private void write(OutputStream target) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(target, deflater, 1 << 16));
+        try {
+            byte[] buffer = new byte[1 << 14];
+            for (int i = 0; i < deltaCount; i++) {
+                int slot = slot(i);
+                out.writeInt(starts[slot]);
+                writeString(out, removed[slot], buffer);
+                writeString(out, inserted[slot], buffer);
+            }
+            writeString(out, currentText, buffer);
+        } finally {
+            out.close();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads what {@link #write} wrote; deltaCount, position and deltaBytes
+     * are still valid from before the history was compacted.
+     */
+    private void read(InputStream source) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            read(new DataInputStream(new InflaterInputStream(source, inflater, 1 << 16)));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        int capacity = 16;
+        while (capacity < deltaCount) {
+            capacity <<= 1;
+        }
+        int[] newStarts = new int[capacity];
+        String[] newRemoved = new String[capacity];
+        String[] newInserted = new String[capacity];
+        byte[] buffer = new byte[1 << 14];
+        for (int i = 0; i < deltaCount; i++) {
+            newStarts[i] = in.readInt();
+            newRemoved[i] = readString(in, buffer);
+            newInserted[i] = readString(in, buffer);
+        }
+        String text = readString(in, buffer);
+        starts = newStarts;
+        removed = newRemoved;
+        inserted = newInserted;
+        head = 0;
+        currentText = text;
+    }
+
+    // Strings are written as UTF-16 code units so unpaired surrogates survive
+    private static void writeString(DataOutputStream out, String s, byte[] buffer) throws IOException {
+        int length = s.length();
+        out.writeInt(length);
+        int chunk = buffer.length / 2;
+        for (int from = 0; from < length; from += chunk) {
+            int to = Math.min(length, from + chunk);
+            int b = 0;
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                buffer[b++] = (byte) (c >>> 8);
+                buffer[b++] = (byte) c;
+            }
+            out.write(buffer, 0, b);
+        }
+    }
+
+    private static String readString(DataInputStream in, byte[] buffer) throws IOException {
+        int length = in.readInt();
+        char[] chars = new char[length];
+        int chunk = buffer.length / 2;
+        for (int from = 0; from < length; from += chunk) {
+            int to = Math.min(length, from + chunk);
+            in.readFully(buffer, 0, 2 * (to - from));
+            int b = 0;
+            for (int i = from; i < to; i++) {
+                chars[i] = (char) (((buffer[b++] & 0xff) << 8) | (buffer[b++] & 0xff));
+            }
+        }
+        return new String(chars);
+    }
+
+    private void record(int start, String removedText, String insertedText, String newText) {
+        // Drop any redo states beyond the current position
+        while (deltaCount > position) {
+            deltaCount--;
+            int slot = slot(deltaCount);
+            deltaBytes -= cost(slot);
+            removed[slot] = null;
+            inserted[slot] = null;
+        }
+
+        if (deltaCount == starts.length) {
+            grow();
+        }
+        int slot = slot(deltaCount);
+        starts[slot] = start;
+        removed[slot] = removedText;
+        inserted[slot] = insertedText;
+        deltaBytes += cost(slot);
+        deltaCount++;
+        currentText = newText;
+        position = deltaCount;
+
+        // Limit history by state count and byte budget, always keeping the current state.
+        // Only deltas count against the budget, so a note larger than the budget keeps its undo.
+        while (deltaCount > 0 && (deltaCount + 1 > maxStates || deltaBytes > maxBytes)) {
+            deltaBytes -= cost(head);
+            removed[head] = null;
+            inserted[head] = null;
+            head = (head + 1) & (starts.length - 1);
+            deltaCount--;
+            position--;
+        }
+    }
+
+    private int slot(int index) {
+        return (head + index) & (starts.length - 1);
+    }
+
+    private long cost(int slot) {
+        return DELTA_OVERHEAD_BYTES + 2L * (removed[slot].length() + inserted[slot].length());
+    }
+
+    private void grow() {
+        int capacity = starts.length;
+        int[] newStarts = new int[capacity * 2];
+        String[] newRemoved = new String[capacity * 2];
+        String[] newInserted = new String[capacity * 2];
+        for (int i = 0; i < deltaCount; i++) {
+            int slot = slot(i);
+            newStarts[i] = starts[slot];
+            newRemoved[i] = removed[slot];
+            newInserted[i] = inserted[slot];
+        }
+        starts = newStarts;
+        removed = newRemoved;
+        inserted = newInserted;
+        head = 0;
+    }
+
+    private static String apply(String text, int start, int length, String replacement) {
+        StringBuilder sb = new StringBuilder(text.length() - length + replacement.length());
+        sb.append(text, 0, start);
+        sb.append(replacement);
+        sb.append(text, start + length, text.length());
+        return sb.toString();
+    }
+}
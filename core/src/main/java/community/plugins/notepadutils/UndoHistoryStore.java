@@ -0,0 +1,172 @@
+package community.plugins.notepadutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Undo histories keyed by document id, sharing one budget for the heap they
+ * hold. When the budget is exceeded the least recently used histories are
+ * compacted, and then spilled to files if a spill directory is set. They are
+ * never dropped; the next action on one restores it.
+ */
+public class UndoHistoryStore {
+    public static final long DEFAULT_BUDGET_BYTES = 32L * 1024 * 1024;
+
+    private static final String SPILL_PREFIX = "undo-";
+
+    // Least recently used first; get moves a history to the end, peek does not
+    private final LinkedHashMap<String, UndoHistory> histories = new LinkedHashMap<>();
+    private final File spillDir;
+    private final AtomicLong spillIds = new AtomicLong();
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+
+    /**
+     * @param spillDir private directory for spilled histories, or null to
+     *                 only compact. Files left in it by an earlier process
+     *                 are deleted.
+     */
+    public UndoHistoryStore(File spillDir) {
+        this.spillDir = spillDir;
+        deleteSpillFiles();
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes > 0 ? budgetBytes : DEFAULT_BUDGET_BYTES;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * The history for the id, created empty if there is none, and marked as
+     * most recently used.
+     */
+    public synchronized UndoHistory get(String id) {
+        UndoHistory history = histories.remove(id);
+        if (history == null) {
+            history = new UndoHistory();
+        }
+        histories.put(id, history);
+        return history;
+    }
+
+    /**
+     * The history for the id marked as most recently used, or null without
+     * creating one.
+     */
+    public synchronized UndoHistory find(String id) {
+        UndoHistory history = histories.remove(id);
+        if (history != null) {
+            histories.put(id, history);
+        }
+        return history;
+    }
+
+    /**
+     * The history for the id without creating it or marking it as used, or
+     * null.
+     */
+    public synchronized UndoHistory peek(String id) {
+        return histories.get(id);
+    }
+
+    /**
+     * Drops the history and its spill file.
+     */
+    public synchronized void remove(String id) {
+        UndoHistory history = histories.remove(id);
+        if (history != null) {
+            history.clear();
+        }
+    }
+
+    /**
+     * Brings the resident total back under the budget, least recently used
+     * first: compacting every other history before spilling any. The most
+     * recently used history is left resident.
+     */
+    public synchronized void trim() {
+        long resident = getResidentBytes();
+        if (resident <= budgetBytes || histories.size() < 2) {
+            return;
+        }
+        List<UndoHistory> coldest = new ArrayList<>(histories.values());
+        coldest.remove(coldest.size() - 1);
+
+        for (int i = 0; i < coldest.size() && resident > budgetBytes; i++) {
+            resident -= coldest.get(i).compact();
+        }
+        if (spillDir == null) {
+            return;
+        }
+        for (int i = 0; i < coldest.size() && resident > budgetBytes; i++) {
+            UndoHistory history = coldest.get(i);
+            if (history.isSpilled() || history.size() == 0) {
+                continue;
+            }
+            try {
+                spillDir.mkdirs();
+                resident -= history.spill(new File(spillDir, SPILL_PREFIX + spillIds.incrementAndGet()));
+            } catch (IOException e) {
+                // Stays compacted in memory
+                return;
+            }
+        }
+    }
+
+    public synchronized long getResidentBytes() {
+        long total = 0;
+        for (UndoHistory history : histories.values()) {
+            total += history.getResidentBytes();
+        }
+        return total;
+    }
+
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.budgetBytes = budgetBytes;
+        for (UndoHistory history : histories.values()) {
+            stats.historyCount++;
+            stats.residentBytes += history.getResidentBytes();
+            if (history.isCompacted()) {
+                stats.compactedCount++;
+            } else if (history.isSpilled()) {
+                stats.spilledCount++;
+            }
+        }
+        return stats;
+    }
+
+    public synchronized void clear() {
+        for (UndoHistory history : histories.values()) {
+            history.clear();
+        }
+        histories.clear();
+        deleteSpillFiles();
+    }
+
+    private void deleteSpillFiles() {
+        File[] files = spillDir != null ? spillDir.listFiles() : null;
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(SPILL_PREFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    public static final class Stats {
+        public int historyCount;
+        public int compactedCount;
+        public int spilledCount;
+        public long residentBytes;
+        public long budgetBytes;
+    }
+}
@@ -0,0 +1,85 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActionMetricsTest {
+    private static ActionMetrics.Snapshot only(ActionMetrics metrics) {
+        List<ActionMetrics.Snapshot> snapshots = metrics.snapshot();
+        assertEquals(1, snapshots.size());
+        return snapshots.get(0);
+    }
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        for (long micros = 0; micros < 100000; micros++) {
+            int index = ActionMetrics.bucketIndex(micros);
+            assertTrue(micros + "", micros <= ActionMetrics.bucketUpperBound(index));
+            assertTrue(micros + "", index == 0 || micros > ActionMetrics.bucketUpperBound(index - 1));
+        }
+        long max = (1L << 41) - 1;
+        assertEquals(max, ActionMetrics.bucketUpperBound(ActionMetrics.bucketIndex(max)));
+    }
+
+    @Test
+    public void countsErrorsAndBytes() {
+        ActionMetrics metrics = new ActionMetrics();
+        metrics.record("search", 5000, false, 10, 100);
+        metrics.record("search", 15000, true, 20, 0);
+        metrics.record("search", 1000, false, 30, 50);
+        ActionMetrics.Snapshot snapshot = only(metrics);
+        assertEquals("search", snapshot.action);
+        assertEquals(3, snapshot.count);
+        assertEquals(1, snapshot.errors);
+        assertEquals(60, snapshot.inputBytes);
+        assertEquals(150, snapshot.outputBytes);
+        assertEquals(21, snapshot.totalMicros);
+        assertEquals(15, snapshot.maxMicros);
+        assertEquals(5, snapshot.p50Micros);
+        assertEquals(15, snapshot.p99Micros);
+    }
+
+    @Test
+    public void percentilesAreWithinOneBucket() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            ActionMetrics metrics = new ActionMetrics();
+            long[] micros = new long[1 + random.nextInt(2000)];
+            for (int i = 0; i < micros.length; i++) {
+                // Spread over several orders of magnitude
+                micros[i] = (long) Math.exp(random.nextDouble() * 16);
+                metrics.record("format", micros[i] * 1000, false, 0, 0);
+            }
+            Arrays.sort(micros);
+            ActionMetrics.Snapshot snapshot = only(metrics);
+            assertEquals(micros[micros.length - 1], snapshot.maxMicros);
+            long[] reported = {snapshot.p50Micros, snapshot.p95Micros, snapshot.p99Micros};
+            double[] fractions = {0.50, 0.95, 0.99};
+            for (int p = 0; p < fractions.length; p++) {
+                long exact = micros[(int) Math.ceil(micros.length * fractions[p]) - 1];
+                assertTrue(exact + " vs " + reported[p], reported[p] >= exact);
+                assertTrue(exact + " vs " + reported[p], reported[p] <= exact + exact / 8);
+            }
+        }
+    }
+
+    @Test
+    public void resetForgetsActions() {
+        ActionMetrics metrics = new ActionMetrics();
+        metrics.record("a", 1000, false, 0, 0);
+        metrics.record("b", 1000, false, 0, 0);
+        assertEquals(2, metrics.snapshot().size());
+        long since = metrics.getSinceMillis();
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+        assertTrue(metrics.getSinceMillis() >= since);
+        metrics.record("a", -5, false, 0, 0);
+        assertEquals(0, only(metrics).maxMicros);
+    }
+}
@@ -0,0 +1,110 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActionSchedulerTest {
+    private final ActionScheduler scheduler = new ActionScheduler(4);
+    private final List<String> cancelled = Collections.synchronizedList(new ArrayList<String>());
+
+    private final ActionScheduler.Listener listener = new ActionScheduler.Listener() {
+        @Override
+        public void onCancelled(String requestId) {
+            cancelled.add(requestId);
+        }
+
+        @Override
+        public void onFailed(String requestId, Exception e) {
+        }
+    };
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void serialTasksRunOneAtATimeInOrder() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            scheduler.submit(null, null, "batch:doc", ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+                @Override
+                public void run() throws Exception {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.sleep(2);
+                    order.add(index);
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            }, listener);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void otherSerialKeysRunAlongside() throws Exception {
+        final CountDownLatch both = new CountDownLatch(2);
+        for (String key : new String[]{"batch:a", "batch:b"}) {
+            scheduler.submit(null, null, key, ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+                @Override
+                public void run() throws Exception {
+                    both.countDown();
+                    // Only returns once the task on the other key has started too
+                    assertTrue(both.await(5, TimeUnit.SECONDS));
+                }
+            }, listener);
+        }
+        assertTrue(both.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledWaitingTaskIsSkipped() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch last = new CountDownLatch(1);
+        final AtomicInteger ran = new AtomicInteger();
+        scheduler.submit("first", null, "batch:doc", ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+            @Override
+            public void run() throws Exception {
+                release.await();
+            }
+        }, listener);
+        scheduler.submit("second", null, "batch:doc", ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+            }
+        }, listener);
+        scheduler.submit("third", null, "batch:doc", ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+            @Override
+            public void run() {
+                last.countDown();
+            }
+        }, listener);
+
+        assertTrue(scheduler.cancel("second"));
+        assertEquals(Collections.singletonList("second"), cancelled);
+        release.countDown();
+        assertTrue(last.await(5, TimeUnit.SECONDS));
+        assertEquals(0, ran.get());
+    }
+}
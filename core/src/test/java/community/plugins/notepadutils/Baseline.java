@@ -0,0 +1,296 @@
+package community.plugins.notepadutils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The plugin's original String/regex implementations, kept as the reference
+ * the engines must agree with.
+ *
+ * They run on a desktop JVM, so the two places where its regex engine
+ * differs from Android's ICU are spelled out: {@code \s} is
+ * [\t\n\f\r\p{Z}] and case-insensitive matching folds Unicode case.
+ */
+final class Baseline {
+    static final String SPACE = "[\\t\\n\\f\\r\\p{Z}]";
+    static final int ANDROID_CASE_INSENSITIVE = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    private Baseline() {
+    }
+
+    /**
+     * getTextStats as it was, with {@code \s} spelled the way ICU reads it.
+     */
+    static TextStats textStats(String text) {
+        TextStats stats = new TextStats();
+        stats.characterCount = text.length();
+        stats.characterCountNoSpaces = text.replaceAll(SPACE, "").length();
+
+        String[] words = text.trim().split(SPACE + "+");
+        stats.wordCount = text.trim().isEmpty() ? 0 : words.length;
+
+        Set<String> uniqueWords = new HashSet<>();
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                uniqueWords.add(word.toLowerCase());
+            }
+        }
+        stats.uniqueWordCount = uniqueWords.size();
+
+        int sentenceCount = 0;
+        for (String s : text.split("[.!?]+")) {
+            if (!s.trim().isEmpty()) sentenceCount++;
+        }
+        stats.sentenceCount = sentenceCount;
+
+        int paragraphCount = 0;
+        for (String p : text.split("\\n" + SPACE + "*\\n")) {
+            if (!p.trim().isEmpty()) paragraphCount++;
+        }
+        stats.paragraphCount = Math.max(paragraphCount, text.trim().isEmpty() ? 0 : 1);
+        stats.lineCount = text.split("\\n").length;
+
+        double avgWordLength = 0;
+        if (stats.wordCount > 0) {
+            int totalChars = 0;
+            for (String word : words) {
+                totalChars += word.replaceAll("[^a-zA-Z0-9]", "").length();
+            }
+            avgWordLength = (double) totalChars / stats.wordCount;
+        }
+        stats.averageWordLength = Math.round(avgWordLength * 100.0) / 100.0;
+        stats.readingTimeMinutes = Math.round(stats.wordCount / 200.0 * 100.0) / 100.0;
+        stats.speakingTimeMinutes = Math.round(stats.wordCount / 150.0 * 100.0) / 100.0;
+        return stats;
+    }
+
+    static String hash(String algorithm, String text) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        return Hasher.toHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Match ranges of a plain search term, as {start, end} pairs.
+     */
+    static List<int[]> search(String text, String term, boolean caseSensitive) {
+        Pattern pattern = Pattern.compile(Pattern.quote(term), caseSensitive ? 0 : ANDROID_CASE_INSENSITIVE);
+        Matcher matcher = pattern.matcher(text);
+        List<int[]> matches = new ArrayList<>();
+        while (matcher.find()) {
+            matches.add(new int[]{matcher.start(), matcher.end()});
+        }
+        return matches;
+    }
+
+    static String replace(String text, String term, String replacement, boolean replaceAll, boolean caseSensitive) {
+        Pattern pattern = Pattern.compile(Pattern.quote(term), caseSensitive ? 0 : ANDROID_CASE_INSENSITIVE);
+        Matcher matcher = pattern.matcher(text);
+        return replaceAll ? matcher.replaceAll(replacement) : matcher.replaceFirst(replacement);
+    }
+
+    /**
+     * formatText as it was: one full copy of the text per option, applied in
+     * the order trim, extra spaces, line breaks, case, sort, duplicates,
+     * reverse. stages uses the {@link TextFormatter} flags.
+     */
+    static String format(String text, int stages) {
+        String formatted = text;
+        if ((stages & TextFormatter.TRIM) != 0) {
+            formatted = formatted.trim();
+        }
+        if ((stages & TextFormatter.REMOVE_EXTRA_SPACES) != 0) {
+            formatted = formatted.replaceAll(" +", " ");
+        }
+        if ((stages & TextFormatter.REMOVE_LINE_BREAKS) != 0) {
+            formatted = formatted.replaceAll("[\\r\\n]+", " ");
+        }
+        if ((stages & TextFormatter.UPPER_CASE) != 0) {
+            formatted = formatted.toUpperCase();
+        } else if ((stages & TextFormatter.LOWER_CASE) != 0) {
+            formatted = formatted.toLowerCase();
+        } else if ((stages & TextFormatter.TITLE_CASE) != 0) {
+            formatted = toTitleCase(formatted);
+        } else if ((stages & TextFormatter.SENTENCE_CASE) != 0) {
+            formatted = toSentenceCase(formatted);
+        }
+        if ((stages & TextFormatter.SORT_LINES) != 0) {
+            String[] lines = formatted.split("\n");
+            Arrays.sort(lines);
+            formatted = String.join("\n", lines);
+        }
+        if ((stages & TextFormatter.REMOVE_DUPLICATE_LINES) != 0) {
+            Set<String> seen = new HashSet<>();
+            StringBuilder sb = new StringBuilder();
+            for (String line : formatted.split("\n")) {
+                if (seen.add(line)) {
+                    if (sb.length() > 0) sb.append("\n");
+                    sb.append(line);
+                }
+            }
+            formatted = sb.toString();
+        }
+        if ((stages & TextFormatter.REVERSE) != 0) {
+            formatted = new StringBuilder(formatted).reverse().toString();
+        }
+        return formatted;
+    }
+
+    private static String toTitleCase(String text) {
+        StringBuilder result = new StringBuilder();
+        boolean capitalizeNext = true;
+        for (char c : text.toCharArray()) {
+            if (Character.isWhitespace(c)) {
+                capitalizeNext = true;
+                result.append(c);
+            } else if (capitalizeNext) {
+                result.append(Character.toUpperCase(c));
+                capitalizeNext = false;
+            } else {
+                result.append(Character.toLowerCase(c));
+            }
+        }
+        return result.toString();
+    }
+
+    private static String toSentenceCase(String text) {
+        StringBuilder result = new StringBuilder();
+        boolean capitalizeNext = true;
+        for (char c : text.toCharArray()) {
+            if (c == '.' || c == '!' || c == '?') {
+                capitalizeNext = true;
+                result.append(c);
+            } else if (capitalizeNext && Character.isLetter(c)) {
+                result.append(Character.toUpperCase(c));
+                capitalizeNext = false;
+            } else {
+                result.append(Character.toLowerCase(c));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Lines without duplicates in input order, keeping the first or last
+     * occurrence of each.
+     */
+    static List<String> dedupe(List<String> lines, boolean keepLast) {
+        List<String> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int n = 0; n < lines.size(); n++) {
+            int i = keepLast ? lines.size() - 1 - n : n;
+            if (seen.add(lines.get(i))) {
+                result.add(lines.get(i));
+            }
+        }
+        if (keepLast) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    // The original detectPatterns expressions, one find() loop each
+    private static final Pattern[] DETECT_PATTERNS = {
+            Pattern.compile("https?://[\\w\\-._~:/?#\\[\\]@!$&'()*+,;=%]+", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}"),
+            Pattern.compile("(\\+?\\d{1,3}[-.\\s]?)?(\\(?\\d{2,4}\\)?[-.\\s]?)?\\d{3,4}[-.\\s]?\\d{3,4}"),
+            Pattern.compile("#[a-zA-Z0-9_]+"),
+            Pattern.compile("@[a-zA-Z0-9_]+"),
+            Pattern.compile("\\d{1,2}[/\\-.]\\d{1,2}[/\\-.]\\d{2,4}|\\d{4}[/\\-.]\\d{1,2}[/\\-.]\\d{1,2}")
+    };
+
+    /**
+     * detectPatterns as it was, as {type, start, end} triples grouped by
+     * type in {@link PatternDetector} order.
+     */
+    static List<int[]> detect(String text) {
+        List<int[]> matches = new ArrayList<>();
+        for (int type = 0; type < DETECT_PATTERNS.length; type++) {
+            Matcher matcher = DETECT_PATTERNS[type].matcher(text);
+            while (matcher.find()) {
+                matches.add(new int[]{type, matcher.start(), matcher.end()});
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * The snapshot-list undo history.
+     */
+    static final class UndoList {
+        final List<String> history = new ArrayList<>();
+        int position = -1;
+        int maxHistorySize = 100;
+
+        void init(String initialText, int maxHistory) {
+            history.clear();
+            history.add(initialText);
+            position = 0;
+            maxHistorySize = maxHistory;
+        }
+
+        void push(String text) {
+            while (history.size() > position + 1) {
+                history.remove(history.size() - 1);
+            }
+            history.add(text);
+            position = history.size() - 1;
+            while (history.size() > maxHistorySize) {
+                history.remove(0);
+                position--;
+            }
+        }
+
+        boolean undo() {
+            if (position > 0) {
+                position--;
+                return true;
+            }
+            return false;
+        }
+
+        boolean redo() {
+            if (position < history.size() - 1) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void clear() {
+            history.clear();
+            position = -1;
+        }
+
+        String currentText() {
+            return position >= 0 ? history.get(position) : "";
+        }
+    }
+
+    static String randomText(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    static String randomText(Random random, String[] pieces, int maxPieces) {
+        int count = random.nextInt(maxPieces + 1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        return sb.toString();
+    }
+}
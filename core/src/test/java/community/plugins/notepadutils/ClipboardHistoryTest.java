@@ -0,0 +1,91 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClipboardHistoryTest {
+    private static List<String> texts(List<ClipboardHistory.Entry> entries) {
+        List<String> texts = new ArrayList<>();
+        for (ClipboardHistory.Entry entry : entries) {
+            texts.add(entry.text);
+        }
+        return texts;
+    }
+
+    private static List<String> list(String... texts) {
+        List<String> result = new ArrayList<>();
+        for (String text : texts) {
+            result.add(text);
+        }
+        return result;
+    }
+
+    @Test
+    public void newestComesFirst() {
+        ClipboardHistory history = new ClipboardHistory();
+        history.add("a", 1);
+        history.add("b", 2);
+        history.add("c", 3);
+        assertEquals(list("c", "b", "a"), texts(history.getPage(0, 0)));
+        assertEquals(list("b"), texts(history.getPage(1, 1)));
+        assertEquals(list("b", "a"), texts(history.getPage(1, 5)));
+        assertTrue(history.getPage(3, 5).isEmpty());
+    }
+
+    @Test
+    public void copyingAgainMovesToFront() {
+        ClipboardHistory history = new ClipboardHistory();
+        ClipboardHistory.Entry first = history.add("a", 1);
+        history.add("b", 2);
+        ClipboardHistory.Entry again = history.add("a", 3);
+        assertEquals(list("a", "b"), texts(history.getPage(0, 0)));
+        assertEquals(2, history.size());
+        assertEquals(4, history.getTotalBytes());
+        assertTrue(again.id > first.id);
+        assertEquals(3, history.getPage(0, 1).get(0).timestamp);
+    }
+
+    @Test
+    public void oldestDropPastEitherLimit() {
+        ClipboardHistory history = new ClipboardHistory();
+        history.setLimits(3, 1000);
+        for (String text : new String[]{"a", "b", "c", "d"}) {
+            history.add(text, 0);
+        }
+        assertEquals(list("d", "c", "b"), texts(history.getPage(0, 0)));
+
+        // Two bytes per char: "bb" and "cccc" are 12 bytes, over a budget of 10
+        history.setLimits(10, 10);
+        history.clear();
+        history.add("bb", 0);
+        history.add("cccc", 0);
+        assertEquals(list("cccc"), texts(history.getPage(0, 0)));
+        assertEquals(8, history.getTotalBytes());
+
+        // Lowering the limits trims right away
+        history.add("d", 0);
+        history.setLimits(1, 10);
+        assertEquals(list("d"), texts(history.getPage(0, 0)));
+        assertEquals(2, history.getTotalBytes());
+    }
+
+    @Test
+    public void emptyAndOversizedTextsAreNotKept() {
+        ClipboardHistory history = new ClipboardHistory();
+        history.setLimits(10, 4);
+        assertNull(history.add("", 0));
+        assertNull(history.add("abc", 0));
+        assertEquals(0, history.size());
+        history.add("ab", 0);
+        assertEquals(1, history.size());
+        history.clear();
+        assertEquals(0, history.size());
+        assertEquals(0, history.getTotalBytes());
+    }
+}
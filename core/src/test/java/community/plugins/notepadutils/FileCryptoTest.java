@@ -0,0 +1,176 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class FileCryptoTest {
+    private static final int SEGMENT = 64;
+    private static final int HEADER = 32;
+    private static final int SEALED_SEGMENT = SEGMENT + 16;
+
+    private File dir;
+    private File plain;
+    private File encrypted;
+    private File decrypted;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("crypto-test").toFile();
+        plain = new File(dir, "plain.txt");
+        encrypted = new File(dir, "plain.txt.enc");
+        decrypted = new File(dir, "decrypted.txt");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    // A cheap stand-in for PBKDF2: the tests only need the key to depend on password and salt
+    private static FileCrypto.KeyDeriver deriver(final String password) {
+        return new FileCrypto.KeyDeriver() {
+            @Override
+            public SecretKeySpec derive(byte[] salt) throws GeneralSecurityException {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+                digest.update(salt);
+                return new SecretKeySpec(digest.digest(), "AES");
+            }
+        };
+    }
+
+    private byte[] encrypt(int size) throws Exception {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Files.write(plain.toPath(), data);
+        FileCrypto.encrypt(plain, encrypted, deriver("secret"), SEGMENT);
+        return data;
+    }
+
+    private void assertDecryptFails(String message) throws Exception {
+        try {
+            FileCrypto.decrypt(encrypted, decrypted, deriver("secret"));
+            fail(message);
+        } catch (GeneralSecurityException expected) {
+            // Nothing is left behind, not even the partial output
+            assertFalse(message, decrypted.exists());
+            assertFalse(message, new File(decrypted.getPath() + ".part").exists());
+        }
+    }
+
+    private void tamper(byte[] sealed, String message) throws Exception {
+        Files.write(encrypted.toPath(), sealed);
+        assertDecryptFails(message);
+    }
+
+    @Test
+    public void roundTripsAroundSegmentBoundaries() throws Exception {
+        for (int size : new int[]{0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT + 5}) {
+            byte[] data = encrypt(size);
+            int segments = Math.max(1, (size + SEGMENT - 1) / SEGMENT);
+            assertEquals("size " + size, HEADER + size + 16L * segments, encrypted.length());
+
+            FileCrypto.Result result = FileCrypto.decrypt(encrypted, decrypted, deriver("secret"));
+            assertEquals(size, result.outputBytes);
+            assertArrayEquals("size " + size, data, Files.readAllBytes(decrypted.toPath()));
+            assertFalse(new File(decrypted.getPath() + ".part").exists());
+        }
+    }
+
+    @Test
+    public void roundTripsWithDefaultSegments() throws Exception {
+        byte[] data = new byte[FileCrypto.DEFAULT_SEGMENT_SIZE * 2 + 100];
+        new Random(1).nextBytes(data);
+        Files.write(plain.toPath(), data);
+        FileCrypto.encrypt(plain, encrypted, deriver("secret"), FileCrypto.DEFAULT_SEGMENT_SIZE);
+        FileCrypto.decrypt(encrypted, decrypted, deriver("secret"));
+        assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+    }
+
+    @Test
+    public void wrongPasswordFails() throws Exception {
+        encrypt(100);
+        try {
+            FileCrypto.decrypt(encrypted, decrypted, deriver("guess"));
+            fail();
+        } catch (GeneralSecurityException expected) {
+            assertFalse(decrypted.exists());
+        }
+    }
+
+    @Test
+    public void anyFlippedByteFails() throws Exception {
+        encrypt(3 * SEGMENT + 5);
+        byte[] sealed = Files.readAllBytes(encrypted.toPath());
+        for (int i = 0; i < sealed.length; i++) {
+            byte[] copy = sealed.clone();
+            copy[i] ^= 0x01;
+            tamper(copy, "flipped byte " + i);
+        }
+    }
+
+    @Test
+    public void truncationFails() throws Exception {
+        encrypt(3 * SEGMENT + 5);
+        byte[] sealed = Files.readAllBytes(encrypted.toPath());
+        tamper(Arrays.copyOf(sealed, sealed.length - 1), "last byte dropped");
+        // Cut at a segment boundary: the new last segment was not sealed as last
+        tamper(Arrays.copyOf(sealed, HEADER + 3 * SEALED_SEGMENT), "final segment dropped");
+        tamper(Arrays.copyOf(sealed, HEADER + SEALED_SEGMENT), "all but the first segment dropped");
+        tamper(Arrays.copyOf(sealed, HEADER), "only the header left");
+        tamper(new byte[0], "empty file");
+    }
+
+    @Test
+    public void reorderedOrExtendedSegmentsFail() throws Exception {
+        encrypt(3 * SEGMENT + 5);
+        byte[] sealed = Files.readAllBytes(encrypted.toPath());
+
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, HEADER, swapped, HEADER + SEALED_SEGMENT, SEALED_SEGMENT);
+        System.arraycopy(sealed, HEADER + SEALED_SEGMENT, swapped, HEADER, SEALED_SEGMENT);
+        tamper(swapped, "first two segments swapped");
+
+        byte[] repeated = Arrays.copyOf(sealed, sealed.length + SEALED_SEGMENT);
+        System.arraycopy(sealed, HEADER, repeated, sealed.length, SEALED_SEGMENT);
+        tamper(repeated, "segment appended");
+    }
+
+    @Test
+    public void failedDecryptKeepsExistingOutput() throws Exception {
+        encrypt(10);
+        byte[] sealed = Files.readAllBytes(encrypted.toPath());
+        sealed[sealed.length - 1] ^= 0x01;
+        Files.write(encrypted.toPath(), sealed);
+        Files.write(decrypted.toPath(), "previous".getBytes(StandardCharsets.UTF_8));
+        try {
+            FileCrypto.decrypt(encrypted, decrypted, deriver("secret"));
+            fail();
+        } catch (GeneralSecurityException expected) {
+            assertEquals("previous", new String(Files.readAllBytes(decrypted.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+}
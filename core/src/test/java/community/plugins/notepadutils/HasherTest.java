@@ -0,0 +1,92 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class HasherTest {
+    private static final String[] PIECES = {"a", "b", " ", "\n", "é", "€", "😀"};
+
+    private static String hashInChunks(String algorithm, String text, Random random) throws Exception {
+        Hasher hasher = Hasher.create(algorithm);
+        int at = 0;
+        while (at < text.length()) {
+            int end = Math.min(text.length(), at + random.nextInt(6));
+            hasher.update(text.substring(at, end));
+            at = end;
+        }
+        return hasher.finishHex();
+    }
+
+    @Test
+    public void matchesGetBytesDigest() throws Exception {
+        Random random = new Random(42);
+        for (String algorithm : new String[]{"MD5", "SHA-256", "SHA-512"}) {
+            for (int i = 0; i < 500; i++) {
+                String text = Baseline.randomText(random, PIECES, 40);
+                assertEquals(algorithm + " " + TextStatsTest.escape(text),
+                        Baseline.hash(algorithm, text), hashInChunks(algorithm, text, random));
+            }
+        }
+    }
+
+    @Test
+    public void surrogatePairSplitAcrossUpdates() throws Exception {
+        Hasher hasher = Hasher.create("SHA-256");
+        hasher.update("x\uD83D");
+        hasher.update("\uDE00y");
+        assertEquals(Baseline.hash("SHA-256", "x😀y"), hasher.finishHex());
+    }
+
+    @Test
+    public void loneSurrogatesHashLikeGetBytes() throws Exception {
+        String[] texts = {"\uD83D", "\uDE00", "\uD83D\uD83D", "\uD83D\uD83D\uDE00", "a\uDE00\uD83D", "\uD83D\uD83D\uD83D"};
+        for (String text : texts) {
+            Hasher hasher = Hasher.create("SHA-256");
+            hasher.update(text);
+            assertEquals(TextStatsTest.escape(text), Baseline.hash("SHA-256", text), hasher.finishHex());
+        }
+    }
+
+    @Test
+    public void loneSurrogatesAcrossUpdatesHashLikeGetBytes() throws Exception {
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            // Any char sequence, including unpaired and reversed surrogates
+            String text = Baseline.randomText(random, "a\u00E9\uD83D\uDE00", 20);
+            assertEquals(TextStatsTest.escape(text), Baseline.hash("SHA-256", text), hashInChunks("SHA-256", text, random));
+        }
+    }
+
+    @Test
+    public void xxHash64OfEmptyInput() throws Exception {
+        assertEquals("ef46db3751d8e999", Hasher.create(Hasher.XXH64).finishHex());
+    }
+
+    @Test
+    public void xxHash64KnownVectors() throws Exception {
+        Hasher hasher = Hasher.create(Hasher.XXH64);
+        hasher.update("abc");
+        assertEquals("44bc2cf5ad770999", hasher.finishHex());
+
+        // Longer than one 32-byte stripe, so the four-lane loop and the tail both run
+        String text = "Nobody inspects the spammish repetition";
+        hasher = Hasher.create(Hasher.XXH64);
+        hasher.update(text);
+        assertEquals("fbcea83c8a378bf1", hasher.finishHex());
+        assertEquals("fbcea83c8a378bf1", hashInChunks(Hasher.XXH64, text, new Random(1)));
+    }
+
+    @Test
+    public void xxHash64IsChunkIndependent() throws Exception {
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            String text = Baseline.randomText(random, PIECES, 100);
+            Hasher whole = Hasher.create(Hasher.XXH64);
+            whole.update(text);
+            assertEquals(whole.finishHex(), hashInChunks(Hasher.XXH64, text, random));
+        }
+    }
+}
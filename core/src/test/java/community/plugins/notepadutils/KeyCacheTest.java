@@ -0,0 +1,58 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class KeyCacheTest {
+    private static final byte[] SALT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY = new byte[32];
+
+    static {
+        for (int i = 0; i < KEY.length; i++) {
+            KEY[i] = (byte) i;
+        }
+    }
+
+    @Test
+    public void returnsKeyForSamePasswordAndSalt() throws Exception {
+        KeyCache cache = new KeyCache(4, 60000);
+        cache.put("secret", SALT, KEY);
+        SecretKeySpec key = cache.get("secret", SALT);
+        assertNotNull(key);
+        assertArrayEquals(KEY, key.getEncoded());
+        assertNull(cache.get("Secret", SALT));
+        assertNull(cache.get("secret", "fedcba9876543210".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void passwordAndSaltBoundaryIsUnambiguous() throws Exception {
+        KeyCache cache = new KeyCache(4, 60000);
+        cache.put("a\0", SALT, KEY);
+        byte[] shiftedSalt = new byte[SALT.length + 1];
+        System.arraycopy(SALT, 0, shiftedSalt, 1, SALT.length);
+        assertNull(cache.get("a", shiftedSalt));
+    }
+
+    @Test
+    public void expiredAndEvictedKeysAreGone() throws Exception {
+        KeyCache expiring = new KeyCache(4, 0);
+        expiring.put("secret", SALT, KEY);
+        assertNull(expiring.get("secret", SALT));
+
+        KeyCache small = new KeyCache(1, 60000);
+        small.put("first", SALT, KEY);
+        small.put("second", SALT, KEY);
+        assertNull(small.get("first", SALT));
+        assertNotNull(small.get("second", SALT));
+
+        small.wipe();
+        assertNull(small.get("second", SALT));
+    }
+}
@@ -0,0 +1,133 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LineDeduperTest {
+    private static final String[] PIECES = {"a", "b", "é", " ", "\r"};
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dedupe-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add(Baseline.randomText(random, PIECES, 3));
+        }
+        return lines;
+    }
+
+    @Test
+    public void matchesBaseline() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            List<String> lines = randomLines(random, random.nextInt(40));
+            for (boolean keepLast : new boolean[]{false, true}) {
+                String[] expected = Baseline.dedupe(lines, keepLast).toArray(new String[0]);
+                assertArrayEquals(lines + " keepLast " + keepLast, expected,
+                        LineDeduper.dedupe(lines.toArray(new String[0]), keepLast));
+            }
+        }
+    }
+
+    @Test
+    public void manyDistinctLinesGrowTheTable() {
+        String[] lines = new String[100000];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "line " + (i % 30000);
+        }
+        String[] unique = LineDeduper.dedupe(lines, false);
+        assertEquals(30000, unique.length);
+        assertEquals("line 29999", unique[29999]);
+    }
+
+    private String dedupeFile(String content, boolean keepLast, long[] counts) throws IOException {
+        File input = new File(dir, "input.txt");
+        File output = new File(dir, "output.txt");
+        Files.write(input.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        LineDeduper.FileResult result = LineDeduper.dedupeFile(input, output, keepLast);
+        counts[0] = result.lineCount;
+        counts[1] = result.uniqueCount;
+        return new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void fileMatchesBaseline() throws IOException {
+        Random random = new Random(7);
+        long[] counts = new long[2];
+        for (int i = 0; i < 300; i++) {
+            List<String> lines = randomLines(random, random.nextInt(200));
+            boolean finalBreak = random.nextBoolean();
+            String content = String.join("\n", lines) + (finalBreak && !lines.isEmpty() ? "\n" : "");
+            // Without a final break, a trailing empty line is no line at all
+            List<String> read = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+            if (read.get(read.size() - 1).isEmpty()) {
+                read.remove(read.size() - 1);
+            }
+            for (boolean keepLast : new boolean[]{false, true}) {
+                List<String> expected = Baseline.dedupe(read, keepLast);
+                StringBuilder sb = new StringBuilder();
+                for (String line : expected) {
+                    sb.append(line).append('\n');
+                }
+                assertEquals(TextStatsTest.escape(content), sb.toString(), dedupeFile(content, keepLast, counts));
+                assertEquals(read.size(), counts[0]);
+                assertEquals(expected.size(), counts[1]);
+            }
+        }
+    }
+
+    @Test
+    public void fileComparesLineEndingsExactly() throws IOException {
+        long[] counts = new long[2];
+        assertEquals("a\r\na\nb\n", dedupeFile("a\r\na\na\r\nb\nb", false, counts));
+        assertEquals(5, counts[0]);
+        assertEquals(3, counts[1]);
+        assertEquals("a\na\r\nb\n", dedupeFile("a\r\na\na\r\nb\nb", true, counts));
+        assertEquals("", dedupeFile("", false, counts));
+        assertEquals(0, counts[0]);
+        assertEquals("\n", dedupeFile("\n\n\n", true, counts));
+        assertEquals(3, counts[0]);
+    }
+
+    @Test
+    public void fileHandlesLongLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] longLine = new char[200000];
+        Arrays.fill(longLine, 'x');
+        String line = new String(longLine);
+        content.append(line).append('\n').append("short\n").append(line).append('\n').append(line).append('y');
+        long[] counts = new long[2];
+        assertEquals(line + "\nshort\n" + line + "y\n", dedupeFile(content.toString(), false, counts));
+        assertEquals(4, counts[0]);
+        assertEquals(3, counts[1]);
+    }
+}
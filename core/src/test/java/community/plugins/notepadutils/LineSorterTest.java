@@ -0,0 +1,178 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineSorterTest {
+    private static final String[] MODES = {LineSorter.MODE_LEXICAL, LineSorter.MODE_NATURAL,
+            LineSorter.MODE_LOCALE, LineSorter.MODE_CASE_INSENSITIVE};
+    private static final String ALPHABET = "aAbB09 é-";
+    // LineSorter merges at most this many runs at once
+    private static final int MAX_FAN_IN = 64;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("sort-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static String[] randomLines(Random random, int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = Baseline.randomText(random, ALPHABET, 8);
+        }
+        return lines;
+    }
+
+    @Test
+    public void lexicalMatchesArraysSort() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            String[] lines = randomLines(random, random.nextInt(50));
+            String[] expected = lines.clone();
+            Arrays.sort(expected);
+            new LineSorter(LineSorter.MODE_LEXICAL, null, false).sort(lines);
+            assertArrayEquals(expected, lines);
+        }
+    }
+
+    @Test
+    public void everyModeSortsByItsComparator() {
+        Random random = new Random(3);
+        for (String mode : MODES) {
+            for (boolean reverse : new boolean[]{false, true}) {
+                LineSorter sorter = new LineSorter(mode, Locale.FRENCH, reverse);
+                Comparator<String> order = sorter.comparator();
+                for (int i = 0; i < 100; i++) {
+                    String[] lines = randomLines(random, random.nextInt(60));
+                    String[] expected = lines.clone();
+                    Arrays.sort(expected, order);
+                    sorter.sort(lines);
+                    assertArrayEquals(mode + (reverse ? " reversed" : ""), expected, lines);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void orderingsAreConsistentWithEquals() {
+        Random random = new Random(5);
+        for (String mode : MODES) {
+            Comparator<String> order = new LineSorter(mode, Locale.FRENCH, false).comparator();
+            for (int i = 0; i < 2000; i++) {
+                String a = Baseline.randomText(random, ALPHABET, 4);
+                String b = Baseline.randomText(random, ALPHABET, 4);
+                assertEquals(mode + " " + a + " / " + b, a.equals(b), order.compare(a, b) == 0);
+                assertEquals(Integer.signum(order.compare(a, b)), -Integer.signum(order.compare(b, a)));
+            }
+        }
+    }
+
+    @Test
+    public void naturalOrderComparesNumbers() {
+        String[] lines = {"file10", "file9", "file010", "file2", "File1", "file"};
+        new LineSorter(LineSorter.MODE_NATURAL, null, false).sort(lines);
+        assertArrayEquals(new String[]{"File1", "file", "file2", "file9", "file010", "file10"}, lines);
+
+        String[] mixed = {"b", "B", "a", "A"};
+        new LineSorter(LineSorter.MODE_CASE_INSENSITIVE, null, false).sort(mixed);
+        assertArrayEquals(new String[]{"A", "a", "B", "b"}, mixed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownModeIsRejected() {
+        new LineSorter("random", null, false);
+    }
+
+    private void assertFileSortMatchesMemory(String mode, boolean reverse, String content, int runChars) throws IOException {
+        File input = new File(dir, "input.txt");
+        File output = new File(dir, "output.txt");
+        Files.write(input.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        LineSorter sorter = new LineSorter(mode, Locale.FRENCH, reverse);
+        LineSorter.FileResult result = sorter.sortFile(input, output, dir, runChars);
+
+        List<String> lines = new ArrayList<>();
+        for (String line : content.split("\r\n|\r|\n", -1)) {
+            lines.add(line);
+        }
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+            // Like BufferedReader.readLine, a final line break ends the last line
+            lines.remove(lines.size() - 1);
+        }
+        String[] expected = lines.toArray(new String[0]);
+        sorter.sort(expected);
+        StringBuilder sb = new StringBuilder();
+        for (String line : expected) {
+            sb.append(line).append('\n');
+        }
+        assertEquals(mode, sb.toString(), new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+        assertEquals(expected.length, result.lineCount);
+        // Only the input and output are left; every run was removed
+        assertEquals(2, dir.listFiles().length);
+    }
+
+    @Test
+    public void fileSortMatchesInMemorySort() throws IOException {
+        Random random = new Random(11);
+        String[] endings = {"\n", "\r\n", "\r"};
+        for (String mode : MODES) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 3000; i++) {
+                content.append(Baseline.randomText(random, ALPHABET, 8)).append(endings[random.nextInt(endings.length)]);
+            }
+            // Small runs force more than one round of merging
+            assertFileSortMatchesMemory(mode, random.nextBoolean(), content.toString(), 100);
+        }
+    }
+
+    @Test
+    public void smallFileSortsInOneRun() throws IOException {
+        assertFileSortMatchesMemory(LineSorter.MODE_LEXICAL, false, "b\na\nc", LineSorter.DEFAULT_RUN_CHARS);
+        assertFileSortMatchesMemory(LineSorter.MODE_LEXICAL, false, "", LineSorter.DEFAULT_RUN_CHARS);
+    }
+
+    @Test
+    public void fileSortReportsRuns() throws IOException {
+        File input = new File(dir, "input.txt");
+        File output = new File(dir, "output.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("line ").append(999 - i).append('\n');
+        }
+        Files.write(input.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        LineSorter.FileResult result = new LineSorter(LineSorter.MODE_NATURAL, null, false).sortFile(input, output, dir, 200);
+        assertTrue(result.runCount > MAX_FAN_IN);
+        List<String> sorted = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        assertEquals("line 0", sorted.get(0));
+        assertEquals("line 999", sorted.get(999));
+    }
+}
@@ -0,0 +1,178 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NoteIndexTest {
+    private static final String PHRASE_NOTE = "The quick brown fox";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("note-index-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void assertPhraseHit(NoteIndex index) {
+        NoteIndex.Result result = index.search("\"quick brown\"", 10, true, 5);
+        assertEquals(1, result.totalHits);
+        NoteIndex.Hit hit = result.hits.get(0);
+        assertEquals("phrase", hit.id);
+        assertEquals(1, hit.matchStarts.length);
+        assertEquals(PHRASE_NOTE.indexOf("quick"), hit.matchStarts[0]);
+        assertEquals(PHRASE_NOTE.indexOf(" fox"), hit.matchEnds[0]);
+    }
+
+    @Test
+    public void phraseMatchesAdjacentTermsOnly() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("phrase", PHRASE_NOTE);
+        index.indexDocument("apart", "brown and quick");
+        index.indexDocument("one", "quick");
+        assertPhraseHit(index);
+
+        index.commit();
+        assertPhraseHit(new NoteIndex(dir));
+    }
+
+    @Test
+    public void phraseWithMissingTermFindsNothing() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("phrase", PHRASE_NOTE);
+        assertEquals(0, index.search("\"quick purple\"", 10, true, 5).totalHits);
+    }
+
+    private static Set<String> ids(NoteIndex.Result result) {
+        Set<String> ids = new HashSet<>();
+        for (NoteIndex.Hit hit : result.hits) {
+            ids.add(hit.id);
+        }
+        assertEquals(result.totalHits, ids.size());
+        return ids;
+    }
+
+    private static Set<String> setOf(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void reindexingReplacesEarlierVersion() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("note", "apple pie");
+        index.commit();
+        index.indexDocument("note", "banana bread");
+
+        assertEquals(1, index.getDocumentCount());
+        assertEquals(0, index.search("apple", 10, true, 5).totalHits);
+        assertEquals(setOf("note"), ids(index.search("banana", 10, true, 5)));
+
+        index.commit();
+        NoteIndex reopened = new NoteIndex(dir);
+        assertEquals(1, reopened.getDocumentCount());
+        assertEquals(0, reopened.search("apple", 10, true, 5).totalHits);
+        assertEquals(setOf("note"), ids(reopened.search("banana", 10, true, 5)));
+    }
+
+    @Test
+    public void removalSurvivesCommitAndReopen() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("kept", "shared words");
+        index.indexDocument("removed", "shared words");
+        index.indexDocument("buffered", "shared words");
+        index.commit();
+        index.indexDocument("unsaved", "shared words");
+
+        assertTrue(index.removeDocument("removed"));
+        assertTrue(index.removeDocument("unsaved"));
+        assertFalse(index.removeDocument("missing"));
+        index.commit();
+
+        NoteIndex reopened = new NoteIndex(dir);
+        assertFalse(reopened.containsDocument("removed"));
+        assertFalse(reopened.containsDocument("unsaved"));
+        assertEquals(setOf("kept", "buffered"), ids(reopened.search("shared", 10, true, 5)));
+    }
+
+    @Test
+    public void segmentsMergePastLimit() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        Set<String> all = new HashSet<>();
+        for (int i = 0; i <= NoteIndex.MAX_SEGMENTS; i++) {
+            index.indexDocument("note-" + i, "common word" + i);
+            all.add("note-" + i);
+            index.commit();
+            assertEquals(i < NoteIndex.MAX_SEGMENTS ? i + 1 : 1, index.getSegmentCount());
+        }
+        // The merged segment replaces the others on disk
+        assertEquals(2, dir.listFiles().length);
+
+        NoteIndex reopened = new NoteIndex(dir);
+        assertEquals(1, reopened.getSegmentCount());
+        assertEquals(all, ids(reopened.search("common", 20, true, 5)));
+        assertEquals(setOf("note-3"), ids(reopened.search("word3", 20, true, 5)));
+    }
+
+    @Test
+    public void prefixMatchesExpandedTerms() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("apple", "an apple a day");
+        index.indexDocument("sauce", "applesauce on the side");
+        index.indexDocument("apricot", "apricot jam");
+        assertEquals(setOf("apple", "sauce"), ids(index.search("app*", 10, true, 5)));
+
+        index.commit();
+        assertEquals(setOf("apple", "sauce", "apricot"), ids(new NoteIndex(dir).search("ap*", 10, true, 5)));
+    }
+
+    @Test
+    public void matchAnyTakesNotesWithSomeClauses() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("red-fish", "red fish");
+        index.indexDocument("blue-fish", "blue fish");
+        index.indexDocument("red-car", "red car");
+        assertEquals(0, index.search("red blue", 10, true, 5).totalHits);
+        assertEquals(setOf("red-fish", "blue-fish", "red-car"), ids(index.search("red blue", 10, false, 5)));
+        assertEquals(setOf("red-fish"), ids(index.search("red fish", 10, true, 5)));
+        // A clause no note has does not stop the others matching
+        assertEquals(setOf("red-car"), ids(index.search("car missing", 10, false, 5)));
+    }
+
+    @Test
+    public void openingDeletesUnlistedFiles() throws IOException {
+        NoteIndex index = new NoteIndex(dir);
+        index.indexDocument("note", "durable text");
+        index.commit();
+        // Left behind by a commit that was interrupted
+        assertTrue(new File(dir, "segment-999").createNewFile());
+        assertTrue(new File(dir, "manifest.tmp").createNewFile());
+
+        NoteIndex reopened = new NoteIndex(dir);
+        assertFalse(new File(dir, "segment-999").exists());
+        assertFalse(new File(dir, "manifest.tmp").exists());
+        assertEquals(2, dir.listFiles().length);
+        assertEquals(setOf("note"), ids(reopened.search("durable", 10, true, 5)));
+    }
+}
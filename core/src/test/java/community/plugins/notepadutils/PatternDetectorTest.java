@@ -0,0 +1,133 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PatternDetectorTest {
+    private static final String[] PIECES = {"http://", "HTTPS://", "htt", "a", "Z", "1", "12", "2024", "555",
+            "-", "/", ".", "@", "#", "_", "%", " ", "\n", "\t", "(", ")", "+", ".com", "é", "٣"};
+
+    private static List<String> triples(PatternDetector.Matches matches) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < matches.size(); i++) {
+            result.add(matches.type(i) + ":" + matches.start(i) + "-" + matches.end(i));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> baselineTriples(String text) {
+        List<String> result = new ArrayList<>();
+        for (int[] match : Baseline.detect(text)) {
+            result.add(match[0] + ":" + match[1] + "-" + match[2]);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void matchesBaselineOnRandomText() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String text = Baseline.randomText(random, PIECES, 60);
+            assertEquals(TextStatsTest.escape(text), baselineTriples(text), triples(PatternDetector.detect(text)));
+        }
+    }
+
+    @Test
+    public void matchesBaselineOnExamples() {
+        String[] texts = {
+                "",
+                "see https://example.com/a?b=c#d and http://x.y",
+                "mail john.doe+tag@mail.example.org or @john and #topic_1",
+                "call +1 (555) 123-4567 or 555.1234 on 12/31/2024 or 2024-01-05",
+                "a@b@c.de",
+                "1.2.3.4.5.6",
+                "(555)\n123 4567",
+                "#@#@ #a@b.cd"
+        };
+        for (String text : texts) {
+            assertEquals(text, baselineTriples(text), triples(PatternDetector.detect(text)));
+        }
+    }
+
+    @Test
+    public void orderByStartSortsByStartThenType() {
+        PatternDetector.Matches matches = PatternDetector.detect("12/31/2024 x@y.com #tag");
+        Integer[] order = matches.orderByStart();
+        assertEquals(matches.size(), order.length);
+        for (int i = 1; i < order.length; i++) {
+            int a = order[i - 1];
+            int b = order[i];
+            assertTrue(matches.start(a) < matches.start(b)
+                    || matches.start(a) == matches.start(b) && matches.type(a) < matches.type(b));
+        }
+    }
+
+    @Test
+    public void documentTracksEditsLikeAFullScan() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            StringBuilder initial = new StringBuilder();
+            // Long enough for several blocks
+            while (initial.length() < 3 * PatternDocument.TARGET_BLOCK_CHARS) {
+                initial.append(Baseline.randomText(random, PIECES, 40)).append('\n');
+            }
+            String text = initial.toString();
+            PatternDocument document = new PatternDocument(text);
+            for (int edit = 0; edit < 100; edit++) {
+                int start = random.nextInt(text.length() + 1);
+                int end = Math.min(text.length(), start + random.nextInt(30));
+                String inserted = Baseline.randomText(random, PIECES, 8);
+                document.applyEdit(start, end, inserted);
+                text = text.substring(0, start) + inserted + text.substring(end);
+
+                assertEquals(text, document.getText().toString());
+                assertTrue(document.getLastRescanStart() <= start);
+                assertTrue(document.getLastRescanEnd() >= start + inserted.length());
+                assertEquals(triples(PatternDetector.detect(text)), triples(document.getMatches()));
+            }
+            int from = random.nextInt(text.length());
+            int to = from + random.nextInt(text.length() - from + 1);
+            List<String> expected = new ArrayList<>();
+            PatternDetector.Matches all = PatternDetector.detect(text);
+            for (int i = 0; i < all.size(); i++) {
+                if (all.start(i) >= from && all.start(i) < to) {
+                    expected.add(all.type(i) + ":" + all.start(i) + "-" + all.end(i));
+                }
+            }
+            Collections.sort(expected);
+            assertEquals(expected, triples(document.collect(from, to)));
+        }
+    }
+
+    @Test
+    public void editsAroundLineBreaksMatchFullScan() {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 2 * PatternDocument.TARGET_BLOCK_CHARS) {
+            sb.append("plain words only\n");
+        }
+        sb.append("555\n");
+        String text = sb.toString();
+        PatternDocument document = new PatternDocument(text);
+        // Turns "555\n" into "(555)\n" right at a line break
+        int at = text.length() - 4;
+        document.applyEdit(at, at, "(");
+        document.applyEdit(at + 4, at + 4, ")");
+        document.applyEdit(at + 6, at + 6, "1234567");
+        text = document.getText().toString();
+        assertEquals(triples(PatternDetector.detect(text)), triples(document.getMatches()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void documentRejectsBadRange() {
+        new PatternDocument("abc").applyEdit(2, 4, "x");
+    }
+}
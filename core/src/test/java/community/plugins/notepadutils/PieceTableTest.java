@@ -0,0 +1,93 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PieceTableTest {
+    private static final String ALPHABET = "ab \né";
+
+    @Test
+    public void matchesStringBuilderUnderRandomEdits() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            String initial = Baseline.randomText(random, ALPHABET, 200);
+            PieceTable table = new PieceTable(initial);
+            StringBuilder expected = new StringBuilder(initial);
+            for (int edit = 0; edit < 300; edit++) {
+                int start = random.nextInt(expected.length() + 1);
+                int end = start + random.nextInt(Math.min(10, expected.length() - start) + 1);
+                String inserted = Baseline.randomText(random, ALPHABET, 6);
+                table.applyEdit(start, end, inserted);
+                expected.replace(start, end, inserted);
+                assertEquals(expected.length(), table.length());
+                // Reading only now and then lets pieces pile up between snapshots
+                if (random.nextInt(5) == 0) {
+                    assertEquals(expected.toString(), table.toString());
+                }
+            }
+            assertEquals(expected.toString(), table.toString());
+            assertEquals(300, table.getVersion());
+        }
+    }
+
+    @Test
+    public void typingExtendsOnePiece() {
+        PieceTable table = new PieceTable("hello world");
+        for (int i = 0; i < 100; i++) {
+            table.applyEdit(5 + i, 5 + i, "x");
+        }
+        // Original head, the typed run, original tail
+        assertEquals(3, table.getPieceCount());
+        table.applyEdit(table.length(), table.length(), "!");
+        assertEquals(4, table.getPieceCount());
+    }
+
+    @Test
+    public void flattensPastPieceLimit() {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < PieceTable.MAX_PIECES; i++) {
+            expected.append("abc");
+        }
+        PieceTable table = new PieceTable(expected.toString());
+        // Each deletion leaves one more piece behind it
+        for (int i = 0; i < PieceTable.MAX_PIECES + 10; i++) {
+            table.applyEdit(i, i + 1, "");
+            expected.deleteCharAt(i);
+            assertTrue(table.getPieceCount() <= PieceTable.MAX_PIECES);
+        }
+        assertEquals(expected.toString(), table.toString());
+        assertTrue(table.getPieceCount() < PieceTable.MAX_PIECES);
+    }
+
+    @Test
+    public void emptyEditsBumpTheVersionOnly() {
+        PieceTable table = new PieceTable("");
+        table.applyEdit(0, 0, "");
+        assertEquals(1, table.getVersion());
+        assertEquals(0, table.getPieceCount());
+        table.applyEdit(0, 0, "abc");
+        table.applyEdit(0, 3, "");
+        assertEquals("", table.toString());
+        assertEquals(3, table.getVersion());
+    }
+
+    @Test
+    public void badRangesAreRejected() {
+        PieceTable table = new PieceTable("abc");
+        int[][] ranges = {{-1, 0}, {2, 1}, {0, 4}, {4, 4}};
+        for (int[] range : ranges) {
+            try {
+                table.applyEdit(range[0], range[1], "x");
+                fail(range[0] + "-" + range[1]);
+            } catch (IndexOutOfBoundsException expected) {
+                assertEquals("abc", table.toString());
+            }
+        }
+        assertEquals(0, table.getVersion());
+    }
+}
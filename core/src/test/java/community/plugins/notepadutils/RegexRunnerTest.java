@@ -0,0 +1,259 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RegexRunnerTest {
+    // Backtracks for seconds on this input; a match is impossible
+    private static final Pattern PATHOLOGICAL = Pattern.compile("(\\w*)*\\1!x");
+    private static final String INPUT = "aaaaaaaaaaaaaaaaaaaaaaaaa";
+
+    private final RegexRunner runner = new RegexRunner(1, 2, 1);
+    private final CountDownLatch unstick = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        unstick.countDown();
+        runner.shutdown();
+    }
+
+    /**
+     * Matches over a plain String, as ICU does once it has copied the
+     * input, so no budget check can run inside the match.
+     */
+    private static class PathologicalJob implements RegexRunner.Job {
+        final CountDownLatch answered = new CountDownLatch(1);
+        final AtomicInteger answers = new AtomicInteger();
+        final AtomicReference<String> outcome = new AtomicReference<>();
+
+        @Override
+        public void run(RegexRunner.Ticket ticket) {
+            boolean found = PATHOLOGICAL.matcher(INPUT).find();
+            if (ticket.claim()) {
+                answer("finished " + found);
+            }
+        }
+
+        @Override
+        public void onTimeout(BudgetedCharSequence.BudgetExceededException e) {
+            answer("timeout");
+        }
+
+        @Override
+        public void onCancelled(String requestId) {
+            answer("cancelled " + requestId);
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            answer("failed " + e.getClass().getSimpleName());
+        }
+
+        void answer(String value) {
+            outcome.set(value);
+            answers.incrementAndGet();
+            answered.countDown();
+        }
+    }
+
+    /**
+     * Never returns until the test ends and ignores interrupts, like an ICU
+     * match that backtracks for good.
+     */
+    private class StuckJob extends PathologicalJob {
+        final CountDownLatch started = new CountDownLatch(1);
+
+        @Override
+        public void run(RegexRunner.Ticket ticket) {
+            started.countDown();
+            while (true) {
+                try {
+                    unstick.await();
+                    return;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    /** Answers as soon as it gets a thread. */
+    private static class QuickJob extends PathologicalJob {
+        @Override
+        public void run(RegexRunner.Ticket ticket) {
+            if (ticket.claim()) {
+                answer("finished");
+            }
+        }
+    }
+
+    @Test
+    public void pathologicalPatternIsAnsweredWithinBudget() throws Exception {
+        PathologicalJob job = new PathologicalJob();
+        long start = System.nanoTime();
+        runner.submit("slow", null, 200, job);
+
+        assertTrue(job.answered.await(5, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("timeout", job.outcome.get());
+        assertTrue("answered after " + elapsedMs + " ms", elapsedMs < 200 + 500);
+        assertEquals(1, job.answers.get());
+    }
+
+    @Test
+    public void pathologicalPatternDoesNotHoldSchedulerWorker() throws Exception {
+        ActionScheduler scheduler = new ActionScheduler(1);
+        try {
+            final PathologicalJob job = new PathologicalJob();
+            final CountDownLatch next = new CountDownLatch(1);
+            ActionScheduler.Listener listener = new ActionScheduler.Listener() {
+                @Override
+                public void onCancelled(String requestId) {
+                }
+
+                @Override
+                public void onFailed(String requestId, Exception e) {
+                }
+            };
+            scheduler.submit("search", null, ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+                @Override
+                public void run() {
+                    runner.submit("search", null, 5000, job);
+                }
+            }, listener);
+            scheduler.submit("stats", null, ActionScheduler.LANE_INTERACTIVE, new ActionScheduler.Action() {
+                @Override
+                public void run() {
+                    next.countDown();
+                }
+            }, listener);
+
+            assertTrue(next.await(500, TimeUnit.MILLISECONDS));
+            assertEquals(1, job.answered.getCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelAnswersOnce() throws Exception {
+        PathologicalJob job = new PathologicalJob();
+        runner.submit("slow", null, 1000, job);
+
+        assertTrue(runner.cancel("slow"));
+        assertEquals("cancelled slow", job.outcome.get());
+        assertFalse(runner.cancel("slow"));
+        // The watchdog must not answer a cancelled job
+        Thread.sleep(1200);
+        assertEquals(1, job.answers.get());
+    }
+
+    @Test
+    public void newerJobSupersedesOlderWithSameKey() throws Exception {
+        PathologicalJob older = new PathologicalJob();
+        PathologicalJob newer = new PathologicalJob();
+        runner.submit("first", "search:doc", 200, older);
+        runner.submit("second", "search:doc", 200, newer);
+
+        assertEquals("cancelled first", older.outcome.get());
+        assertTrue(newer.answered.await(5, TimeUnit.SECONDS));
+        assertEquals("timeout", newer.outcome.get());
+    }
+
+    @Test
+    public void fullQueueIsRefused() throws Exception {
+        PathologicalJob[] jobs = new PathologicalJob[4];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = new PathologicalJob();
+            runner.submit("job-" + i, null, 300, jobs[i]);
+        }
+        // One running and two queued fit; the fourth is refused at once
+        assertEquals("failed " + RejectedExecutionException.class.getSimpleName(), jobs[3].outcome.get());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(jobs[i].answered.await(5, TimeUnit.SECONDS));
+            assertEquals("timeout", jobs[i].outcome.get());
+        }
+    }
+
+    @Test
+    public void failureIsReported() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        runner.submit(null, null, 1000, new PathologicalJob() {
+            @Override
+            public void run(RegexRunner.Ticket ticket) {
+                Pattern.compile("(unclosed");
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                failed.countDown();
+            }
+        });
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stuckThreadIsReplaced() throws Exception {
+        StuckJob stuck = new StuckJob();
+        runner.submit("stuck", null, 100, stuck);
+        assertTrue(stuck.answered.await(5, TimeUnit.SECONDS));
+        assertEquals("timeout", stuck.outcome.get());
+
+        QuickJob next = new QuickJob();
+        runner.submit("next", null, 5000, next);
+        assertTrue(next.answered.await(1, TimeUnit.SECONDS));
+        assertEquals("finished", next.outcome.get());
+    }
+
+    @Test
+    public void cancelledJobsLeaveTheQueue() throws Exception {
+        StuckJob stuck = new StuckJob();
+        runner.submit("stuck", null, 0, stuck);
+        assertTrue(stuck.started.await(5, TimeUnit.SECONDS));
+        // Fill the queue and cancel everything in it, many times over
+        for (int i = 0; i < 10; i++) {
+            PathologicalJob first = new PathologicalJob();
+            PathologicalJob second = new PathologicalJob();
+            runner.submit("first", null, 0, first);
+            runner.submit("second", null, 0, second);
+            assertTrue(runner.cancel("first"));
+            assertTrue(runner.cancel("second"));
+            assertEquals("cancelled first", first.outcome.get());
+            assertEquals("cancelled second", second.outcome.get());
+        }
+    }
+
+    @Test
+    public void lostThreadsAreCapped() throws Exception {
+        StuckJob first = new StuckJob();
+        StuckJob second = new StuckJob();
+        runner.submit("first", null, 100, first);
+        assertTrue(first.answered.await(5, TimeUnit.SECONDS));
+        runner.submit("second", null, 100, second);
+        assertTrue(second.started.await(5, TimeUnit.SECONDS));
+        assertTrue(second.answered.await(5, TimeUnit.SECONDS));
+
+        // Both threads are stuck and the cap is one, so this only times out
+        QuickJob third = new QuickJob();
+        runner.submit("third", null, 200, third);
+        assertTrue(third.answered.await(5, TimeUnit.SECONDS));
+        assertEquals("timeout", third.outcome.get());
+
+        // Once the stuck matches end the runner is back to normal
+        unstick.countDown();
+        QuickJob fourth = new QuickJob();
+        runner.submit("fourth", null, 5000, fourth);
+        assertTrue(fourth.answered.await(5, TimeUnit.SECONDS));
+        assertEquals("finished", fourth.outcome.get());
+    }
+}
@@ -0,0 +1,196 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchMatcherTest {
+    private static final String ALPHABET = "aAbB .x";
+    // Letters whose case folds outside ASCII or onto it: KELVIN SIGN, LONG S, final sigma, dotted I
+    private static final String UNICODE_ALPHABET = "aA\u00E9\u00C9\u00DFkK\u212As\u017F\u03A3\u03C3\u03C2i\u0130 ";
+
+    private final PatternCache patterns = new PatternCache(8);
+
+    private List<int[]> search(String text, String term, boolean caseSensitive) {
+        SearchMatcher matcher = SearchMatcher.create(patterns, term, caseSensitive, false, text, 0, 0);
+        List<int[]> matches = new ArrayList<>();
+        while (matcher.find()) {
+            matches.add(new int[]{matcher.start(), matcher.end()});
+        }
+        return matches;
+    }
+
+    static void assertSameMatches(String message, List<int[]> expected, List<int[]> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(message, expected.get(i)[0], actual.get(i)[0]);
+            assertEquals(message, expected.get(i)[1], actual.get(i)[1]);
+        }
+    }
+
+    private void assertSameAsBaseline(String text, String term, boolean caseSensitive) {
+        String message = TextStatsTest.escape(term) + " in " + TextStatsTest.escape(text);
+        assertSameMatches(message, Baseline.search(text, term, caseSensitive), search(text, term, caseSensitive));
+    }
+
+    @Test
+    public void literalSearchMatchesQuotedPattern() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String text = Baseline.randomText(random, ALPHABET, 60);
+            String term = Baseline.randomText(random, ALPHABET, 4);
+            if (term.isEmpty()) continue;
+            assertSameAsBaseline(text, term, random.nextBoolean());
+        }
+    }
+
+    @Test
+    public void literalSearchFoldsUnicodeCase() {
+        assertSameAsBaseline("Caf\u00C9 caf\u00E9 CAFE", "caf\u00E9", false);
+        assertSameAsBaseline("\u03A3\u03C3\u03C2", "\u03C3", false);
+        assertSameAsBaseline("Kelvin \u212Aelvin", "k", false);
+        assertEquals(2, search("\u00C9t\u00E9 \u00E9T\u00C9", "\u00E9t\u00E9", false).size());
+
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            String text = Baseline.randomText(random, UNICODE_ALPHABET, 40);
+            String term = Baseline.randomText(random, UNICODE_ALPHABET, 3);
+            if (term.isEmpty()) continue;
+            assertSameAsBaseline(text, term, random.nextBoolean());
+        }
+    }
+
+    @Test
+    public void multiLiteralSearchFoldsLikeLiteralSearch() {
+        Random random = new Random(13);
+        for (int i = 0; i < 2000; i++) {
+            String text = Baseline.randomText(random, UNICODE_ALPHABET, 40);
+            String term = Baseline.randomText(random, UNICODE_ALPHABET, 3);
+            if (term.isEmpty()) continue;
+            boolean caseSensitive = random.nextBoolean();
+            final List<int[]> matches = new ArrayList<>();
+            new MultiLiteralSearcher(new String[]{term}, caseSensitive).findAll(text, new MultiLiteralSearcher.Listener() {
+                @Override
+                public void onMatch(int termIndex, int start, int end) {
+                    matches.add(new int[]{start, end});
+                }
+            });
+            String message = TextStatsTest.escape(term) + " in " + TextStatsTest.escape(text);
+            assertSameMatches(message, Baseline.search(text, term, caseSensitive), matches);
+        }
+    }
+
+    @Test
+    public void regexMetacharactersAreLiteral() {
+        assertSameAsBaseline("a.b a*b (a) a.b", "a.b", true);
+        assertSameAsBaseline("x\\Ey \\Q", "\\E", false);
+    }
+
+    @Test
+    public void replaceMatchesBaseline() {
+        Random random = new Random(9);
+        for (int i = 0; i < 2000; i++) {
+            String alphabet = i % 2 == 0 ? ALPHABET : UNICODE_ALPHABET;
+            String text = Baseline.randomText(random, alphabet, 60);
+            String term = Baseline.randomText(random, alphabet, 3);
+            if (term.isEmpty()) continue;
+            boolean replaceAll = random.nextBoolean();
+            boolean caseSensitive = random.nextBoolean();
+            String expected = Baseline.replace(text, term, "<>", replaceAll, caseSensitive);
+            String actual = TextReplacer.replace(patterns, text, term, "<>", replaceAll, caseSensitive, false, 0, 0).text;
+            assertEquals(TextStatsTest.escape(term) + " in " + TextStatsTest.escape(text), expected, actual);
+        }
+    }
+
+    @Test
+    public void multiLiteralSearchFindsLeftmostLongest() {
+        Random random = new Random(17);
+        for (int i = 0; i < 2000; i++) {
+            String text = Baseline.randomText(random, "abAB ", 60);
+            String[] terms = new String[1 + random.nextInt(5)];
+            for (int t = 0; t < terms.length; t++) {
+                terms[t] = "a" + Baseline.randomText(random, "abAB", 3);
+            }
+            final boolean caseSensitive = random.nextBoolean();
+
+            // An alternation tried longest first finds the same leftmost-longest matches
+            String[] byLength = terms.clone();
+            Arrays.sort(byLength, new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    return b.length() - a.length();
+                }
+            });
+            StringBuilder alternation = new StringBuilder();
+            for (String term : byLength) {
+                if (alternation.length() > 0) alternation.append('|');
+                alternation.append(Pattern.quote(term));
+            }
+            Matcher matcher = Pattern.compile(alternation.toString(),
+                    caseSensitive ? 0 : Baseline.ANDROID_CASE_INSENSITIVE).matcher(text);
+            List<int[]> expected = new ArrayList<>();
+            while (matcher.find()) {
+                expected.add(new int[]{matcher.start(), matcher.end()});
+            }
+
+            final List<int[]> matches = new ArrayList<>();
+            final String searched = text;
+            final String[] searchedTerms = terms;
+            new MultiLiteralSearcher(terms, caseSensitive).findAll(text, new MultiLiteralSearcher.Listener() {
+                @Override
+                public void onMatch(int termIndex, int start, int end) {
+                    String term = searchedTerms[termIndex];
+                    assertEquals(term.length(), end - start);
+                    assertTrue(searched.regionMatches(!caseSensitive, start, term, 0, term.length()));
+                    matches.add(new int[]{start, end});
+                }
+            });
+            assertSameMatches(Arrays.toString(terms) + " in " + TextStatsTest.escape(text), expected, matches);
+        }
+    }
+
+    @Test
+    public void replaceEditsRebuildTheText() {
+        Random random = new Random(21);
+        String[] regexes = {"(a+)", "(a)(b)?", "(\\s)", "(x|)", "([aB])."};
+        String[] replacements = {"<>", "", "$0$0", "[$1]", "\\$", "\\\\"};
+        for (int i = 0; i < 3000; i++) {
+            String text = Baseline.randomText(random, ALPHABET, 40);
+            boolean isRegex = random.nextBoolean();
+            String term = isRegex ? regexes[random.nextInt(regexes.length)] : Baseline.randomText(random, ALPHABET, 3);
+            if (term.isEmpty()) continue;
+            String replacement = replacements[random.nextInt(isRegex ? replacements.length : 2)];
+            boolean replaceAll = random.nextBoolean();
+            boolean caseSensitive = random.nextBoolean();
+            String message = TextStatsTest.escape(term) + " -> " + replacement + " in " + TextStatsTest.escape(text);
+
+            Matcher matcher = Pattern.compile(isRegex ? term : Pattern.quote(term),
+                    caseSensitive ? 0 : Pattern.CASE_INSENSITIVE).matcher(text);
+            String expected = replaceAll ? matcher.replaceAll(replacement) : matcher.replaceFirst(replacement);
+            TextReplacer.Result result = TextReplacer.replace(patterns, text, term, replacement,
+                    replaceAll, caseSensitive, isRegex, 0, 0);
+            assertEquals(message, expected, result.text);
+            assertTrue(message, replaceAll || result.size() <= 1);
+
+            // Applying the edits to the original text gives the same result
+            StringBuilder rebuilt = new StringBuilder();
+            int copied = 0;
+            for (int e = 0; e < result.size(); e++) {
+                assertTrue(message, result.start(e) >= copied && result.end(e) >= result.start(e));
+                rebuilt.append(text, copied, result.start(e)).append(result.replacement(e));
+                copied = result.end(e);
+            }
+            rebuilt.append(text, copied, text.length());
+            assertEquals(message, expected, rebuilt.toString());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TextDiffTest {
+    private static final String[] GRANULARITIES = {TextDiff.GRANULARITY_LINE, TextDiff.GRANULARITY_WORD,
+            TextDiff.GRANULARITY_CHAR};
+    private static final String[] PIECES = {"a", "b", "ab ", " ", "\n", "x\n", "é", "😀", "1", ","};
+
+    /**
+     * Applies the hunks to oldText, checking they are in order and that the
+     * text between them is the same on both sides.
+     */
+    private static String apply(String oldText, String newText, TextDiff.Result result) {
+        StringBuilder sb = new StringBuilder();
+        int oldAt = 0;
+        int newAt = 0;
+        for (TextDiff.Hunk hunk : result.hunks) {
+            assertTrue(hunk.oldStart >= oldAt && hunk.oldEnd >= hunk.oldStart);
+            assertTrue(hunk.newStart >= newAt && hunk.newEnd >= hunk.newStart);
+            assertTrue(hunk.oldEnd > hunk.oldStart || hunk.newEnd > hunk.newStart);
+            assertEquals(oldText.substring(oldAt, hunk.oldStart), newText.substring(newAt, hunk.newStart));
+            sb.append(oldText, oldAt, hunk.oldStart).append(newText, hunk.newStart, hunk.newEnd);
+            oldAt = hunk.oldEnd;
+            newAt = hunk.newEnd;
+        }
+        assertEquals(oldText.substring(oldAt), newText.substring(newAt));
+        return sb.append(oldText, oldAt, oldText.length()).toString();
+    }
+
+    private static String edit(Random random, String text) {
+        StringBuilder sb = new StringBuilder(text);
+        int edits = random.nextInt(5);
+        for (int i = 0; i < edits; i++) {
+            int start = random.nextInt(sb.length() + 1);
+            int end = Math.min(sb.length(), start + random.nextInt(6));
+            // Keep surrogate pairs whole
+            if (start > 0 && start < sb.length() && Character.isLowSurrogate(sb.charAt(start))) start--;
+            if (end > 0 && end < sb.length() && Character.isLowSurrogate(sb.charAt(end))) end++;
+            sb.replace(start, end, Baseline.randomText(random, PIECES, 4));
+        }
+        return sb.toString();
+    }
+
+    private static int lcs(int[] a, int[] b) {
+        int[][] table = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                table[i][j] = a[i] == b[j] ? table[i + 1][j + 1] + 1 : Math.max(table[i + 1][j], table[i][j + 1]);
+            }
+        }
+        return table[0][0];
+    }
+
+    private static int[] lineIds(String text, List<String> seen) {
+        List<Integer> ids = new ArrayList<>();
+        int at = 0;
+        while (at < text.length()) {
+            int newline = text.indexOf('\n', at);
+            int end = newline < 0 ? text.length() : newline + 1;
+            String line = text.substring(at, end);
+            if (!seen.contains(line)) seen.add(line);
+            ids.add(seen.indexOf(line));
+            at = end;
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) result[i] = ids.get(i);
+        return result;
+    }
+
+    @Test
+    public void hunksTurnOldIntoNew() {
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            String oldText = Baseline.randomText(random, PIECES, 40);
+            String newText = random.nextInt(4) == 0 ? Baseline.randomText(random, PIECES, 40) : edit(random, oldText);
+            for (String granularity : GRANULARITIES) {
+                for (boolean patience : new boolean[]{false, true}) {
+                    TextDiff.Result result = TextDiff.diff(oldText, newText, granularity, patience, 0);
+                    String message = granularity + (patience ? " patience " : " ") + TextStatsTest.escape(oldText)
+                            + " -> " + TextStatsTest.escape(newText);
+                    assertEquals(message, newText, apply(oldText, newText, result));
+                    assertTrue(message, result.complete);
+                    assertEquals(message, granularity, result.granularity);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void charDiffIsMinimal() {
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            String oldText = Baseline.randomText(random, PIECES, 30);
+            String newText = edit(random, oldText);
+            int[] a = oldText.codePoints().toArray();
+            int[] b = newText.codePoints().toArray();
+            TextDiff.Result result = TextDiff.diff(oldText, newText, TextDiff.GRANULARITY_CHAR, false, 0);
+            String message = TextStatsTest.escape(oldText) + " -> " + TextStatsTest.escape(newText);
+            assertEquals(message, a.length + b.length - 2 * lcs(a, b), result.deleted + result.inserted);
+
+            int deleted = 0;
+            int inserted = 0;
+            for (TextDiff.Hunk hunk : result.hunks) {
+                deleted += oldText.codePointCount(hunk.oldStart, hunk.oldEnd);
+                inserted += newText.codePointCount(hunk.newStart, hunk.newEnd);
+            }
+            assertEquals(message, result.deleted, deleted);
+            assertEquals(message, result.inserted, inserted);
+        }
+    }
+
+    @Test
+    public void lineDiffIsMinimal() {
+        Random random = new Random(9);
+        for (int i = 0; i < 2000; i++) {
+            String oldText = Baseline.randomText(random, new String[]{"a\n", "b\n", "c\n", "\n", "a"}, 20);
+            String newText = Baseline.randomText(random, new String[]{"a\n", "b\n", "c\n", "\n", "a"}, 20);
+            List<String> seen = new ArrayList<>();
+            int[] a = lineIds(oldText, seen);
+            int[] b = lineIds(newText, seen);
+            TextDiff.Result result = TextDiff.diff(oldText, newText, TextDiff.GRANULARITY_LINE, false, 0);
+            assertEquals(a.length + b.length - 2 * lcs(a, b), result.deleted + result.inserted);
+        }
+    }
+
+    @Test
+    public void patienceAnchorsOnUniqueLines() {
+        String oldText = "}\n\nunique one\n}\n\nunique two\n}\n";
+        String newText = "}\n\nunique one\n}\n\nadded\n}\n\nunique two\n}\n";
+        TextDiff.Result result = TextDiff.diff(oldText, newText, TextDiff.GRANULARITY_LINE, true, 0);
+        assertEquals(newText, apply(oldText, newText, result));
+        assertEquals(0, result.deleted);
+        assertEquals(3, result.inserted);
+    }
+
+    @Test
+    public void timeoutStillReconstructs() {
+        Random random = new Random(3);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 200000) {
+            sb.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        String oldText = sb.toString();
+        String newText = Baseline.randomText(random, PIECES, 1) + oldText.replace('a', 'b');
+        for (String granularity : GRANULARITIES) {
+            TextDiff.Result result = TextDiff.diff(oldText, newText, granularity, false, 1);
+            assertEquals(granularity, newText, apply(oldText, newText, result));
+            if (!result.complete) {
+                assertTrue(granularity.equals(result.granularity) || TextDiff.GRANULARITY_LINE.equals(result.granularity));
+            }
+        }
+    }
+
+    @Test
+    public void identicalTextsHaveNoHunks() {
+        TextDiff.Result result = TextDiff.diff("same\ntext", "same\ntext", null, false, 0);
+        assertTrue(result.hunks.isEmpty());
+        assertEquals(TextDiff.GRANULARITY_LINE, result.granularity);
+        assertFalse(TextDiff.diff("a", "b", TextDiff.GRANULARITY_WORD, false, 0).hunks.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownGranularityIsRejected() {
+        TextDiff.diff("a", "b", "sentence", false, 0);
+    }
+}
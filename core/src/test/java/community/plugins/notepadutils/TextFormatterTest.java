@@ -0,0 +1,122 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextFormatterTest {
+    private static final String[] PIECES = {"a", "B", "é", "ß", "x", " ", "  ", "\t", "\n", "\r\n", "\r", ".", "!", "?"};
+    // String.toUpperCase is quadratic in expanding chars like ß, so the large input leaves them out
+    private static final String[] CHUNK_PIECES = {"a", "B", "é", "x", " ", "  ", "\t", "\n", "\r\n", "\r", ".", "!", "?"};
+    private static final int[] CASE_STAGES = {0, TextFormatter.UPPER_CASE, TextFormatter.LOWER_CASE,
+            TextFormatter.TITLE_CASE, TextFormatter.SENTENCE_CASE};
+    private static final int[] OTHER_STAGES = {TextFormatter.TRIM, TextFormatter.REMOVE_EXTRA_SPACES,
+            TextFormatter.REMOVE_LINE_BREAKS, TextFormatter.SORT_LINES, TextFormatter.REMOVE_DUPLICATE_LINES,
+            TextFormatter.REVERSE};
+
+    private static int randomStages(Random random) {
+        int stages = CASE_STAGES[random.nextInt(CASE_STAGES.length)];
+        for (int stage : OTHER_STAGES) {
+            if (random.nextBoolean()) {
+                stages |= stage;
+            }
+        }
+        return stages;
+    }
+
+    private static void assertSameAsBaseline(String text, int stages) {
+        assertSameAsBaseline(text, stages, new TextFormatter(stages));
+    }
+
+    private static void assertSameAsBaseline(String text, int stages, TextFormatter formatter) {
+        String message = "stages " + stages + " on " + (text.length() > 200 ? text.length() + " chars" : TextStatsTest.escape(text));
+        assertEquals(message, Baseline.format(text, stages), formatter.format(text));
+    }
+
+    @Test
+    public void matchesBaselineOnRandomText() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            assertSameAsBaseline(Baseline.randomText(random, PIECES, 40), randomStages(random));
+        }
+    }
+
+    @Test
+    public void matchesBaselineOnEdgeCases() {
+        String[] texts = {"", " ", "\n", "\n\n", "\na\n", "a\n\nb\n\n", "  lead and trail  ", "x. y! z? w", "ßß", "b\na\nb\n"};
+        for (String text : texts) {
+            for (int caseStage : CASE_STAGES) {
+                for (int other = 0; other < 1 << OTHER_STAGES.length; other++) {
+                    int stages = caseStage;
+                    for (int k = 0; k < OTHER_STAGES.length; k++) {
+                        if ((other & 1 << k) != 0) {
+                            stages |= OTHER_STAGES[k];
+                        }
+                    }
+                    assertSameAsBaseline(text, stages);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void chunkedPassMatchesBaseline() {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < TextFormatter.PARALLEL_THRESHOLD + 4096) {
+            sb.append(CHUNK_PIECES[random.nextInt(CHUNK_PIECES.length)]);
+        }
+        String text = sb.toString();
+        int[] stageSets = {
+                TextFormatter.TRIM | TextFormatter.REMOVE_EXTRA_SPACES | TextFormatter.SENTENCE_CASE,
+                TextFormatter.REMOVE_LINE_BREAKS | TextFormatter.TITLE_CASE,
+                TextFormatter.UPPER_CASE | TextFormatter.REMOVE_DUPLICATE_LINES,
+                TextFormatter.LOWER_CASE | TextFormatter.SORT_LINES | TextFormatter.REVERSE
+        };
+        // One sentence running across every cut, so no chunk may start capitalized
+        StringBuilder sentence = new StringBuilder();
+        while (sentence.length() < TextFormatter.PARALLEL_THRESHOLD + 4096) {
+            sentence.append("a sentence that keeps going\n");
+        }
+        // Four chunks whatever the core count, each resuming from the state before its cut
+        for (String input : new String[]{text, sentence.toString()}) {
+            for (int stages : stageSets) {
+                assertSameAsBaseline(input, stages, new TextFormatter(stages, new LineSorter(LineSorter.MODE_LEXICAL, null, false), 4));
+            }
+        }
+    }
+
+    @Test
+    public void keepLastDuplicateKeepsLastOccurrence() {
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            List<String> lines = new ArrayList<>();
+            int count = 1 + random.nextInt(20);
+            for (int n = 0; n < count; n++) {
+                lines.add("line" + random.nextInt(6));
+            }
+            boolean keepLast = random.nextBoolean();
+            int stages = TextFormatter.REMOVE_DUPLICATE_LINES | (keepLast ? TextFormatter.KEEP_LAST_DUPLICATE : 0);
+            TextFormatter formatter = new TextFormatter(stages);
+            String formatted = formatter.format(String.join("\n", lines));
+
+            List<String> expected = Baseline.dedupe(lines, keepLast);
+            assertEquals(lines.toString(), String.join("\n", expected), formatted);
+            assertEquals(lines.size() - expected.size(), formatter.getDuplicatesRemoved());
+        }
+    }
+
+    @Test
+    public void sortUsesGivenSorter() {
+        TextFormatter formatter = new TextFormatter(TextFormatter.SORT_LINES,
+                new LineSorter(LineSorter.MODE_NATURAL, null, false));
+        assertEquals("file2\nfile9\nfile10", formatter.format("file10\nfile9\nfile2"));
+        assertEquals(Arrays.asList("b", "a"), Arrays.asList(new TextFormatter(TextFormatter.SORT_LINES,
+                new LineSorter(LineSorter.MODE_LEXICAL, null, true)).format("a\nb").split("\n")));
+    }
+}
@@ -0,0 +1,75 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextStatsTest {
+    private static final String ALPHABET = "aaBz9 . !?\n\n\t\r,'-\u00A0\u2003";
+
+    private static void assertSameStats(String text, TextStats actual) {
+        TextStats expected = Baseline.textStats(text);
+        String where = "for " + escape(text);
+        assertEquals("characterCount " + where, expected.characterCount, actual.characterCount);
+        assertEquals("characterCountNoSpaces " + where, expected.characterCountNoSpaces, actual.characterCountNoSpaces);
+        assertEquals("wordCount " + where, expected.wordCount, actual.wordCount);
+        assertEquals("uniqueWordCount " + where, expected.uniqueWordCount, actual.uniqueWordCount);
+        assertEquals("sentenceCount " + where, expected.sentenceCount, actual.sentenceCount);
+        assertEquals("paragraphCount " + where, expected.paragraphCount, actual.paragraphCount);
+        assertEquals("lineCount " + where, expected.lineCount, actual.lineCount);
+        assertEquals("averageWordLength " + where, expected.averageWordLength, actual.averageWordLength, 0);
+        assertEquals("readingTimeMinutes " + where, expected.readingTimeMinutes, actual.readingTimeMinutes, 0);
+        assertEquals("speakingTimeMinutes " + where, expected.speakingTimeMinutes, actual.speakingTimeMinutes, 0);
+    }
+
+    static String escape(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c < 0x7F) {
+                sb.append(c);
+            } else {
+                sb.append(String.format("\\u%04X", (int) c));
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    @Test
+    public void matchesBaselineOnEdgeCases() {
+        String[] texts = {
+                "", " ", "\n", "\n\n\n", "a", " a ", "a b", "Hello, world. How are you?",
+                "one\n\ntwo\n", "...", "a.b!c?", "\t x \r\n y", "x\n \ny\n\n\n",
+                "\u00A0", " \u2003\u00A0 ", "\u00A0a", "a\u00A0", "\u2003a\u2003b\u2003"
+        };
+        for (String text : texts) {
+            assertSameStats(text, TextStats.compute(text));
+        }
+    }
+
+    @Test
+    public void matchesBaselineOnRandomText() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String text = Baseline.randomText(random, ALPHABET, 40);
+            assertSameStats(text, TextStats.compute(text));
+        }
+    }
+
+    @Test
+    public void incrementalDocumentMatchesBaseline() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(Baseline.randomText(random, ALPHABET, 200));
+        TextStatsDocument document = new TextStatsDocument(text.toString());
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(8));
+            String inserted = Baseline.randomText(random, ALPHABET, 8);
+            text.replace(start, end, inserted);
+            document.applyEdit(start, end, inserted);
+            assertSameStats(text.toString(), document.getStats());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package community.plugins.notepadutils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class UndoHistoryStoreTest {
+    private File dir;
+    private UndoHistoryStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("undo-store-test").toFile();
+        store = new UndoHistoryStore(dir);
+    }
+
+    @After
+    public void tearDown() {
+        store.clear();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void findDoesNotCreate() {
+        assertNull(store.find("tab-1"));
+        assertEquals(0, store.getStats().historyCount);
+
+        UndoHistory history = store.get("tab-1");
+        assertSame(history, store.find("tab-1"));
+        assertEquals(1, store.getStats().historyCount);
+    }
+
+    @Test
+    public void removeFreesHistoryAndSpillFile() throws IOException {
+        UndoHistory history = store.get("tab-1");
+        history.init("text", 10, 0);
+        history.push("text 2");
+        File spill = new File(dir, "tab-1");
+        history.spill(spill);
+        assertEquals(1, dir.listFiles().length);
+
+        store.remove("tab-1");
+        assertNull(store.find("tab-1"));
+        assertEquals(0, store.getStats().historyCount);
+        assertEquals(0, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,129 @@
+package community.plugins.notepadutils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UndoHistoryTest {
+    private static void assertSameState(String step, Baseline.UndoList expected, UndoHistory actual) {
+        assertEquals(step, expected.currentText(), actual.getCurrentText());
+        assertEquals(step, expected.position, actual.getPosition());
+        assertEquals(step, expected.history.size(), actual.size());
+        assertEquals(step, expected.position > 0, actual.canUndo());
+        assertEquals(step, expected.position < expected.history.size() - 1, actual.canRedo());
+    }
+
+    @Test
+    public void matchesSnapshotList() throws Exception {
+        Random random = new Random(42);
+        File dir = Files.createTempDirectory("undo-test").toFile();
+        try {
+            for (int round = 0; round < 50; round++) {
+                int maxHistory = 1 + random.nextInt(10);
+                String text = Baseline.randomText(random, "abc \n", 20);
+                Baseline.UndoList expected = new Baseline.UndoList();
+                UndoHistory actual = new UndoHistory();
+                expected.init(text, maxHistory);
+                actual.init(text, maxHistory, 0);
+
+                for (int i = 0; i < 200; i++) {
+                    int op = random.nextInt(10);
+                    String step = "round " + round + " step " + i + " op " + op;
+                    if (op < 5) {
+                        String next = Baseline.randomText(random, "abc \n", 20);
+                        expected.push(next);
+                        actual.push(next);
+                    } else if (op < 7) {
+                        assertEquals(step, expected.undo(), actual.undo());
+                    } else if (op < 9) {
+                        assertEquals(step, expected.redo(), actual.redo());
+                    } else if (random.nextBoolean()) {
+                        actual.compact();
+                    } else {
+                        actual.spill(new File(dir, "history-" + round));
+                    }
+                    assertSameState(step, expected, actual);
+                }
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void textLargerThanBudgetKeepsItsDeltas() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append('a');
+        }
+        String text = sb.toString();
+        UndoHistory history = new UndoHistory();
+        history.init(text, 100, 4096);
+        history.push(text + "b");
+        history.push(text + "bc");
+        assertEquals(3, history.size());
+        assertTrue(history.undo());
+        assertTrue(history.undo());
+        assertEquals(text, history.getCurrentText());
+    }
+
+    @Test
+    public void byteBudgetDropsOldestDeltas() {
+        UndoHistory history = new UndoHistory();
+        history.init("", 100, 4096);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            for (int k = 0; k < 500; k++) {
+                text.append('x');
+            }
+            history.push(text.toString());
+        }
+        // Each 500-char insertion costs about 1 KB
+        assertTrue(history.size() < 6);
+        assertTrue(history.getMemoryBytes() - 2L * text.length() <= 4096);
+        assertEquals(text.toString(), history.getCurrentText());
+    }
+
+    @Test
+    public void clearKeepsLimits() {
+        Baseline.UndoList expected = new Baseline.UndoList();
+        UndoHistory actual = new UndoHistory();
+        expected.init("a", 3);
+        actual.init("a", 3, 0);
+        expected.clear();
+        actual.clear();
+        for (String text : new String[]{"b", "bc", "bcd", "bcde", "bcdef"}) {
+            expected.push(text);
+            actual.push(text);
+            assertSameState(text, expected, actual);
+        }
+        assertEquals(3, actual.size());
+    }
+
+    @Test
+    public void pushAfterClearStartsOver() {
+        Baseline.UndoList expected = new Baseline.UndoList();
+        UndoHistory actual = new UndoHistory();
+        expected.init("a", 5);
+        actual.init("a", 5, 0);
+        expected.push("ab");
+        actual.push("ab");
+        expected.clear();
+        actual.clear();
+        assertSameState("cleared", expected, actual);
+        expected.push("x");
+        actual.push("x");
+        assertSameState("pushed", expected, actual);
+    }
+}
@@ -3,6 +3,7 @@ package community.plugins.notepadutils;
 import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
+import android.net.Uri;
 import android.util.Base64;
 import android.util.Log;
 
@@ -14,36 +15,212 @@ import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.SecureRandom;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.crypto.spec.SecretKeySpec;
 
 public class NotepadUtilsPlugin extends CordovaPlugin {
     private static final String TAG = "NotepadUtilsPlugin";
 
-    // Undo/Redo history
-    private List<String> undoHistory = new ArrayList<>();
-    private int currentHistoryPosition = -1;
-    private int maxHistorySize = 100;
+    // Actions that run on the worker pool, mapped to their argument count.
+    // An optional scheduling options object may follow the regular arguments.
+    private static final Map<String, Integer> SCHEDULED_ACTIONS = new HashMap<>();
+    static {
+        SCHEDULED_ACTIONS.put("getTextStats", 1);
+        SCHEDULED_ACTIONS.put("detectPatterns", 1);
+        SCHEDULED_ACTIONS.put("encrypt", 2);
+        SCHEDULED_ACTIONS.put("decrypt", 4);
+        SCHEDULED_ACTIONS.put("encryptBatch", 2);
+        SCHEDULED_ACTIONS.put("decryptBatch", 2);
+        SCHEDULED_ACTIONS.put("encryptFile", 3);
+        SCHEDULED_ACTIONS.put("decryptFile", 3);
+        SCHEDULED_ACTIONS.put("hash", 2);
+        SCHEDULED_ACTIONS.put("hashFile", 2);
+        SCHEDULED_ACTIONS.put("search", 4);
+        SCHEDULED_ACTIONS.put("searchStream", 4);
+        SCHEDULED_ACTIONS.put("searchTerms", 3);
+        SCHEDULED_ACTIONS.put("replace", 6);
+        SCHEDULED_ACTIONS.put("formatText", 2);
+        SCHEDULED_ACTIONS.put("sortFile", 3);
+        SCHEDULED_ACTIONS.put("dedupeFile", 3);
+        SCHEDULED_ACTIONS.put("batch", 2);
+        SCHEDULED_ACTIONS.put("indexDocument", 3);
+        SCHEDULED_ACTIONS.put("removeDocument", 2);
+        SCHEDULED_ACTIONS.put("searchIndex", 2);
+        SCHEDULED_ACTIONS.put("diff", 4);
+    }
+
+    // Actions that send more than one result and so cannot run as a batch step
+    private static final Set<String> UNBATCHABLE_ACTIONS = new HashSet<>(Arrays.asList(
+            "batch", "searchStream", "watchClipboard", "watchMetrics"));
+
+    // Actions that default to the background lane when no priority is given
+    private static final Set<String> BACKGROUND_ACTIONS = new HashSet<>(Arrays.asList(
+            "encrypt", "decrypt", "encryptBatch", "decryptBatch", "encryptFile", "decryptFile", "hash", "hashFile", "formatText", "sortFile", "dedupeFile",
+            "indexDocument", "removeDocument"));
+
+    // Read-only actions whose stale requests a newer one on the same document may replace
+    private static final Set<String> SUPERSEDABLE_ACTIONS = new HashSet<>(Arrays.asList(
+            "getTextStats", "detectPatterns", "search", "searchStream", "searchTerms", "diff"));
+
+    // Batch steps that change nothing; a batch with any other step is serialized per document
+    private static final Set<String> READ_ONLY_STEPS = new HashSet<>(Arrays.asList(
+            "getTextStats", "detectPatterns", "search", "searchTerms", "diff", "hash", "formatText",
+            "getDocumentText", "getTrackedPatterns", "getUndoRedoState", "getUndoStats", "getPatternCacheStats",
+            "searchIndex", "getClipboard", "getClipboardHistory", "getMetrics"));
+
+    // Derived keys are kept for a short while so unlocking many notes costs one derivation
+    private static final int KEY_CACHE_SIZE = 8;
+    private static final long KEY_CACHE_TTL_MS = 5 * 60 * 1000;
+
+    // Undo/redo histories keyed by historyId; calls without one share the default history
+    private static final String DEFAULT_HISTORY_ID = "";
+    private UndoHistoryStore undoHistories;
+
+    private ActionScheduler scheduler;
+
+    // User regexes run here rather than on the scheduler workers, under a watchdog
+    private RegexRunner regexRunner;
+
+    // Notebook-wide search index, opened on first use
+    private NoteIndex noteIndex;
+
+    // Open documents, so actions can take { documentId } instead of the full text
+    private final Map<String, PieceTable> documents = new HashMap<>();
+
+    // Documents whose statistics are kept up to date from edits
+    private final Map<String, TextStatsDocument> statsDocuments = new HashMap<>();
+
+    // Documents whose detected patterns are kept up to date from edits
+    private final Map<String, PatternDocument> patternDocuments = new HashMap<>();
+
+    private final KeyCache keyCache = new KeyCache(KEY_CACHE_SIZE, KEY_CACHE_TTL_MS);
+    private final TextCrypto textCrypto = new TextCrypto(keyCache);
+
+    // Open incremental hash sessions, oldest evicted first
+    private static final int MAX_HASH_SESSIONS = 16;
+    private final AtomicInteger hashSessionIds = new AtomicInteger();
+    private final Map<String, Hasher> hashSessions = new LinkedHashMap<String, Hasher>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Hasher> eldest) {
+            return size() > MAX_HASH_SESSIONS;
+        }
+    };
+
+    // Compiled search/replace patterns, so find-as-you-type does not recompile
+    private static final int PATTERN_CACHE_SIZE = 64;
+    private final PatternCache patternCache = new PatternCache(PATTERN_CACHE_SIZE);
+
+    // Streaming search sends a batch at this size, or sooner when the scan is slow
+    private static final int STREAM_BATCH_SIZE = 100;
+    private static final long STREAM_FLUSH_MS = 50;
+
+    // Default time budget for user regexes; 0 in the call options disables it
+    private static final long DEFAULT_REGEX_TIMEOUT_MS = 5000;
+
+    // Default time budget for diff before it settles for a coarser result
+    private static final long DEFAULT_DIFF_TIMEOUT_MS = 1000;
+
+    // Line indexes of recently searched documents, keyed by documentId
+    private static final int MAX_LINE_INDEXES = 8;
+    private final Map<String, CachedLineIndex> lineIndexes = new LinkedHashMap<String, CachedLineIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedLineIndex> eldest) {
+            return size() > MAX_LINE_INDEXES;
+        }
+    };
+
+    private static final class CachedLineIndex {
+        final String text;
+        final LineIndex index;
+
+        CachedLineIndex(String text, LineIndex index) {
+            this.text = text;
+            this.index = index;
+        }
+    }
+
+    // Clipboard watching. While a watcher is registered the last seen clip
+    // text is kept so getClipboard can answer without reading the clip again
+    private ClipboardManager clipboardManager;
+    private volatile ClipboardManager.OnPrimaryClipChangedListener clipListener;
+    private volatile CallbackContext clipWatchCallback;
+    private volatile boolean clipEventsIncludeText;
+    private volatile String lastClipText;
+    private final ClipboardHistory clipboardHistory = new ClipboardHistory();
+
+    // Per-action call metrics. The metrics actions themselves are not recorded
+    private static final Set<String> UNMETERED_ACTIONS = new HashSet<>(Arrays.asList(
+            "getMetrics", "resetMetrics", "watchMetrics", "unwatchMetrics"));
+    private static final long DEFAULT_METRICS_INTERVAL_MS = 60 * 1000;
+    private static final long MIN_METRICS_INTERVAL_MS = 1000;
+    private final ActionMetrics metrics = new ActionMetrics();
+    private ScheduledExecutorService metricsTimer;
+    private ScheduledFuture<?> metricsPush;
+    private CallbackContext metricsWatchCallback;
 
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
+        scheduler = new ActionScheduler(ActionScheduler.defaultWorkerCount());
+        regexRunner = new RegexRunner(RegexRunner.DEFAULT_THREADS, RegexRunner.DEFAULT_QUEUE_SIZE,
+                RegexRunner.DEFAULT_MAX_LOST_THREADS);
+        undoHistories = new UndoHistoryStore(new File(cordova.getActivity().getFilesDir(), "undo-spill"));
+    }
+
+    @Override
+    public void onPause(boolean multitasking) {
+        keyCache.wipe();
+        // Background apps are not told about clip changes, so the cached
+        // text may be stale by the time the app resumes
+        lastClipText = null;
+        commitNoteIndexInBackground();
+        super.onPause(multitasking);
+    }
+
+    @Override
+    public void onDestroy() {
+        keyCache.wipe();
+        stopClipboardWatch();
+        stopMetricsWatch();
+        undoHistories.clear();
+        synchronized (this) {
+            if (metricsTimer != null) {
+                metricsTimer.shutdownNow();
+            }
+            if (noteIndex != null) {
+                try {
+                    noteIndex.commit();
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not commit note index", e);
+                }
+            }
+        }
+        scheduler.shutdown();
+        regexRunner.shutdown();
+        super.onDestroy();
     }
 
     private Context getContext() {
@@ -51,7 +228,153 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
     }
 
     @Override
-    public boolean execute(String action, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+    public boolean execute(String action, String rawArgs, CallbackContext callbackContext) throws JSONException {
+        if (UNMETERED_ACTIONS.contains(action)) {
+            return super.execute(action, rawArgs, callbackContext);
+        }
+        // rawArgs is the JSON as it crossed the bridge, so its length is the input payload
+        return super.execute(action, rawArgs, new MeteredContext(action, rawArgs.length(), callbackContext));
+    }
+
+    @Override
+    public boolean execute(final String action, final JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        Integer argCount = SCHEDULED_ACTIONS.get(action);
+        if (argCount == null) {
+            return dispatch(action, args, callbackContext);
+        }
+
+        JSONObject options = args.optJSONObject(argCount);
+        String requestId = options != null ? options.optString("requestId", null) : null;
+        String documentId = optDocumentId(args, argCount);
+        String priority = options != null ? options.optString("priority", null) : null;
+
+        int lane;
+        if (priority == null) {
+            lane = BACKGROUND_ACTIONS.contains(action) ? ActionScheduler.LANE_BACKGROUND : ActionScheduler.LANE_INTERACTIVE;
+        } else {
+            lane = "background".equals(priority) ? ActionScheduler.LANE_BACKGROUND : ActionScheduler.LANE_INTERACTIVE;
+        }
+        scheduler.submit(requestId, supersedeKey(action, documentId), serialKey(action, args, documentId), lane, new ActionScheduler.Action() {
+            @Override
+            public void run() throws Exception {
+                dispatch(action, args, callbackContext);
+            }
+        }, new ActionScheduler.Listener() {
+            @Override
+            public void onCancelled(String id) {
+                callbackContext.error("Request cancelled: " + id);
+            }
+
+            @Override
+            public void onFailed(String id, Exception e) {
+                Log.e(TAG, "Error executing action: " + action, e);
+                callbackContext.error(e.getMessage());
+            }
+        });
+        return true;
+    }
+
+    /**
+     * A newer read-only request of the same action on the same document
+     * replaces a stale one. Mutating requests and requests not tied to a
+     * document are never superseded.
+     */
+    private static String supersedeKey(String action, String documentId) {
+        return documentId != null && SUPERSEDABLE_ACTIONS.contains(action) ? action + ":" + documentId : null;
+    }
+
+    /**
+     * Batches that change state run one at a time per document, in the order
+     * they were sent, so edits from consecutive keystrokes apply in order.
+     * Batches without a documentId share one queue.
+     */
+    private static String serialKey(String action, JSONArray args, String documentId) {
+        if (!"batch".equals(action)) {
+            return null;
+        }
+        JSONArray steps = args.optJSONArray(1);
+        for (int i = 0; steps != null && i < steps.length(); i++) {
+            JSONObject step = steps.optJSONObject(i);
+            if (step == null || !READ_ONLY_STEPS.contains(step.optString("action", ""))) {
+                return "batch:" + (documentId != null ? documentId : "");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The documentId of the options at optionsIndex, falling back to the
+     * document the first argument refers to.
+     */
+    private static String optDocumentId(JSONArray args, int optionsIndex) {
+        JSONObject options = args.optJSONObject(optionsIndex);
+        if (options != null && options.has("documentId")) {
+            return options.optString("documentId", null);
+        }
+        return optDocumentRef(args, 0);
+    }
+
+    /**
+     * Reads a payload argument as bytes. Cordova sends an ArrayBuffer as
+     * Base64, which transport.binaryInput marks; anything else is text (or a
+     * document reference) encoded as UTF-8.
+     */
+    private byte[] payloadArg(JSONArray args, int index, JSONObject transport) throws JSONException {
+        if (isBinaryInput(transport)) {
+            return Base64.decode(args.getString(index), Base64.NO_WRAP);
+        }
+        return textArg(args, index).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isBinaryInput(JSONObject transport) {
+        return transport != null && transport.optBoolean("binaryInput", false);
+    }
+
+    private static boolean isBinaryOutput(JSONObject transport) {
+        return transport != null && transport.optBoolean("binary", false);
+    }
+
+    /**
+     * Sends the byte arrays as one multipart result; each part arrives in
+     * JS as a separate ArrayBuffer argument of the success callback.
+     */
+    private static void sendBinaryParts(CallbackContext callbackContext, byte[]... parts) {
+        List<PluginResult> messages = new ArrayList<>(parts.length);
+        for (byte[] part : parts) {
+            messages.add(new PluginResult(PluginResult.Status.OK, part));
+        }
+        callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, messages));
+    }
+
+    /**
+     * The documentId when the argument at index is a { documentId } reference.
+     */
+    private static String optDocumentRef(JSONArray args, int index) {
+        JSONObject ref = args.optJSONObject(index);
+        return ref != null ? ref.optString("documentId", null) : null;
+    }
+
+    /**
+     * Reads a text argument: either the text itself or { documentId } naming
+     * a document opened with openDocument.
+     */
+    private String textArg(JSONArray args, int index) throws JSONException {
+        JSONObject ref = args.optJSONObject(index);
+        if (ref == null) {
+            return args.getString(index);
+        }
+        String documentId = ref.getString("documentId");
+        PieceTable document;
+        synchronized (documents) {
+            document = documents.get(documentId);
+        }
+        if (document == null) {
+            throw new IllegalArgumentException("Unknown document: " + documentId);
+        }
+        return document.toString();
+    }
+
+    private boolean dispatch(String action, JSONArray args, final CallbackContext callbackContext) throws JSONException {
         try {
             switch (action) {
                 // Clipboard operations
@@ -61,46 +384,151 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
                     return setClipboard(args.getJSONObject(0), callbackContext);
                 case "clearClipboard":
                     return clearClipboard(callbackContext);
+                case "watchClipboard":
+                    return watchClipboard(args.optJSONObject(0), callbackContext);
+                case "unwatchClipboard":
+                    return unwatchClipboard(callbackContext);
+                case "getClipboardHistory":
+                    return getClipboardHistory(args.optInt(0, 0), args.optInt(1, 0), callbackContext);
+                case "clearClipboardHistory":
+                    clipboardHistory.clear();
+                    callbackContext.success();
+                    return true;
+
+                // Documents
+                case "openDocument":
+                    return openDocument(args.getString(0), args.getString(1), callbackContext);
+                case "applyEdit":
+                    return applyEdit(args.getString(0), args.getInt(1), args.getInt(2), args.getString(3), callbackContext);
+                case "getDocumentText":
+                    return getDocumentText(args.getString(0), callbackContext);
+                case "closeDocument":
+                    return closeDocument(args.getString(0), callbackContext);
 
                 // Text statistics
                 case "getTextStats":
-                    return getTextStats(args.getString(0), callbackContext);
+                    return getTextStats(textArg(args, 0), callbackContext);
+                case "trackTextStats":
+                    return trackTextStats(args.getString(0), textArg(args, 1), callbackContext);
+                case "updateTextStats":
+                    return updateTextStats(args.getString(0), args.getInt(1), args.getInt(2), args.getString(3), callbackContext);
+                case "untrackTextStats":
+                    return untrackTextStats(args.getString(0), callbackContext);
 
                 // Text detection
                 case "detectPatterns":
-                    return detectPatterns(args.getString(0), callbackContext);
+                    return detectPatterns(textArg(args, 0), callbackContext);
+                case "trackPatterns":
+                    return trackPatterns(args.getString(0), textArg(args, 1), callbackContext);
+                case "updatePatterns":
+                    return updatePatterns(args.getString(0), args.getInt(1), args.getInt(2), args.getString(3), callbackContext);
+                case "getTrackedPatterns":
+                    return getTrackedPatterns(args.getString(0), callbackContext);
+                case "untrackPatterns":
+                    return untrackPatterns(args.getString(0), callbackContext);
 
                 // Encryption
                 case "encrypt":
-                    return encrypt(args.getString(0), args.getString(1), callbackContext);
+                    return encrypt(payloadArg(args, 0, args.optJSONObject(3)), args.getString(1), args.optJSONObject(3), callbackContext);
                 case "decrypt":
-                    return decrypt(args.getString(0), args.getString(1), args.getString(2), args.getString(3), callbackContext);
+                    return decrypt(args.getString(0), args.getString(1), args.getString(2), args.getString(3), args.optJSONObject(5), callbackContext);
+                case "encryptBatch":
+                    return encryptBatch(args.getJSONArray(0), args.getString(1), callbackContext);
+                case "decryptBatch":
+                    return decryptBatch(args.getJSONArray(0), args.getString(1), callbackContext);
+                case "encryptFile":
+                    return encryptFile(args.getString(0), args.getString(1), args.getString(2), callbackContext);
+                case "decryptFile":
+                    return decryptFile(args.getString(0), args.getString(1), args.getString(2), callbackContext);
                 case "hash":
-                    return hash(args.getString(0), args.getString(1), callbackContext);
+                    return hash(args, args.getString(1), args.optJSONObject(3), callbackContext);
+                case "hashBegin":
+                    return hashBegin(args.getString(0), callbackContext);
+                case "hashUpdate":
+                    return hashUpdate(args.getString(0), textArg(args, 1), callbackContext);
+                case "hashFinish":
+                    return hashFinish(args.getString(0), callbackContext);
+                case "hashFile":
+                    return hashFile(args.getString(0), args.getString(1), callbackContext);
 
                 // Search & Replace
                 case "search":
-                    return search(args.getString(0), args.getString(1), args.getBoolean(2), args.getBoolean(3), callbackContext);
+                    return search(textArg(args, 0), args.getString(1), args.getBoolean(2), args.getBoolean(3),
+                            optDocumentId(args, 4), args.optJSONObject(4), args.optJSONObject(5), callbackContext);
+                case "searchStream":
+                    return searchStream(textArg(args, 0), args.getString(1), args.getBoolean(2), args.getBoolean(3),
+                            optDocumentId(args, 4), args.optJSONObject(4), args.optJSONObject(5), callbackContext);
+                case "searchTerms":
+                    return searchTerms(textArg(args, 0), args.getJSONArray(1), args.getBoolean(2),
+                            optDocumentId(args, 3), args.optJSONObject(4), callbackContext);
                 case "replace":
-                    return replace(args.getString(0), args.getString(1), args.getString(2), args.getBoolean(3), args.getBoolean(4), args.getBoolean(5), callbackContext);
+                    return replace(textArg(args, 0), optDocumentRef(args, 0), args.getString(1), args.getString(2), args.getBoolean(3), args.getBoolean(4), args.getBoolean(5),
+                            args.optJSONObject(6), args.optJSONObject(7), callbackContext);
+                case "getPatternCacheStats":
+                    return getPatternCacheStats(callbackContext);
 
                 // Text formatting
                 case "formatText":
-                    return formatText(args.getString(0), args.getJSONObject(1), callbackContext);
+                    return formatText(textArg(args, 0), args.getJSONObject(1), callbackContext);
+                case "sortFile":
+                    return sortFile(args.getString(0), args.getString(1), args.optJSONObject(2), callbackContext);
+                case "dedupeFile":
+                    return dedupeFile(args.getString(0), args.getString(1), args.optJSONObject(2), callbackContext);
+
+                // Diff
+                case "diff":
+                    return diff(textArg(args, 0), textArg(args, 1),
+                            args.isNull(2) ? TextDiff.GRANULARITY_LINE : args.getString(2), args.optJSONObject(3), callbackContext);
 
                 // Undo/Redo
                 case "initUndoRedo":
-                    return initUndoRedo(args.getString(0), args.getInt(1), callbackContext);
+                    return initUndoRedo(textArg(args, 0), args.getInt(1), args.optLong(2, 0), optHistoryId(args, 3), callbackContext);
                 case "pushState":
-                    return pushState(args.getString(0), callbackContext);
+                    return pushState(textArg(args, 0), optHistoryId(args, 1), callbackContext);
+                case "pushEdit":
+                    return pushEdit(args.getInt(0), args.getInt(1), args.getString(2), optHistoryId(args, 3), callbackContext);
                 case "undo":
-                    return undo(callbackContext);
+                    return undo(optHistoryId(args, 0), callbackContext);
                 case "redo":
-                    return redo(callbackContext);
+                    return redo(optHistoryId(args, 0), callbackContext);
                 case "getUndoRedoState":
-                    return getUndoRedoState(callbackContext);
+                    return getUndoRedoState(optHistoryId(args, 0), callbackContext);
                 case "clearHistory":
-                    return clearHistory(callbackContext);
+                    return clearHistory(optHistoryId(args, 0), callbackContext);
+                case "disposeHistory":
+                    return disposeHistory(optHistoryId(args, 0), callbackContext);
+                case "setUndoBudget":
+                    undoHistories.setBudgetBytes(args.getLong(0));
+                    undoHistories.trim();
+                    return getUndoStats(callbackContext);
+                case "getUndoStats":
+                    return getUndoStats(callbackContext);
+
+                // Notebook index
+                case "indexDocument":
+                    return indexDocument(args.getString(0), textArg(args, 1), args.optJSONObject(2), callbackContext);
+                case "removeDocument":
+                    return removeDocument(args.getString(0), args.optJSONObject(1), callbackContext);
+                case "searchIndex":
+                    return searchIndex(args.getString(0), args.optJSONObject(1), callbackContext);
+
+                // Scheduling
+                case "batch":
+                    return batch(textArg(args, 0), args.getJSONArray(1), callbackContext);
+                case "cancel":
+                    return cancel(args.getString(0), callbackContext);
+
+                // Metrics
+                case "getMetrics":
+                    return getMetrics(args.optBoolean(0, false), callbackContext);
+                case "resetMetrics":
+                    metrics.reset();
+                    callbackContext.success();
+                    return true;
+                case "watchMetrics":
+                    return watchMetrics(args.optJSONObject(0), callbackContext);
+                case "unwatchMetrics":
+                    return unwatchMetrics(callbackContext);
 
                 // Share extension
                 case "getSharedContent":
@@ -112,6 +540,9 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
                     callbackContext.error("Unknown action: " + action);
                     return false;
             }
+        } catch (CancellationException e) {
+            callbackContext.error("Request cancelled");
+            return false;
         } catch (Exception e) {
             Log.e(TAG, "Error executing action: " + action, e);
             callbackContext.error(e.getMessage());
@@ -121,25 +552,51 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
 
     // ==================== Clipboard Operations ====================
 
+    private ClipboardManager getClipboardManager() {
+        if (clipboardManager == null) {
+            clipboardManager = (ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
+        }
+        return clipboardManager;
+    }
+
+    /**
+     * Text of the first clip item, "" for a non-text clip, or null when the
+     * clipboard is empty.
+     */
+    private static String readClipText(ClipboardManager clipboard) {
+        if (!clipboard.hasPrimaryClip()) {
+            return null;
+        }
+        ClipData clip = clipboard.getPrimaryClip();
+        if (clip == null || clip.getItemCount() == 0) {
+            return null;
+        }
+        CharSequence text = clip.getItemAt(0).getText();
+        return text != null ? text.toString() : "";
+    }
+
     private boolean getClipboard(CallbackContext callbackContext) throws JSONException {
-        ClipboardManager clipboard = (ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
+        ClipboardManager clipboard = getClipboardManager();
         JSONObject result = new JSONObject();
 
-        if (clipboard != null && clipboard.hasPrimaryClip()) {
-            ClipData clip = clipboard.getPrimaryClip();
-            if (clip != null && clip.getItemCount() > 0) {
-                ClipData.Item item = clip.getItemAt(0);
-                CharSequence text = item.getText();
-
-                result.put("hasContent", text != null && text.length() > 0);
-                result.put("text", text != null ? text.toString() : "");
-                result.put("contentType", "text");
-                result.put("timestamp", System.currentTimeMillis());
-            } else {
-                result.put("hasContent", false);
-                result.put("text", "");
-                result.put("contentType", "unknown");
+        String text = null;
+        boolean hasClip = false;
+        if (clipListener != null && lastClipText != null) {
+            text = lastClipText;
+            hasClip = true;
+        } else if (clipboard != null) {
+            text = readClipText(clipboard);
+            hasClip = text != null;
+            if (clipListener != null && hasClip) {
+                lastClipText = text;
             }
+        }
+
+        if (hasClip) {
+            result.put("hasContent", text.length() > 0);
+            result.put("text", text);
+            result.put("contentType", "text");
+            result.put("timestamp", System.currentTimeMillis());
         } else {
             result.put("hasContent", false);
             result.put("text", "");
@@ -151,7 +608,7 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
     }
 
     private boolean setClipboard(JSONObject options, CallbackContext callbackContext) throws JSONException {
-        ClipboardManager clipboard = (ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
+        ClipboardManager clipboard = getClipboardManager();
 
         String text = options.optString("text", "");
         String label = options.optString("label", "Copied Text");
@@ -167,7 +624,7 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
     }
 
     private boolean clearClipboard(CallbackContext callbackContext) {
-        ClipboardManager clipboard = (ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
+        ClipboardManager clipboard = getClipboardManager();
         if (clipboard != null) {
             ClipData clip = ClipData.newPlainText("", "");
             clipboard.setPrimaryClip(clip);
@@ -178,137 +635,355 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
         return true;
     }
 
-    // ==================== Text Statistics ====================
+    private boolean watchClipboard(JSONObject options, CallbackContext callbackContext) throws JSONException {
+        ClipboardManager clipboard = getClipboardManager();
+        if (clipboard == null) {
+            callbackContext.error("Clipboard not available");
+            return true;
+        }
+        if (options == null) {
+            options = new JSONObject();
+        }
 
-    private boolean getTextStats(String text, CallbackContext callbackContext) throws JSONException {
-        JSONObject result = new JSONObject();
+        // A new watch replaces the previous one
+        stopClipboardWatch();
+        clipboardHistory.setLimits(options.optInt("maxEntries", ClipboardHistory.DEFAULT_MAX_ENTRIES),
+                options.optLong("maxBytes", ClipboardHistory.DEFAULT_MAX_BYTES));
+        clipEventsIncludeText = options.optBoolean("includeText", true);
+        clipWatchCallback = callbackContext;
+        lastClipText = readClipText(clipboard);
+        clipListener = new ClipboardManager.OnPrimaryClipChangedListener() {
+            @Override
+            public void onPrimaryClipChanged() {
+                onClipChanged();
+            }
+        };
+        clipboard.addPrimaryClipChangedListener(clipListener);
 
-        // Character counts
-        result.put("characterCount", text.length());
-        result.put("characterCountNoSpaces", text.replaceAll("\\s", "").length());
+        JSONObject started = new JSONObject();
+        started.put("event", "started");
+        started.put("historySize", clipboardHistory.size());
+        sendClipboardEvent(started, true);
+        return true;
+    }
 
-        // Word count
-        String[] words = text.trim().split("\\s+");
-        int wordCount = text.trim().isEmpty() ? 0 : words.length;
-        result.put("wordCount", wordCount);
+    private boolean unwatchClipboard(CallbackContext callbackContext) {
+        stopClipboardWatch();
+        callbackContext.success();
+        return true;
+    }
 
-        // Unique words
-        Set<String> uniqueWords = new HashSet<>();
-        for (String word : words) {
-            if (!word.isEmpty()) {
-                uniqueWords.add(word.toLowerCase());
+    private void stopClipboardWatch() {
+        if (clipListener != null && clipboardManager != null) {
+            clipboardManager.removePrimaryClipChangedListener(clipListener);
+        }
+        clipListener = null;
+        if (clipWatchCallback != null) {
+            try {
+                JSONObject stopped = new JSONObject();
+                stopped.put("event", "stopped");
+                sendClipboardEvent(stopped, false);
+            } catch (JSONException e) {
+                Log.w(TAG, "Could not end clipboard watch", e);
             }
+            clipWatchCallback = null;
         }
-        result.put("uniqueWordCount", uniqueWords.size());
+    }
 
-        // Sentence count
-        String[] sentences = text.split("[.!?]+");
-        int sentenceCount = 0;
-        for (String s : sentences) {
-            if (!s.trim().isEmpty()) sentenceCount++;
+    // Runs on the main thread
+    private void onClipChanged() {
+        ClipboardManager clipboard = getClipboardManager();
+        String text = readClipText(clipboard);
+        if (text == null) {
+            text = "";
         }
-        result.put("sentenceCount", sentenceCount);
+        // Some devices report a single copy more than once
+        if (text.equals(lastClipText)) {
+            return;
+        }
+        lastClipText = text;
 
-        // Paragraph count
-        String[] paragraphs = text.split("\\n\\s*\\n");
-        int paragraphCount = 0;
-        for (String p : paragraphs) {
-            if (!p.trim().isEmpty()) paragraphCount++;
+        long timestamp = System.currentTimeMillis();
+        ClipboardHistory.Entry entry = clipboardHistory.add(text, timestamp);
+        try {
+            JSONObject event = new JSONObject();
+            event.put("event", "change");
+            if (clipEventsIncludeText) {
+                event.put("text", text);
+            }
+            event.put("length", text.length());
+            event.put("timestamp", timestamp);
+            if (entry != null) {
+                event.put("historyId", entry.id);
+            }
+            event.put("historySize", clipboardHistory.size());
+            sendClipboardEvent(event, true);
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not send clipboard event", e);
         }
-        result.put("paragraphCount", Math.max(paragraphCount, text.trim().isEmpty() ? 0 : 1));
+    }
 
-        // Line count
-        String[] lines = text.split("\\n");
-        result.put("lineCount", lines.length);
+    private void sendClipboardEvent(JSONObject event, boolean keepCallback) {
+        CallbackContext callback = clipWatchCallback;
+        if (callback == null) {
+            return;
+        }
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, event);
+        pluginResult.setKeepCallback(keepCallback);
+        callback.sendPluginResult(pluginResult);
+    }
 
-        // Average word length
-        double avgWordLength = 0;
-        if (wordCount > 0) {
-            int totalChars = 0;
-            for (String word : words) {
-                totalChars += word.replaceAll("[^a-zA-Z0-9]", "").length();
-            }
-            avgWordLength = (double) totalChars / wordCount;
+    private boolean getClipboardHistory(int offset, int limit, CallbackContext callbackContext) throws JSONException {
+        offset = Math.max(0, offset);
+        List<ClipboardHistory.Entry> page = clipboardHistory.getPage(offset, limit);
+        JSONArray entries = new JSONArray();
+        for (ClipboardHistory.Entry entry : page) {
+            JSONObject item = new JSONObject();
+            item.put("id", entry.id);
+            item.put("text", entry.text);
+            item.put("timestamp", entry.timestamp);
+            entries.put(item);
         }
-        result.put("averageWordLength", Math.round(avgWordLength * 100.0) / 100.0);
 
-        // Reading time (avg 200 words per minute)
-        double readingTime = wordCount / 200.0;
-        result.put("readingTimeMinutes", Math.round(readingTime * 100.0) / 100.0);
+        int total = clipboardHistory.size();
+        JSONObject result = new JSONObject();
+        result.put("entries", entries);
+        result.put("total", total);
+        result.put("offset", offset);
+        result.put("hasMore", offset + page.size() < total);
+        result.put("totalBytes", clipboardHistory.getTotalBytes());
+        callbackContext.success(result);
+        return true;
+    }
+
+    // ==================== Documents ====================
+
+    private boolean openDocument(String documentId, String text, CallbackContext callbackContext) throws JSONException {
+        PieceTable document = new PieceTable(text);
+        synchronized (documents) {
+            documents.put(documentId, document);
+        }
+        callbackContext.success(toJson(documentId, document));
+        return true;
+    }
 
-        // Speaking time (avg 150 words per minute)
-        double speakingTime = wordCount / 150.0;
-        result.put("speakingTimeMinutes", Math.round(speakingTime * 100.0) / 100.0);
+    private boolean applyEdit(String documentId, int start, int end, String insertedText, CallbackContext callbackContext) throws JSONException {
+        PieceTable document;
+        synchronized (documents) {
+            document = documents.get(documentId);
+        }
+        if (document == null) {
+            callbackContext.error("Unknown document: " + documentId);
+            return true;
+        }
+        document.applyEdit(start, end, insertedText);
+        callbackContext.success(toJson(documentId, document));
+        return true;
+    }
 
+    private boolean getDocumentText(String documentId, CallbackContext callbackContext) throws JSONException {
+        PieceTable document;
+        synchronized (documents) {
+            document = documents.get(documentId);
+        }
+        if (document == null) {
+            callbackContext.error("Unknown document: " + documentId);
+            return true;
+        }
+        JSONObject result = toJson(documentId, document);
+        result.put("text", document.toString());
         callbackContext.success(result);
         return true;
     }
 
-    // ==================== Text Detection ====================
+    private boolean closeDocument(String documentId, CallbackContext callbackContext) {
+        synchronized (documents) {
+            documents.remove(documentId);
+        }
+        callbackContext.success();
+        return true;
+    }
 
-    private boolean detectPatterns(String text, CallbackContext callbackContext) throws JSONException {
+    private JSONObject toJson(String documentId, PieceTable document) throws JSONException {
         JSONObject result = new JSONObject();
+        result.put("documentId", documentId);
+        result.put("length", document.length());
+        result.put("version", document.getVersion());
+        return result;
+    }
+
+    // ==================== Text Statistics ====================
+
+    private boolean getTextStats(String text, CallbackContext callbackContext) throws JSONException {
+        callbackContext.success(toJson(TextStats.compute(text)));
+        return true;
+    }
 
-        // URLs
-        Pattern urlPattern = Pattern.compile("https?://[\\w\\-._~:/?#\\[\\]@!$&'()*+,;=%]+", Pattern.CASE_INSENSITIVE);
-        result.put("urls", findAllMatches(urlPattern, text));
+    private boolean trackTextStats(String documentId, String text, CallbackContext callbackContext) throws JSONException {
+        TextStatsDocument document = new TextStatsDocument(text);
+        synchronized (statsDocuments) {
+            statsDocuments.put(documentId, document);
+        }
+        callbackContext.success(toJson(document.getStats()));
+        return true;
+    }
+
+    private boolean updateTextStats(String documentId, int start, int end, String insertedText, CallbackContext callbackContext) throws JSONException {
+        TextStatsDocument document;
+        synchronized (statsDocuments) {
+            document = statsDocuments.get(documentId);
+        }
+        if (document == null) {
+            callbackContext.error("Unknown document: " + documentId);
+            return true;
+        }
+        TextStats stats;
+        synchronized (document) {
+            document.applyEdit(start, end, insertedText);
+            stats = document.getStats();
+        }
+        callbackContext.success(toJson(stats));
+        return true;
+    }
+
+    private boolean untrackTextStats(String documentId, CallbackContext callbackContext) {
+        synchronized (statsDocuments) {
+            statsDocuments.remove(documentId);
+        }
+        callbackContext.success();
+        return true;
+    }
 
-        // Emails
-        Pattern emailPattern = Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}");
-        result.put("emails", findAllMatches(emailPattern, text));
+    private JSONObject toJson(TextStats stats) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("characterCount", stats.characterCount);
+        result.put("characterCountNoSpaces", stats.characterCountNoSpaces);
+        result.put("wordCount", stats.wordCount);
+        result.put("uniqueWordCount", stats.uniqueWordCount);
+        result.put("sentenceCount", stats.sentenceCount);
+        result.put("paragraphCount", stats.paragraphCount);
+        result.put("lineCount", stats.lineCount);
+        result.put("averageWordLength", stats.averageWordLength);
+        result.put("readingTimeMinutes", stats.readingTimeMinutes);
+        result.put("speakingTimeMinutes", stats.speakingTimeMinutes);
+        return result;
+    }
 
-        // Phone numbers
-        Pattern phonePattern = Pattern.compile("(\\+?\\d{1,3}[-.\\s]?)?(\\(?\\d{2,4}\\)?[-.\\s]?)?\\d{3,4}[-.\\s]?\\d{3,4}");
-        result.put("phoneNumbers", findAllMatches(phonePattern, text));
+    // ==================== Text Detection ====================
 
-        // Hashtags
-        Pattern hashtagPattern = Pattern.compile("#[a-zA-Z0-9_]+");
-        result.put("hashtags", findAllMatches(hashtagPattern, text));
+    private boolean detectPatterns(String text, CallbackContext callbackContext) throws JSONException {
+        callbackContext.success(toJson(text, PatternDetector.detect(text)));
+        return true;
+    }
 
-        // Mentions
-        Pattern mentionPattern = Pattern.compile("@[a-zA-Z0-9_]+");
-        result.put("mentions", findAllMatches(mentionPattern, text));
+    private boolean trackPatterns(String documentId, String text, CallbackContext callbackContext) throws JSONException {
+        PatternDocument document = new PatternDocument(text);
+        synchronized (patternDocuments) {
+            patternDocuments.put(documentId, document);
+        }
+        JSONObject result;
+        synchronized (document) {
+            result = toJson(document.getText(), document.getMatches());
+        }
+        callbackContext.success(result);
+        return true;
+    }
 
-        // Dates (various formats)
-        Pattern datePattern = Pattern.compile("\\d{1,2}[/\\-.]\\d{1,2}[/\\-.]\\d{2,4}|\\d{4}[/\\-.]\\d{1,2}[/\\-.]\\d{1,2}");
-        result.put("dates", findAllMatches(datePattern, text));
+    private boolean updatePatterns(String documentId, int start, int end, String insertedText, CallbackContext callbackContext) throws JSONException {
+        PatternDocument document;
+        synchronized (patternDocuments) {
+            document = patternDocuments.get(documentId);
+        }
+        if (document == null) {
+            callbackContext.error("Unknown document: " + documentId);
+            return true;
+        }
+        JSONObject result = new JSONObject();
+        // The text is live, so the edit and everything read from it happen under one lock
+        synchronized (document) {
+            document.applyEdit(start, end, insertedText);
+
+            // Only the rescanned range is sent back; matches outside it only shift by lengthDelta
+            int rescanStart = document.getLastRescanStart();
+            int rescanEnd = document.getLastRescanEnd();
+            result.put("rescannedStart", rescanStart);
+            result.put("rescannedEnd", rescanEnd);
+            result.put("lengthDelta", insertedText.length() - (end - start));
+            result.put("matches", toMatchArray(document.getText(), document.collect(rescanStart, rescanEnd)));
+        }
+        callbackContext.success(result);
+        return true;
+    }
 
+    private boolean getTrackedPatterns(String documentId, CallbackContext callbackContext) throws JSONException {
+        PatternDocument document;
+        synchronized (patternDocuments) {
+            document = patternDocuments.get(documentId);
+        }
+        if (document == null) {
+            callbackContext.error("Unknown document: " + documentId);
+            return true;
+        }
+        JSONObject result;
+        synchronized (document) {
+            result = toJson(document.getText(), document.getMatches());
+        }
         callbackContext.success(result);
         return true;
     }
 
-    private JSONArray findAllMatches(Pattern pattern, String text) {
-        JSONArray matches = new JSONArray();
-        Matcher matcher = pattern.matcher(text);
-        while (matcher.find()) {
-            matches.put(matcher.group());
+    private boolean untrackPatterns(String documentId, CallbackContext callbackContext) {
+        synchronized (patternDocuments) {
+            patternDocuments.remove(documentId);
+        }
+        callbackContext.success();
+        return true;
+    }
+
+    private JSONObject toJson(CharSequence text, PatternDetector.Matches matches) throws JSONException {
+        JSONObject result = new JSONObject();
+        JSONArray[] byType = new JSONArray[PatternDetector.TYPE_KEYS.length];
+        for (int t = 0; t < byType.length; t++) {
+            byType[t] = new JSONArray();
+            result.put(PatternDetector.TYPE_KEYS[t], byType[t]);
+        }
+        // Per-type arrays keep the order of the matcher, which finds each type left to right
+        for (int i = 0; i < matches.size(); i++) {
+            byType[matches.type(i)].put(text.subSequence(matches.start(i), matches.end(i)).toString());
+        }
+        result.put("matches", toMatchArray(text, matches));
+        return result;
+    }
+
+    private JSONArray toMatchArray(CharSequence text, PatternDetector.Matches matches) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (Integer i : matches.orderByStart()) {
+            JSONObject match = new JSONObject();
+            match.put("type", PatternDetector.TYPE_KEYS[matches.type(i)]);
+            match.put("value", text.subSequence(matches.start(i), matches.end(i)).toString());
+            match.put("start", matches.start(i));
+            match.put("end", matches.end(i));
+            array.put(match);
         }
-        return matches;
+        return array;
     }
 
     // ==================== Encryption ====================
 
-    private boolean encrypt(String text, String password, CallbackContext callbackContext) throws JSONException {
+    private boolean encrypt(byte[] data, String password, JSONObject transport, CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
         try {
-            // Generate salt and IV
-            SecureRandom random = new SecureRandom();
-            byte[] salt = new byte[16];
-            byte[] iv = new byte[16];
-            random.nextBytes(salt);
-            random.nextBytes(iv);
-
-            // Derive key from password
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 256);
-            SecretKey tmp = factory.generateSecret(spec);
-            SecretKeySpec secretKey = new SecretKeySpec(tmp.getEncoded(), "AES");
-
-            // Encrypt
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(iv));
-            byte[] encrypted = cipher.doFinal(text.getBytes(StandardCharsets.UTF_8));
+            // Generate salt and derive key from password
+            byte[] salt = textCrypto.newSalt();
+            SecretKeySpec secretKey = textCrypto.deriveKey(password, salt);
+
+            byte[] iv = textCrypto.newIv();
+            byte[] encrypted = TextCrypto.encrypt(data, iv, secretKey);
 
+            if (isBinaryOutput(transport)) {
+                sendBinaryParts(callbackContext, iv, salt, encrypted);
+                return true;
+            }
             result.put("encryptedData", Base64.encodeToString(encrypted, Base64.NO_WRAP));
             result.put("iv", Base64.encodeToString(iv, Base64.NO_WRAP));
             result.put("salt", Base64.encodeToString(salt, Base64.NO_WRAP));
@@ -321,24 +996,17 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
         return true;
     }
 
-    private boolean decrypt(String encryptedData, String password, String ivStr, String saltStr, CallbackContext callbackContext) throws JSONException {
+    private boolean decrypt(String encryptedData, String password, String ivStr, String saltStr, JSONObject transport, CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
         try {
-            byte[] encrypted = Base64.decode(encryptedData, Base64.NO_WRAP);
-            byte[] iv = Base64.decode(ivStr, Base64.NO_WRAP);
             byte[] salt = Base64.decode(saltStr, Base64.NO_WRAP);
+            SecretKeySpec secretKey = textCrypto.deriveKey(password, salt);
 
-            // Derive key from password
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 256);
-            SecretKey tmp = factory.generateSecret(spec);
-            SecretKeySpec secretKey = new SecretKeySpec(tmp.getEncoded(), "AES");
-
-            // Decrypt
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-            byte[] decrypted = cipher.doFinal(encrypted);
-
+            byte[] decrypted = TextCrypto.decrypt(Base64.decode(encryptedData, Base64.NO_WRAP), Base64.decode(ivStr, Base64.NO_WRAP), secretKey);
+            if (isBinaryOutput(transport)) {
+                callbackContext.success(decrypted);
+                return true;
+            }
             result.put("decryptedText", new String(decrypted, StandardCharsets.UTF_8));
             result.put("success", true);
         } catch (Exception e) {
@@ -349,31 +1017,34 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
         return true;
     }
 
-    private boolean hash(String text, String algorithm, CallbackContext callbackContext) throws JSONException {
+    private boolean encryptBatch(JSONArray texts, String password, CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
+        JSONArray items = new JSONArray();
         try {
-            String alg = algorithm;
-            if ("MD5".equals(algorithm)) {
-                alg = "MD5";
-            } else if ("SHA-512".equals(algorithm)) {
-                alg = "SHA-512";
-            } else {
-                alg = "SHA-256";
-            }
-
-            MessageDigest digest = MessageDigest.getInstance(alg);
-            byte[] hashBytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+            // One salt and one key derivation for the whole batch; every item gets its own IV
+            byte[] salt = textCrypto.newSalt();
+            SecretKeySpec secretKey = textCrypto.deriveKey(password, salt);
+            String saltStr = Base64.encodeToString(salt, Base64.NO_WRAP);
+
+            for (int i = 0; i < texts.length(); i++) {
+                ActionScheduler.checkCancelled();
+                JSONObject item = new JSONObject();
+                try {
+                    putEncrypted(item, texts.getString(i), secretKey);
+                    item.put("salt", saltStr);
+                    item.put("success", true);
+                } catch (Exception e) {
+                    item.put("success", false);
+                    item.put("error", e.getMessage());
+                }
+                items.put(item);
             }
-
-            result.put("hash", hexString.toString());
-            result.put("algorithm", alg);
+            result.put("results", items);
             result.put("success", true);
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
+            result.put("results", items);
             result.put("success", false);
             result.put("error", e.getMessage());
         }
@@ -381,173 +1052,750 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
         return true;
     }
 
-    // ==================== Search & Replace ====================
-
-    private boolean search(String text, String searchTerm, boolean caseSensitive, boolean isRegex, CallbackContext callbackContext) throws JSONException {
+    private boolean decryptBatch(JSONArray encryptedItems, String password, CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
-        JSONArray matches = new JSONArray();
-
-        try {
-            Pattern pattern;
-            if (isRegex) {
-                int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-                pattern = Pattern.compile(searchTerm, flags);
-            } else {
-                int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-                pattern = Pattern.compile(Pattern.quote(searchTerm), flags);
+        JSONArray items = new JSONArray();
+        int failedCount = 0;
+
+        // Items usually share a salt, so at most one derivation per distinct salt
+        for (int i = 0; i < encryptedItems.length(); i++) {
+            ActionScheduler.checkCancelled();
+            JSONObject item = new JSONObject();
+            try {
+                JSONObject encrypted = encryptedItems.getJSONObject(i);
+                byte[] salt = Base64.decode(encrypted.getString("salt"), Base64.NO_WRAP);
+                SecretKeySpec secretKey = textCrypto.deriveKey(password, salt);
+                item.put("decryptedText", decryptWithKey(encrypted.getString("encryptedData"), encrypted.getString("iv"), secretKey));
+                item.put("success", true);
+            } catch (Exception e) {
+                failedCount++;
+                item.put("success", false);
+                item.put("error", e.getMessage());
             }
+            items.put(item);
+        }
 
-            Matcher matcher = pattern.matcher(text);
-            String[] lines = text.split("\n");
+        result.put("results", items);
+        result.put("failedCount", failedCount);
+        result.put("success", failedCount == 0);
+        callbackContext.success(result);
+        return true;
+    }
 
-            while (matcher.find()) {
-                JSONObject match = new JSONObject();
-                match.put("start", matcher.start());
-                match.put("end", matcher.end());
-                match.put("matchedText", matcher.group());
-
-                // Find line number
-                int lineNumber = 1;
-                int charCount = 0;
-                for (int i = 0; i < lines.length; i++) {
-                    charCount += lines[i].length() + 1;
-                    if (charCount > matcher.start()) {
-                        lineNumber = i + 1;
-                        break;
-                    }
+    private boolean encryptFile(String inputPath, String outputPath, final String password, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        try {
+            FileCrypto.Result stats = FileCrypto.encrypt(toFile(inputPath), toFile(outputPath), new FileCrypto.KeyDeriver() {
+                @Override
+                public SecretKeySpec derive(byte[] salt) throws GeneralSecurityException {
+                    return textCrypto.deriveKey(password, salt);
                 }
-                match.put("lineNumber", lineNumber);
-
-                // Context (30 chars before and after)
-                int contextStart = Math.max(0, matcher.start() - 30);
-                int contextEnd = Math.min(text.length(), matcher.end() + 30);
-                match.put("context", text.substring(contextStart, contextEnd));
-
-                matches.put(match);
-            }
-
-            result.put("matches", matches);
-            result.put("matchCount", matches.length());
-            result.put("searchTerm", searchTerm);
-            result.put("caseSensitive", caseSensitive);
-            result.put("isRegex", isRegex);
+            }, FileCrypto.DEFAULT_SEGMENT_SIZE);
+            putFileCryptoResult(result, outputPath, stats, stats.inputBytes);
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
-            result.put("matches", new JSONArray());
-            result.put("matchCount", 0);
+            result.put("success", false);
             result.put("error", e.getMessage());
         }
-
         callbackContext.success(result);
         return true;
     }
 
-    private boolean replace(String text, String searchTerm, String replacement, boolean replaceAll, boolean caseSensitive, boolean isRegex, CallbackContext callbackContext) throws JSONException {
+    private boolean decryptFile(String inputPath, String outputPath, final String password, CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
-
         try {
-            Pattern pattern;
-            if (isRegex) {
-                int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-                pattern = Pattern.compile(searchTerm, flags);
-            } else {
-                int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-                pattern = Pattern.compile(Pattern.quote(searchTerm), flags);
-            }
+            FileCrypto.Result stats = FileCrypto.decrypt(toFile(inputPath), toFile(outputPath), new FileCrypto.KeyDeriver() {
+                @Override
+                public SecretKeySpec derive(byte[] salt) throws GeneralSecurityException {
+                    return textCrypto.deriveKey(password, salt);
+                }
+            });
+            putFileCryptoResult(result, outputPath, stats, stats.outputBytes);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        callbackContext.success(result);
+        return true;
+    }
+
+    private void putFileCryptoResult(JSONObject result, String outputPath, FileCrypto.Result stats, long plaintextBytes) throws JSONException {
+        result.put("outputPath", outputPath);
+        result.put("inputBytes", stats.inputBytes);
+        result.put("outputBytes", stats.outputBytes);
+        result.put("durationMs", stats.durationNanos / 1000000);
+        result.put("throughputMBps", Math.round(stats.throughputMBps(plaintextBytes) * 100.0) / 100.0);
+        result.put("success", true);
+    }
 
-            Matcher matcher = pattern.matcher(text);
-            String resultText;
-            int count = 0;
+    private File toFile(String path) {
+        if (path.startsWith("file://")) {
+            path = Uri.parse(path).getPath();
+        }
+        return new File(path);
+    }
+
+    private void putEncrypted(JSONObject result, String text, SecretKeySpec secretKey) throws GeneralSecurityException, JSONException {
+        byte[] iv = textCrypto.newIv();
+        byte[] encrypted = TextCrypto.encrypt(text.getBytes(StandardCharsets.UTF_8), iv, secretKey);
+
+        result.put("encryptedData", Base64.encodeToString(encrypted, Base64.NO_WRAP));
+        result.put("iv", Base64.encodeToString(iv, Base64.NO_WRAP));
+    }
+
+    private String decryptWithKey(String encryptedData, String ivStr, SecretKeySpec secretKey) throws GeneralSecurityException {
+        byte[] encrypted = Base64.decode(encryptedData, Base64.NO_WRAP);
+        byte[] iv = Base64.decode(ivStr, Base64.NO_WRAP);
+        return new String(TextCrypto.decrypt(encrypted, iv, secretKey), StandardCharsets.UTF_8);
+    }
 
-            if (replaceAll) {
-                while (matcher.find()) count++;
-                matcher.reset();
-                resultText = matcher.replaceAll(replacement);
+    private boolean hash(JSONArray args, String algorithm, JSONObject transport, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        try {
+            Hasher hasher = Hasher.create(algorithm);
+            if (isBinaryInput(transport)) {
+                byte[] data = Base64.decode(args.getString(0), Base64.NO_WRAP);
+                hasher.update(data, 0, data.length);
             } else {
-                if (matcher.find()) count = 1;
-                matcher.reset();
-                resultText = matcher.replaceFirst(replacement);
+                // Text is encoded incrementally rather than copied to a byte[]
+                hasher.update(textArg(args, 0));
             }
 
-            result.put("resultText", resultText);
-            result.put("replacementCount", count);
+            if (isBinaryOutput(transport)) {
+                callbackContext.success(hasher.finish());
+                return true;
+            }
+            result.put("hash", hasher.finishHex());
+            result.put("algorithm", hasher.getAlgorithm());
             result.put("success", true);
         } catch (Exception e) {
-            result.put("resultText", text);
-            result.put("replacementCount", 0);
             result.put("success", false);
             result.put("error", e.getMessage());
         }
-
         callbackContext.success(result);
         return true;
     }
 
-    // ==================== Text Formatting ====================
-
-    private boolean formatText(String text, JSONObject options, CallbackContext callbackContext) throws JSONException {
+    private boolean hashBegin(String algorithm, CallbackContext callbackContext) throws JSONException {
         JSONObject result = new JSONObject();
-        JSONArray changesMade = new JSONArray();
-        String formattedText = text;
-
         try {
-            if (options.optBoolean("trim", false)) {
-                formattedText = formattedText.trim();
-                changesMade.put("Trimmed whitespace");
-            }
-
-            if (options.optBoolean("removeExtraSpaces", false)) {
-                formattedText = formattedText.replaceAll(" +", " ");
-                changesMade.put("Removed extra spaces");
+            Hasher hasher = Hasher.create(algorithm);
+            String sessionId = "hash-" + hashSessionIds.incrementAndGet();
+            synchronized (hashSessions) {
+                hashSessions.put(sessionId, hasher);
             }
-
+            result.put("sessionId", sessionId);
+            result.put("algorithm", hasher.getAlgorithm());
+            result.put("success", true);
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        callbackContext.success(result);
+        return true;
+    }
+
+    private boolean hashUpdate(String sessionId, String text, CallbackContext callbackContext) throws JSONException {
+        Hasher hasher;
+        synchronized (hashSessions) {
+            hasher = hashSessions.get(sessionId);
+        }
+        if (hasher == null) {
+            callbackContext.error("Unknown hash session: " + sessionId);
+            return true;
+        }
+        hasher.update(text);
+
+        JSONObject result = new JSONObject();
+        result.put("sessionId", sessionId);
+        result.put("bytesProcessed", hasher.getBytesProcessed());
+        result.put("success", true);
+        callbackContext.success(result);
+        return true;
+    }
+
+    private boolean hashFinish(String sessionId, CallbackContext callbackContext) throws JSONException {
+        Hasher hasher;
+        synchronized (hashSessions) {
+            hasher = hashSessions.remove(sessionId);
+        }
+        if (hasher == null) {
+            callbackContext.error("Unknown hash session: " + sessionId);
+            return true;
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("hash", hasher.finishHex());
+        result.put("algorithm", hasher.getAlgorithm());
+        result.put("bytesProcessed", hasher.getBytesProcessed());
+        result.put("success", true);
+        callbackContext.success(result);
+        return true;
+    }
+
+    private boolean hashFile(String path, String algorithm, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        try {
+            Hasher hasher = Hasher.create(algorithm);
+            hasher.updateFile(toFile(path));
+
+            result.put("hash", hasher.finishHex());
+            result.put("algorithm", hasher.getAlgorithm());
+            result.put("bytesProcessed", hasher.getBytesProcessed());
+            result.put("success", true);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        callbackContext.success(result);
+        return true;
+    }
+
+    // ==================== Search & Replace ====================
+
+    private boolean search(final String text, final String searchTerm, final boolean caseSensitive, final boolean isRegex,
+                           final String documentId, JSONObject execOptions, final JSONObject searchOptions,
+                           final CallbackContext callbackContext) throws Exception {
+        final JSONObject result = new JSONObject();
+        final JSONArray matches = new JSONArray();
+        final int offset = searchOptions != null ? Math.max(0, searchOptions.optInt("offset", 0)) : 0;
+        final int limit = searchOptions != null ? searchOptions.optInt("limit", 0) : 0;
+        final long timeoutMs = optRegexTimeout(searchOptions);
+        result.put("searchTerm", searchTerm);
+        result.put("caseSensitive", caseSensitive);
+        result.put("isRegex", isRegex);
+
+        runRegexJob(SearchMatcher.usesRegex(searchTerm, isRegex), "search", documentId, execOptions, timeoutMs,
+                callbackContext, new RegexJob("search", callbackContext) {
+            private int matchCount;
+
+            @Override
+            public void run(RegexRunner.Ticket ticket) throws Exception {
+                try {
+                    SearchMatcher matcher = SearchMatcher.create(patternCache, searchTerm, caseSensitive, isRegex, text,
+                            timeoutMs, optRegexMaxSteps(searchOptions));
+                    LineIndex lines = null;
+                    while (matcher.find()) {
+                        ActionScheduler.checkCancelled();
+                        // The watchdog reads the matches found so far once it claims the ticket
+                        synchronized (ticket) {
+                            if (ticket.isClaimed()) {
+                                return;
+                            }
+                            int index = matchCount++;
+                            // Matches outside the requested page are only counted
+                            if (index < offset || (limit > 0 && index >= offset + limit)) {
+                                continue;
+                            }
+                            if (lines == null) {
+                                lines = getLineIndex(documentId, text);
+                            }
+                            matches.put(toSearchMatch(matcher, text, lines));
+                        }
+                    }
+                } catch (BudgetedCharSequence.BudgetExceededException e) {
+                    if (ticket.claim()) {
+                        onTimeout(e);
+                    }
+                    return;
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (ticket.claim()) {
+                        result.put("matches", new JSONArray());
+                        result.put("matchCount", 0);
+                        result.put("error", e.getMessage());
+                        callbackContext.success(result);
+                    }
+                    return;
+                }
+                if (ticket.claim()) {
+                    sendPage(null);
+                }
+            }
+
+            @Override
+            public void onTimeout(BudgetedCharSequence.BudgetExceededException e) throws JSONException {
+                // Keep what was found before the budget ran out
+                sendPage(e);
+            }
+
+            private void sendPage(Exception timeout) throws JSONException {
+                boolean timedOut = timeout != null;
+                result.put("matches", matches);
+                result.put("matchCount", matchCount);
+                result.put("offset", offset);
+                result.put("hasMore", timedOut || offset + matches.length() < matchCount);
+                result.put("timedOut", timedOut);
+                if (timedOut) {
+                    result.put("error", timeout.getMessage());
+                }
+                callbackContext.success(result);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Streams matches in batches through a kept callback. Each batch is sent
+     * once it holds batchSize matches or the scan has run STREAM_FLUSH_MS
+     * since the previous batch; the final message has done set and the totals.
+     */
+    private boolean searchStream(final String text, final String searchTerm, final boolean caseSensitive, final boolean isRegex,
+                                 final String documentId, JSONObject execOptions, final JSONObject searchOptions,
+                                 final CallbackContext callbackContext) throws Exception {
+        final int batchSize = searchOptions != null ? Math.max(1, searchOptions.optInt("batchSize", STREAM_BATCH_SIZE)) : STREAM_BATCH_SIZE;
+        final int limit = searchOptions != null ? searchOptions.optInt("limit", 0) : 0;
+        final long timeoutMs = optRegexTimeout(searchOptions);
+
+        final JSONObject result = new JSONObject();
+        result.put("done", true);
+        result.put("searchTerm", searchTerm);
+        result.put("caseSensitive", caseSensitive);
+        result.put("isRegex", isRegex);
+
+        runRegexJob(SearchMatcher.usesRegex(searchTerm, isRegex), "searchStream", documentId, execOptions, timeoutMs,
+                callbackContext, new RegexJob("searchStream", callbackContext) {
+            private JSONArray batch = new JSONArray();
+            private int matchCount;
+            private int batchCount;
+
+            @Override
+            public void run(RegexRunner.Ticket ticket) throws Exception {
+                SearchMatcher matcher;
+                try {
+                    matcher = SearchMatcher.create(patternCache, searchTerm, caseSensitive, isRegex, text,
+                            timeoutMs, optRegexMaxSteps(searchOptions));
+                } catch (Exception e) {
+                    if (ticket.claim()) {
+                        result.put("matchCount", 0);
+                        result.put("batchCount", 0);
+                        result.put("error", e.getMessage());
+                        callbackContext.success(result);
+                    }
+                    return;
+                }
+
+                LineIndex lines = getLineIndex(documentId, text);
+                long lastFlush = System.nanoTime();
+                boolean hasMore;
+                try {
+                    while ((limit <= 0 || matchCount < limit) && matcher.find()) {
+                        ActionScheduler.checkCancelled();
+                        // No batch may follow the final message the watchdog sends
+                        synchronized (ticket) {
+                            if (ticket.isClaimed()) {
+                                return;
+                            }
+                            matchCount++;
+                            batch.put(toSearchMatch(matcher, text, lines));
+                            if (batch.length() >= batchSize || System.nanoTime() - lastFlush >= STREAM_FLUSH_MS * 1000000L) {
+                                flushBatch();
+                                lastFlush = System.nanoTime();
+                            }
+                        }
+                    }
+                    hasMore = limit > 0 && matchCount == limit && matcher.find();
+                } catch (BudgetedCharSequence.BudgetExceededException e) {
+                    if (ticket.claim()) {
+                        onTimeout(e);
+                    }
+                    return;
+                }
+                if (ticket.claim()) {
+                    finish(hasMore, null);
+                }
+            }
+
+            @Override
+            public void onTimeout(BudgetedCharSequence.BudgetExceededException e) throws JSONException {
+                finish(true, e);
+            }
+
+            private void flushBatch() throws JSONException {
+                sendSearchBatch(batch, matchCount, callbackContext);
+                batchCount++;
+                batch = new JSONArray();
+            }
+
+            private void finish(boolean hasMore, Exception timeout) throws JSONException {
+                if (batch.length() > 0) {
+                    flushBatch();
+                }
+                result.put("matchCount", matchCount);
+                result.put("batchCount", batchCount);
+                result.put("hasMore", hasMore);
+                result.put("timedOut", timeout != null);
+                if (timeout != null) {
+                    result.put("error", timeout.getMessage());
+                }
+                callbackContext.success(result);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Finds many literal terms in one pass, e.g. to highlight a keyword list.
+     * Overlapping terms resolve leftmost-longest.
+     */
+    private boolean searchTerms(final String text, JSONArray termsArray, boolean caseSensitive, String documentId, JSONObject searchOptions, CallbackContext callbackContext) throws JSONException {
+        final int offset = searchOptions != null ? Math.max(0, searchOptions.optInt("offset", 0)) : 0;
+        final int limit = searchOptions != null ? searchOptions.optInt("limit", 0) : 0;
+        final String[] terms = new String[termsArray.length()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = termsArray.optString(i, "");
+        }
+
+        final LineIndex lines = getLineIndex(documentId, text);
+        final JSONArray matches = new JSONArray();
+        final int[] termCounts = new int[terms.length];
+        final int[] matchCount = new int[1];
+        new MultiLiteralSearcher(terms, caseSensitive).findAll(text, new MultiLiteralSearcher.Listener() {
+            @Override
+            public void onMatch(int termIndex, int start, int end) {
+                int index = matchCount[0]++;
+                termCounts[termIndex]++;
+                if (index < offset || (limit > 0 && index >= offset + limit)) {
+                    return;
+                }
+                try {
+                    JSONObject match = toSearchMatch(start, end, text, lines);
+                    match.put("termIndex", termIndex);
+                    matches.put(match);
+                } catch (JSONException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        JSONObject result = new JSONObject();
+        JSONArray counts = new JSONArray();
+        for (int count : termCounts) {
+            counts.put(count);
+        }
+        result.put("matches", matches);
+        result.put("matchCount", matchCount[0]);
+        result.put("termCounts", counts);
+        result.put("offset", offset);
+        result.put("hasMore", offset + matches.length() < matchCount[0]);
+        result.put("caseSensitive", caseSensitive);
+        callbackContext.success(result);
+        return true;
+    }
+
+    /**
+     * Runs search or replace work. Work that goes through the regex engine
+     * is handed to the regex runner, so a runaway pattern holds one of its
+     * threads instead of this worker and the watchdog answers the call when
+     * the time budget runs out. Literal work runs right here.
+     */
+    private void runRegexJob(boolean usesRegex, String action, String documentId, JSONObject execOptions,
+                             long timeoutMs, CallbackContext callbackContext, RegexJob job) throws Exception {
+        if (!usesRegex) {
+            job.run(new RegexRunner.Ticket());
+            return;
+        }
+        if (callbackContext instanceof BatchStepContext) {
+            ((BatchStepContext) callbackContext).expectLateResult();
+        }
+        String requestId = execOptions != null ? execOptions.optString("requestId", null) : null;
+        regexRunner.submit(requestId, supersedeKey(action, documentId), timeoutMs, job);
+    }
+
+    /**
+     * A regex runner job that reports cancellation and failure the way
+     * scheduled actions do.
+     */
+    private abstract class RegexJob implements RegexRunner.Job {
+        private final String action;
+        private final CallbackContext callbackContext;
+
+        RegexJob(String action, CallbackContext callbackContext) {
+            this.action = action;
+            this.callbackContext = callbackContext;
+        }
+
+        @Override
+        public void onCancelled(String requestId) {
+            callbackContext.error("Request cancelled: " + requestId);
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            Log.e(TAG, "Error executing action: " + action, e);
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    private static long optRegexTimeout(JSONObject options) {
+        return options != null ? options.optLong("timeoutMs", DEFAULT_REGEX_TIMEOUT_MS) : DEFAULT_REGEX_TIMEOUT_MS;
+    }
+
+    private static long optRegexMaxSteps(JSONObject options) {
+        return options != null ? options.optLong("maxSteps", 0) : 0;
+    }
+
+    private void sendSearchBatch(JSONArray matches, int matchCount, CallbackContext callbackContext) throws JSONException {
+        JSONObject batch = new JSONObject();
+        batch.put("done", false);
+        batch.put("matches", matches);
+        batch.put("matchCount", matchCount);
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, batch);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    private boolean getPatternCacheStats(CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("hits", patternCache.getHitCount());
+        result.put("misses", patternCache.getMissCount());
+        result.put("size", patternCache.size());
+        callbackContext.success(result);
+        return true;
+    }
+
+    private JSONObject toSearchMatch(SearchMatcher matcher, String text, LineIndex lines) throws JSONException {
+        return toSearchMatch(matcher.start(), matcher.end(), text, lines);
+    }
+
+    private JSONObject toSearchMatch(int start, int end, String text, LineIndex lines) throws JSONException {
+        JSONObject match = new JSONObject();
+        match.put("start", start);
+        match.put("end", end);
+        match.put("matchedText", text.substring(start, end));
+
+        int line = lines.lineOf(start);
+        match.put("lineNumber", line + 1);
+        match.put("column", start - lines.lineStart(line) + 1);
+
+        // Context (30 chars before and after)
+        int contextStart = Math.max(0, start - 30);
+        int contextEnd = Math.min(text.length(), end + 30);
+        match.put("context", text.substring(contextStart, contextEnd));
+        return match;
+    }
+
+    /**
+     * Line index for the text, reused while a document's text is unchanged.
+     */
+    private LineIndex getLineIndex(String documentId, String text) {
+        if (documentId == null) {
+            return LineIndex.build(text);
+        }
+        synchronized (lineIndexes) {
+            CachedLineIndex cached = lineIndexes.get(documentId);
+            if (cached != null && cached.text.equals(text)) {
+                return cached.index;
+            }
+        }
+        LineIndex index = LineIndex.build(text);
+        synchronized (lineIndexes) {
+            lineIndexes.put(documentId, new CachedLineIndex(text, index));
+        }
+        return index;
+    }
+
+    /**
+     * Replaces in one pass. With returnEdits the result carries the edit list
+     * instead of the rewritten text; applyToDocument applies the edits to the
+     * open document the text came from, and
+     * pushUndo records the whole replace as one undo step.
+     */
+    private boolean replace(final String text, final String documentId, final String searchTerm, final String replacement,
+                            final boolean replaceAll, final boolean caseSensitive, final boolean isRegex,
+                            JSONObject execOptions, final JSONObject replaceOptions,
+                            final CallbackContext callbackContext) throws Exception {
+        final boolean returnEdits = replaceOptions != null && replaceOptions.optBoolean("returnEdits", false);
+        final boolean applyToDocument = replaceOptions != null && replaceOptions.optBoolean("applyToDocument", false);
+        final boolean pushUndo = replaceOptions != null && replaceOptions.optBoolean("pushUndo", false);
+        final long timeoutMs = optRegexTimeout(replaceOptions);
+
+        runRegexJob(TextReplacer.usesRegex(searchTerm, replacement, isRegex), "replace", documentId, execOptions, timeoutMs,
+                callbackContext, new RegexJob("replace", callbackContext) {
+            @Override
+            public void run(RegexRunner.Ticket ticket) throws Exception {
+                JSONObject result = new JSONObject();
+                TextReplacer.Result replaced;
+                try {
+                    replaced = TextReplacer.replace(patternCache, text, searchTerm, replacement, replaceAll,
+                            caseSensitive, isRegex, timeoutMs, optRegexMaxSteps(replaceOptions));
+                } catch (BudgetedCharSequence.BudgetExceededException e) {
+                    if (ticket.claim()) {
+                        onTimeout(e);
+                    }
+                    return;
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (ticket.claim()) {
+                        putUnchanged(result, text, returnEdits);
+                        result.put("error", e.getMessage());
+                        callbackContext.success(result);
+                    }
+                    return;
+                }
+                // The document and undo history only change once this result is the one sent
+                if (!ticket.claim()) {
+                    return;
+                }
+
+                try {
+                    if (applyToDocument) {
+                        if (documentId == null) {
+                            throw new IllegalArgumentException("applyToDocument needs a { documentId } text argument");
+                        }
+                        result.put("documentVersion", applyToDocument(documentId, text, replaced));
+                    }
+                    if (pushUndo && replaced.size() > 0) {
+                        // One step spanning the first to the last replacement
+                        int first = replaced.start(0);
+                        int last = replaced.end(replaced.size() - 1);
+                        int delta = replaced.text.length() - text.length();
+                        String historyId = replaceOptions.isNull("historyId") ? DEFAULT_HISTORY_ID : replaceOptions.getString("historyId");
+                        if (!existingHistory(historyId).pushEditIfCurrent(text, first, last, replaced.text.substring(first, last + delta))) {
+                            throw new IllegalStateException("Undo history does not hold the replaced text");
+                        }
+                        undoHistories.trim();
+                    }
+
+                    if (returnEdits) {
+                        JSONArray edits = new JSONArray();
+                        for (int i = 0; i < replaced.size(); i++) {
+                            JSONObject edit = new JSONObject();
+                            edit.put("start", replaced.start(i));
+                            edit.put("end", replaced.end(i));
+                            edit.put("replacement", replaced.replacement(i));
+                            edits.put(edit);
+                        }
+                        result.put("edits", edits);
+                    } else {
+                        result.put("resultText", replaced.text);
+                    }
+                    result.put("replacementCount", replaced.size());
+                    result.put("success", true);
+                } catch (Exception e) {
+                    putUnchanged(result, text, returnEdits);
+                    result.put("error", e.getMessage());
+                }
+                callbackContext.success(result);
+            }
+
+            @Override
+            public void onTimeout(BudgetedCharSequence.BudgetExceededException e) throws JSONException {
+                // A partial replace would leave the text half edited; return it unchanged
+                JSONObject result = new JSONObject();
+                putUnchanged(result, text, returnEdits);
+                result.put("timedOut", true);
+                result.put("error", e.getMessage());
+                callbackContext.success(result);
+            }
+        });
+        return true;
+    }
+
+    private void putUnchanged(JSONObject result, String text, boolean returnEdits) throws JSONException {
+        if (returnEdits) {
+            result.put("edits", new JSONArray());
+        } else {
+            result.put("resultText", text);
+        }
+        result.put("replacementCount", 0);
+        result.put("success", false);
+    }
+
+    /**
+     * Applies the edits back to front so earlier offsets stay valid, and
+     * returns the new document version.
+     */
+    private long applyToDocument(String documentId, String text, TextReplacer.Result replaced) {
+        PieceTable document;
+        synchronized (documents) {
+            document = documents.get(documentId);
+        }
+        if (document == null) {
+            throw new IllegalArgumentException("Unknown document: " + documentId);
+        }
+        synchronized (document) {
+            if (!document.toString().equals(text)) {
+                throw new IllegalStateException("Document changed during replace");
+            }
+            for (int i = replaced.size() - 1; i >= 0; i--) {
+                document.applyEdit(replaced.start(i), replaced.end(i), replaced.replacement(i));
+            }
+            return document.getVersion();
+        }
+    }
+
+    // ==================== Text Formatting ====================
+
+    private boolean formatText(String text, JSONObject options, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        JSONArray changesMade = new JSONArray();
+        int stages = 0;
+
+        try {
+            if (options.optBoolean("trim", false)) {
+                stages |= TextFormatter.TRIM;
+                changesMade.put("Trimmed whitespace");
+            }
+
+            if (options.optBoolean("removeExtraSpaces", false)) {
+                stages |= TextFormatter.REMOVE_EXTRA_SPACES;
+                changesMade.put("Removed extra spaces");
+            }
+
             if (options.optBoolean("removeLineBreaks", false)) {
-                formattedText = formattedText.replaceAll("[\\r\\n]+", " ");
+                stages |= TextFormatter.REMOVE_LINE_BREAKS;
                 changesMade.put("Removed line breaks");
             }
 
             if (options.optBoolean("toUpperCase", false)) {
-                formattedText = formattedText.toUpperCase();
+                stages |= TextFormatter.UPPER_CASE;
                 changesMade.put("Converted to uppercase");
             } else if (options.optBoolean("toLowerCase", false)) {
-                formattedText = formattedText.toLowerCase();
+                stages |= TextFormatter.LOWER_CASE;
                 changesMade.put("Converted to lowercase");
             } else if (options.optBoolean("toTitleCase", false)) {
-                formattedText = toTitleCase(formattedText);
+                stages |= TextFormatter.TITLE_CASE;
                 changesMade.put("Converted to title case");
             } else if (options.optBoolean("toSentenceCase", false)) {
-                formattedText = toSentenceCase(formattedText);
+                stages |= TextFormatter.SENTENCE_CASE;
                 changesMade.put("Converted to sentence case");
             }
 
             if (options.optBoolean("sortLines", false)) {
-                String[] lines = formattedText.split("\n");
-                Arrays.sort(lines);
-                formattedText = String.join("\n", lines);
+                stages |= TextFormatter.SORT_LINES;
                 changesMade.put("Sorted lines");
             }
 
             if (options.optBoolean("removeDuplicateLines", false)) {
-                String[] lines = formattedText.split("\n");
-                Set<String> seen = new HashSet<>();
-                StringBuilder sb = new StringBuilder();
-                for (String line : lines) {
-                    if (seen.add(line)) {
-                        if (sb.length() > 0) sb.append("\n");
-                        sb.append(line);
-                    }
+                stages |= TextFormatter.REMOVE_DUPLICATE_LINES;
+                if (options.optBoolean("keepLastDuplicate", false)) {
+                    stages |= TextFormatter.KEEP_LAST_DUPLICATE;
                 }
-                formattedText = sb.toString();
                 changesMade.put("Removed duplicate lines");
             }
 
             if (options.optBoolean("reverse", false)) {
-                formattedText = new StringBuilder(formattedText).reverse().toString();
+                stages |= TextFormatter.REVERSE;
                 changesMade.put("Reversed text");
             }
 
-            result.put("formattedText", formattedText);
+            TextFormatter formatter = new TextFormatter(stages, toLineSorter(options));
+            result.put("formattedText", formatter.format(text));
+            if ((stages & TextFormatter.REMOVE_DUPLICATE_LINES) != 0) {
+                result.put("duplicatesRemoved", formatter.getDuplicatesRemoved());
+            }
             result.put("success", true);
             result.put("changesMade", changesMade);
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             result.put("formattedText", text);
             result.put("success", false);
@@ -558,120 +1806,634 @@ public class NotepadUtilsPlugin extends CordovaPlugin {
         return true;
     }
 
-    private String toTitleCase(String text) {
-        StringBuilder result = new StringBuilder();
-        boolean capitalizeNext = true;
-        for (char c : text.toCharArray()) {
-            if (Character.isWhitespace(c)) {
-                capitalizeNext = true;
-                result.append(c);
-            } else if (capitalizeNext) {
-                result.append(Character.toUpperCase(c));
-                capitalizeNext = false;
-            } else {
-                result.append(Character.toLowerCase(c));
-            }
+    private boolean sortFile(String inputPath, String outputPath, JSONObject options, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        try {
+            LineSorter sorter = toLineSorter(options != null ? options : new JSONObject());
+            int runChars = options != null ? options.optInt("runChars", LineSorter.DEFAULT_RUN_CHARS) : LineSorter.DEFAULT_RUN_CHARS;
+            LineSorter.FileResult stats = sorter.sortFile(toFile(inputPath), toFile(outputPath),
+                    getContext().getCacheDir(), Math.max(1, runChars));
+
+            result.put("outputPath", outputPath);
+            result.put("lineCount", stats.lineCount);
+            result.put("runCount", stats.runCount);
+            result.put("durationMs", stats.durationNanos / 1000000);
+            result.put("success", true);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
         }
-        return result.toString();
+        callbackContext.success(result);
+        return true;
     }
 
-    private String toSentenceCase(String text) {
-        StringBuilder result = new StringBuilder();
-        boolean capitalizeNext = true;
-        for (char c : text.toCharArray()) {
-            if (c == '.' || c == '!' || c == '?') {
-                capitalizeNext = true;
-                result.append(c);
-            } else if (capitalizeNext && Character.isLetter(c)) {
-                result.append(Character.toUpperCase(c));
-                capitalizeNext = false;
-            } else {
-                result.append(Character.toLowerCase(c));
+    private boolean dedupeFile(String inputPath, String outputPath, JSONObject options, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        try {
+            boolean keepLast = options != null && options.optBoolean("keepLastDuplicate", false);
+            LineDeduper.FileResult stats = LineDeduper.dedupeFile(toFile(inputPath), toFile(outputPath), keepLast);
+
+            result.put("outputPath", outputPath);
+            result.put("lineCount", stats.lineCount);
+            result.put("uniqueCount", stats.uniqueCount);
+            result.put("duplicatesRemoved", stats.getDuplicatesRemoved());
+            result.put("durationMs", stats.durationNanos / 1000000);
+            result.put("success", true);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        callbackContext.success(result);
+        return true;
+    }
+
+    private LineSorter toLineSorter(JSONObject options) {
+        String locale = options.optString("sortLocale", "");
+        return new LineSorter(options.optString("sortMode", LineSorter.MODE_LEXICAL),
+                locale.isEmpty() ? null : Locale.forLanguageTag(locale),
+                options.optBoolean("sortReverse", false));
+    }
+
+    // ==================== Diff ====================
+
+    private boolean diff(String oldText, String newText, String granularity, JSONObject options, CallbackContext callbackContext) throws JSONException {
+        String algorithm = options != null ? options.optString("algorithm", "myers") : "myers";
+        if (!"myers".equals(algorithm) && !"patience".equals(algorithm)) {
+            throw new IllegalArgumentException("Unknown diff algorithm: " + algorithm);
+        }
+        long timeoutMs = options != null ? options.optLong("timeoutMs", DEFAULT_DIFF_TIMEOUT_MS) : DEFAULT_DIFF_TIMEOUT_MS;
+        boolean includeText = options == null || options.optBoolean("includeText", true);
+
+        long start = System.nanoTime();
+        TextDiff.Result diff = TextDiff.diff(oldText, newText, granularity, "patience".equals(algorithm), timeoutMs);
+
+        JSONArray hunks = new JSONArray();
+        for (TextDiff.Hunk hunk : diff.hunks) {
+            JSONObject item = new JSONObject();
+            item.put("oldStart", hunk.oldStart);
+            item.put("oldEnd", hunk.oldEnd);
+            item.put("newStart", hunk.newStart);
+            item.put("newEnd", hunk.newEnd);
+            if (includeText) {
+                item.put("text", newText.substring(hunk.newStart, hunk.newEnd));
             }
+            hunks.put(item);
         }
-        return result.toString();
+        JSONObject result = new JSONObject();
+        result.put("hunks", hunks);
+        result.put("granularity", diff.granularity);
+        result.put("complete", diff.complete);
+        result.put("deleted", diff.deleted);
+        result.put("inserted", diff.inserted);
+        result.put("durationMs", (System.nanoTime() - start) / 1000000);
+        callbackContext.success(result);
+        return true;
     }
 
     // ==================== Undo/Redo ====================
 
-    private boolean initUndoRedo(String initialText, int maxHistory, CallbackContext callbackContext) throws JSONException {
-        undoHistory.clear();
-        undoHistory.add(initialText);
-        currentHistoryPosition = 0;
-        maxHistorySize = maxHistory;
-        callbackContext.success(getUndoRedoStateObject());
-        return true;
+    /**
+     * The historyId argument at index; missing or null means the default history.
+     */
+    private static String optHistoryId(JSONArray args, int index) throws JSONException {
+        return args.isNull(index) ? DEFAULT_HISTORY_ID : args.getString(index);
     }
 
-    private boolean pushState(String text, CallbackContext callbackContext) throws JSONException {
-        // Remove any states after current position (for redo)
-        while (undoHistory.size() > currentHistoryPosition + 1) {
-            undoHistory.remove(undoHistory.size() - 1);
+    /**
+     * An existing history. Only the default history is created on demand,
+     * so calls naming an unknown id do not leave a new history behind.
+     */
+    private UndoHistory existingHistory(String historyId) {
+        UndoHistory history = DEFAULT_HISTORY_ID.equals(historyId) ? undoHistories.get(historyId) : undoHistories.find(historyId);
+        if (history == null) {
+            throw new IllegalArgumentException("Unknown history: " + historyId);
         }
+        return history;
+    }
 
-        // Add new state
-        undoHistory.add(text);
-        currentHistoryPosition = undoHistory.size() - 1;
+    private boolean initUndoRedo(String initialText, int maxHistory, long maxHistoryBytes, String historyId, CallbackContext callbackContext) throws JSONException {
+        UndoHistory history = undoHistories.get(historyId);
+        history.init(initialText, maxHistory, maxHistoryBytes);
+        undoHistories.trim();
+        callbackContext.success(getUndoRedoStateObject(history));
+        return true;
+    }
+
+    private boolean pushState(String text, String historyId, CallbackContext callbackContext) throws JSONException {
+        UndoHistory history = undoHistories.get(historyId);
+        history.push(text);
+        undoHistories.trim();
+        callbackContext.success(getUndoRedoStateObject(history));
+        return true;
+    }
+
+    private boolean pushEdit(int start, int end, String insertedText, String historyId, CallbackContext callbackContext) throws JSONException {
+        UndoHistory history = undoHistories.get(historyId);
+        history.pushEdit(start, end, insertedText);
+        undoHistories.trim();
+        callbackContext.success(getUndoRedoStateObject(history));
+        return true;
+    }
+
+    private boolean undo(String historyId, CallbackContext callbackContext) throws JSONException {
+        UndoHistory history = existingHistory(historyId);
+        JSONObject result = new JSONObject();
+        boolean success = history.undo();
+        result.put("text", history.getCurrentText());
+        result.put("success", success);
+        result.put("state", getUndoRedoStateObject(history));
+        undoHistories.trim();
+        callbackContext.success(result);
+        return true;
+    }
+
+    private boolean redo(String historyId, CallbackContext callbackContext) throws JSONException {
+        UndoHistory history = existingHistory(historyId);
+        JSONObject result = new JSONObject();
+        boolean success = history.redo();
+        result.put("text", history.getCurrentText());
+        result.put("success", success);
+        result.put("state", getUndoRedoStateObject(history));
+        undoHistories.trim();
+        callbackContext.success(result);
+        return true;
+    }
+
+    /**
+     * Reads only the history's counters, so a compacted or spilled history
+     * is not restored.
+     */
+    private boolean getUndoRedoState(String historyId, CallbackContext callbackContext) throws JSONException {
+        UndoHistory history = undoHistories.peek(historyId);
+        if (history == null && !DEFAULT_HISTORY_ID.equals(historyId)) {
+            callbackContext.error("Unknown history: " + historyId);
+            return true;
+        }
+        callbackContext.success(getUndoRedoStateObject(history != null ? history : new UndoHistory()));
+        return true;
+    }
 
-        // Limit history size
-        while (undoHistory.size() > maxHistorySize) {
-            undoHistory.remove(0);
-            currentHistoryPosition--;
+    private boolean clearHistory(String historyId, CallbackContext callbackContext) {
+        // Cleared in place so the history keeps its maxHistory and byte limit
+        UndoHistory history = undoHistories.peek(historyId);
+        if (history != null) {
+            history.clear();
         }
+        callbackContext.success();
+        return true;
+    }
 
-        callbackContext.success(getUndoRedoStateObject());
+    private boolean disposeHistory(String historyId, CallbackContext callbackContext) {
+        undoHistories.remove(historyId);
+        callbackContext.success();
         return true;
     }
 
-    private boolean undo(CallbackContext callbackContext) throws JSONException {
+    private boolean getUndoStats(CallbackContext callbackContext) throws JSONException {
+        UndoHistoryStore.Stats stats = undoHistories.getStats();
         JSONObject result = new JSONObject();
-        if (currentHistoryPosition > 0) {
-            currentHistoryPosition--;
-            result.put("text", undoHistory.get(currentHistoryPosition));
-            result.put("success", true);
-        } else {
-            result.put("text", undoHistory.isEmpty() ? "" : undoHistory.get(0));
-            result.put("success", false);
+        result.put("historyCount", stats.historyCount);
+        result.put("compactedCount", stats.compactedCount);
+        result.put("spilledCount", stats.spilledCount);
+        result.put("residentBytes", stats.residentBytes);
+        result.put("budgetBytes", stats.budgetBytes);
+        callbackContext.success(result);
+        return true;
+    }
+
+    private JSONObject getUndoRedoStateObject(UndoHistory history) throws JSONException {
+        JSONObject state = new JSONObject();
+        state.put("canUndo", history.canUndo());
+        state.put("canRedo", history.canRedo());
+        state.put("currentPosition", history.getPosition());
+        state.put("historyLength", history.size());
+        state.put("storage", history.isSpilled() ? "disk" : history.isCompacted() ? "compressed" : "memory");
+        return state;
+    }
+
+    // ==================== Notebook Index ====================
+
+    private synchronized NoteIndex getNoteIndex() throws IOException {
+        if (noteIndex == null) {
+            noteIndex = new NoteIndex(new File(getContext().getFilesDir(), "note-index"));
         }
-        result.put("state", getUndoRedoStateObject());
+        return noteIndex;
+    }
+
+    /**
+     * Makes indexed changes durable without holding up the UI thread. Runs
+     * on the background lane, behind any indexing already queued.
+     */
+    private void commitNoteIndexInBackground() {
+        final NoteIndex index;
+        synchronized (this) {
+            index = noteIndex;
+        }
+        if (index == null) {
+            return;
+        }
+        scheduler.submit(null, "commitNoteIndex", ActionScheduler.LANE_BACKGROUND, new ActionScheduler.Action() {
+            @Override
+            public void run() throws Exception {
+                index.commit();
+            }
+        }, new ActionScheduler.Listener() {
+            @Override
+            public void onCancelled(String id) {
+            }
+
+            @Override
+            public void onFailed(String id, Exception e) {
+                Log.e(TAG, "Could not commit note index", e);
+            }
+        });
+    }
+
+    private boolean indexDocument(String id, String text, JSONObject options, CallbackContext callbackContext) throws JSONException, IOException {
+        NoteIndex index = getNoteIndex();
+        index.indexDocument(id, text);
+        if (options != null && options.optBoolean("commit", false)) {
+            index.commit();
+        }
+        JSONObject result = new JSONObject();
+        result.put("id", id);
+        result.put("documentCount", index.getDocumentCount());
         callbackContext.success(result);
         return true;
     }
 
-    private boolean redo(CallbackContext callbackContext) throws JSONException {
+    private boolean removeDocument(String id, JSONObject options, CallbackContext callbackContext) throws JSONException, IOException {
+        NoteIndex index = getNoteIndex();
+        boolean removed = index.removeDocument(id);
+        if (options != null && options.optBoolean("commit", false)) {
+            index.commit();
+        }
         JSONObject result = new JSONObject();
-        if (currentHistoryPosition < undoHistory.size() - 1) {
-            currentHistoryPosition++;
-            result.put("text", undoHistory.get(currentHistoryPosition));
-            result.put("success", true);
-        } else {
-            result.put("text", undoHistory.isEmpty() ? "" : undoHistory.get(undoHistory.size() - 1));
-            result.put("success", false);
+        result.put("id", id);
+        result.put("removed", removed);
+        result.put("documentCount", index.getDocumentCount());
+        callbackContext.success(result);
+        return true;
+    }
+
+    private boolean searchIndex(String query, JSONObject options, CallbackContext callbackContext) throws JSONException, IOException {
+        int limit = options != null ? options.optInt("limit", 20) : 20;
+        boolean matchAll = options == null || !"any".equals(options.optString("mode", "all"));
+        int maxMatches = options != null ? options.optInt("maxMatches", 5) : 5;
+
+        NoteIndex index = getNoteIndex();
+        NoteIndex.Result found = index.search(query, Math.max(0, limit), matchAll, Math.max(0, maxMatches));
+
+        JSONArray results = new JSONArray();
+        for (NoteIndex.Hit hit : found.hits) {
+            JSONArray matches = new JSONArray();
+            for (int i = 0; i < hit.matchStarts.length; i++) {
+                JSONObject match = new JSONObject();
+                match.put("start", hit.matchStarts[i]);
+                match.put("end", hit.matchEnds[i]);
+                matches.put(match);
+            }
+            JSONObject item = new JSONObject();
+            item.put("id", hit.id);
+            item.put("score", hit.score);
+            item.put("matches", matches);
+            results.put(item);
         }
-        result.put("state", getUndoRedoStateObject());
+        JSONObject result = new JSONObject();
+        result.put("results", results);
+        result.put("totalHits", found.totalHits);
+        result.put("documentCount", index.getDocumentCount());
         callbackContext.success(result);
         return true;
     }
 
-    private boolean getUndoRedoState(CallbackContext callbackContext) throws JSONException {
-        callbackContext.success(getUndoRedoStateObject());
+    // ==================== Scheduling ====================
+
+    private boolean cancel(String requestId, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("requestId", requestId);
+        // A search handed to the regex runner is no longer a scheduler task
+        boolean cancelled = scheduler.cancel(requestId);
+        cancelled |= regexRunner.cancel(requestId);
+        result.put("cancelled", cancelled);
+        callbackContext.success(result);
         return true;
     }
 
-    private boolean clearHistory(CallbackContext callbackContext) {
-        undoHistory.clear();
-        currentHistoryPosition = -1;
+    // ==================== Metrics ====================
+
+    private boolean getMetrics(boolean reset, CallbackContext callbackContext) throws JSONException {
+        JSONObject result = metricsToJson(reset);
+        callbackContext.success(result);
+        return true;
+    }
+
+    private JSONObject metricsToJson(boolean reset) throws JSONException {
+        long since = metrics.getSinceMillis();
+        List<ActionMetrics.Snapshot> snapshots = metrics.snapshot();
+        if (reset) {
+            metrics.reset();
+        }
+
+        JSONObject actions = new JSONObject();
+        for (ActionMetrics.Snapshot snapshot : snapshots) {
+            JSONObject entry = new JSONObject();
+            entry.put("count", snapshot.count);
+            entry.put("errors", snapshot.errors);
+            entry.put("inputBytes", snapshot.inputBytes);
+            entry.put("outputBytes", snapshot.outputBytes);
+            entry.put("totalMs", snapshot.totalMicros / 1000.0);
+            entry.put("meanMs", snapshot.count > 0 ? snapshot.totalMicros / 1000.0 / snapshot.count : 0);
+            entry.put("maxMs", snapshot.maxMicros / 1000.0);
+            entry.put("p50Ms", snapshot.p50Micros / 1000.0);
+            entry.put("p95Ms", snapshot.p95Micros / 1000.0);
+            entry.put("p99Ms", snapshot.p99Micros / 1000.0);
+            actions.put(snapshot.action, entry);
+        }
+
+        JSONObject cache = new JSONObject();
+        cache.put("hits", patternCache.getHitCount());
+        cache.put("misses", patternCache.getMissCount());
+        cache.put("size", patternCache.size());
+
+        JSONObject result = new JSONObject();
+        result.put("since", since);
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("actions", actions);
+        result.put("patternCache", cache);
+        return result;
+    }
+
+    private synchronized boolean watchMetrics(JSONObject options, CallbackContext callbackContext) throws JSONException {
+        if (options == null) {
+            options = new JSONObject();
+        }
+        long intervalMs = Math.max(MIN_METRICS_INTERVAL_MS, options.optLong("intervalMs", DEFAULT_METRICS_INTERVAL_MS));
+        // With reset each push covers only the interval since the previous one
+        final boolean reset = options.optBoolean("reset", false);
+
+        // A new watch replaces the previous one
+        stopMetricsWatch();
+        if (metricsTimer == null) {
+            metricsTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "notepad-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        metricsWatchCallback = callbackContext;
+        metricsPush = metricsTimer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                pushMetrics(reset);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        JSONObject started = new JSONObject();
+        started.put("event", "started");
+        started.put("intervalMs", intervalMs);
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, started);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+        return true;
+    }
+
+    private synchronized void pushMetrics(boolean reset) {
+        if (metricsWatchCallback == null) {
+            return;
+        }
+        try {
+            JSONObject event = metricsToJson(reset);
+            event.put("event", "metrics");
+            PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, event);
+            pluginResult.setKeepCallback(true);
+            metricsWatchCallback.sendPluginResult(pluginResult);
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not push metrics", e);
+        }
+    }
+
+    private boolean unwatchMetrics(CallbackContext callbackContext) {
+        stopMetricsWatch();
         callbackContext.success();
         return true;
     }
 
-    private JSONObject getUndoRedoStateObject() throws JSONException {
-        JSONObject state = new JSONObject();
-        state.put("canUndo", currentHistoryPosition > 0);
-        state.put("canRedo", currentHistoryPosition < undoHistory.size() - 1);
-        state.put("currentPosition", currentHistoryPosition);
-        state.put("historyLength", undoHistory.size());
-        return state;
+    private synchronized void stopMetricsWatch() {
+        if (metricsPush != null) {
+            metricsPush.cancel(false);
+            metricsPush = null;
+        }
+        if (metricsWatchCallback != null) {
+            try {
+                JSONObject stopped = new JSONObject();
+                stopped.put("event", "stopped");
+                metricsWatchCallback.success(stopped);
+            } catch (JSONException e) {
+                Log.w(TAG, "Could not end metrics watch", e);
+            }
+            metricsWatchCallback = null;
+        }
+    }
+
+    /**
+     * Forwards results to the caller's callback and records the call in
+     * {@link #metrics} when its final result goes out. Intermediate results
+     * sent with keepCallback count towards the output bytes.
+     */
+    private final class MeteredContext extends CallbackContext {
+        private final CallbackContext target;
+        private final String action;
+        private final long inputBytes;
+        private final long startNanos = System.nanoTime();
+        private long outputBytes;
+        private boolean recorded;
+
+        MeteredContext(String action, long inputBytes, CallbackContext target) {
+            super(target.getCallbackId(), webView);
+            this.action = action;
+            this.inputBytes = inputBytes;
+            this.target = target;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return target.isFinished();
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            // Measured before forwarding; getMessage caches the encoding the bridge sends
+            long size = messageSize(pluginResult);
+            target.sendPluginResult(pluginResult);
+            synchronized (this) {
+                if (recorded) {
+                    return;
+                }
+                outputBytes += size;
+                if (pluginResult.getKeepCallback()) {
+                    return;
+                }
+                recorded = true;
+            }
+            metrics.record(action, System.nanoTime() - startNanos, isFailure(pluginResult), inputBytes, outputBytes);
+        }
+
+        /**
+         * An error result, or an OK one whose payload reports { success: false }
+         * as wrong-password decrypts and invalid regexes do.
+         */
+        private boolean isFailure(PluginResult pluginResult) {
+            if (pluginResult.getStatus() != PluginResult.Status.OK.ordinal()) {
+                return true;
+            }
+            if (pluginResult.getMessageType() != PluginResult.MESSAGE_TYPE_JSON) {
+                return false;
+            }
+            String message = pluginResult.getMessage();
+            // Only payloads that mention the flag are parsed, and only the top-level one counts
+            if (message == null || !message.startsWith("{") || !message.contains("\"success\":false")) {
+                return false;
+            }
+            try {
+                return !new JSONObject(message).optBoolean("success", true);
+            } catch (JSONException e) {
+                return false;
+            }
+        }
+
+        private long messageSize(PluginResult pluginResult) {
+            if (pluginResult.getMessageType() != PluginResult.MESSAGE_TYPE_MULTIPART) {
+                String message = pluginResult.getMessage();
+                return message != null ? message.length() : 0;
+            }
+            long size = 0;
+            for (int i = 0; i < pluginResult.getMultipartMessagesSize(); i++) {
+                size += messageSize(pluginResult.getMultipartMessage(i));
+            }
+            return size;
+        }
+    }
+
+    // ==================== Batch ====================
+
+    /**
+     * Runs each step through {@link #dispatch} on the calling worker, with
+     * the shared text substituted for every { batchText: true } argument,
+     * and collects the results in order. A failed step is reported in its
+     * slot and the remaining steps still run.
+     */
+    private boolean batch(String text, JSONArray steps, CallbackContext callbackContext) throws JSONException {
+        JSONArray results = new JSONArray();
+        int failedCount = 0;
+
+        for (int i = 0; i < steps.length(); i++) {
+            JSONObject step = steps.getJSONObject(i);
+            String action = step.optString("action", "");
+            JSONObject entry = new JSONObject();
+            entry.put("action", action);
+
+            if (UNBATCHABLE_ACTIONS.contains(action)) {
+                entry.put("success", false);
+                entry.put("error", "Action cannot run in a batch: " + action);
+            } else {
+                JSONArray stepArgs = new JSONArray();
+                JSONArray rawArgs = step.optJSONArray("args");
+                for (int a = 0; rawArgs != null && a < rawArgs.length(); a++) {
+                    JSONObject ref = rawArgs.optJSONObject(a);
+                    stepArgs.put(ref != null && ref.optBoolean("batchText", false) ? text : rawArgs.get(a));
+                }
+
+                BatchStepContext stepContext = new BatchStepContext(callbackContext.getCallbackId() + ":" + i);
+                dispatch(action, stepArgs, stepContext);
+                stepContext.awaitLateResult();
+                ActionScheduler.checkCancelled();
+                stepContext.putOutcome(entry);
+            }
+
+            if (!entry.optBoolean("success", false)) {
+                failedCount++;
+            }
+            results.put(entry);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("results", results);
+        result.put("failedCount", failedCount);
+        result.put("success", failedCount == 0);
+        callbackContext.success(result);
+        return true;
+    }
+
+    /**
+     * Captures the result a batch step would have sent to JavaScript.
+     */
+    private final class BatchStepContext extends CallbackContext {
+        private final CountDownLatch answered = new CountDownLatch(1);
+        private volatile boolean lateResult;
+        private PluginResult captured;
+
+        BatchStepContext(String callbackId) {
+            super(callbackId, webView);
+        }
+
+        @Override
+        public synchronized void sendPluginResult(PluginResult pluginResult) {
+            if (captured == null) {
+                captured = pluginResult;
+                answered.countDown();
+            }
+        }
+
+        /**
+         * The step answers from another thread after dispatch returns, as
+         * regex work handed to the regex runner does.
+         */
+        void expectLateResult() {
+            lateResult = true;
+        }
+
+        void awaitLateResult() {
+            if (!lateResult) {
+                return;
+            }
+            try {
+                answered.await();
+            } catch (InterruptedException e) {
+                throw new CancellationException("Request cancelled");
+            }
+        }
+
+        synchronized void putOutcome(JSONObject entry) throws JSONException {
+            if (captured == null) {
+                entry.put("success", false);
+                entry.put("error", "No result");
+                return;
+            }
+            int type = captured.getMessageType();
+            if (type == PluginResult.MESSAGE_TYPE_ARRAYBUFFER || type == PluginResult.MESSAGE_TYPE_BINARYSTRING
+                    || type == PluginResult.MESSAGE_TYPE_MULTIPART) {
+                entry.put("success", false);
+                entry.put("error", "Binary results are not supported in a batch");
+                return;
+            }
+            // getMessage is the JSON the bridge would have sent
+            Object message = new JSONTokener(captured.getMessage()).nextValue();
+            if (captured.getStatus() == PluginResult.Status.OK.ordinal()) {
+                entry.put("success", true);
+                entry.put("result", message);
+            } else {
+                entry.put("success", false);
+                entry.put("error", message);
+            }
+        }
     }
 
     // ==================== Share Extension ====================
@@ -20,6 +20,75 @@ export interface IClipboardWriteOptions {
     label?: string;
 }
 
+export interface IClipboardWatchOptions {
+    // Most clips kept in the history (default 50)
+    maxEntries?: number;
+    // Total size of kept clips in bytes, 2 per UTF-16 char (default 1048576)
+    maxBytes?: number;
+    // Send the clip text with change events (default true)
+    includeText?: boolean;
+}
+
+export interface IClipboardChangeEvent {
+    event: 'change';
+    // The new clip text, unless includeText is false
+    text?: string;
+    // Length of the clip text
+    length: number;
+    // When the change was seen
+    timestamp: number;
+    // Id of the history entry, absent if the clip was empty or too large to keep
+    historyId?: number;
+    // Number of clips in the history
+    historySize: number;
+}
+
+export interface IClipboardWatchState {
+    event: 'started';
+    // Number of clips in the history
+    historySize: number;
+}
+
+export interface IClipboardHistoryEntry {
+    id: number;
+    text: string;
+    timestamp: number;
+}
+
+export interface IClipboardHistory {
+    // Entries, newest first
+    entries: IClipboardHistoryEntry[];
+    // Number of clips in the history
+    total: number;
+    // Offset of the first entry returned
+    offset: number;
+    // Whether older entries follow this page
+    hasMore: boolean;
+    // Total size of the kept clips in bytes
+    totalBytes: number;
+}
+
+// ==================== Document Interfaces ====================
+
+export interface IDocumentRef {
+    // Identifier passed to openDocument
+    documentId: string;
+}
+
+// Text arguments accept the text itself or a reference to an open document
+export type TextSource = string | IDocumentRef;
+
+export interface IDocumentInfo {
+    // Document identifier
+    documentId: string;
+    // Current length in characters
+    length: number;
+    // Incremented by every applied edit
+    version: number;
+    // Current text (getDocumentText only)
+    text?: string;
+}
+
 // ==================== Text Statistics Interfaces ====================
 
 export interface ITextStats {
@@ -47,6 +116,19 @@ export interface ITextStats {
 
 // ==================== Text Detection Interfaces ====================
 
+export type PatternType = 'urls' | 'emails' | 'phoneNumbers' | 'hashtags' | 'mentions' | 'dates';
+
+export interface IPatternMatch {
+    // Result key of the pattern that matched
+    type: PatternType;
+    // Matched text
+    value: string;
+    // Start offset of the match
+    start: number;
+    // End offset of the match (exclusive)
+    end: number;
+}
+
 export interface ITextDetection {
     // Detected URLs in the text
     urls: string[];
@@ -60,10 +142,64 @@ export interface ITextDetection {
     mentions: string[];
     // Detected dates (various formats)
     dates: string[];
+    // All matches with their offsets, ordered by start
+    matches: IPatternMatch[];
+}
+
+export interface IPatternUpdate {
+    // Start of the rescanned range, in offsets after the edit
+    rescannedStart: number;
+    // End of the rescanned range, in offsets after the edit
+    rescannedEnd: number;
+    // Length change of the edit; matches after the range shift by this much
+    lengthDelta: number;
+    // Matches starting in the rescanned range
+    matches: IPatternMatch[];
 }
 
 // ==================== Encryption Interfaces ====================
 
+// Raw bytes accepted wherever binary input is supported
+export type BinaryData = ArrayBuffer | ArrayBufferView;
+
+export interface ITransportOptions {
+    // Return raw ArrayBuffers instead of base64 strings (Android)
+    binary?: boolean;
+}
+
+export interface IBinaryEncryptionResult {
+    // Ciphertext bytes
+    encryptedData: ArrayBuffer;
+    // Initialization vector bytes
+    iv: ArrayBuffer;
+    // Salt bytes
+    salt: ArrayBuffer;
+    // Whether encryption was successful
+    success: boolean;
+    // Error message if failed
+    error?: string;
+}
+
+export interface IBinaryDecryptionResult {
+    // Plaintext bytes
+    decryptedData: ArrayBuffer;
+    // Whether decryption was successful
+    success: boolean;
+    // Error message if failed
+    error?: string;
+}
+
+export interface IBinaryHashResult {
+    // Raw digest bytes
+    digest: ArrayBuffer;
+    // Algorithm used (SHA-256, SHA-512, MD5, XXH64)
+    algorithm: string;
+    // Whether hashing was successful
+    success: boolean;
+    // Error message if failed
+    error?: string;
+}
+
 export interface IEncryptionResult {
     // Encrypted data (base64 encoded)
     encryptedData: string;
@@ -86,13 +222,81 @@ export interface IDecryptionResult {
     error?: string;
 }
 
+export interface IEncryptedItem {
+    // Encrypted data (base64 encoded)
+    encryptedData: string;
+    // Initialization vector (base64 encoded)
+    iv: string;
+    // Salt used (base64 encoded)
+    salt: string;
+}
+
+export interface IBatchEncryptionResult {
+    // Per-text results, in input order (all items share one salt)
+    results: IEncryptionResult[];
+    // Whether encryption was successful
+    success: boolean;
+    // Error message if failed
+    error?: string;
+}
+
+export interface IBatchDecryptionResult {
+    // Per-item results, in input order
+    results: IDecryptionResult[];
+    // Number of items that failed to decrypt
+    failedCount: number;
+    // Whether every item was decrypted
+    success: boolean;
+}
+
+export interface IFileCryptoResult {
+    // Path of the written file
+    outputPath: string;
+    // Bytes read from the input file
+    inputBytes: number;
+    // Bytes written to the output file
+    outputBytes: number;
+    // Time taken in milliseconds
+    durationMs: number;
+    // Plaintext throughput in MB/s
+    throughputMBps: number;
+    // Whether the operation was successful
+    success: boolean;
+    // Error message if failed (e.g. a tampered segment)
+    error?: string;
+}
+
+export type HashAlgorithm = 'SHA-256' | 'SHA-512' | 'MD5' | 'XXH64';
+
 export interface IHashResult {
     // The hash value
     hash: string;
-    // Algorithm used (SHA-256, SHA-512, MD5)
+    // Algorithm used (SHA-256, SHA-512, MD5, XXH64)
     algorithm: string;
     // Whether hashing was successful
     success: boolean;
+    // Number of bytes hashed (sessions and files)
+    bytesProcessed?: number;
+    // Error message if failed
+    error?: string;
+}
+
+export interface IHashSession {
+    // Session identifier for hashUpdate/hashFinish
+    sessionId: string;
+    // Algorithm used
+    algorithm: string;
+    // Whether the session was created
+    success: boolean;
+}
+
+export interface IHashProgress {
+    // Session identifier
+    sessionId: string;
+    // Number of bytes hashed so far
+    bytesProcessed: number;
+    // Whether the update was successful
+    success: boolean;
 }
 
 // ==================== Search & Replace Interfaces ====================
@@ -102,6 +306,14 @@ export interface ISearchResult {
     matches: IMatchPosition[];
     // Total number of matches
     matchCount: number;
+    // Index of the first returned match
+    offset?: number;
+    // Whether matches exist after the returned page
+    hasMore?: boolean;
+    // Whether the regex budget ran out; matches hold what was found before
+    timedOut?: boolean;
+    // Error message if the pattern was invalid or the budget ran out
+    error?: string;
     // Search term used
     searchTerm: string;
     // Whether search was case sensitive
@@ -110,6 +322,86 @@ export interface ISearchResult {
     isRegex: boolean;
 }
 
+export interface IRegexBudget {
+    // Time a regex may run before it is aborted (default 5000, 0 = no limit)
+    timeoutMs?: number;
+    // Characters a regex may read before it is aborted (default 0 = no limit)
+    maxSteps?: number;
+}
+
+export interface ISearchOptions extends IRegexBudget {
+    // Number of matches to skip
+    offset?: number;
+    // Maximum number of matches to return (0 = all)
+    limit?: number;
+}
+
+export interface ISearchStreamOptions extends IRegexBudget {
+    // Matches per batch (default 100)
+    batchSize?: number;
+    // Stop after this many matches (0 = all)
+    limit?: number;
+}
+
+export interface ISearchBatch {
+    // Always false for a batch
+    done: boolean;
+    // Matches found since the previous batch
+    matches: IMatchPosition[];
+    // Matches found so far
+    matchCount: number;
+}
+
+export interface ISearchStreamResult {
+    // Always true for the completion message
+    done: boolean;
+    // Total number of matches
+    matchCount: number;
+    // Number of batches sent
+    batchCount: number;
+    // Whether the limit or the regex budget stopped the scan before the last match
+    hasMore?: boolean;
+    // Whether the regex budget ran out
+    timedOut?: boolean;
+    // Search term used
+    searchTerm: string;
+    // Whether search was case sensitive
+    caseSensitive: boolean;
+    // Whether regex was used
+    isRegex: boolean;
+    // Error message if the pattern was invalid
+    error?: string;
+}
+
+export interface ITermMatch extends IMatchPosition {
+    // Index of the matched term in the terms array
+    termIndex: number;
+}
+
+export interface ITermSearchResult {
+    // Array of match positions
+    matches: ITermMatch[];
+    // Total number of matches
+    matchCount: number;
+    // Number of matches per term, in the order of the terms array
+    termCounts: number[];
+    // Index of the first returned match
+    offset: number;
+    // Whether matches exist after the returned page
+    hasMore: boolean;
+    // Whether search was case sensitive
+    caseSensitive: boolean;
+}
+
+export interface IPatternCacheStats {
+    // Lookups served from the cache
+    hits: number;
+    // Lookups that compiled the pattern
+    misses: number;
+    // Patterns currently cached
+    size: number;
+}
+
 export interface IMatchPosition {
     // Start index of match
     start: number;
@@ -117,19 +409,106 @@ export interface IMatchPosition {
     end: number;
     // Line number where match was found
     lineNumber: number;
+    // Column of the match start within its line (1-based)
+    column?: number;
     // The matched text
     matchedText: string;
     // Context around the match
     context: string;
 }
 
+export interface IReplaceOptions extends IRegexBudget {
+    // Return the changed ranges as edits instead of the rewritten text
+    returnEdits?: boolean;
+    // Apply the edits to the open document the text argument refers to
+    applyToDocument?: boolean;
+    // Record the replace as one undo step (the undo history must hold the same text)
+    pushUndo?: boolean;
+    // Undo history that pushUndo records into (default history if omitted)
+    historyId?: string;
+}
+
+export interface IReplaceEdit {
+    // Start offset in the original text
+    start: number;
+    // End offset in the original text (exclusive)
+    end: number;
+    // Text that replaces the range
+    replacement: string;
+}
+
 export interface IReplaceResult {
-    // The resulting text after replacement
-    resultText: string;
+    // The resulting text after replacement (omitted with returnEdits)
+    resultText?: string;
+    // Replaced ranges in ascending order (returnEdits only)
+    edits?: IReplaceEdit[];
+    // Document version after applyToDocument
+    documentVersion?: number;
     // Number of replacements made
     replacementCount: number;
     // Whether replacement was successful
     success: boolean;
+    // Whether the regex budget ran out; resultText is then unchanged
+    timedOut?: boolean;
+    // Error message if replacement failed
+    error?: string;
+}
+
+// ==================== Notebook Index Interfaces ====================
+
+export interface IIndexDocumentOptions {
+    // Write the change to disk before resolving (default: on the next automatic commit or app pause)
+    commit?: boolean;
+}
+
+export interface IIndexDocumentResult {
+    // Note id
+    id: string;
+    // Notes in the index
+    documentCount: number;
+}
+
+export interface IRemoveDocumentResult {
+    // Note id
+    id: string;
+    // Whether the note was indexed
+    removed: boolean;
+    // Notes in the index
+    documentCount: number;
+}
+
+export interface ISearchIndexOptions {
+    // Maximum results returned (default 20)
+    limit?: number;
+    // 'all' requires every query term in a note, 'any' requires one (default 'all')
+    mode?: 'all' | 'any';
+    // Match offsets returned per note (default 5)
+    maxMatches?: number;
+}
+
+export interface IIndexMatch {
+    // Start offset in the note text as indexed
+    start: number;
+    // End offset (exclusive)
+    end: number;
+}
+
+export interface IIndexHit {
+    // Note id
+    id: string;
+    // BM25 relevance score
+    score: number;
+    // Offsets of matched terms, in text order
+    matches: IIndexMatch[];
+}
+
+export interface ISearchIndexResult {
+    // Best matching notes first
+    results: IIndexHit[];
+    // Notes that matched before the limit was applied
+    totalHits: number;
+    // Notes in the index
+    documentCount: number;
 }
 
 // ==================== Text Formatting Interfaces ====================
@@ -151,12 +530,71 @@ export interface IFormattingOptions {
     removeLineBreaks?: boolean;
     // Sort lines
     sortLines?: boolean;
+    // Line order used by sortLines (default 'lexical')
+    sortMode?: SortMode;
+    // BCP 47 locale for sortMode 'locale' (default: device locale)
+    sortLocale?: string;
+    // Sort lines in descending order
+    sortReverse?: boolean;
     // Remove duplicate lines
     removeDuplicateLines?: boolean;
+    // Keep the last occurrence of each duplicate line instead of the first
+    keepLastDuplicate?: boolean;
     // Reverse text
     reverse?: boolean;
 }
 
+// 'natural' compares digit runs by value, 'locale' uses collation keys
+export type SortMode = 'lexical' | 'natural' | 'locale' | 'caseInsensitive';
+
+export interface ISortFileOptions {
+    // Line order (default 'lexical')
+    sortMode?: SortMode;
+    // BCP 47 locale for sortMode 'locale' (default: device locale)
+    sortLocale?: string;
+    // Sort lines in descending order
+    sortReverse?: boolean;
+    // Characters of lines held in memory per sorted run (default 4194304)
+    runChars?: number;
+}
+
+export interface ISortFileResult {
+    // Path of the sorted file
+    outputPath: string;
+    // Number of lines sorted
+    lineCount: number;
+    // Number of sorted runs merged (1 when the file fit in memory)
+    runCount: number;
+    // Time taken in milliseconds
+    durationMs: number;
+    // Whether the sort was successful
+    success: boolean;
+    // Error message if failed
+    error?: string;
+}
+
+export interface IDedupeFileOptions {
+    // Keep the last occurrence of each duplicate line instead of the first
+    keepLastDuplicate?: boolean;
+}
+
+export interface IDedupeFileResult {
+    // Path of the written file
+    outputPath: string;
+    // Lines read from the input
+    lineCount: number;
+    // Distinct lines written
+    uniqueCount: number;
+    // Lines dropped as duplicates
+    duplicatesRemoved: number;
+    // Time taken in milliseconds
+    durationMs: number;
+    // Whether the operation was successful
+    success: boolean;
+    // Error message if failed
+    error?: string;
+}
+
 export interface IFormattingResult {
     // Formatted text
     formattedText: string;
@@ -164,6 +602,47 @@ export interface IFormattingResult {
     success: boolean;
     // Changes made
     changesMade: string[];
+    // Lines dropped by removeDuplicateLines
+    duplicatesRemoved?: number;
+}
+
+// ==================== Diff Interfaces ====================
+
+export type DiffGranularity = 'line' | 'word' | 'char';
+
+export interface IDiffOptions {
+    // 'patience' anchors on lines or words that occur once in each text first (default 'myers')
+    algorithm?: 'myers' | 'patience';
+    // Time budget before settling for coarser hunks; 0 for none (default 1000)
+    timeoutMs?: number;
+    // Include the inserted text in each hunk (default true)
+    includeText?: boolean;
+}
+
+export interface IDiffHunk {
+    // Replaced range of the old text
+    oldStart: number;
+    oldEnd: number;
+    // Range of the new text that replaces it
+    newStart: number;
+    newEnd: number;
+    // New text of the hunk, unless includeText is false
+    text?: string;
+}
+
+export interface IDiffResult {
+    // Changes in text order; applying them to the old text gives the new one
+    hunks: IDiffHunk[];
+    // Granularity of the hunks; 'line' when a word or char diff ran out of time
+    granularity: DiffGranularity;
+    // False when the time budget ran out and the hunks are coarser than minimal
+    complete: boolean;
+    // Lines, words or characters removed from the old text
+    deleted: number;
+    // Lines, words or characters added from the new text
+    inserted: number;
+    // Time taken in milliseconds
+    durationMs: number;
 }
 
 // ==================== Undo/Redo Interfaces ====================
@@ -177,6 +656,21 @@ export interface IUndoRedoState {
     currentPosition: number;
     // Total history length
     historyLength: number;
+    // Where the history is held; cold histories are compressed or moved to app storage
+    storage: 'memory' | 'compressed' | 'disk';
+}
+
+export interface IUndoStats {
+    // Number of undo histories
+    historyCount: number;
+    // Histories held compressed in memory
+    compactedCount: number;
+    // Histories moved to app storage
+    spilledCount: number;
+    // Approximate memory held by all histories
+    residentBytes: number;
+    // Shared memory budget
+    budgetBytes: number;
 }
 
 export interface IUndoRedoResult {
@@ -223,6 +717,100 @@ export interface IBackupInfo {
     preview: string;
 }
 
+// ==================== Scheduling Interfaces ====================
+
+export interface IExecOptions {
+    // Identifier used to cancel the request
+    requestId?: string;
+    // Worker lane; defaults depend on the action
+    priority?: 'interactive' | 'background';
+    // Document the request belongs to; a newer request of the same action for the same document supersedes an older one
+    documentId?: string;
+}
+
+export interface ICancelResult {
+    // Request identifier that was passed in
+    requestId: string;
+    // Whether a pending or running request was cancelled
+    cancelled: boolean;
+}
+
+export interface IBatchStep {
+    // Name of the action, e.g. 'getTextStats'
+    action: string;
+    // Arguments as passed to cordova.exec; use BATCH_TEXT where the text goes
+    args?: any[];
+}
+
+export interface IBatchStepResult {
+    // Name of the action
+    action: string;
+    // Whether the step succeeded
+    success: boolean;
+    // What the action would have resolved with
+    result?: any;
+    // What the action would have rejected with
+    error?: any;
+}
+
+export interface IBatchResult {
+    // One entry per step, in order
+    results: IBatchStepResult[];
+    // Number of steps that failed
+    failedCount: number;
+    // Whether every step succeeded
+    success: boolean;
+}
+
+// ==================== Metrics Interfaces ====================
+
+export interface IActionMetrics {
+    // Calls that sent their final result
+    count: number;
+    // Calls whose final result was an error, including cancellations
+    errors: number;
+    // Length of the JSON arguments as they crossed the bridge
+    inputBytes: number;
+    // Length of the results as they crossed the bridge
+    outputBytes: number;
+    // Time from the call arriving to its final result, queueing included
+    totalMs: number;
+    meanMs: number;
+    maxMs: number;
+    // Percentiles, accurate to about 12%
+    p50Ms: number;
+    p95Ms: number;
+    p99Ms: number;
+}
+
+export interface IMetrics {
+    // When recording started (epoch ms): plugin start or the last reset
+    since: number;
+    // When the snapshot was taken (epoch ms)
+    timestamp: number;
+    // Metrics keyed by action name; actions not called yet are absent
+    actions: { [action: string]: IActionMetrics };
+    // Compiled pattern cache counters
+    patternCache: IPatternCacheStats;
+}
+
+export interface IMetricsWatchOptions {
+    // How often to push metrics (default 60000, minimum 1000)
+    intervalMs?: number;
+    // Reset after each push, so every push covers one interval (default false)
+    reset?: boolean;
+}
+
+export interface IMetricsEvent extends IMetrics {
+    event: 'metrics';
+}
+
+export interface IMetricsWatchState {
+    event: 'started';
+    // Interval actually used
+    intervalMs: number;
+}
+
 // ==================== Share Extension Interfaces ====================
 
 export interface ISharedContent {
@@ -245,32 +833,76 @@ export default class NotepadUtilsManager {
     getClipboard(): Promise<IClipboardContent>;
     setClipboard(options: IClipboardWriteOptions): Promise<boolean>;
     clearClipboard(): Promise<boolean>;
+    watchClipboard(onChange: (event: IClipboardChangeEvent) => void, options?: IClipboardWatchOptions): Promise<IClipboardWatchState>;
+    unwatchClipboard(): Promise<void>;
+    getClipboardHistory(offset?: number, limit?: number): Promise<IClipboardHistory>;
+    clearClipboardHistory(): Promise<void>;
+
+    // Documents
+    openDocument(documentId: string, text: string): Promise<IDocumentInfo>;
+    applyEdit(documentId: string, start: number, end: number, insertedText: string): Promise<IDocumentInfo>;
+    getDocumentText(documentId: string): Promise<IDocumentInfo>;
+    closeDocument(documentId: string): Promise<boolean>;
 
     // Text statistics
-    getTextStats(text: string): Promise<ITextStats>;
+    getTextStats(text: TextSource, execOptions?: IExecOptions): Promise<ITextStats>;
+    trackTextStats(documentId: string, text: TextSource): Promise<ITextStats>;
+    updateTextStats(documentId: string, start: number, end: number, insertedText: string): Promise<ITextStats>;
+    untrackTextStats(documentId: string): Promise<boolean>;
 
     // Text detection
-    detectPatterns(text: string): Promise<ITextDetection>;
+    detectPatterns(text: TextSource, execOptions?: IExecOptions): Promise<ITextDetection>;
+    trackPatterns(documentId: string, text: TextSource): Promise<ITextDetection>;
+    updatePatterns(documentId: string, start: number, end: number, insertedText: string): Promise<IPatternUpdate>;
+    getTrackedPatterns(documentId: string): Promise<ITextDetection>;
+    untrackPatterns(documentId: string): Promise<boolean>;
 
     // Encryption/Decryption
-    encrypt(text: string, password: string): Promise<IEncryptionResult>;
-    decrypt(encryptedData: string, password: string, iv: string, salt: string): Promise<IDecryptionResult>;
-    hash(text: string, algorithm?: 'SHA-256' | 'SHA-512' | 'MD5'): Promise<IHashResult>;
+    encrypt(text: TextSource | BinaryData, password: string, execOptions: IExecOptions | undefined, transportOptions: { binary: true }): Promise<IBinaryEncryptionResult>;
+    encrypt(text: TextSource | BinaryData, password: string, execOptions?: IExecOptions, transportOptions?: ITransportOptions): Promise<IEncryptionResult>;
+    decrypt(encryptedData: string | BinaryData, password: string, iv: string | BinaryData, salt: string | BinaryData, execOptions: IExecOptions | undefined, transportOptions: { binary: true }): Promise<IBinaryDecryptionResult>;
+    decrypt(encryptedData: string | BinaryData, password: string, iv: string | BinaryData, salt: string | BinaryData, execOptions?: IExecOptions, transportOptions?: ITransportOptions): Promise<IDecryptionResult>;
+    encryptBatch(texts: string[], password: string, execOptions?: IExecOptions): Promise<IBatchEncryptionResult>;
+    decryptBatch(items: IEncryptedItem[], password: string, execOptions?: IExecOptions): Promise<IBatchDecryptionResult>;
+    encryptFile(inputPath: string, outputPath: string, password: string, execOptions?: IExecOptions): Promise<IFileCryptoResult>;
+    decryptFile(inputPath: string, outputPath: string, password: string, execOptions?: IExecOptions): Promise<IFileCryptoResult>;
+    hash(text: TextSource | BinaryData, algorithm: HashAlgorithm | undefined, execOptions: IExecOptions | undefined, transportOptions: { binary: true }): Promise<IBinaryHashResult>;
+    hash(text: TextSource | BinaryData, algorithm?: HashAlgorithm, execOptions?: IExecOptions, transportOptions?: ITransportOptions): Promise<IHashResult>;
+    hashBegin(algorithm?: HashAlgorithm): Promise<IHashSession>;
+    hashUpdate(sessionId: string, text: TextSource): Promise<IHashProgress>;
+    hashFinish(sessionId: string): Promise<IHashResult>;
+    hashFile(path: string, algorithm?: HashAlgorithm, execOptions?: IExecOptions): Promise<IHashResult>;
 
     // Search & Replace
-    search(text: string, searchTerm: string, caseSensitive?: boolean, isRegex?: boolean): Promise<ISearchResult>;
-    replace(text: string, searchTerm: string, replacement: string, replaceAll?: boolean, caseSensitive?: boolean, isRegex?: boolean): Promise<IReplaceResult>;
+    search(text: TextSource, searchTerm: string, caseSensitive?: boolean, isRegex?: boolean, execOptions?: IExecOptions, searchOptions?: ISearchOptions): Promise<ISearchResult>;
+    searchStream(text: TextSource, searchTerm: string, caseSensitive: boolean, isRegex: boolean, onBatch: (batch: ISearchBatch) => void, execOptions?: IExecOptions, searchOptions?: ISearchStreamOptions): Promise<ISearchStreamResult>;
+    searchTerms(text: TextSource, terms: string[], caseSensitive?: boolean, execOptions?: IExecOptions, searchOptions?: ISearchOptions): Promise<ITermSearchResult>;
+    replace(text: TextSource, searchTerm: string, replacement: string, replaceAll?: boolean, caseSensitive?: boolean, isRegex?: boolean, execOptions?: IExecOptions, replaceOptions?: IReplaceOptions): Promise<IReplaceResult>;
+    getPatternCacheStats(): Promise<IPatternCacheStats>;
+
+    // Notebook index
+    indexDocument(id: string, text: TextSource, indexOptions?: IIndexDocumentOptions, execOptions?: IExecOptions): Promise<IIndexDocumentResult>;
+    removeDocument(id: string, indexOptions?: IIndexDocumentOptions, execOptions?: IExecOptions): Promise<IRemoveDocumentResult>;
+    searchIndex(query: string, searchOptions?: ISearchIndexOptions, execOptions?: IExecOptions): Promise<ISearchIndexResult>;
 
     // Text formatting
-    formatText(text: string, options: IFormattingOptions): Promise<IFormattingResult>;
+    formatText(text: TextSource, options: IFormattingOptions, execOptions?: IExecOptions): Promise<IFormattingResult>;
+    sortFile(inputPath: string, outputPath: string, sortOptions?: ISortFileOptions, execOptions?: IExecOptions): Promise<ISortFileResult>;
+    dedupeFile(inputPath: string, outputPath: string, dedupeOptions?: IDedupeFileOptions, execOptions?: IExecOptions): Promise<IDedupeFileResult>;
+
+    // Diff
+    diff(oldText: TextSource, newText: TextSource, granularity?: DiffGranularity, diffOptions?: IDiffOptions, execOptions?: IExecOptions): Promise<IDiffResult>;
 
     // Undo/Redo management
-    initUndoRedo(initialText: string, maxHistory?: number): Promise<IUndoRedoState>;
-    pushState(text: string): Promise<IUndoRedoState>;
-    undo(): Promise<IUndoRedoResult>;
-    redo(): Promise<IUndoRedoResult>;
-    getUndoRedoState(): Promise<IUndoRedoState>;
-    clearHistory(): Promise<boolean>;
+    initUndoRedo(initialText: TextSource, maxHistory?: number, maxHistoryBytes?: number, historyId?: string): Promise<IUndoRedoState>;
+    pushState(text: TextSource, historyId?: string): Promise<IUndoRedoState>;
+    pushEdit(start: number, end: number, insertedText: string, historyId?: string): Promise<IUndoRedoState>;
+    undo(historyId?: string): Promise<IUndoRedoResult>;
+    redo(historyId?: string): Promise<IUndoRedoResult>;
+    getUndoRedoState(historyId?: string): Promise<IUndoRedoState>;
+    clearHistory(historyId?: string): Promise<boolean>;
+    setUndoBudget(maxBytes: number): Promise<IUndoStats>;
+    getUndoStats(): Promise<IUndoStats>;
 
     // Auto-save
     configureAutoSave(config: IAutoSaveConfig): Promise<boolean>;
@@ -279,6 +911,17 @@ export default class NotepadUtilsManager {
     restoreBackup(backupId: string): Promise<string>;
     deleteBackup(backupId: string): Promise<boolean>;
 
+    // Scheduling
+    cancel(requestId: string): Promise<ICancelResult>;
+    readonly BATCH_TEXT: { batchText: true };
+    batch(text: TextSource, steps: IBatchStep[], execOptions?: IExecOptions): Promise<IBatchResult>;
+
+    // Metrics
+    getMetrics(reset?: boolean): Promise<IMetrics>;
+    resetMetrics(): Promise<void>;
+    watchMetrics(onMetrics: (event: IMetricsEvent) => void, options?: IMetricsWatchOptions): Promise<IMetricsWatchState>;
+    unwatchMetrics(): Promise<void>;
+
     // Share extension
     getSharedContent(): Promise<ISharedContent>;
     clearSharedContent(): Promise<boolean>;
@@ -1,5 +1,25 @@
 var PLUGIN_NAME = 'NotepadUtilsPlugin';
 
+// Cordova sends ArrayBuffers natively but not typed-array views
+function toArrayBuffer(data) {
+    if (ArrayBuffer.isView(data)) {
+        return data.buffer.slice(data.byteOffset, data.byteOffset + data.byteLength);
+    }
+    return data;
+}
+
+function isBinary(data) {
+    return data instanceof ArrayBuffer || ArrayBuffer.isView(data);
+}
+
+// Transport flags: binaryInput tells the native side the payload arrived as an ArrayBuffer
+function transportFor(data, transportOptions) {
+    return {
+        binary: !!(transportOptions && transportOptions.binary),
+        binaryInput: isBinary(data)
+    };
+}
+
 var NotepadUtilsPlugin = {
     // ==================== Clipboard Operations ====================
 
@@ -34,16 +54,154 @@ var NotepadUtilsPlugin = {
         });
     },
 
+    /**
+     * Watch the clipboard; each copy is recorded in the native history and reported to onChange
+     * @param {Function} onChange - Called with { event: 'change', text, length, timestamp, historyId, historySize }
+     * @param {Object} options - { maxEntries, maxBytes, includeText } (optional)
+     * @returns {Promise<Object>} Resolves once the watcher is registered
+     */
+    watchClipboard: function(onChange, options) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(function(event) {
+                if (event.event === 'started') {
+                    resolve(event);
+                } else if (event.event === 'change' && onChange) {
+                    onChange(event);
+                }
+            }, reject, PLUGIN_NAME, 'watchClipboard', [options || {}]);
+        });
+    },
+
+    /**
+     * Stop watching the clipboard; the history is kept
+     * @returns {Promise<void>}
+     */
+    unwatchClipboard: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'unwatchClipboard', []);
+        });
+    },
+
+    /**
+     * Get recorded clips, newest first
+     * @param {number} offset - Entries to skip (optional)
+     * @param {number} limit - Maximum entries to return, 0 for all (optional)
+     * @returns {Promise<Object>} History page
+     */
+    getClipboardHistory: function(offset, limit) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getClipboardHistory', [offset || 0, limit || 0]);
+        });
+    },
+
+    /**
+     * Forget all recorded clips
+     * @returns {Promise<void>}
+     */
+    clearClipboardHistory: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'clearClipboardHistory', []);
+        });
+    },
+
+    // ==================== Documents ====================
+
+    /**
+     * Open a native document buffer; actions that take text also accept { documentId }
+     * @param {string} documentId - Document identifier
+     * @param {string} text - Initial document text
+     * @returns {Promise<Object>} Document info { documentId, length, version }
+     */
+    openDocument: function(documentId, text) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'openDocument', [documentId, text]);
+        });
+    },
+
+    /**
+     * Apply an edit to an open document
+     * @param {string} documentId - Document identifier
+     * @param {number} start - Start offset of the replaced range
+     * @param {number} end - End offset of the replaced range
+     * @param {string} insertedText - Text inserted in place of the range
+     * @returns {Promise<Object>} Document info { documentId, length, version }
+     */
+    applyEdit: function(documentId, start, end, insertedText) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'applyEdit', [documentId, start, end, insertedText]);
+        });
+    },
+
+    /**
+     * Get the current text of an open document
+     * @param {string} documentId - Document identifier
+     * @returns {Promise<Object>} Document info with text
+     */
+    getDocumentText: function(documentId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getDocumentText', [documentId]);
+        });
+    },
+
+    /**
+     * Close an open document and release its buffer
+     * @param {string} documentId - Document identifier
+     * @returns {Promise<boolean>} Success status
+     */
+    closeDocument: function(documentId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'closeDocument', [documentId]);
+        });
+    },
+
     // ==================== Text Statistics ====================
 
     /**
      * Get text statistics
-     * @param {string} text - The text to analyze
+     * @param {string|Object} text - The text to analyze, or { documentId }
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
      * @returns {Promise<Object>} Text statistics
      */
-    getTextStats: function(text) {
+    getTextStats: function(text, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getTextStats', [text, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Start tracking statistics for a document that will be updated with edits
+     * @param {string} documentId - Document identifier
+     * @param {string} text - Current document text
+     * @returns {Promise<Object>} Text statistics
+     */
+    trackTextStats: function(documentId, text) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'trackTextStats', [documentId, text]);
+        });
+    },
+
+    /**
+     * Update a tracked document with an edit and get its statistics
+     * @param {string} documentId - Document identifier
+     * @param {number} start - Start offset of the replaced range
+     * @param {number} end - End offset of the replaced range
+     * @param {string} insertedText - Text inserted in place of the range
+     * @returns {Promise<Object>} Text statistics
+     */
+    updateTextStats: function(documentId, start, end, insertedText) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'updateTextStats', [documentId, start, end, insertedText]);
+        });
+    },
+
+    /**
+     * Stop tracking statistics for a document
+     * @param {string} documentId - Document identifier
+     * @returns {Promise<boolean>} Success status
+     */
+    untrackTextStats: function(documentId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'getTextStats', [text]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'untrackTextStats', [documentId]);
         });
     },
 
@@ -51,53 +209,233 @@ var NotepadUtilsPlugin = {
 
     /**
      * Detect patterns in text (URLs, emails, phone numbers, etc.)
-     * @param {string} text - The text to analyze
+     * @param {string|Object} text - The text to analyze, or { documentId }
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} Detected patterns
+     */
+    detectPatterns: function(text, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'detectPatterns', [text, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Start tracking detected patterns for a document that will be updated with edits
+     * @param {string} documentId - Document identifier
+     * @param {string} text - Current document text
+     * @returns {Promise<Object>} Detected patterns
+     */
+    trackPatterns: function(documentId, text) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'trackPatterns', [documentId, text]);
+        });
+    },
+
+    /**
+     * Update a tracked document with an edit and get the matches in the rescanned range
+     * @param {string} documentId - Document identifier
+     * @param {number} start - Start offset of the replaced range
+     * @param {number} end - End offset of the replaced range
+     * @param {string} insertedText - Text inserted in place of the range
+     * @returns {Promise<Object>} Rescanned range and its matches
+     */
+    updatePatterns: function(documentId, start, end, insertedText) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'updatePatterns', [documentId, start, end, insertedText]);
+        });
+    },
+
+    /**
+     * Get all detected patterns of a tracked document
+     * @param {string} documentId - Document identifier
      * @returns {Promise<Object>} Detected patterns
      */
-    detectPatterns: function(text) {
+    getTrackedPatterns: function(documentId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getTrackedPatterns', [documentId]);
+        });
+    },
+
+    /**
+     * Stop tracking patterns for a document
+     * @param {string} documentId - Document identifier
+     * @returns {Promise<boolean>} Success status
+     */
+    untrackPatterns: function(documentId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'detectPatterns', [text]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'untrackPatterns', [documentId]);
         });
     },
 
     // ==================== Encryption/Decryption ====================
 
     /**
-     * Encrypt text with password
-     * @param {string} text - Text to encrypt
+     * Encrypt text or binary data with password
+     * @param {string|Object|ArrayBuffer} text - Text, { documentId } or an ArrayBuffer/typed array to encrypt
      * @param {string} password - Password for encryption
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} transportOptions - { binary } to receive ArrayBuffers instead of base64 (optional)
      * @returns {Promise<Object>} Encryption result
      */
-    encrypt: function(text, password) {
+    encrypt: function(text, password, execOptions, transportOptions) {
+        var transport = transportFor(text, transportOptions);
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'encrypt', [text, password]);
+            cordova.exec(function(iv, salt, encryptedData) {
+                // A binary result arrives as three ArrayBuffer parts; failures stay JSON
+                if (iv instanceof ArrayBuffer) {
+                    resolve({ encryptedData: encryptedData, iv: iv, salt: salt, success: true });
+                } else {
+                    resolve(iv);
+                }
+            }, reject, PLUGIN_NAME, 'encrypt', [toArrayBuffer(text), password, execOptions || {}, transport]);
         });
     },
 
     /**
      * Decrypt text with password
-     * @param {string} encryptedData - Encrypted data (base64)
+     * @param {string|ArrayBuffer} encryptedData - Encrypted data (base64 or ArrayBuffer)
      * @param {string} password - Password for decryption
-     * @param {string} iv - Initialization vector (base64)
-     * @param {string} salt - Salt (base64)
+     * @param {string|ArrayBuffer} iv - Initialization vector (base64 or ArrayBuffer)
+     * @param {string|ArrayBuffer} salt - Salt (base64 or ArrayBuffer)
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} transportOptions - { binary } to receive the plaintext as an ArrayBuffer (optional)
      * @returns {Promise<Object>} Decryption result
      */
-    decrypt: function(encryptedData, password, iv, salt) {
+    decrypt: function(encryptedData, password, iv, salt, execOptions, transportOptions) {
+        var transport = transportFor(null, transportOptions);
+        return new Promise(function(resolve, reject) {
+            cordova.exec(function(result) {
+                if (result instanceof ArrayBuffer) {
+                    resolve({ decryptedData: result, success: true });
+                } else {
+                    resolve(result);
+                }
+            }, reject, PLUGIN_NAME, 'decrypt', [toArrayBuffer(encryptedData), password, toArrayBuffer(iv), toArrayBuffer(salt), execOptions || {}, transport]);
+        });
+    },
+
+    /**
+     * Encrypt many texts with one password, deriving the key only once
+     * @param {string[]} texts - Texts to encrypt
+     * @param {string} password - Password for encryption
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} Batch encryption result
+     */
+    encryptBatch: function(texts, password, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'encryptBatch', [texts, password, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Decrypt many items with one password, deriving each distinct key only once
+     * @param {Object[]} items - Items of { encryptedData, iv, salt } (base64)
+     * @param {string} password - Password for decryption
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} Batch decryption result
+     */
+    decryptBatch: function(items, password, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'decryptBatch', [items, password, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Encrypt a file in streamed, authenticated AES-GCM segments
+     * @param {string} inputPath - Path or file:// URL of the plaintext file
+     * @param {string} outputPath - Path or file:// URL to write the encrypted file to
+     * @param {string} password - Password for encryption
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} File encryption result
+     */
+    encryptFile: function(inputPath, outputPath, password, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'encryptFile', [inputPath, outputPath, password, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Decrypt a file written by encryptFile
+     * @param {string} inputPath - Path or file:// URL of the encrypted file
+     * @param {string} outputPath - Path or file:// URL to write the plaintext file to
+     * @param {string} password - Password for decryption
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} File decryption result
+     */
+    decryptFile: function(inputPath, outputPath, password, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'decryptFile', [inputPath, outputPath, password, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Hash text or binary data
+     * @param {string|Object|ArrayBuffer} text - Text, { documentId } or an ArrayBuffer/typed array to hash
+     * @param {string} algorithm - Hash algorithm (SHA-256, SHA-512, MD5, XXH64)
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} transportOptions - { binary } to receive the raw digest as an ArrayBuffer (optional)
+     * @returns {Promise<Object>} Hash result
+     */
+    hash: function(text, algorithm, execOptions, transportOptions) {
+        algorithm = algorithm || 'SHA-256';
+        var transport = transportFor(text, transportOptions);
+        return new Promise(function(resolve, reject) {
+            cordova.exec(function(result) {
+                if (result instanceof ArrayBuffer) {
+                    resolve({ digest: result, algorithm: algorithm, success: true });
+                } else {
+                    resolve(result);
+                }
+            }, reject, PLUGIN_NAME, 'hash', [toArrayBuffer(text), algorithm, execOptions || {}, transport]);
+        });
+    },
+
+    /**
+     * Start an incremental hash session
+     * @param {string} algorithm - Hash algorithm (SHA-256, SHA-512, MD5, XXH64)
+     * @returns {Promise<Object>} Session info with sessionId
+     */
+    hashBegin: function(algorithm) {
+        algorithm = algorithm || 'SHA-256';
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'hashBegin', [algorithm]);
+        });
+    },
+
+    /**
+     * Feed a chunk of text into a hash session
+     * @param {string} sessionId - Session identifier from hashBegin
+     * @param {string} text - Next chunk of text
+     * @returns {Promise<Object>} Session progress
+     */
+    hashUpdate: function(sessionId, text) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'hashUpdate', [sessionId, text]);
+        });
+    },
+
+    /**
+     * Finish a hash session and get the hash
+     * @param {string} sessionId - Session identifier from hashBegin
+     * @returns {Promise<Object>} Hash result
+     */
+    hashFinish: function(sessionId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'decrypt', [encryptedData, password, iv, salt]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'hashFinish', [sessionId]);
         });
     },
 
     /**
-     * Hash text
-     * @param {string} text - Text to hash
-     * @param {string} algorithm - Hash algorithm (SHA-256, SHA-512, MD5)
+     * Hash a file without loading it into memory
+     * @param {string} path - Path or file:// URL of the file
+     * @param {string} algorithm - Hash algorithm (SHA-256, SHA-512, MD5, XXH64)
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
      * @returns {Promise<Object>} Hash result
      */
-    hash: function(text, algorithm) {
+    hashFile: function(path, algorithm, execOptions) {
         algorithm = algorithm || 'SHA-256';
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'hash', [text, algorithm]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'hashFile', [path, algorithm, execOptions || {}]);
         });
     },
 
@@ -105,36 +443,133 @@ var NotepadUtilsPlugin = {
 
     /**
      * Search for text
-     * @param {string} text - Text to search in
+     * @param {string|Object} text - Text to search in, or { documentId }
      * @param {string} searchTerm - Term to search for
      * @param {boolean} caseSensitive - Case sensitive search
      * @param {boolean} isRegex - Use regex
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} searchOptions - Paging and regex budget { offset, limit, timeoutMs, maxSteps } (optional)
      * @returns {Promise<Object>} Search results
      */
-    search: function(text, searchTerm, caseSensitive, isRegex) {
+    search: function(text, searchTerm, caseSensitive, isRegex, execOptions, searchOptions) {
+        caseSensitive = caseSensitive || false;
+        isRegex = isRegex || false;
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'search', [text, searchTerm, caseSensitive, isRegex, execOptions || {}, searchOptions || {}]);
+        });
+    },
+
+    /**
+     * Search for text, receiving matches in batches while the scan runs
+     * @param {string|Object} text - Text to search in, or { documentId }
+     * @param {string} searchTerm - Term to search for
+     * @param {boolean} caseSensitive - Case sensitive search
+     * @param {boolean} isRegex - Use regex
+     * @param {Function} onBatch - Called with each batch { matches, matchCount }
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} searchOptions - Streaming and regex budget { batchSize, limit, timeoutMs, maxSteps } (optional)
+     * @returns {Promise<Object>} Completion summary with total counts
+     */
+    searchStream: function(text, searchTerm, caseSensitive, isRegex, onBatch, execOptions, searchOptions) {
         caseSensitive = caseSensitive || false;
         isRegex = isRegex || false;
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'search', [text, searchTerm, caseSensitive, isRegex]);
+            cordova.exec(function(result) {
+                if (result.done) {
+                    resolve(result);
+                } else if (onBatch) {
+                    onBatch(result);
+                }
+            }, reject, PLUGIN_NAME, 'searchStream', [text, searchTerm, caseSensitive, isRegex, execOptions || {}, searchOptions || {}]);
+        });
+    },
+
+    /**
+     * Find many literal terms in one pass, e.g. to highlight a keyword list
+     * @param {string|Object} text - Text to search in, or { documentId }
+     * @param {Array<string>} terms - Terms to search for
+     * @param {boolean} caseSensitive - Case sensitive search
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} searchOptions - Paging options { offset, limit } (optional)
+     * @returns {Promise<Object>} Matches with the index of the term found
+     */
+    searchTerms: function(text, terms, caseSensitive, execOptions, searchOptions) {
+        caseSensitive = caseSensitive || false;
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'searchTerms', [text, terms, caseSensitive, execOptions || {}, searchOptions || {}]);
         });
     },
 
     /**
      * Replace text
-     * @param {string} text - Text to search in
+     * @param {string|Object} text - Text to search in, or { documentId }
      * @param {string} searchTerm - Term to search for
      * @param {string} replacement - Replacement text
      * @param {boolean} replaceAll - Replace all occurrences
      * @param {boolean} caseSensitive - Case sensitive search
      * @param {boolean} isRegex - Use regex
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @param {Object} replaceOptions - { returnEdits, applyToDocument, pushUndo, historyId, timeoutMs, maxSteps } (optional)
      * @returns {Promise<Object>} Replace result
      */
-    replace: function(text, searchTerm, replacement, replaceAll, caseSensitive, isRegex) {
+    replace: function(text, searchTerm, replacement, replaceAll, caseSensitive, isRegex, execOptions, replaceOptions) {
         replaceAll = replaceAll !== false;
         caseSensitive = caseSensitive || false;
         isRegex = isRegex || false;
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'replace', [text, searchTerm, replacement, replaceAll, caseSensitive, isRegex]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'replace', [text, searchTerm, replacement, replaceAll, caseSensitive, isRegex, execOptions || {}, replaceOptions || {}]);
+        });
+    },
+
+    /**
+     * Get hit/miss counters of the compiled search pattern cache
+     * @returns {Promise<Object>} Cache statistics
+     */
+    getPatternCacheStats: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getPatternCacheStats', []);
+        });
+    },
+
+    // ==================== Notebook Index ====================
+
+    /**
+     * Add a note to the notebook search index, replacing its earlier version
+     * @param {string} id - Note id
+     * @param {string|Object} text - Note text, or { documentId }
+     * @param {Object} indexOptions - { commit } (optional)
+     * @param {Object} execOptions - Scheduling options { requestId, priority } (optional)
+     * @returns {Promise<Object>} { id, documentCount }
+     */
+    indexDocument: function(id, text, indexOptions, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'indexDocument', [id, text, indexOptions || {}, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Remove a note from the notebook search index
+     * @param {string} id - Note id
+     * @param {Object} indexOptions - { commit } (optional)
+     * @param {Object} execOptions - Scheduling options { requestId, priority } (optional)
+     * @returns {Promise<Object>} { id, removed, documentCount }
+     */
+    removeDocument: function(id, indexOptions, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'removeDocument', [id, indexOptions || {}, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Ranked search over every indexed note
+     * @param {string} query - Words, "quoted phrases" and prefix* terms
+     * @param {Object} searchOptions - { limit, mode, maxMatches } (optional)
+     * @param {Object} execOptions - Scheduling options { requestId, priority } (optional)
+     * @returns {Promise<Object>} { results: [{ id, score, matches }], totalHits, documentCount }
+     */
+    searchIndex: function(query, searchOptions, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'searchIndex', [query, searchOptions || {}, execOptions || {}]);
         });
     },
 
@@ -144,11 +579,57 @@ var NotepadUtilsPlugin = {
      * Format text with various options
      * @param {string} text - Text to format
      * @param {Object} options - Formatting options
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
      * @returns {Promise<Object>} Formatted text result
      */
-    formatText: function(text, options) {
+    formatText: function(text, options, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'formatText', [text, options, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Sort the lines of a file with an external merge sort
+     * @param {string} inputPath - Path or file:// URL of the UTF-8 input file
+     * @param {string} outputPath - Path or file:// URL of the sorted output
+     * @param {Object} sortOptions - { sortMode, sortLocale, sortReverse, runChars } (optional)
+     * @param {Object} execOptions - Scheduling options { requestId, priority } (optional)
+     * @returns {Promise<Object>} Sort result
+     */
+    sortFile: function(inputPath, outputPath, sortOptions, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'sortFile', [inputPath, outputPath, sortOptions || {}, execOptions || {}]);
+        });
+    },
+
+    /**
+     * Remove duplicate lines from a file by streaming it
+     * @param {string} inputPath - Path or file:// URL of the input file
+     * @param {string} outputPath - Path or file:// URL of the output file
+     * @param {Object} dedupeOptions - { keepLastDuplicate } (optional)
+     * @param {Object} execOptions - Scheduling options { requestId, priority } (optional)
+     * @returns {Promise<Object>} Dedupe result
+     */
+    dedupeFile: function(inputPath, outputPath, dedupeOptions, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'dedupeFile', [inputPath, outputPath, dedupeOptions || {}, execOptions || {}]);
+        });
+    },
+
+    // ==================== Diff ====================
+
+    /**
+     * Compare two versions of a text
+     * @param {string|Object} oldText - Old text, or { documentId }
+     * @param {string|Object} newText - New text, or { documentId }
+     * @param {string} granularity - 'line', 'word' or 'char' (default 'line')
+     * @param {Object} diffOptions - { algorithm, timeoutMs, includeText } (optional)
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} { hunks: [{ oldStart, oldEnd, newStart, newEnd, text }], granularity, complete, deleted, inserted, durationMs }
+     */
+    diff: function(oldText, newText, granularity, diffOptions, execOptions) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'formatText', [text, options]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'diff', [oldText, newText, granularity || 'line', diffOptions || {}, execOptions || {}]);
         });
     },
 
@@ -158,63 +639,119 @@ var NotepadUtilsPlugin = {
      * Initialize undo/redo with initial text
      * @param {string} initialText - Initial text state
      * @param {number} maxHistory - Maximum history length
+     * @param {number} maxHistoryBytes - Memory budget for the undo deltas in bytes, not counting the current text (optional)
+     * @param {string} historyId - Separate history, e.g. per tab (optional)
      * @returns {Promise<Object>} Undo/redo state
      */
-    initUndoRedo: function(initialText, maxHistory) {
+    initUndoRedo: function(initialText, maxHistory, maxHistoryBytes, historyId) {
         maxHistory = maxHistory || 100;
+        maxHistoryBytes = maxHistoryBytes || 0;
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'initUndoRedo', [initialText, maxHistory]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'initUndoRedo', [initialText, maxHistory, maxHistoryBytes, historyId]);
         });
     },
 
     /**
      * Push new state to history
      * @param {string} text - New text state
+     * @param {string} historyId - History to push to (optional)
+     * @returns {Promise<Object>} Undo/redo state
+     */
+    pushState: function(text, historyId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'pushState', [text, historyId]);
+        });
+    },
+
+    /**
+     * Push a new state described as an edit of the current state
+     * @param {number} start - Start offset of the replaced range
+     * @param {number} end - End offset of the replaced range
+     * @param {string} insertedText - Text inserted in place of the range
+     * @param {string} historyId - History to push to (optional)
      * @returns {Promise<Object>} Undo/redo state
      */
-    pushState: function(text) {
+    pushEdit: function(start, end, insertedText, historyId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'pushState', [text]);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'pushEdit', [start, end, insertedText, historyId]);
         });
     },
 
     /**
      * Undo last change
+     * @param {string} historyId - History to use (optional)
      * @returns {Promise<Object>} Undo result with text and state
      */
-    undo: function() {
+    undo: function(historyId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'undo', []);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'undo', [historyId]);
         });
     },
 
     /**
      * Redo last undone change
+     * @param {string} historyId - History to use (optional)
      * @returns {Promise<Object>} Redo result with text and state
      */
-    redo: function() {
+    redo: function(historyId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'redo', []);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'redo', [historyId]);
         });
     },
 
     /**
      * Get current undo/redo state
+     * @param {string} historyId - History to use (optional)
      * @returns {Promise<Object>} Current state
      */
-    getUndoRedoState: function() {
+    getUndoRedoState: function(historyId) {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'getUndoRedoState', []);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getUndoRedoState', [historyId]);
         });
     },
 
     /**
      * Clear undo/redo history
+     * @param {string} historyId - History to use (optional)
+     * @returns {Promise<boolean>} Success status
+     */
+    clearHistory: function(historyId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'clearHistory', [historyId]);
+        });
+    },
+
+    /**
+     * Drop an undo/redo history and free its memory and storage, e.g. when
+     * its tab closes
+     * @param {string} historyId - History to drop (optional)
      * @returns {Promise<boolean>} Success status
      */
-    clearHistory: function() {
+    disposeHistory: function(historyId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'disposeHistory', [historyId]);
+        });
+    },
+
+    /**
+     * Set the memory budget shared by all undo histories; colder histories
+     * are compressed or moved to app storage to stay within it
+     * @param {number} maxBytes - Budget in bytes
+     * @returns {Promise<Object>} Undo memory stats
+     */
+    setUndoBudget: function(maxBytes) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'setUndoBudget', [maxBytes]);
+        });
+    },
+
+    /**
+     * Get how many undo histories exist and how much memory they hold
+     * @returns {Promise<Object>} Undo memory stats
+     */
+    getUndoStats: function() {
         return new Promise(function(resolve, reject) {
-            cordova.exec(resolve, reject, PLUGIN_NAME, 'clearHistory', []);
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getUndoStats', []);
         });
     },
 
@@ -276,6 +813,88 @@ var NotepadUtilsPlugin = {
         });
     },
 
+    // ==================== Scheduling ====================
+
+    /**
+     * Cancel a pending or running request started with execOptions.requestId
+     * @param {string} requestId - Request identifier
+     * @returns {Promise<Object>} Cancel result
+     */
+    cancel: function(requestId) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'cancel', [requestId]);
+        });
+    },
+
+    /**
+     * Placeholder for the batch text in the args of a batch step
+     */
+    BATCH_TEXT: { batchText: true },
+
+    /**
+     * Run several actions in one bridge call against one copy of the text
+     * @param {string|Object} text - Text shared by the steps, or { documentId }
+     * @param {Array<Object>} steps - [{ action, args }], with BATCH_TEXT where the text goes
+     * @param {Object} execOptions - Scheduling options { requestId, priority, documentId } (optional)
+     * @returns {Promise<Object>} Results of each step in order
+     */
+    batch: function(text, steps, execOptions) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'batch', [text, steps, execOptions || {}]);
+        });
+    },
+
+    // ==================== Metrics ====================
+
+    /**
+     * Get per-action call counts, latency percentiles, payload sizes and errors
+     * @param {boolean} reset - Clear the metrics after reading them (optional)
+     * @returns {Promise<Object>} Metrics since the last reset
+     */
+    getMetrics: function(reset) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'getMetrics', [!!reset]);
+        });
+    },
+
+    /**
+     * Clear all recorded metrics
+     * @returns {Promise<void>}
+     */
+    resetMetrics: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'resetMetrics', []);
+        });
+    },
+
+    /**
+     * Receive metrics periodically, e.g. to forward them to app telemetry
+     * @param {Function} onMetrics - Called with each metrics snapshot
+     * @param {Object} options - { intervalMs, reset } (optional)
+     * @returns {Promise<Object>} Resolves once watching has started
+     */
+    watchMetrics: function(onMetrics, options) {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(function(event) {
+                if (event.event === 'started') {
+                    resolve(event);
+                } else if (event.event === 'metrics' && onMetrics) {
+                    onMetrics(event);
+                }
+            }, reject, PLUGIN_NAME, 'watchMetrics', [options || {}]);
+        });
+    },
+
+    /**
+     * Stop periodic metrics
+     * @returns {Promise<void>}
+     */
+    unwatchMetrics: function() {
+        return new Promise(function(resolve, reject) {
+            cordova.exec(resolve, reject, PLUGIN_NAME, 'unwatchMetrics', []);
+        });
+    },
+
     // ==================== Share Extension ====================
 
     /**